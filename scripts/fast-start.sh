@@ -0,0 +1,37 @@
+#!/usr/bin/env bash
+#
+# Builds the fast-start distribution of the signing worker and reports the time
+# to the first signed document with and without Spring AOT and the AppCDS archive.
+#
+# Usage: scripts/fast-start.sh
+# Output: target/fast-start/ with the extracted application and application.jsa
+#
+set -euo pipefail
+cd "$(dirname "$0")/.."
+
+./mvnw -B -q -Pfast-start -DskipTests package
+
+DIST=target/fast-start
+JAR="$DIST/training-demo-0.0.1-SNAPSHOT.jar"
+ARCHIVE="$DIST/application.jsa"
+rm -rf "$DIST"
+# CDS needs a plain classpath of jars, not the nested jars of the executable jar
+java -Djarmode=tools -jar target/training-demo-0.0.1-SNAPSHOT.jar extract --destination "$DIST"
+
+run() {
+  java "$@" -jar "$JAR" --server.port=0 --esign.startup.training-run=true --logging.level.org.apache.pdfbox=WARN
+}
+
+echo "Training run, writing $ARCHIVE"
+run -XX:ArchiveClassesAtExit="$ARCHIVE" -Dspring.aot.enabled=true > "$DIST/training.log"
+
+report() {
+  local label=$1
+  shift
+  printf '%-12s ' "$label"
+  run "$@" | grep -o 'Time to first signed document: .*'
+}
+
+report "default"
+report "aot" -Dspring.aot.enabled=true
+report "aot+cds" -Dspring.aot.enabled=true -XX:SharedArchiveFile="$ARCHIVE"
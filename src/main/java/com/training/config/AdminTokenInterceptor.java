@@ -0,0 +1,45 @@
+package com.training.config;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Guards the admin endpoints with a shared token sent in the admin token header.
+ * The endpoints are disabled until a token is configured.
+ */
+@Component
+@Slf4j
+public class AdminTokenInterceptor implements HandlerInterceptor {
+
+    public static final String TOKEN_HEADER = "X-Admin-Token";
+
+    @Value("${esign.admin.token:}")
+    private String token = "";
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!StringUtils.hasText(token)) {
+            response.setStatus(HttpStatus.FORBIDDEN.value());
+            return false;
+        }
+        String presented = request.getHeader(TOKEN_HEADER);
+        // Compared in constant time, so the response time does not reveal how much of the token matched
+        if (presented == null || !MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                                                        presented.getBytes(StandardCharsets.UTF_8))) {
+            log.warn("Rejected {} {} without a valid admin token", request.getMethod(), request.getRequestURI());
+            response.setStatus(HttpStatus.UNAUTHORIZED.value());
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,99 @@
+package com.training.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import com.training.model.AdmissionDecision;
+import com.training.service.AdmissionControlService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Admits or rejects requests to the PDF endpoints before the handler reads the request body or
+ * parses a document. Rejected requests get 429 with a Retry-After header, and every response carries
+ * the RateLimit-Limit, RateLimit-Remaining and RateLimit-Reset headers of the limit that applies.
+ */
+@Component
+@Slf4j
+public class AdmissionInterceptor implements AsyncHandlerInterceptor {
+
+    public static final String TENANT_HEADER = "X-Tenant-Id";
+
+    private static final String ADMITTED_ATTRIBUTE = AdmissionInterceptor.class.getName() + ".admitted";
+
+    @Autowired
+    private AdmissionControlService admissionControlService;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${esign.admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${esign.admission.default-tenant:anonymous}")
+    private String defaultTenant;
+
+    /**
+     * The credential the signing endpoints sign with. The controller uses a single keystore entry,
+     * so every signing request counts against it.
+     */
+    @Value("${esign.admission.signing-credential:${esign.signing.certificate-alias:testcert}}")
+    private String signingCredential;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // The dispatch that writes an async response was admitted by the original request
+        if (!enabled || request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        String tenant = request.getHeader(TENANT_HEADER);
+        if (!StringUtils.hasText(tenant) || !admissionControlService.isKnownTenant(tenant)) {
+            // An unknown tenant id shares the default limits instead of creating a tenant
+            tenant = defaultTenant;
+        }
+        String credential = isSigningRequest(request) ? signingCredential : null;
+
+        AdmissionDecision decision = admissionControlService.admit(tenant, credential);
+        if (decision.limit() >= 0) {
+            response.setHeader("RateLimit-Limit", Long.toString(decision.limit()));
+            response.setHeader("RateLimit-Remaining", Long.toString(decision.remaining()));
+            response.setHeader("RateLimit-Reset", Long.toString(decision.resetSeconds()));
+        }
+        if (!decision.admitted()) {
+            log.info("Rejected {} {} for tenant {} by {} limit", request.getMethod(), request.getRequestURI(),
+                     tenant, decision.rejectedBy());
+            if (meterRegistry != null) {
+                meterRegistry.counter("esign.admission.rejected", "scope", decision.rejectedBy()).increment();
+            }
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader("Retry-After", Long.toString(decision.retryAfterSeconds()));
+            return false;
+        }
+        request.setAttribute(ADMITTED_ATTRIBUTE, new String[] { tenant, credential });
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        // Called once the response is complete, after the async dispatch for streamed responses
+        String[] admitted = (String[]) request.getAttribute(ADMITTED_ATTRIBUTE);
+        if (admitted != null) {
+            request.removeAttribute(ADMITTED_ATTRIBUTE);
+            admissionControlService.release(admitted[0], admitted[1]);
+        }
+    }
+
+    private static boolean isSigningRequest(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return path.equals("/api/pdf/sign") || path.startsWith("/api/pdf/sign/")
+            || path.startsWith("/api/pdf/") && path.endsWith("/signature");
+    }
+}
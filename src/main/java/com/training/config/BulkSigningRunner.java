@@ -0,0 +1,63 @@
+package com.training.config;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import com.training.model.BulkRunSummary;
+import com.training.service.BulkSigningService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Command-line mode for re-signing archives, usually started with the {@code bulk} profile:
+ * {@code java -jar training-demo.jar --spring.profiles.active=bulk --esign.bulk.input=/archive/2024 --esign.bulk.output=/signed/2024}.
+ * When {@code esign.bulk.input} is set, the application processes the input directories, prints the
+ * throughput and exits with status 1 if any document failed. The property is checked at runtime rather
+ * than with a condition, since Spring AOT fixes conditional beans at build time.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@Slf4j
+public class BulkSigningRunner implements ApplicationRunner {
+
+    @Autowired
+    private BulkSigningService bulkSigningService;
+
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    /**
+     * Comma-separated input directories, or empty to run as a server.
+     */
+    @Value("${esign.bulk.input:}")
+    private String[] inputs;
+
+    @Value("${esign.bulk.output:}")
+    private String output;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (inputs.length == 0) {
+            return;
+        }
+        if (output.isBlank()) {
+            throw new IllegalStateException("esign.bulk.output is required with esign.bulk.input");
+        }
+
+        BulkRunSummary summary = bulkSigningService.run(
+            Arrays.stream(inputs).map(String::trim).map(Path::of).toList(), Path.of(output));
+        int exitCode = summary.failed() > 0 ? 1 : 0;
+        log.info("Bulk run finished with {} failures, exiting", summary.failed());
+        System.exit(SpringApplication.exit(context, () -> exitCode));
+    }
+}
@@ -0,0 +1,103 @@
+package com.training.config;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import com.training.helper.SigningDeadline;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Gives each request to the PDF endpoints a deadline, from the timeout header a gateway or client sends
+ * or from the configured default, and binds it to the thread that processes the request.
+ * Abandoned work is recorded in the {@code esign.signing.abandoned} timer by phase and reason, whose total
+ * time is the processing capacity spent on responses nobody received.
+ */
+@Component
+@Slf4j
+public class DeadlineInterceptor implements AsyncHandlerInterceptor {
+
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+
+    private static final String DEADLINE_ATTRIBUTE = DeadlineInterceptor.class.getName() + ".deadline";
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${esign.deadline.enabled:true}")
+    private boolean enabled = true;
+
+    /**
+     * The timeout of requests without the timeout header, or zero for the longest timeout.
+     */
+    @Value("${esign.deadline.default-timeout-ms:30000}")
+    private long defaultTimeoutMillis = 30000;
+
+    /**
+     * The longest timeout, or zero for no limit, when requests without a timeout have no deadline.
+     */
+    @Value("${esign.deadline.max-timeout-ms:120000}")
+    private long maxTimeoutMillis = 120000;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // The dispatch that writes an async response belongs to the deadline of the original request
+        if (!enabled || request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        SigningDeadline deadline = new SigningDeadline(timeoutMillis(request.getHeader(TIMEOUT_HEADER)));
+        request.setAttribute(DEADLINE_ATTRIBUTE, deadline);
+        SigningDeadline.bind(deadline);
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // The response is written on another thread, which completes the request
+        SigningDeadline.bind(null);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        SigningDeadline.bind(null);
+        SigningDeadline deadline = (SigningDeadline) request.getAttribute(DEADLINE_ATTRIBUTE);
+        if (deadline == null) {
+            return;
+        }
+        request.removeAttribute(DEADLINE_ATTRIBUTE);
+        if (deadline.isAbandoned()) {
+            log.info("Abandoned {} {} before {} after {} ms: {}", request.getMethod(), request.getRequestURI(),
+                     deadline.getAbandonedPhase(), TimeUnit.NANOSECONDS.toMillis(deadline.getElapsedNanos()),
+                     deadline.getCancellationReason());
+            if (meterRegistry != null) {
+                meterRegistry.timer("esign.signing.abandoned", "phase", deadline.getAbandonedPhase().name(),
+                                    "reason", deadline.getCancellationReason().name())
+                             .record(deadline.getElapsedNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private long timeoutMillis(String header) {
+        long timeout = defaultTimeoutMillis;
+        if (StringUtils.hasText(header)) {
+            try {
+                timeout = Long.parseLong(header.strip());
+            } catch (NumberFormatException e) {
+                log.debug("Ignoring invalid {} header: {}", TIMEOUT_HEADER, header);
+            }
+        }
+        if (maxTimeoutMillis > 0 && (timeout <= 0 || timeout > maxTimeoutMillis)) {
+            return maxTimeoutMillis;
+        }
+        return timeout;
+    }
+}
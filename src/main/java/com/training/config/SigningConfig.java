@@ -0,0 +1,24 @@
+package com.training.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.training.enums.DigestAlgorithm;
+import com.training.enums.SignatureProviderType;
+import com.training.model.SignatureSpec;
+
+/**
+ * Configuration of the signature algorithm settings shared by the signing services.
+ */
+@Configuration
+public class SigningConfig {
+
+    @Bean
+    public SignatureSpec signatureSpec(
+            @Value("${esign.signing.digest-algorithm:SHA256}") DigestAlgorithm digestAlgorithm,
+            @Value("${esign.signing.provider:BOUNCY_CASTLE}") SignatureProviderType provider,
+            @Value("${esign.signing.rsa-pss:false}") boolean rsaPss) {
+        return new SignatureSpec(digestAlgorithm, provider, rsaPss);
+    }
+}
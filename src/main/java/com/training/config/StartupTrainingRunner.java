@@ -0,0 +1,67 @@
+package com.training.config;
+
+import java.lang.management.ManagementFactory;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import com.training.service.SyntheticWorkloadService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Training run for the fast-start build (see scripts/fast-start.sh).
+ * When {@code esign.startup.training-run} is enabled, the application signs a synthetic document
+ * right after startup, reports the time to the first signed document and exits, so that a JVM
+ * started with {@code -XX:ArchiveClassesAtExit} dumps every class the signing path needs.
+ * The property is checked at runtime rather than with a condition, since Spring AOT fixes
+ * conditional beans at build time.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Slf4j
+public class StartupTrainingRunner implements ApplicationRunner {
+
+    @Autowired
+    private SyntheticWorkloadService syntheticWorkloadService;
+
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    @Value("${esign.startup.training-run:false}")
+    private boolean trainingRun;
+
+    @Value("${esign.startup.training-iterations:3}")
+    private int trainingIterations;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!trainingRun) {
+            return;
+        }
+
+        syntheticWorkloadService.runOnce();
+        log.info("Time to first signed document: {} ms after JVM start", 
+                 ManagementFactory.getRuntimeMXBean().getUptime());
+
+        for (int i = 1; i < trainingIterations; i++) {
+            syntheticWorkloadService.runOnce();
+        }
+        log.info("Training run completed, exiting");
+        exit();
+    }
+
+    /**
+     * Shuts the application down, which makes the JVM write the class archive.
+     */
+    void exit() {
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+}
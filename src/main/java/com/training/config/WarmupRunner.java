@@ -0,0 +1,113 @@
+package com.training.config;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import com.training.service.SyntheticWorkloadService;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Warms up the JIT before the node takes traffic by running synthetic signing and stamping
+ * workloads through the real services until the latency stabilizes.
+ * Application runners complete before Spring Boot publishes {@code ReadinessState.ACCEPTING_TRAFFIC},
+ * so the readiness probe keeps reporting OUT_OF_SERVICE while the warm-up is running.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+@Slf4j
+public class WarmupRunner implements ApplicationRunner {
+
+    @Autowired
+    private SyntheticWorkloadService syntheticWorkloadService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${esign.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${esign.warmup.window:5}")
+    private int window;
+
+    @Value("${esign.warmup.tolerance:0.15}")
+    private double tolerance;
+
+    @Value("${esign.warmup.max-iterations:50}")
+    private int maxIterations;
+
+    @Value("${esign.warmup.max-duration-seconds:120}")
+    private long maxDurationSeconds;
+
+    private volatile long warmupNanos;
+    private volatile int warmupIterations;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        TimeGauge.builder("esign.warmup.duration", this, TimeUnit.NANOSECONDS, runner -> runner.warmupNanos)
+            .description("Time spent warming up before accepting traffic")
+            .register(meterRegistry);
+        Gauge.builder("esign.warmup.iterations", this, runner -> runner.warmupIterations)
+            .description("Synthetic workload iterations run during warm-up")
+            .register(meterRegistry);
+
+        if (!enabled) {
+            log.info("Warm-up disabled");
+            return;
+        }
+
+        log.info("Warming up signing paths, readiness is held until latency stabilizes");
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(maxDurationSeconds);
+        Deque<Long> recent = new ArrayDeque<>(window);
+        boolean stable = false;
+        try {
+            while (warmupIterations < maxIterations && System.nanoTime() < deadline) {
+                long latency = syntheticWorkloadService.runOnce();
+                warmupIterations++;
+                if (recent.size() == window) {
+                    recent.removeFirst();
+                }
+                recent.addLast(latency);
+                log.debug("Warm-up iteration {} took {} ms", warmupIterations, TimeUnit.NANOSECONDS.toMillis(latency));
+
+                if (recent.size() == window && isStable(recent)) {
+                    stable = true;
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            // Never keep the node out of rotation because of a synthetic workload failure
+            log.error("Warm-up failed after {} iterations: {}", warmupIterations, e.getMessage(), e);
+        }
+        warmupNanos = System.nanoTime() - start;
+
+        log.info("Warm-up completed in {} ms after {} iterations ({}), last latency {} ms",
+                 TimeUnit.NANOSECONDS.toMillis(warmupNanos), warmupIterations,
+                 stable ? "latency stable" : "limit reached",
+                 recent.isEmpty() ? 0 : TimeUnit.NANOSECONDS.toMillis(recent.getLast()));
+    }
+
+    /**
+     * Latency is considered stable when the spread of the recent window is within the tolerance of its median.
+     */
+    private boolean isStable(Deque<Long> recent) {
+        long[] latencies = recent.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(latencies);
+        long median = latencies[latencies.length / 2];
+        return latencies[latencies.length - 1] - latencies[0] <= median * tolerance;
+    }
+}
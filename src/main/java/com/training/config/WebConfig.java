@@ -0,0 +1,30 @@
+package com.training.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Registers the admission control and the request deadlines in front of the PDF endpoints,
+ * and the admin token check in front of the admin endpoints.
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private AdmissionInterceptor admissionInterceptor;
+
+    @Autowired
+    private DeadlineInterceptor deadlineInterceptor;
+
+    @Autowired
+    private AdminTokenInterceptor adminTokenInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(admissionInterceptor).addPathPatterns("/api/pdf/**");
+        registry.addInterceptor(deadlineInterceptor).addPathPatterns("/api/pdf/**");
+        registry.addInterceptor(adminTokenInterceptor).addPathPatterns("/api/admin/**");
+    }
+}
@@ -0,0 +1,101 @@
+package com.training.controller;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.training.model.AdmissionLimits;
+import com.training.service.AdmissionControlService;
+
+import lombok.extern.slf4j.Slf4j;
+
+@RestController
+@RequestMapping("/api/admin/limits")
+@Slf4j
+public class AdmissionController {
+
+    @Autowired
+    private AdmissionControlService admissionControlService;
+
+    /**
+     * Lists the tenant and credential limits that override the defaults.
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Map<String, AdmissionLimits>>> overrides() {
+        return ResponseEntity.ok(admissionControlService.overrides());
+    }
+
+    /**
+     * Returns the limits in effect for a tenant.
+     */
+    @GetMapping("/tenants/{tenant}")
+    public ResponseEntity<AdmissionLimits> tenantLimits(@PathVariable("tenant") String tenant) {
+        return ResponseEntity.ok(admissionControlService.tenantLimits(tenant));
+    }
+
+    /**
+     * Overrides the limits of a tenant, which makes it a known tenant. Takes effect for the next request.
+     * Every limit must be positive.
+     */
+    @PutMapping("/tenants/{tenant}")
+    public ResponseEntity<AdmissionLimits> setTenantLimits(@PathVariable("tenant") String tenant,
+    @RequestBody AdmissionLimits limits) {
+        try {
+            admissionControlService.setTenantLimits(tenant, limits);
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected tenant limits for {}: {}", tenant, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(limits);
+    }
+
+    /**
+     * Removes the override of a tenant.
+     */
+    @DeleteMapping("/tenants/{tenant}")
+    public ResponseEntity<AdmissionLimits> resetTenantLimits(@PathVariable("tenant") String tenant) {
+        admissionControlService.resetTenantLimits(tenant);
+        return ResponseEntity.ok(admissionControlService.tenantLimits(tenant));
+    }
+
+    /**
+     * Returns the limits in effect for a signing credential.
+     */
+    @GetMapping("/credentials/{credential}")
+    public ResponseEntity<AdmissionLimits> credentialLimits(@PathVariable("credential") String credential) {
+        return ResponseEntity.ok(admissionControlService.credentialLimits(credential));
+    }
+
+    /**
+     * Overrides the limits of a signing credential. Takes effect for the next request.
+     * Every limit must be positive.
+     */
+    @PutMapping("/credentials/{credential}")
+    public ResponseEntity<AdmissionLimits> setCredentialLimits(@PathVariable("credential") String credential,
+    @RequestBody AdmissionLimits limits) {
+        try {
+            admissionControlService.setCredentialLimits(credential, limits);
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected credential limits for {}: {}", credential, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(limits);
+    }
+
+    /**
+     * Removes the override of a signing credential.
+     */
+    @DeleteMapping("/credentials/{credential}")
+    public ResponseEntity<AdmissionLimits> resetCredentialLimits(@PathVariable("credential") String credential) {
+        admissionControlService.resetCredentialLimits(credential);
+        return ResponseEntity.ok(admissionControlService.credentialLimits(credential));
+    }
+}
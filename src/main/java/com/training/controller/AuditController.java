@@ -0,0 +1,48 @@
+package com.training.controller;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.training.model.AuditEntry;
+import com.training.model.AuditVerification;
+import com.training.service.SigningAuditJournal;
+
+import lombok.extern.slf4j.Slf4j;
+
+@RestController
+@RequestMapping("/api/audit")
+@Slf4j
+public class AuditController {
+
+    @Autowired
+    private SigningAuditJournal signingAuditJournal;
+
+    /**
+     * Replays the whole journal and checks its hash chain.
+     */
+    @GetMapping("/verify")
+    public ResponseEntity<AuditVerification> verify() throws IOException {
+        AuditVerification verification = signingAuditJournal.verify();
+        if (!verification.valid()) {
+            log.warn("Audit journal verification failed at sequence {}: {}",
+                     verification.firstInvalidSequence(), verification.message());
+        }
+        return ResponseEntity.ok(verification);
+    }
+
+    /**
+     * Reads a page of journal entries starting at the given sequence.
+     */
+    @GetMapping("/entries")
+    public ResponseEntity<List<AuditEntry>> entries(@RequestParam(value = "fromSequence", defaultValue = "1") long fromSequence,
+    @RequestParam(value = "limit", defaultValue = "100") int limit) throws IOException {
+        return ResponseEntity.ok(signingAuditJournal.entries(fromSequence, limit));
+    }
+}
@@ -1,28 +1,68 @@
 package com.training.controller;
 
+import com.training.enums.CancellationReason;
+import com.training.enums.MemoryMode;
+import com.training.enums.ResponseMode;
 import com.training.enums.SignatureAppearanceType;
+import com.training.enums.SigningPhase;
+import com.training.helper.IncrementalRevisionHelper;
+import com.training.helper.IncrementalRevisionHelper.RevisionOutputStream;
+import com.training.helper.MemoryFootprintEstimator;
+import com.training.helper.SigningDeadline;
+import com.training.helper.UploadTooLargeException;
+import com.training.model.CachedPreview;
+import com.training.model.EncodedImage;
+import com.training.model.StoredDocument;
 import com.training.service.AcroLoadedSigningService;
 import com.training.service.ContentWithLayersService;
+import com.training.service.IdempotentSigningService;
+import com.training.service.MemoryBudgetService;
+import com.training.service.MemoryBudgetService.Reservation;
 import com.training.service.PdfSigningService;
+import com.training.service.PreviewCacheService;
+import com.training.service.SignedDocumentStore;
+import com.training.service.SignerAssetStore;
 import com.training.util.FileUtils;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.util.DisconnectedClientHelper;
 
 import static org.mockito.ArgumentMatchers.nullable;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.security.cert.CertificateException;
 
 @RestController
 @RequestMapping("/api/pdf")
 @Slf4j
 public class PdfSigningController {
 
+    private static final String SIGNATURE_NAME = "Test Signer";
+    private static final String SIGNATURE_LOCATION = "City";
+
+    private static final String ORIGINAL_LENGTH_HEADER = "X-Original-Length";
+    private static final String ORIGINAL_SHA256_HEADER = "X-Original-SHA256";
+    private static final String DOCUMENT_SHA256_HEADER = "X-Document-SHA256";
+
     @Autowired
     private PdfSigningService pdfSigningService;
 
@@ -32,82 +72,362 @@ public class PdfSigningController {
     @Autowired
     private ContentWithLayersService contentWithLayersService;
 
+    @Autowired
+    private IdempotentSigningService idempotentSigningService;
+
+    @Autowired
+    private SignedDocumentStore signedDocumentStore;
+
+
+    @Autowired
+    private MemoryBudgetService memoryBudgetService;
+
+    @Autowired
+    private SignerAssetStore signerAssetStore;
+
+    @Autowired
+    private PreviewCacheService previewCacheService;
+
+    @Value("${esign.signing.certificate-path:/Users/vikash.yadav/Documents/e-sign/e-sign/test_certificate.p12}")
+    private String certificatePath;
+
+    @Value("${esign.signing.certificate-password:password123}")
+    private String certificatePassword;
+
+    @Value("${esign.signing.certificate-alias:testcert}")
+    private String certificateAlias;
+
+    @Value("${esign.documents.signing-template:/Users/vikash.yadav/Documents/e-sign/e-sign/STAMPED_AGREEMENT_PRFKBLN00006380_LOAN_AGREEMENT.pdf}")
+    private String signingTemplatePath;
+
+    @Value("${esign.documents.layered-template:/Users/vikash.yadav/Documents/e-sign/e-sign/ESIGN_DOCUMENT_BRTPELN00014AD9_LOAN_AGREEMENT_COPY.pdf}")
+    private String layeredTemplatePath;
+
     @GetMapping("/layeredPage")
     public ResponseEntity<byte[]> addContentToPdfLayers(@RequestParam("n1") String n1Text, 
     @RequestParam("n2") String n2Text, @RequestParam("n3") String n3Text, 
-    @RequestParam("n4") String n4Text) throws Exception{
-        String tempPdfPath = "/Users/vikash.yadav/Documents/e-sign/e-sign/ESIGN_DOCUMENT_BRTPELN00014AD9_LOAN_AGREEMENT_COPY.pdf";
-        File pdfFile = new File(tempPdfPath);
-        MultipartFile multipartFile = FileUtils.convertFileToMultipartFile(pdfFile, "ESIGN_DOCUMENT_BRTPELN00014AD9_LOAN_AGREEMENT_COPY.pdf");
+    @RequestParam("n4") String n4Text,
+    @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws Exception{
+        File pdfFile = new File(layeredTemplatePath);
+        // The output only depends on the template and the texts, so repeated previews are served from the cache
+        String cacheKey = previewCacheService.key("layeredPage", pdfFile.toPath(), n1Text, n2Text, n3Text, n4Text);
+        Optional<CachedPreview> cached = previewCacheService.find(cacheKey);
+        if (cached.isPresent()) {
+            return preview(cached.get(), ifNoneMatch);
+        }
+        try (Reservation reservation = memoryBudgetService.reserve(MemoryFootprintEstimator.estimate(pdfFile.toPath()), false)) {
+            if (reservation.isRejected()) {
+                return notAdmitted(reservation);
+            }
+            MultipartFile multipartFile = FileUtils.convertFileToMultipartFile(pdfFile, pdfFile.getName());
+            byte[] signedPdf = contentWithLayersService.addLayers(multipartFile, n1Text, n2Text, n3Text, n4Text);
+            return preview(previewCacheService.put(cacheKey, signedPdf), ifNoneMatch);
+        }
+    }
+
+    @GetMapping("/layeredPages")
+    public ResponseEntity<byte[]> addContentToAllPdfLayers(@RequestParam("n1") String n1Text, 
+    @RequestParam("n2") String n2Text, @RequestParam("n3") String n3Text, 
+    @RequestParam("n4") String n4Text,
+    @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws Exception{
+        File pdfFile = new File(layeredTemplatePath);
+        String cacheKey = previewCacheService.key("layeredPages", pdfFile.toPath(), n1Text, n2Text, n3Text, n4Text);
+        Optional<CachedPreview> cached = previewCacheService.find(cacheKey);
+        if (cached.isPresent()) {
+            return preview(cached.get(), ifNoneMatch);
+        }
+        try (Reservation reservation = memoryBudgetService.reserve(MemoryFootprintEstimator.estimate(pdfFile.toPath()), false)) {
+            if (reservation.isRejected()) {
+                return notAdmitted(reservation);
+            }
+            MultipartFile multipartFile = FileUtils.convertFileToMultipartFile(pdfFile, pdfFile.getName());
+            byte[] signedPdf = contentWithLayersService.addLayersToAllPages(multipartFile, n1Text, n2Text, n3Text, n4Text);
+            return preview(previewCacheService.put(cacheKey, signedPdf), ifNoneMatch);
+        }
+    }
+
+    /**
+     * Returns a preview with its entity tag, or 304 without a body if the client already has it.
+     */
+    private static ResponseEntity<byte[]> preview(CachedPreview preview, String ifNoneMatch) {
         HttpHeaders headers = new HttpHeaders();
+        headers.setETag(preview.etag());
+        // Clients keep the preview but revalidate it, which costs a 304 while it is unchanged
+        headers.setCacheControl(CacheControl.noCache().cachePrivate());
+        if (matchesETag(ifNoneMatch, preview.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+        }
         headers.setContentType(MediaType.APPLICATION_PDF);
         headers.setContentDispositionFormData("attachment", "signed_generated.pdf");
-        byte[] signedPdf = contentWithLayersService.addLayers(multipartFile, n1Text, n2Text, n3Text, n4Text);
         return ResponseEntity.ok()
           .headers(headers)
-          .body(signedPdf);
+          .body(preview.body());
+    }
+
+    /**
+     * Returns whether an If-None-Match header lists the entity tag, comparing weakly as RFC 9110 requires.
+     */
+    private static boolean matchesETag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.strip();
+            if (tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(etag)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @GetMapping("/sign")
-    public ResponseEntity<byte[]> generateAndSignPdf(@RequestParam("signatureAppearanceType") SignatureAppearanceType signatureAppearanceType) {
-        try {
-            final String certificatePath = "/Users/vikash.yadav/Documents/e-sign/e-sign/test_certificate.p12";
-            final String certificatePassword = "password123";
-            final String certificateAlias = "testcert";
-            final String signatureName = "Test Signer";
-            final String signatureLocation = "City";
-
-            // Generate a sample PDF
-            String tempPdfPath = "/Users/vikash.yadav/Documents/e-sign/e-sign/STAMPED_AGREEMENT_PRFKBLN00006380_LOAN_AGREEMENT.pdf";
-                        
-            // Read the generated PDF
-            File pdfFile = new File(tempPdfPath);
-            MultipartFile multipartFile = FileUtils.convertFileToMultipartFile(pdfFile, "STAMPED_AGREEMENT_PRFKBLN00006380_LOAN_AGREEMENT_DSC.pdf");
-            // Sign the PDF
-            byte[] signedPdf = null;
-            switch (signatureAppearanceType) {
-                case OLD: 
-                    signedPdf = acroLoadedSigningService.signPdf(
-                        multipartFile,
-                        certificatePath,
-                        certificatePassword,
-                        certificateAlias,
-                        signatureName,
-                        signatureLocation
-                    );
-                    break;
-                case NEW: 
-                    signedPdf = pdfSigningService.signPdf(
-                        multipartFile,
-                        certificatePath,
-                        certificatePassword,
-                        certificateAlias,
-                        signatureName,
-                        signatureLocation
-                    );
-                    break;
-                default:
-                    // Default to NEW if no valid type is provided
-                    signedPdf = pdfSigningService.signPdf(
-                        multipartFile,
-                        certificatePath,
-                        certificatePassword,
-                        certificateAlias,
-                        signatureName,
-                        signatureLocation
-                    );
+    public ResponseEntity<StreamingResponseBody> generateAndSignPdf(@RequestParam("signatureAppearanceType") SignatureAppearanceType signatureAppearanceType,
+    @RequestParam(value = "anchorText", required = false) String anchorText,
+    @RequestParam(value = "responseMode", defaultValue = "FULL") ResponseMode responseMode,
+    @RequestParam(value = "signerImageId", required = false) String signerImageId,
+    @RequestParam(value = "pages", required = false) String pages,
+    @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        // The template is signed in memory, so a request that does not fit the budget waits or is rejected
+        try (Reservation reservation = memoryBudgetService.reserve(
+                 MemoryFootprintEstimator.estimate(Path.of(signingTemplatePath)), false)) {
+            if (reservation.isRejected()) {
+                return notAdmitted(reservation);
+            }
+            EncodedImage signerImage = null;
+            if (signerImageId != null && !signerImageId.isBlank()) {
+                // Signer images are drawn in vector appearances only, from the data encoded when they were ingested
+                Optional<EncodedImage> found = signerAssetStore.find(signerImageId);
+                if (found.isEmpty()) {
+                    return ResponseEntity.notFound().build();
+                }
+                if (signatureAppearanceType != SignatureAppearanceType.VECTOR) {
+                    return ResponseEntity.badRequest().build();
+                }
+                signerImage = found.get();
+            }
+            EncodedImage image = signerImage;
+            // "all" or comma separated page numbers show the signature on those pages with one shared appearance
+            List<Integer> widgetPages;
+            try {
+                widgetPages = parsePages(pages);
+            } catch (NumberFormatException e) {
+                return ResponseEntity.badRequest().build();
+            }
+            if (widgetPages != null && (signatureAppearanceType != SignatureAppearanceType.VECTOR
+                    || (anchorText != null && !anchorText.isBlank()))) {
+                return ResponseEntity.badRequest().build();
+            }
+            // Snapshot the template into the store first and sign the stored copy, so the response is built
+            // from the same bytes that were signed even if the template file is replaced in the meantime.
+            // The revision is appended to the stored original, so it is signed append-only and never linearized
+            String originalSha256 = signedDocumentStore.storeOriginal(Path.of(signingTemplatePath));
+            Path original = signedDocumentStore.find(originalSha256)
+                .orElseThrow(() -> new IOException("Stored original not found: " + originalSha256))
+                .parts().get(0);
+            byte[] revision;
+            if (idempotencyKey == null || idempotencyKey.isBlank()) {
+                revision = signRevision(original, originalSha256, signatureAppearanceType, anchorText, image, widgetPages);
+            } else {
+                // Scope the key to the request parameters and the template content so a reused key
+                // never returns a revision that does not belong to the original
+                revision = idempotentSigningService.execute(idempotencyKey + "|" + signatureAppearanceType + "|" + anchorText
+                    + "|" + signerImageId + "|" + widgetPages + "|" + originalSha256,
+                    () -> signRevision(original, originalSha256, signatureAppearanceType, anchorText, image, widgetPages));
+            }
+
+            // Keep the signed document so it can be downloaded again without re-signing
+            String documentSha256 = signedDocumentStore.storeRevision(originalSha256, revision);
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(DOCUMENT_SHA256_HEADER, documentSha256);
+            if (responseMode == ResponseMode.DELTA) {
+                // The client appends the revision to its copy of the original and checks it against the hash
+                headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+                headers.setContentDispositionFormData("attachment", "signed_revision.bin");
+                headers.set(ORIGINAL_LENGTH_HEADER, Long.toString(Files.size(original)));
+                headers.setContentLength(revision.length);
+                headers.set(ORIGINAL_SHA256_HEADER, originalSha256);
+                return ResponseEntity.ok()
+                        .headers(headers)
+                        .body(out -> out.write(revision));
+            }
+
+            headers.setContentType(MediaType.APPLICATION_PDF);
+            headers.setContentDispositionFormData("attachment", "signed_generated.pdf");
+            headers.setContentLength(Files.size(original) + revision.length);
+            // Send the stored original straight from its file instead of holding the full document in memory
+            StreamingResponseBody body = out -> IncrementalRevisionHelper.writeFullDocument(
+                original, revision, Channels.newChannel(out));
+
+            return ResponseEntity.ok()
+                    .headers(headers)
+                    .body(body);
+        } catch (Exception e) {
+            return signingFailed("Error generating and signing PDF", e);
+        }
+    }
+
+    /**
+     * Downloads a signed document from the store by the SHA-256 returned when it was signed.
+     */
+    @GetMapping("/documents/{sha256}")
+    public ResponseEntity<StreamingResponseBody> getSignedDocument(@PathVariable("sha256") String sha256) throws IOException {
+        Optional<StoredDocument> stored = signedDocumentStore.find(sha256);
+        if (stored.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        StoredDocument document = stored.get();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_PDF);
+        headers.setContentDispositionFormData("attachment", document.sha256() + ".pdf");
+        headers.setContentLength(document.size());
+        headers.setETag("\"" + document.sha256() + "\"");
+
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(out -> signedDocumentStore.writeTo(document, Channels.newChannel(out)));
+    }
+
+    /**
+     * Signs a PDF sent as the raw request body. The body is digested while it is read, so the
+     * signature only has to hash the appended revision. When the memory budget does not fit the
+     * declared length, the body is spooled to a file and signed from disk.
+     */
+    @PostMapping(value = "/sign/stream", consumes = MediaType.APPLICATION_PDF_VALUE)
+    public ResponseEntity<StreamingResponseBody> signStreamedPdf(@RequestParam(value = "signatureAppearanceType", defaultValue = "VECTOR") SignatureAppearanceType signatureAppearanceType,
+    HttpServletRequest request) {
+        Path signedFile = null;
+        long contentLength = request.getContentLengthLong();
+        try (Reservation reservation = memoryBudgetService.reserve(memoryBudgetService.estimateUpload(contentLength), true)) {
+            if (reservation.isRejected()) {
+                return notAdmitted(reservation);
             }
 
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_PDF);
             headers.setContentDispositionFormData("attachment", "signed_generated.pdf");
 
+            if (reservation.mode() == MemoryMode.MEMORY) {
+                // The reservation only covers the declared length, or the assumed size of a chunked upload
+                byte[] signedPdf = pdfSigningService.signPdfStream(request.getInputStream(), certificatePath,
+                    certificatePassword, certificateAlias, SIGNATURE_NAME, SIGNATURE_LOCATION, signatureAppearanceType,
+                    memoryBudgetService.uploadBytes(contentLength));
+                headers.setContentLength(signedPdf.length);
+                return ResponseEntity.ok()
+                        .headers(headers)
+                        .body(out -> out.write(signedPdf));
+            }
+
+            Path spoolFile = Files.createTempFile("esign-upload", ".pdf");
+            signedFile = Files.createTempFile("esign-signed", ".pdf");
+            try (OutputStream out = Files.newOutputStream(signedFile)) {
+                pdfSigningService.signPdfStream(request.getInputStream(), certificatePath, certificatePassword,
+                    certificateAlias, SIGNATURE_NAME, SIGNATURE_LOCATION, signatureAppearanceType, spoolFile, out);
+            } finally {
+                Files.deleteIfExists(spoolFile);
+            }
+            headers.setContentLength(Files.size(signedFile));
+            Path body = signedFile;
+            signedFile = null;
             return ResponseEntity.ok()
                     .headers(headers)
-                    .body(signedPdf);
+                    .body(out -> {
+                        try {
+                            Files.copy(body, out);
+                        } finally {
+                            Files.deleteIfExists(body);
+                        }
+                    });
+        } catch (UploadTooLargeException e) {
+            log.info("Rejected streamed PDF: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
         } catch (Exception e) {
-            log.error("Error generating and signing PDF", e);
-            return ResponseEntity.internalServerError().build();
+            deleteQuietly(signedFile);
+            return signingFailed("Error signing streamed PDF", e);
+        }
+    }
+
+    /**
+     * Returns 413 for a request that can never fit the memory budget, and 503 with a Retry-After header for
+     * a request that did not fit it in time.
+     */
+    private <T> ResponseEntity<T> notAdmitted(Reservation reservation) {
+        if (reservation.mode() == MemoryMode.TOO_LARGE) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(memoryBudgetService.getRetryAfterSeconds()))
+                .build();
+    }
+
+    /**
+     * Returns 504 for a signing request whose work was abandoned, because its deadline passed or the client
+     * disconnected while the document was uploaded, and 500 for any other failure.
+     */
+    private <T> ResponseEntity<T> signingFailed(String message, Exception e) {
+        SigningDeadline deadline = SigningDeadline.current();
+        if (deadline != null && !deadline.isAbandoned() && DisconnectedClientHelper.isClientDisconnectedException(e)) {
+            deadline.abandon(SigningPhase.LOAD, CancellationReason.CLIENT_DISCONNECTED);
+        }
+        if (deadline != null && deadline.isAbandoned()) {
+            log.warn("{}: abandoned before {} ({})", message, deadline.getAbandonedPhase(),
+                     deadline.getCancellationReason());
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build();
+        }
+        log.error(message, e);
+        return ResponseEntity.internalServerError().build();
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete {}", file, e);
+        }
+    }
+
+    /**
+     * Signs the template and returns only the revision appended to it, checked to follow the original's bytes.
+     */
+    private byte[] signRevision(Path original, String originalSha256, SignatureAppearanceType signatureAppearanceType,
+                                String anchorText, EncodedImage signerImage, List<Integer> pages)
+            throws IOException, CertificateException {
+        RevisionOutputStream output = new RevisionOutputStream(Files.size(original), originalSha256);
+        // Place the signature relative to the anchor text instead of fixed coordinates if one is given
+        String anchor = anchorText != null && !anchorText.isBlank() ? anchorText : null;
+
+        // Sign the stored original append-only, since the revision must follow its unchanged bytes
+        if (pages != null) {
+            pdfSigningService.signPdfFile(original, certificatePath, certificatePassword, certificateAlias,
+                SIGNATURE_NAME, SIGNATURE_LOCATION, SignatureAppearanceType.VECTOR, null, pages, signerImage, true, output);
+        } else if (signatureAppearanceType == SignatureAppearanceType.OLD) {
+            acroLoadedSigningService.signPdfAtAnchor(original, originalSha256, certificatePath, certificatePassword,
+                certificateAlias, SIGNATURE_NAME, SIGNATURE_LOCATION, anchor, true, output);
+        } else if (anchor != null) {
+            pdfSigningService.signPdfAtAnchor(original, originalSha256, certificatePath, certificatePassword,
+                certificateAlias, SIGNATURE_NAME, SIGNATURE_LOCATION, signatureAppearanceType, anchor, signerImage,
+                true, output);
+        } else {
+            pdfSigningService.signPdfFile(original, certificatePath, certificatePassword, certificateAlias,
+                SIGNATURE_NAME, SIGNATURE_LOCATION, signatureAppearanceType, null, null, signerImage, true, output);
+        }
+        return output.toRevision();
+    }
+
+    /**
+     * Parses the pages to show the signature on: null without pages, empty for "all", otherwise the page numbers.
+     */
+    private static List<Integer> parsePages(String pages) {
+        if (pages == null || pages.isBlank()) {
+            return null;
+        }
+        if (pages.strip().equalsIgnoreCase("all")) {
+            return List.of();
         }
+        return Arrays.stream(pages.split(",")).map(String::strip).map(Integer::valueOf).toList();
     }
 }
@@ -0,0 +1,153 @@
+package com.training.controller;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.training.enums.MemoryMode;
+import com.training.helper.IncrementalRevisionHelper;
+import com.training.helper.MemoryFootprintEstimator;
+import com.training.helper.SigningDeadline;
+import com.training.model.EncodedImage;
+import com.training.model.ProvisionedTemplate;
+import com.training.model.SignaturePlacement;
+import com.training.service.MemoryBudgetService;
+import com.training.service.MemoryBudgetService.Reservation;
+import com.training.service.SignatureTemplateService;
+import com.training.service.SignedDocumentStore;
+import com.training.service.SignerAssetStore;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Templates with named signature fields provisioned once, signed by filling one of their fields.
+ */
+@RestController
+@RequestMapping("/api/pdf/templates")
+@Slf4j
+public class SignatureTemplateController {
+
+    private static final String DOCUMENT_SHA256_HEADER = "X-Document-SHA256";
+
+    @Autowired
+    private SignatureTemplateService signatureTemplateService;
+
+    @Autowired
+    private SignedDocumentStore signedDocumentStore;
+
+    @Autowired
+    private SignerAssetStore signerAssetStore;
+
+    @Autowired
+    private MemoryBudgetService memoryBudgetService;
+
+    /**
+     * Provisions signature fields on a document. Each fields value is a name followed by the page, x, y, width
+     * and height of its widget, e.g. {@code fields=borrower,1,20,20,200,70&fields=lender,1,320,20,200,70}.
+     */
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ProvisionedTemplate> provisionTemplate(@RequestParam("file") MultipartFile file,
+                                                                 @RequestParam("fields") List<String> fields) {
+        try {
+            Map<String, SignaturePlacement> placements = new LinkedHashMap<>();
+            for (String field : fields) {
+                String[] parts = field.split(",");
+                if (parts.length != 6 || placements.containsKey(parts[0].strip())) {
+                    return ResponseEntity.badRequest().build();
+                }
+                placements.put(parts[0].strip(), new SignaturePlacement(Integer.parseInt(parts[1].strip()),
+                    Float.parseFloat(parts[2].strip()), Float.parseFloat(parts[3].strip()),
+                    Float.parseFloat(parts[4].strip()), Float.parseFloat(parts[5].strip())));
+            }
+            ProvisionedTemplate template = signatureTemplateService.provision(file, placements);
+            return ResponseEntity.created(URI.create("/api/pdf/templates/" + template.id())).body(template);
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Rejected template {}: {}", file.getOriginalFilename(), e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<ProvisionedTemplate> getTemplate(@PathVariable("id") String id) throws IOException {
+        return signatureTemplateService.find(id).map(ResponseEntity::ok)
+                                       .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Signs a copy of the template in one of its fields, with the field name as the signature name, and keeps
+     * the signed document in the store.
+     */
+    @PostMapping("/{id}/fields/{name}/signature")
+    public ResponseEntity<StreamingResponseBody> sign(@PathVariable("id") String id, @PathVariable("name") String name,
+    @RequestParam(value = "signerImageId", required = false) String signerImageId) {
+        try {
+            Optional<Path> file = signatureTemplateService.findFile(id);
+            if (file.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            Path template = file.get();
+            try (Reservation reservation = memoryBudgetService.reserve(MemoryFootprintEstimator.estimate(template), false)) {
+                if (reservation.mode() == MemoryMode.TOO_LARGE) {
+                    return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+                }
+                if (reservation.mode() == MemoryMode.REJECTED) {
+                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                            .header(HttpHeaders.RETRY_AFTER, Long.toString(memoryBudgetService.getRetryAfterSeconds()))
+                            .build();
+                }
+                EncodedImage signerImage = null;
+                if (signerImageId != null && !signerImageId.isBlank()) {
+                    Optional<EncodedImage> found = signerAssetStore.find(signerImageId);
+                    if (found.isEmpty()) {
+                        return ResponseEntity.notFound().build();
+                    }
+                    signerImage = found.get();
+                }
+                Optional<byte[]> signed = signatureTemplateService.sign(id, name, signerImage);
+                if (signed.isEmpty()) {
+                    return ResponseEntity.notFound().build();
+                }
+                byte[] revision = signed.get();
+                String originalSha256 = signedDocumentStore.storeOriginal(template);
+                String documentSha256 = signedDocumentStore.storeRevision(originalSha256, revision);
+
+                HttpHeaders headers = new HttpHeaders();
+                headers.set(DOCUMENT_SHA256_HEADER, documentSha256);
+                headers.setContentType(MediaType.APPLICATION_PDF);
+                headers.setContentDispositionFormData("attachment", id + "_" + name + ".pdf");
+                headers.setContentLength(Files.size(template) + revision.length);
+                return ResponseEntity.ok()
+                        .headers(headers)
+                        .body(out -> IncrementalRevisionHelper.writeFullDocument(template, revision, Channels.newChannel(out)));
+            }
+        } catch (Exception e) {
+            SigningDeadline deadline = SigningDeadline.current();
+            if (deadline != null && deadline.isAbandoned()) {
+                log.warn("Signature of field {} of template {} abandoned before {}", name, id, deadline.getAbandonedPhase());
+                return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build();
+            }
+            log.error("Error signing field {} of template {}", name, id, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+}
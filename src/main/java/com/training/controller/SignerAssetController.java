@@ -0,0 +1,55 @@
+package com.training.controller;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.training.model.EncodedImage;
+import com.training.model.SignerAsset;
+import com.training.service.SignerAssetStore;
+
+import lombok.extern.slf4j.Slf4j;
+
+@RestController
+@RequestMapping("/api/assets")
+@Slf4j
+public class SignerAssetController {
+
+    @Autowired
+    private SignerAssetStore signerAssetStore;
+
+    /**
+     * Ingests a handwritten signature image or logo and returns the id to sign with.
+     */
+    @PostMapping("/images")
+    public ResponseEntity<SignerAsset> ingestImage(@RequestParam("image") MultipartFile image) {
+        try {
+            SignerAsset asset = SignerAsset.of(signerAssetStore.ingest(image.getBytes()));
+            return ResponseEntity.created(URI.create("/api/assets/images/" + asset.id())).body(asset);
+        } catch (IOException | RuntimeException e) {
+            // Image decoders fail on malformed input with unchecked exceptions as well
+            log.warn("Rejected signer image {}: {}", image.getOriginalFilename(), e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Describes an ingested image.
+     */
+    @GetMapping("/images/{id}")
+    public ResponseEntity<SignerAsset> getImage(@PathVariable("id") String id) throws IOException {
+        Optional<EncodedImage> image = signerAssetStore.find(id);
+        return image.map(found -> ResponseEntity.ok(SignerAsset.of(found)))
+                    .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,174 @@
+package com.training.controller;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.training.enums.MemoryMode;
+import com.training.enums.SignatureAppearanceType;
+import com.training.helper.MemoryFootprintEstimator;
+import com.training.helper.SigningDeadline;
+import com.training.model.CreatedWorkflow;
+import com.training.model.SigningWorkflow;
+import com.training.model.StoredDocument;
+import com.training.service.MemoryBudgetService;
+import com.training.service.MemoryBudgetService.Reservation;
+import com.training.service.SignedDocumentStore;
+import com.training.service.SigningWorkflowService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Multi-party signing of a document held on the server. Parties sign in turn without sending the document,
+ * and clients download the document or only the revisions appended since the version they hold.
+ */
+@RestController
+@RequestMapping("/api/pdf/workflows")
+@Slf4j
+public class SigningWorkflowController {
+
+    private static final String ORIGINAL_LENGTH_HEADER = "X-Original-Length";
+    private static final String DOCUMENT_SHA256_HEADER = "X-Document-SHA256";
+    private static final String PARTY_TOKEN_HEADER = "X-Party-Token";
+
+    @Autowired
+    private SigningWorkflowService signingWorkflowService;
+
+    @Autowired
+    private SignedDocumentStore signedDocumentStore;
+
+    @Autowired
+    private MemoryBudgetService memoryBudgetService;
+
+    /**
+     * Starts a workflow. Each steps value lists the parties of one step separated by "|", e.g.
+     * {@code steps=borrower|co-borrower&steps=lender}. The response holds the signing token of each party,
+     * which is not returned again.
+     */
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<CreatedWorkflow> createWorkflow(@RequestParam("file") MultipartFile file,
+                                                          @RequestParam("steps") List<String> steps) {
+        try {
+            List<List<String>> parties = steps.stream()
+                .map(step -> Arrays.stream(step.split("\\|")).map(String::strip).toList())
+                .toList();
+            CreatedWorkflow created = signingWorkflowService.create(file, parties);
+            return ResponseEntity.created(URI.create("/api/pdf/workflows/" + created.workflow().id())).body(created);
+        } catch (IOException e) {
+            log.warn("Rejected workflow for {}: {}", file.getOriginalFilename(), e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<SigningWorkflow> getWorkflow(@PathVariable("id") String id) throws IOException {
+        return signingWorkflowService.find(id).map(ResponseEntity::ok)
+                                     .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Signs the document for a party whose turn it is, authenticated by the token issued to the party when the
+     * workflow was started. Returns 403 for a wrong token and 409 if the party's signature is not due.
+     */
+    @PostMapping("/{id}/parties/{party}/signature")
+    public ResponseEntity<SigningWorkflow> sign(@PathVariable("id") String id, @PathVariable("party") String party,
+    @RequestHeader(value = PARTY_TOKEN_HEADER, required = false) String token,
+    @RequestParam(value = "signatureAppearanceType", defaultValue = "VECTOR") SignatureAppearanceType signatureAppearanceType,
+    @RequestParam(value = "anchorText", required = false) String anchorText) {
+        try {
+            Optional<SigningWorkflow> workflow = signingWorkflowService.find(id);
+            if (workflow.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            Optional<StoredDocument> head = signedDocumentStore.find(workflow.get().headSha256());
+            long size = head.isPresent() ? head.get().size() : 0;
+            // The head is signed from a file, so only its parsed objects are held in memory
+            try (Reservation reservation = memoryBudgetService.reserve(MemoryFootprintEstimator.estimate(size), true)) {
+                if (reservation.mode() == MemoryMode.TOO_LARGE) {
+                    return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+                }
+                if (reservation.mode() == MemoryMode.REJECTED) {
+                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                            .header(HttpHeaders.RETRY_AFTER, Long.toString(memoryBudgetService.getRetryAfterSeconds()))
+                            .build();
+                }
+                String anchor = anchorText != null && !anchorText.isBlank() ? anchorText : null;
+                Optional<SigningWorkflow> signed = signingWorkflowService.sign(id, party, token, signatureAppearanceType,
+                                                                               anchor);
+                return signed.map(result -> ResponseEntity.ok()
+                                                          .header(DOCUMENT_SHA256_HEADER, result.headSha256())
+                                                          .body(result))
+                             .orElseGet(() -> ResponseEntity.notFound().build());
+            }
+        } catch (SecurityException e) {
+            log.warn("Rejected signature: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (IllegalStateException e) {
+            log.info("Rejected signature: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (Exception e) {
+            SigningDeadline deadline = SigningDeadline.current();
+            if (deadline != null && deadline.isAbandoned()) {
+                log.warn("Signature of {} in workflow {} abandoned before {}", party, id, deadline.getAbandonedPhase());
+                return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build();
+            }
+            log.error("Error signing workflow {} for {}", id, party, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Downloads the current document, or with {@code from} only the revisions appended to that version of it,
+     * which the client appends to its copy.
+     */
+    @GetMapping("/{id}/document")
+    public ResponseEntity<StreamingResponseBody> getDocument(@PathVariable("id") String id,
+    @RequestParam(value = "from", required = false) String fromSha256) throws IOException {
+        Optional<SigningWorkflow> workflow = signingWorkflowService.find(id);
+        if (workflow.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        String headSha256 = workflow.get().headSha256();
+        Optional<StoredDocument> stored = fromSha256 != null
+            ? signedDocumentStore.findAppended(fromSha256, headSha256)
+            : signedDocumentStore.find(headSha256);
+        if (stored.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        StoredDocument document = stored.get();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(DOCUMENT_SHA256_HEADER, headSha256);
+        headers.setContentLength(document.size());
+        headers.setETag("\"" + headSha256 + "\"");
+        if (fromSha256 != null) {
+            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+            headers.setContentDispositionFormData("attachment", id + "_revisions.bin");
+            headers.set(ORIGINAL_LENGTH_HEADER, Long.toString(signedDocumentStore.find(fromSha256).orElseThrow().size()));
+        } else {
+            headers.setContentType(MediaType.APPLICATION_PDF);
+            headers.setContentDispositionFormData("attachment", id + ".pdf");
+        }
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(out -> signedDocumentStore.writeTo(document, Channels.newChannel(out)));
+    }
+}
@@ -0,0 +1,5 @@
+package com.training.enums;
+
+public enum BulkOperation {
+    SIGN, LAYERED_SIGN, STAMP
+}
@@ -0,0 +1,5 @@
+package com.training.enums;
+
+public enum CancellationReason {
+    DEADLINE_EXCEEDED, CLIENT_DISCONNECTED
+}
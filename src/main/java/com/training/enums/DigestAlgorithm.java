@@ -0,0 +1,15 @@
+package com.training.enums;
+
+public enum DigestAlgorithm {
+    SHA256("SHA-256"), SHA384("SHA-384"), SHA512("SHA-512");
+
+    private final String jcaName;
+
+    DigestAlgorithm(String jcaName) {
+        this.jcaName = jcaName;
+    }
+
+    public String getJcaName() {
+        return jcaName;
+    }
+}
@@ -0,0 +1,5 @@
+package com.training.enums;
+
+public enum MemoryMode {
+    MEMORY, DISK, REJECTED, TOO_LARGE
+}
@@ -1,5 +1,5 @@
 package com.training.enums;
 
 public enum SignatureAppearanceType {
-    OLD, NEW
+    OLD, NEW, VECTOR
 }
@@ -0,0 +1,5 @@
+package com.training.enums;
+
+public enum StampingMode {
+    AUTO, SEQUENTIAL, PARALLEL
+}
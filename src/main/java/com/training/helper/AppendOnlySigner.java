@@ -0,0 +1,663 @@
+package com.training.helper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNull;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSObjectKey;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.io.RandomAccessInputStream;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceStream;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.SignatureInterface;
+
+import com.training.model.ProvisionedField;
+import com.training.model.SignaturePlacement;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Appends a signature to a PDF without loading the document.
+ * Only the trailer, the newest cross-reference section, the catalog, the AcroForm and the page tree nodes on the
+ * way to the signed page are parsed, through {@link LazyObjectResolver}. The update section holds the signature
+ * dictionary, the signature field with its widget and appearance, and new versions of the page, the AcroForm and
+ * the catalog or of the arrays that list the new field. {@code /ByteRange} and {@code /Contents} are patched in
+ * place once the update section is written, so the cost of signing barely depends on the size of the document.
+ * Filling a signature field provisioned in advance updates the field object alone, without touching the page.
+ * The update section uses the cross-reference format of the revision it follows.
+ */
+@Slf4j
+public class AppendOnlySigner implements Closeable {
+
+    private static final int SIG_FLAGS_SIGNATURES_EXIST_APPEND_ONLY = 3;
+
+    /**
+     * Print and Locked annotation flags, as PDFBox sets them on signature widgets.
+     */
+    private static final int WIDGET_FLAGS = 132;
+
+    private final RandomAccessRead original;
+    private final LazyObjectResolver resolver;
+    private final COSObject catalogReference;
+    private final COSDictionary catalog;
+
+    private final Map<COSBase, COSObjectKey> keys = new IdentityHashMap<>();
+    private final Deque<COSBase> pending = new ArrayDeque<>();
+    private final Map<Long, Long> offsets = new TreeMap<>();
+    private final Map<Long, Integer> generations = new HashMap<>();
+    private long nextNumber;
+    private int reservedSize;
+    private COSDictionary signatureDictionary;
+
+    private int contentsStart = -1;
+    private int contentsEnd;
+    private int byteRangeStart;
+
+    private AppendOnlySigner(RandomAccessRead original) throws IOException {
+        this.original = original;
+        this.resolver = new LazyObjectResolver(original);
+        COSBase root = resolver.getTrailer().getItem(COSName.ROOT);
+        this.catalogReference = root instanceof COSObject reference ? reference : null;
+        this.catalog = catalogReference != null && catalogReference.getObject() instanceof COSDictionary dictionary
+            ? dictionary : null;
+        this.nextNumber = resolver.getTrailer().getLong(COSName.SIZE, 1);
+    }
+
+    /**
+     * Reads the trailer and the newest cross-reference section of a document, nothing else.
+     *
+     * @param original The document; read through views and not closed with the signer
+     * @return The signer for the document
+     * @throws IOException If the document has no readable cross-reference data at its end
+     */
+    public static AppendOnlySigner open(RandomAccessRead original) throws IOException {
+        return new AppendOnlySigner(original);
+    }
+
+    /**
+     * Returns whether a signature can be appended to the document. Encrypted documents are not supported,
+     * because the objects of the update section would have to be encrypted as they are written.
+     *
+     * @return True if the document has a catalog with a page tree and is not encrypted
+     */
+    public boolean supports() {
+        return catalog != null && catalog.getDictionaryObject(COSName.PAGES) instanceof COSDictionary
+            && !resolver.getTrailer().containsKey(COSName.ENCRYPT);
+    }
+
+    /**
+     * Returns the number of pages, read from the root of the page tree.
+     *
+     * @return The number of pages
+     */
+    public int getNumberOfPages() {
+        return catalog.getCOSDictionary(COSName.PAGES).getInt(COSName.COUNT, 0);
+    }
+
+    /**
+     * Returns the media box of a page, inherited from the page tree if the page has none.
+     *
+     * @param pageIndex The zero-based page index
+     * @return The media box, or US Letter if the page tree has none
+     * @throws IOException If the page cannot be found
+     */
+    public PDRectangle getMediaBox(int pageIndex) throws IOException {
+        COSDictionary node = (COSDictionary) findPage(pageIndex).getObject();
+        Set<COSDictionary> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        while (node != null && visited.add(node)) {
+            if (node.getDictionaryObject(COSName.MEDIA_BOX) instanceof COSArray box) {
+                return new PDRectangle(box);
+            }
+            node = node.getCOSDictionary(COSName.PARENT);
+        }
+        return PDRectangle.LETTER;
+    }
+
+    /**
+     * Returns the number of objects parsed so far, for checking that signing stays independent of the document size.
+     *
+     * @return The number of parsed objects
+     */
+    public int getResolvedObjects() {
+        return resolver.getResolvedObjects();
+    }
+
+    /**
+     * Writes the original document followed by an update section with a visible signature, signed over its
+     * ByteRange. The signer can only be used for one signature.
+     *
+     * @param signature The signature dictionary, without /Contents and /ByteRange
+     * @param pageIndex The zero-based index of the page to show the signature on
+     * @param rectangle The rectangle of the signature widget on the page
+     * @param appearance The normal appearance of the widget; its document must stay open until this returns
+     * @param signatureSize The number of bytes to reserve for the CMS signature
+     * @param signatureInterface Creates the CMS signature over the ByteRange content
+     * @param output The stream to write the original bytes followed by the update section to
+     * @throws IOException If the document is not supported, the page does not exist or the signature does not fit
+     */
+    public void sign(PDSignature signature, int pageIndex, PDRectangle rectangle, PDAppearanceStream appearance,
+                     int signatureSize, SignatureInterface signatureInterface, OutputStream output) throws IOException {
+        sign(signature, List.of(new SignaturePlacement(pageIndex + 1, rectangle.getLowerLeftX(), rectangle.getLowerLeftY(),
+                                                       rectangle.getWidth(), rectangle.getHeight())),
+             appearance, signatureSize, signatureInterface, output);
+    }
+
+    /**
+     * Writes the original document followed by an update section with a signature shown at several placements.
+     * A single placement gives a field merged with its widget; several give one field with a widget per placement,
+     * all referencing the same appearance stream, so only the widgets and the pages grow with the placements.
+     *
+     * @param signature The signature dictionary, without /Contents and /ByteRange
+     * @param placements Where to show the signature, with the same size everywhere
+     * @param appearance The normal appearance of the widgets; its document must stay open until this returns
+     * @param signatureSize The number of bytes to reserve for the CMS signature
+     * @param signatureInterface Creates the CMS signature over the ByteRange content
+     * @param output The stream to write the original bytes followed by the update section to
+     * @throws IOException If the document is not supported, a page does not exist or the signature does not fit
+     */
+    public void sign(PDSignature signature, List<SignaturePlacement> placements, PDAppearanceStream appearance,
+                     int signatureSize, SignatureInterface signatureInterface, OutputStream output) throws IOException {
+        if (!supports()) {
+            throw new IOException("Signatures cannot be appended to encrypted documents or documents without pages");
+        }
+        if (signatureDictionary != null) {
+            throw new IOException("The signer has already signed the document");
+        }
+        if (placements.isEmpty()) {
+            throw new IOException("No page to show the signature on");
+        }
+        for (SignaturePlacement placement : placements) {
+            if (placement.page() < 1 || placement.page() > getNumberOfPages()) {
+                throw new IOException("Invalid page number: " + placement.page());
+            }
+        }
+        prepareSignature(signature, signatureSize);
+
+        // Every widget references the same appearance stream, which is written once
+        COSDictionary appearanceDictionary = new COSDictionary();
+        appearanceDictionary.setDirect(true);
+        appearanceDictionary.setItem(COSName.N, appearance.getCOSObject());
+
+        COSDictionary field = new COSDictionary();
+        field.setItem(COSName.FT, COSName.SIG);
+        field.setItem(COSName.V, signatureDictionary);
+
+        // Objects of the original that change, by key, so a page shown twice is written once
+        Map<COSObjectKey, COSBase> updated = new LinkedHashMap<>();
+        if (placements.size() == 1) {
+            addWidget(field, placements.get(0), appearanceDictionary, updated);
+        } else {
+            COSArray kids = new COSArray();
+            kids.setDirect(true);
+            for (SignaturePlacement placement : placements) {
+                COSDictionary widget = new COSDictionary();
+                widget.setItem(COSName.PARENT, field);
+                addWidget(widget, placement, appearanceDictionary, updated);
+                kids.add(widget);
+            }
+            field.setItem(COSName.KIDS, kids);
+        }
+
+        // The AcroForm lists the field in /Fields, and either may be an object of its own
+        COSBase acroFormItem = catalog.getItem(COSName.ACRO_FORM);
+        COSDictionary acroForm = acroFormItem instanceof COSObject reference
+            ? (reference.getObject() instanceof COSDictionary dictionary ? dictionary : null)
+            : acroFormItem instanceof COSDictionary dictionary ? dictionary : null;
+        if (acroForm == null) {
+            acroForm = new COSDictionary();
+            catalog.setItem(COSName.ACRO_FORM, acroForm);
+        }
+        field.setString(COSName.T, uniqueFieldName(acroForm));
+        acroForm.setInt(COSName.SIG_FLAGS, acroForm.getInt(COSName.SIG_FLAGS, 0) | SIG_FLAGS_SIGNATURES_EXIST_APPEND_ONLY);
+        if (acroForm.getItem(COSName.FIELDS) instanceof COSObject fieldsReference
+                && fieldsReference.getObject() instanceof COSArray fields) {
+            fields.add(field);
+            updated.put(fieldsReference.getKey(), fields);
+        } else {
+            COSArray fields = acroForm.getCOSArray(COSName.FIELDS);
+            if (fields == null) {
+                fields = new COSArray();
+                fields.setDirect(true);
+                acroForm.setItem(COSName.FIELDS, fields);
+            }
+            fields.add(field);
+        }
+        if (acroFormItem instanceof COSObject reference && reference.getObject() == acroForm) {
+            updated.put(reference.getKey(), acroForm);
+        } else {
+            updated.put(catalogReference.getKey(), catalog);
+        }
+
+        int size = writeRevision(updated, signatureInterface, output);
+        log.debug("Appended a signature of {} bytes with {} widgets after parsing {} objects",
+                  size, placements.size(), getResolvedObjects());
+    }
+
+    /**
+     * Writes the original document followed by an update section that fills an empty signature field, found by
+     * the key it was indexed with when it was provisioned. Only the field, which is merged with its widget, is
+     * updated: its page already lists the widget, and the AcroForm is only written again if its signature flags
+     * were not set when the field was provisioned.
+     *
+     * @param signature The signature dictionary, without /Contents and /ByteRange
+     * @param provisioned The indexed field to fill
+     * @param appearance The normal appearance of the widget; its document must stay open until this returns
+     * @param signatureSize The number of bytes to reserve for the CMS signature
+     * @param signatureInterface Creates the CMS signature over the ByteRange content
+     * @param output The stream to write the original bytes followed by the update section to
+     * @throws IOException If the document is not supported, the object is not the empty field of that name or the
+     *                     signature does not fit
+     */
+    public void fill(PDSignature signature, ProvisionedField provisioned, PDAppearanceStream appearance,
+                     int signatureSize, SignatureInterface signatureInterface, OutputStream output) throws IOException {
+        if (!supports()) {
+            throw new IOException("Signatures cannot be appended to encrypted documents or documents without pages");
+        }
+        if (signatureDictionary != null) {
+            throw new IOException("The signer has already signed the document");
+        }
+        if (!(resolver.resolve(provisioned.objectNumber()) instanceof COSDictionary field)
+                || !COSName.SIG.equals(field.getCOSName(COSName.FT))
+                || !provisioned.name().equals(field.getString(COSName.T)) || field.containsKey(COSName.V)) {
+            throw new IOException("The document has no empty signature field named " + provisioned.name());
+        }
+        prepareSignature(signature, signatureSize);
+
+        COSDictionary appearanceDictionary = new COSDictionary();
+        appearanceDictionary.setDirect(true);
+        appearanceDictionary.setItem(COSName.N, appearance.getCOSObject());
+        field.setItem(COSName.V, signatureDictionary);
+        field.setItem(COSName.AP, appearanceDictionary);
+        field.setInt(COSName.F, WIDGET_FLAGS);
+
+        Map<COSObjectKey, COSBase> updated = new LinkedHashMap<>();
+        updated.put(new COSObjectKey(provisioned.objectNumber(), provisioned.generation()), field);
+        COSBase acroFormItem = catalog.getItem(COSName.ACRO_FORM);
+        COSDictionary acroForm = catalog.getCOSDictionary(COSName.ACRO_FORM);
+        if (acroForm != null && acroForm.getInt(COSName.SIG_FLAGS, 0) != SIG_FLAGS_SIGNATURES_EXIST_APPEND_ONLY) {
+            acroForm.setInt(COSName.SIG_FLAGS, acroForm.getInt(COSName.SIG_FLAGS, 0) | SIG_FLAGS_SIGNATURES_EXIST_APPEND_ONLY);
+            if (acroFormItem instanceof COSObject reference) {
+                updated.put(reference.getKey(), acroForm);
+            } else {
+                updated.put(catalogReference.getKey(), catalog);
+            }
+        }
+
+        int size = writeRevision(updated, signatureInterface, output);
+        log.debug("Filled signature field {} with an update of {} bytes after parsing {} objects",
+                  provisioned.name(), size, getResolvedObjects());
+    }
+
+    @Override
+    public void close() throws IOException {
+        resolver.close();
+    }
+
+    private void prepareSignature(PDSignature signature, int signatureSize) {
+        signatureDictionary = signature.getCOSObject();
+        reservedSize = signatureSize;
+        signatureDictionary.removeItem(COSName.CONTENTS);
+        signatureDictionary.removeItem(COSName.BYTERANGE);
+    }
+
+    /**
+     * Writes the updated objects and the new objects they reference as the update section, signs it and writes
+     * the original followed by the update section.
+     *
+     * @return The size of the update section
+     */
+    private int writeRevision(Map<COSObjectKey, COSBase> updated, SignatureInterface signatureInterface,
+                              OutputStream output) throws IOException {
+        ByteArrayOutputStream revision = new ByteArrayOutputStream();
+        if (original.length() > 0 && !endsWithNewline()) {
+            revision.write('\n');
+        }
+        for (Map.Entry<COSObjectKey, COSBase> entry : updated.entrySet()) {
+            writeObject(entry.getKey(), entry.getValue(), revision);
+        }
+        while (!pending.isEmpty()) {
+            COSBase object = pending.poll();
+            writeObject(keys.get(object), object, revision);
+        }
+        if (contentsStart < 0) {
+            throw new IOException("The signature dictionary is not part of the update section");
+        }
+        writeXref(revision);
+
+        byte[] bytes = revision.toByteArray();
+        patchByteRange(bytes);
+        sign(bytes, signatureInterface);
+        try (InputStream in = new RandomAccessInputStream(original.createView(0, original.length()))) {
+            in.transferTo(output);
+        }
+        output.write(bytes);
+        return bytes.length;
+    }
+
+    /**
+     * Makes a dictionary the widget at a placement and lists it in the /Annots of its page, which may be an
+     * array object of its own.
+     */
+    private void addWidget(COSDictionary widget, SignaturePlacement placement, COSDictionary appearanceDictionary,
+                           Map<COSObjectKey, COSBase> updated) throws IOException {
+        COSObject pageReference = findPage(placement.page() - 1);
+        COSDictionary page = (COSDictionary) pageReference.getObject();
+        widget.setItem(COSName.TYPE, COSName.ANNOT);
+        widget.setItem(COSName.SUBTYPE, COSName.WIDGET);
+        widget.setInt(COSName.F, WIDGET_FLAGS);
+        widget.setItem(COSName.RECT, placement.toRectangle().getCOSArray());
+        widget.setItem(COSName.P, pageReference);
+        widget.setItem(COSName.AP, appearanceDictionary);
+
+        if (page.getItem(COSName.ANNOTS) instanceof COSObject annotsReference
+                && annotsReference.getObject() instanceof COSArray annots) {
+            annots.add(widget);
+            updated.put(annotsReference.getKey(), annots);
+        } else {
+            COSArray annots = page.getCOSArray(COSName.ANNOTS);
+            if (annots == null) {
+                annots = new COSArray();
+                annots.setDirect(true);
+                page.setItem(COSName.ANNOTS, annots);
+            }
+            annots.add(widget);
+            updated.put(pageReference.getKey(), page);
+        }
+    }
+
+    /**
+     * Finds a page by walking down the page tree, resolving only the nodes before and on the path to the page.
+     */
+    private COSObject findPage(int pageIndex) throws IOException {
+        COSBase node = catalog.getItem(COSName.PAGES);
+        int remaining = pageIndex;
+        Set<Long> visited = new HashSet<>();
+        while (node instanceof COSObject reference && visited.add(reference.getKey().getNumber())
+                && reference.getObject() instanceof COSDictionary dictionary) {
+            COSArray kids = dictionary.getCOSArray(COSName.KIDS);
+            if (kids == null) {
+                if (remaining == 0) {
+                    return reference;
+                }
+                break;
+            }
+            node = null;
+            for (int i = 0; i < kids.size(); i++) {
+                if (!(kids.get(i) instanceof COSObject kid) || !(kid.getObject() instanceof COSDictionary child)) {
+                    continue;
+                }
+                int count = COSName.PAGES.equals(child.getCOSName(COSName.TYPE)) || child.containsKey(COSName.KIDS)
+                    ? child.getInt(COSName.COUNT, 0) : 1;
+                if (remaining < count) {
+                    node = kid;
+                    break;
+                }
+                remaining -= count;
+            }
+        }
+        throw new IOException("Page " + (pageIndex + 1) + " not found in the page tree");
+    }
+
+    private String uniqueFieldName(COSDictionary acroForm) {
+        Set<String> names = new HashSet<>();
+        COSArray fields = acroForm.getCOSArray(COSName.FIELDS);
+        if (fields != null) {
+            for (int i = 0; i < fields.size(); i++) {
+                if (fields.getObject(i) instanceof COSDictionary existing && existing.getString(COSName.T) != null) {
+                    names.add(existing.getString(COSName.T));
+                }
+            }
+        }
+        int suffix = 1;
+        while (names.contains("Signature" + suffix)) {
+            suffix++;
+        }
+        return "Signature" + suffix;
+    }
+
+    private void writeObject(COSObjectKey key, COSBase object, ByteArrayOutputStream revision) throws IOException {
+        offsets.put(key.getNumber(), original.length() + revision.size());
+        generations.put(key.getNumber(), key.getGeneration());
+        revision.write(ascii(key.getNumber() + " " + key.getGeneration() + " obj\n"));
+        if (object == signatureDictionary) {
+            writeSignatureDictionary(revision);
+        } else if (object instanceof COSStream stream) {
+            writeStream(stream, revision);
+        } else {
+            writeValue(object, revision, true);
+        }
+        revision.write(ascii("\nendobj\n"));
+    }
+
+    /**
+     * Writes a value, referencing the objects of the original by their key and giving streams and dictionaries
+     * that are not direct an object of their own in the update section.
+     */
+    private void writeValue(COSBase value, OutputStream out, boolean topLevel) throws IOException {
+        if (value == null || value instanceof COSNull) {
+            out.write(ascii("null"));
+        } else if (value instanceof COSObject reference) {
+            COSObjectKey key = reference.getKey();
+            out.write(ascii(key.getNumber() + " " + key.getGeneration() + " R"));
+        } else if (!topLevel && (value instanceof COSStream
+                || (value instanceof COSDictionary dictionary && !dictionary.isDirect()))) {
+            COSObjectKey key = keys.get(value);
+            if (key == null) {
+                key = new COSObjectKey(nextNumber++, 0);
+                keys.put(value, key);
+                pending.add(value);
+            }
+            out.write(ascii(key.getNumber() + " " + key.getGeneration() + " R"));
+        } else if (value instanceof COSDictionary dictionary) {
+            out.write(ascii("<<"));
+            for (Map.Entry<COSName, COSBase> entry : dictionary.entrySet()) {
+                entry.getKey().writePDF(out);
+                out.write(' ');
+                writeValue(entry.getValue(), out, false);
+            }
+            out.write(ascii(">>"));
+        } else if (value instanceof COSArray array) {
+            out.write('[');
+            for (int i = 0; i < array.size(); i++) {
+                if (i > 0) {
+                    out.write(' ');
+                }
+                writeValue(array.get(i), out, false);
+            }
+            out.write(']');
+        } else {
+            CompactRevisionWriter.writeSimple(value, out);
+        }
+    }
+
+    private void writeSignatureDictionary(ByteArrayOutputStream revision) throws IOException {
+        revision.write(ascii("<<"));
+        for (Map.Entry<COSName, COSBase> entry : signatureDictionary.entrySet()) {
+            entry.getKey().writePDF(revision);
+            revision.write(' ');
+            writeValue(entry.getValue(), revision, false);
+        }
+        revision.write(ascii("/Contents "));
+        contentsStart = revision.size();
+        revision.write('<');
+        revision.write(ascii("0".repeat(reservedSize * 2)));
+        revision.write('>');
+        contentsEnd = revision.size();
+        revision.write(ascii("/ByteRange "));
+        byteRangeStart = revision.size();
+        revision.write(ascii(CompactRevisionWriter.BYTE_RANGE_PLACEHOLDER));
+        revision.write(ascii(">>"));
+    }
+
+    private void writeStream(COSStream stream, OutputStream out) throws IOException {
+        byte[] data;
+        try (InputStream raw = stream.createRawInputStream()) {
+            data = raw.readAllBytes();
+        }
+        out.write(ascii("<<"));
+        for (Map.Entry<COSName, COSBase> entry : stream.entrySet()) {
+            if (!COSName.LENGTH.equals(entry.getKey())) {
+                entry.getKey().writePDF(out);
+                out.write(' ');
+                writeValue(entry.getValue(), out, false);
+            }
+        }
+        out.write(ascii("/Length " + data.length + ">>\nstream\n"));
+        out.write(data);
+        out.write(ascii("\nendstream"));
+    }
+
+    /**
+     * Writes the cross-reference section and trailer of the update section in the format of the newest revision.
+     */
+    private void writeXref(ByteArrayOutputStream revision) throws IOException {
+        COSDictionary trailer = resolver.getTrailer();
+        COSDictionary updated = new COSDictionary();
+        updated.setItem(COSName.ROOT, catalogReference);
+        if (trailer.getItem(COSName.INFO) instanceof COSObject info) {
+            updated.setItem(COSName.INFO, info);
+        }
+        if (trailer.getDictionaryObject(COSName.ID) instanceof COSArray id) {
+            updated.setItem(COSName.ID, id);
+        }
+        updated.setLong(COSName.PREV, resolver.getStartXref());
+
+        long xrefOffset = original.length() + revision.size();
+        if (resolver.isXrefStream()) {
+            long number = nextNumber++;
+            offsets.put(number, xrefOffset);
+            writeXrefStream(number, updated, revision);
+        } else {
+            revision.write(ascii("xref\n"));
+            for (List<Map.Entry<Long, Long>> run : runs()) {
+                revision.write(ascii(run.get(0).getKey() + " " + run.size() + "\n"));
+                for (Map.Entry<Long, Long> entry : run) {
+                    revision.write(ascii(String.format("%010d %05d n\r\n", entry.getValue(),
+                        generations.get(entry.getKey()))));
+                }
+            }
+            updated.setLong(COSName.SIZE, Math.max(nextNumber, trailer.getLong(COSName.SIZE, 0)));
+            revision.write(ascii("trailer\n"));
+            writeValue(updated, revision, true);
+            revision.write('\n');
+        }
+        revision.write(ascii("startxref\n" + xrefOffset + "\n%%EOF\n"));
+    }
+
+    private void writeXrefStream(long number, COSDictionary updated, ByteArrayOutputStream revision) throws IOException {
+        long largest = Collections.max(offsets.values());
+        int offsetWidth = Math.max(1, (64 - Long.numberOfLeadingZeros(largest) + 7) / 8);
+        StringBuilder index = new StringBuilder();
+        ByteArrayOutputStream rows = new ByteArrayOutputStream();
+        for (List<Map.Entry<Long, Long>> run : runs()) {
+            index.append(run.get(0).getKey()).append(' ').append(run.size()).append(' ');
+            for (Map.Entry<Long, Long> entry : run) {
+                rows.write(1);
+                for (int shift = (offsetWidth - 1) * 8; shift >= 0; shift -= 8) {
+                    rows.write((int) (entry.getValue() >>> shift));
+                }
+                int generation = generations.getOrDefault(entry.getKey(), 0);
+                rows.write(generation >>> 8);
+                rows.write(generation);
+            }
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(compressed)) {
+            rows.writeTo(deflater);
+        }
+
+        revision.write(ascii(number + " 0 obj\n<</Type /XRef /Size " + nextNumber + " /Index ["
+            + index.toString().trim() + "] /W [1 " + offsetWidth + " 2] "));
+        for (Map.Entry<COSName, COSBase> entry : updated.entrySet()) {
+            entry.getKey().writePDF(revision);
+            revision.write(' ');
+            writeValue(entry.getValue(), revision, false);
+            revision.write(' ');
+        }
+        revision.write(ascii("/Filter /FlateDecode /Length " + compressed.size() + ">>\nstream\n"));
+        compressed.writeTo(revision);
+        revision.write(ascii("\nendstream\nendobj\n"));
+    }
+
+    /**
+     * Groups the written objects into runs of consecutive object numbers.
+     */
+    private List<List<Map.Entry<Long, Long>>> runs() {
+        List<List<Map.Entry<Long, Long>>> runs = new ArrayList<>();
+        List<Map.Entry<Long, Long>> run = null;
+        long previous = -2;
+        for (Map.Entry<Long, Long> entry : offsets.entrySet()) {
+            if (entry.getKey() != previous + 1) {
+                run = new ArrayList<>();
+                runs.add(run);
+            }
+            run.add(entry);
+            previous = entry.getKey();
+        }
+        return runs;
+    }
+
+    private void patchByteRange(byte[] revision) throws IOException {
+        long base = original.length();
+        long contentsFrom = base + contentsStart;
+        long contentsTo = base + contentsEnd;
+        String byteRange = "[0 " + contentsFrom + " " + contentsTo + " " + (base + revision.length - contentsTo) + "]";
+        if (byteRange.length() > CompactRevisionWriter.BYTE_RANGE_PLACEHOLDER.length()) {
+            throw new IOException("Document is too large for the /ByteRange reservation");
+        }
+        byte[] patch = ascii(String.format("%-" + CompactRevisionWriter.BYTE_RANGE_PLACEHOLDER.length() + "s", byteRange));
+        System.arraycopy(patch, 0, revision, byteRangeStart, patch.length);
+    }
+
+    private void sign(byte[] revision, SignatureInterface signatureInterface) throws IOException {
+        InputStream content = new SequenceInputStream(Collections.enumeration(List.of(
+            new RandomAccessInputStream(original.createView(0, original.length())),
+            new ByteArrayInputStream(revision, 0, contentsStart),
+            new ByteArrayInputStream(revision, contentsEnd, revision.length - contentsEnd))));
+        byte[] cms = signatureInterface.sign(content);
+        int reserved = (contentsEnd - contentsStart - 2) / 2;
+        if (cms.length > reserved) {
+            throw new IOException("Signature of " + cms.length + " bytes does not fit the " + reserved + " bytes reserved");
+        }
+        byte[] hex = ascii(HexFormat.of().withUpperCase().formatHex(cms));
+        System.arraycopy(hex, 0, revision, contentsStart + 1, hex.length);
+    }
+
+    private boolean endsWithNewline() throws IOException {
+        try (RandomAccessRead last = original.createView(original.length() - 1, 1)) {
+            int value = last.read();
+            return value == '\n' || value == '\r';
+        }
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
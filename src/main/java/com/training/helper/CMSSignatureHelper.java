@@ -2,98 +2,123 @@ package com.training.helper;
 
 import java.io.IOException;
 import java.security.PrivateKey;
-import java.security.Security;
+import java.security.interfaces.EdECKey;
 import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.PSSParameterSpec;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
-import org.apache.pdfbox.io.IOUtils;
+import org.bouncycastle.asn1.cms.AttributeTable;
 import org.bouncycastle.cert.jcajce.JcaCertStore;
+import org.bouncycastle.cms.CMSAbsentContent;
+import org.bouncycastle.cms.CMSAttributeTableGenerationException;
+import org.bouncycastle.cms.CMSAttributeTableGenerator;
 import org.bouncycastle.cms.CMSException;
 import org.bouncycastle.cms.CMSProcessableByteArray;
 import org.bouncycastle.cms.CMSSignedData;
 import org.bouncycastle.cms.CMSSignedDataGenerator;
+import org.bouncycastle.cms.DefaultSignedAttributeTableGenerator;
 import org.bouncycastle.cms.jcajce.JcaSignerInfoGeneratorBuilder;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.DigestCalculatorProvider;
 import org.bouncycastle.operator.OperatorCreationException;
 import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
 import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
-import org.bouncycastle.util.Store;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.training.enums.SignatureProviderType;
+import com.training.model.SignatureSpec;
+
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * Helper class for CMS signature operations.
+ * The signature algorithm is derived from the type of the private key, so RSA, EC and EdDSA
+ * credentials can be used interchangeably.
  */
 @Slf4j
 public class CMSSignatureHelper {
 
-    static {
-        // Ensure BouncyCastle provider is added
-        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
-            Security.addProvider(new BouncyCastleProvider());
-        }
+    /**
+     * Creates a CMS signature for the given content.
+     *
+     * @param content The content to sign
+     * @param privateKey The private key to sign with
+     * @param certificateChain The certificate chain
+     * @return The encoded CMS signature
+     * @throws IOException If there's an issue with the content
+     */
+    public static byte[] createCMSSignature(byte[] content, PrivateKey privateKey,
+                                           Certificate[] certificateChain) throws IOException {
+        return createCMSSignature(content, privateKey, certificateChain, SignatureSpec.DEFAULT, false);
     }
 
     /**
      * Creates a CMS signature for the given content.
-     * 
+     *
      * @param content The content to sign
      * @param privateKey The private key to sign with
      * @param certificateChain The certificate chain
+     * @param signatureSpec The digest, provider and RSA padding to use
+     * @param encapsulate Whether to embed the content in the signature
      * @return The encoded CMS signature
      * @throws IOException If there's an issue with the content
      */
-    public static byte[] createCMSSignature(byte[] content, PrivateKey privateKey, 
-                                           Certificate[] certificateChain) throws IOException {
+    public static byte[] createCMSSignature(byte[] content, PrivateKey privateKey, Certificate[] certificateChain,
+                                           SignatureSpec signatureSpec, boolean encapsulate) throws IOException {
         try {
-            log.info("Creating CMS signature");
-            
-            CMSSignedDataGenerator gen = new CMSSignedDataGenerator();
-            X509Certificate cert = (X509Certificate) certificateChain[0];
-            
-            // Add the signing certificate and chain
-            try {
-                gen.addCertificates(new JcaCertStore(Arrays.asList(certificateChain)));
-            } catch (Exception e) {
-                log.error("Error adding certificates to CMS generator: {}", e.getMessage(), e);
-                throw new IOException("Error adding certificates: " + e.getMessage(), e);
-            }
-            
-            // Add signer info with signed attributes
-            JcaContentSignerBuilder contentSignerBuilder = new JcaContentSignerBuilder("SHA256withRSA");
-            contentSignerBuilder.setProvider(BouncyCastleProvider.PROVIDER_NAME);
+            log.debug("Creating CMS signature");
 
-            // Create signer info with default attributes (includes messageDigest and signingTime)
-            try {
-                gen.addSignerInfoGenerator(
-                    new JcaSignerInfoGeneratorBuilder(
-                        new JcaDigestCalculatorProviderBuilder()
-                            .setProvider(BouncyCastleProvider.PROVIDER_NAME)
-                            .build())
-                        .build(contentSignerBuilder.build(privateKey), cert));
-            } catch (Exception e) {
-                log.error("Error adding signer info to CMS generator: {}", e.getMessage(), e);
-                throw new IOException("Error adding signer info: " + e.getMessage(), e);
-            }
+            CMSSignedDataGenerator gen = createGenerator(privateKey, certificateChain, signatureSpec);
 
             // Create signed data
             CMSProcessableByteArray msg = new CMSProcessableByteArray(content);
-            CMSSignedData signedData = gen.generate(msg, false);
-            
-            log.info("CMS signature created successfully");
+            CMSSignedData signedData = gen.generate(msg, encapsulate);
+
+            log.debug("CMS signature created successfully");
             return signedData.getEncoded();
         } catch (CMSException e) {
             log.error("Error creating CMS signature: {}", e.getMessage(), e);
             throw new IOException("Error creating CMS signature: " + e.getMessage(), e);
         }
     }
-    
+
+    /**
+     * Creates a detached CMS signature for content whose digest has already been computed.
+     * The digest must use the algorithm returned by {@link #resolveDigestAlgorithm(PrivateKey, SignatureSpec)}.
+     *
+     * @param contentDigest The digest of the content to sign
+     * @param privateKey The private key to sign with
+     * @param certificateChain The certificate chain
+     * @param signatureSpec The digest, provider and RSA padding to use
+     * @return The encoded CMS signature
+     * @throws IOException If there's an issue creating the signature
+     */
+    public static byte[] createDetachedCMSSignature(byte[] contentDigest, PrivateKey privateKey,
+                                                   Certificate[] certificateChain, SignatureSpec signatureSpec) throws IOException {
+        try {
+            log.debug("Creating CMS signature from precomputed digest");
+
+            CMSSignedDataGenerator gen = createGenerator(privateKey, certificateChain, signatureSpec,
+                new PrecomputedDigestAttributeGenerator(contentDigest));
+
+            // The content is absent; the messageDigest attribute carries the precomputed digest
+            CMSSignedData signedData = gen.generate(new CMSAbsentContent(), false);
+            return signedData.getEncoded();
+        } catch (CMSException e) {
+            log.error("Error creating CMS signature: {}", e.getMessage(), e);
+            throw new IOException("Error creating CMS signature: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Calculates the estimated size of a signature based on the certificate chain and private key.
-     * 
+     *
      * @param pdfFile The PDF file to sign
      * @param chain The certificate chain
      * @param privateKey The private key
@@ -102,37 +127,12 @@ public class CMSSignatureHelper {
     public static int calculateSignatureSize(MultipartFile pdfFile, Certificate[] chain, PrivateKey privateKey) {
         try {
             log.info("Calculating signature size");
-            
-            CMSSignedDataGenerator gen = new CMSSignedDataGenerator();
-            JcaCertStore certs;
-            try {
-                certs = new JcaCertStore(Arrays.asList(chain));
-                gen.addCertificates(certs);
-            } catch (Exception e) {
-                log.error("Error adding certificates to CMS generator: {}", e.getMessage(), e);
-                return 8192; // Default size if certificate handling fails
-            }
-
-            ContentSigner signer;
-            try {
-                signer = new JcaContentSignerBuilder("SHA256withRSA")
-                    .setProvider(BouncyCastleProvider.PROVIDER_NAME)
-                    .build(privateKey);
-            } catch (OperatorCreationException e) {
-                log.error("Error creating content signer: {}", e.getMessage(), e);
-                throw new IOException("Error creating content signer: " + e.getMessage(), e);
-            }
 
+            CMSSignedDataGenerator gen;
             try {
-                gen.addSignerInfoGenerator(
-                    new JcaSignerInfoGeneratorBuilder(
-                        new JcaDigestCalculatorProviderBuilder()
-                            .setProvider(BouncyCastleProvider.PROVIDER_NAME)
-                            .build())
-                        .build(signer, (X509Certificate) chain[0]));
-            } catch (Exception e) {
-                log.error("Error adding signer info to CMS generator: {}", e.getMessage(), e);
-                return 8192; // Default size if signer info handling fails
+                gen = createGenerator(privateKey, chain, SignatureSpec.DEFAULT);
+            } catch (IOException e) {
+                return 8192; // Default size if certificate or signer handling fails
             }
 
             byte[] signatureBytes = gen.generate(
@@ -147,68 +147,194 @@ public class CMSSignatureHelper {
             return 8192; // Default size if calculation fails
         }
     }
-    
+
+    /**
+     * Estimates the size of a detached CMS signature without signing: the encoded certificate chain plus
+     * room for the signer info, the signed attributes and a signature value of up to 8192-bit RSA.
+     *
+     * @param chain The certificate chain embedded in the signature
+     * @return The number of bytes to reserve for the signature
+     * @throws IOException If a certificate cannot be encoded
+     */
+    public static int estimateSignatureSize(Certificate[] chain) throws IOException {
+        int size = 4096;
+        try {
+            for (Certificate certificate : chain) {
+                size += certificate.getEncoded().length;
+            }
+        } catch (CertificateEncodingException e) {
+            throw new IOException("Error encoding certificate: " + e.getMessage(), e);
+        }
+        return size;
+    }
+
     /**
      * Creates a CMS signature for external signing.
-     * 
+     *
      * @param content The content to sign
      * @param privateKey The private key to sign with
      * @param certificateChain The certificate chain
      * @return The encoded CMS signature
      * @throws IOException If there's an issue with the content
      */
-    public static byte[] createExternalCMSSignature(byte[] content, PrivateKey privateKey, 
+    public static byte[] createExternalCMSSignature(byte[] content, PrivateKey privateKey,
                                                   Certificate[] certificateChain) throws IOException {
+        log.info("Creating external CMS signature");
+        return createCMSSignature(content, privateKey, certificateChain, SignatureSpec.DEFAULT, false);
+    }
+
+    /**
+     * Returns the JCA signature algorithm name for a private key.
+     *
+     * @param privateKey The private key to sign with
+     * @param signatureSpec The digest and RSA padding to use
+     * @return The signature algorithm, e.g. SHA256withECDSA
+     * @throws IOException If the key type is not supported
+     */
+    public static String resolveSignatureAlgorithm(PrivateKey privateKey, SignatureSpec signatureSpec) throws IOException {
+        String digest = signatureSpec.digestAlgorithm().name();
+        switch (privateKey.getAlgorithm()) {
+            case "RSA":
+                return signatureSpec.rsaPss() ? "RSASSA-PSS" : digest + "withRSA";
+            case "RSASSA-PSS":
+                return "RSASSA-PSS";
+            case "EC":
+            case "ECDSA":
+                return digest + "withECDSA";
+            case "Ed25519":
+                return "Ed25519";
+            case "Ed448":
+                return "Ed448";
+            case "EdDSA":
+                // JDK EdDSA keys report the family; the curve is in the key parameters
+                if (privateKey instanceof EdECKey edECKey) {
+                    return edECKey.getParams().getName();
+                }
+                throw new IOException("Cannot determine the curve of the EdDSA signing key");
+            default:
+                throw new IOException("Unsupported signing key algorithm: " + privateKey.getAlgorithm());
+        }
+    }
+
+    /**
+     * Returns the JCA name of the digest that a CMS signature with this key covers the content with.
+     *
+     * @param privateKey The private key to sign with
+     * @param signatureSpec The digest to use for RSA and ECDSA keys
+     * @return The digest algorithm, e.g. SHA-256
+     * @throws IOException If the key type is not supported
+     */
+    public static String resolveDigestAlgorithm(PrivateKey privateKey, SignatureSpec signatureSpec) throws IOException {
+        String signatureAlgorithm = resolveSignatureAlgorithm(privateKey, signatureSpec);
+        if ("Ed25519".equals(signatureAlgorithm)) {
+            // RFC 8419 fixes the digest for Ed25519
+            return "SHA-512";
+        }
+        if ("Ed448".equals(signatureAlgorithm)) {
+            throw new IOException("Precomputed digests are not supported for Ed448 keys");
+        }
+        return signatureSpec.digestAlgorithm().getJcaName();
+    }
+
+    /**
+     * Creates a CMS generator with the certificate chain and a signer info for the private key.
+     */
+    private static CMSSignedDataGenerator createGenerator(PrivateKey privateKey, Certificate[] certificateChain,
+                                                          SignatureSpec signatureSpec) throws IOException {
+        return createGenerator(privateKey, certificateChain, signatureSpec, null);
+    }
+
+    /**
+     * Creates a CMS generator with the certificate chain and a signer info for the private key,
+     * optionally with a custom signed attribute generator.
+     */
+    private static CMSSignedDataGenerator createGenerator(PrivateKey privateKey, Certificate[] certificateChain,
+                                                          SignatureSpec signatureSpec,
+                                                          CMSAttributeTableGenerator signedAttributeGenerator) throws IOException {
+        CMSSignedDataGenerator gen = new CMSSignedDataGenerator();
+        X509Certificate cert = (X509Certificate) certificateChain[0];
+
+        // Add the signing certificate and chain
         try {
-            log.info("Creating external CMS signature");
-            
-            // Create CMS signature
-            Store certStore;
-            try {
-                certStore = new JcaCertStore(Arrays.asList(certificateChain));
-            } catch (Exception e) {
-                log.error("Error creating certificate store: {}", e.getMessage(), e);
-                throw new IOException("Error creating certificate store: " + e.getMessage(), e);
-            }
-            
-            CMSSignedDataGenerator gen = new CMSSignedDataGenerator();
-            ContentSigner signer;
-            try {
-                signer = new JcaContentSignerBuilder("SHA256withRSA")
-                    .setProvider(BouncyCastleProvider.PROVIDER_NAME)
-                    .build(privateKey);
-            } catch (OperatorCreationException e) {
-                log.error("Error creating content signer: {}", e.getMessage(), e);
-                throw new IOException("Error creating content signer: " + e.getMessage(), e);
-            }
-            
-            try {
-                gen.addSignerInfoGenerator(
-                    new JcaSignerInfoGeneratorBuilder(
-                        new JcaDigestCalculatorProviderBuilder()
-                            .setProvider(BouncyCastleProvider.PROVIDER_NAME)
-                            .build())
-                        .build(signer, (X509Certificate) certificateChain[0]));
-            } catch (Exception e) {
-                log.error("Error adding signer info to CMS generator: {}", e.getMessage(), e);
-                throw new IOException("Error adding signer info: " + e.getMessage(), e);
-            }
-            
-            try {
-                gen.addCertificates(certStore);
-            } catch (Exception e) {
-                log.error("Error adding certificates to CMS generator: {}", e.getMessage(), e);
-                throw new IOException("Error adding certificates: " + e.getMessage(), e);
+            gen.addCertificates(new JcaCertStore(Arrays.asList(certificateChain)));
+        } catch (Exception e) {
+            log.error("Error adding certificates to CMS generator: {}", e.getMessage(), e);
+            throw new IOException("Error adding certificates: " + e.getMessage(), e);
+        }
+
+        ContentSigner signer;
+        try {
+            signer = createContentSignerBuilder(privateKey, signatureSpec).build(privateKey);
+        } catch (OperatorCreationException e) {
+            log.error("Error creating content signer: {}", e.getMessage(), e);
+            throw new IOException("Error creating content signer: " + e.getMessage(), e);
+        }
+
+        // Create signer info with default attributes (includes messageDigest and signingTime)
+        try {
+            JcaSignerInfoGeneratorBuilder signerInfoBuilder =
+                new JcaSignerInfoGeneratorBuilder(createDigestCalculatorProvider(signatureSpec));
+            if (signedAttributeGenerator != null) {
+                signerInfoBuilder.setSignedAttributeGenerator(signedAttributeGenerator);
             }
-            
-            CMSProcessableByteArray msg = new CMSProcessableByteArray(content);
-            CMSSignedData signedData = gen.generate(msg, false);
-            
-            log.info("External CMS signature created successfully");
-            return signedData.getEncoded();
-        } catch (CMSException e) {
-            log.error("Error creating external CMS signature: {}", e.getMessage(), e);
-            throw new IOException("Error creating external CMS signature: " + e.getMessage(), e);
+            gen.addSignerInfoGenerator(signerInfoBuilder.build(signer, cert));
+        } catch (Exception e) {
+            log.error("Error adding signer info to CMS generator: {}", e.getMessage(), e);
+            throw new IOException("Error adding signer info: " + e.getMessage(), e);
+        }
+        return gen;
+    }
+
+    private static JcaContentSignerBuilder createContentSignerBuilder(PrivateKey privateKey,
+                                                                     SignatureSpec signatureSpec) throws IOException {
+        String algorithm = resolveSignatureAlgorithm(privateKey, signatureSpec);
+        JcaContentSignerBuilder builder;
+        if ("RSASSA-PSS".equals(algorithm)) {
+            String digest = signatureSpec.digestAlgorithm().getJcaName();
+            int saltLength = switch (signatureSpec.digestAlgorithm()) {
+                case SHA256 -> 32;
+                case SHA384 -> 48;
+                case SHA512 -> 64;
+            };
+            builder = new JcaContentSignerBuilder(algorithm,
+                new PSSParameterSpec(digest, "MGF1", new MGF1ParameterSpec(digest), saltLength, 1));
+        } else {
+            builder = new JcaContentSignerBuilder(algorithm);
+        }
+        // Keys that cannot be exported, such as PKCS#11 token keys, sign with the provider they belong to
+        if (signatureSpec.provider() == SignatureProviderType.BOUNCY_CASTLE && privateKey.getEncoded() != null) {
+            builder.setProvider(SecurityProviderHelper.bouncyCastle());
+        }
+        return builder;
+    }
+
+    private static DigestCalculatorProvider createDigestCalculatorProvider(SignatureSpec signatureSpec)
+            throws OperatorCreationException {
+        JcaDigestCalculatorProviderBuilder builder = new JcaDigestCalculatorProviderBuilder();
+        if (signatureSpec.provider() == SignatureProviderType.BOUNCY_CASTLE) {
+            builder.setProvider(SecurityProviderHelper.bouncyCastle());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Signed attribute generator that replaces the digest calculated over the (absent) content
+     * with a precomputed one.
+     */
+    private static final class PrecomputedDigestAttributeGenerator implements CMSAttributeTableGenerator {
+        private final CMSAttributeTableGenerator delegate = new DefaultSignedAttributeTableGenerator();
+        private final byte[] contentDigest;
+
+        private PrecomputedDigestAttributeGenerator(byte[] contentDigest) {
+            this.contentDigest = contentDigest.clone();
+        }
+
+        @Override
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        public AttributeTable getAttributes(Map parameters) throws CMSAttributeTableGenerationException {
+            Map<Object, Object> withDigest = new HashMap<>(parameters);
+            withDigest.put(CMSAttributeTableGenerator.DIGEST, contentDigest.clone());
+            return delegate.getAttributes(Collections.unmodifiableMap(withDigest));
         }
     }
 }
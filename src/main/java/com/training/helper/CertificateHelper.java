@@ -1,8 +1,15 @@
 package com.training.helper;
 
+import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
@@ -11,6 +18,17 @@ import java.security.UnrecoverableKeyException;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+import com.training.model.SignatureSpec;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -78,4 +96,69 @@ public class CertificateHelper {
             log.warn("Certificate is not an X509Certificate, skipping validation");
         }
     }
+
+    /**
+     * Creates a PKCS12 keystore with a freshly generated RSA-2048 key and a self-signed
+     * certificate valid for one day. Intended for warm-up runs and benchmarks, never for production signing.
+     * 
+     * @param keystoreFile The file to write the keystore to
+     * @param certificatePassword Password for the keystore and key
+     * @param certificateAlias Alias of the key entry
+     * @param commonName Common name of the certificate subject
+     * @throws CertificateException If the credential cannot be generated
+     * @throws IOException If there's an issue writing the keystore file
+     */
+    public static void createSelfSignedKeystore(File keystoreFile, String certificatePassword, 
+                                               String certificateAlias, String commonName) 
+                                               throws CertificateException, IOException {
+        createSelfSignedKeystore(keystoreFile, certificatePassword, certificateAlias, commonName, "RSA");
+    }
+
+    /**
+     * Creates a PKCS12 keystore with a freshly generated key of the given type and a self-signed
+     * certificate valid for one day. Intended for warm-up runs and benchmarks, never for production signing.
+     * 
+     * @param keystoreFile The file to write the keystore to
+     * @param certificatePassword Password for the keystore and key
+     * @param certificateAlias Alias of the key entry
+     * @param commonName Common name of the certificate subject
+     * @param keyAlgorithm RSA (2048 bit), EC (P-256) or Ed25519
+     * @throws CertificateException If the credential cannot be generated
+     * @throws IOException If there's an issue writing the keystore file
+     */
+    public static void createSelfSignedKeystore(File keystoreFile, String certificatePassword, 
+                                               String certificateAlias, String commonName, String keyAlgorithm) 
+                                               throws CertificateException, IOException {
+        try {
+            KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(keyAlgorithm);
+            if ("RSA".equals(keyAlgorithm)) {
+                keyPairGenerator.initialize(2048);
+            } else if ("EC".equals(keyAlgorithm)) {
+                keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+            }
+            KeyPair keyPair = keyPairGenerator.generateKeyPair();
+            
+            X500Name subject = new X500Name("CN=" + commonName);
+            long now = System.currentTimeMillis();
+            X509Certificate certificate = new JcaX509CertificateConverter().getCertificate(
+                new JcaX509v3CertificateBuilder(subject, BigInteger.valueOf(now), 
+                        new Date(now - TimeUnit.HOURS.toMillis(1)), new Date(now + TimeUnit.DAYS.toMillis(1)),
+                        subject, keyPair.getPublic())
+                    .build(new JcaContentSignerBuilder(
+                        CMSSignatureHelper.resolveSignatureAlgorithm(keyPair.getPrivate(), SignatureSpec.DEFAULT))
+                        .build(keyPair.getPrivate())));
+            
+            KeyStore keystore = KeyStore.getInstance("PKCS12");
+            keystore.load(null, null);
+            keystore.setKeyEntry(certificateAlias, keyPair.getPrivate(), certificatePassword.toCharArray(), 
+                                 new Certificate[] { certificate });
+            try (OutputStream out = new FileOutputStream(keystoreFile)) {
+                keystore.store(out, certificatePassword.toCharArray());
+            }
+            log.info("Created self-signed keystore for {} at {}", commonName, keystoreFile);
+        } catch (GeneralSecurityException | OperatorCreationException e) {
+            log.error("Error creating self-signed keystore: {}", e.getMessage(), e);
+            throw new CertificateException("Error creating self-signed keystore: " + e.getMessage(), e);
+        }
+    }
 }
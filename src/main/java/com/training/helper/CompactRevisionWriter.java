@@ -0,0 +1,654 @@
+package com.training.helper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSBoolean;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSDocument;
+import org.apache.pdfbox.cos.COSFloat;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNull;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSObjectKey;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.cos.COSUpdateInfo;
+import org.apache.pdfbox.io.RandomAccessInputStream;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.pdfwriter.COSWriter;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.SignatureInterface;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes a signed revision as a compact incremental update. {@code PDDocument.saveIncremental} writes every
+ * object of the revision uncompressed and indexes them with a classic xref table; this writer puts the
+ * dictionaries into Flate compressed object streams, compresses unfiltered streams and indexes the revision
+ * with an xref stream. Appearance XObjects that are identical to one already in the document, or to another
+ * one in the same revision, are referenced instead of written again.
+ * The objects written are the same ones {@code saveIncremental} selects: new objects and objects marked as
+ * updated, reached from the trailer through objects that are written. The signature dictionary stays outside
+ * the object streams, so its /ByteRange and /Contents are patched in place after the revision is written.
+ */
+@Slf4j
+public class CompactRevisionWriter {
+
+    private static final int OBJECTS_PER_STREAM = 100;
+
+    /**
+     * Streams shorter than this are not worth the Flate header and dictionary entry.
+     */
+    private static final int MIN_COMPRESSED_LENGTH = 64;
+
+    private static final int MAX_CANONICAL_DEPTH = 16;
+
+    static final String BYTE_RANGE_PLACEHOLDER = "[0 1000000000 1000000000 1000000000]";
+
+    private final COSDocument cosDocument;
+    private final COSDictionary signatureDictionary;
+    private final Map<COSBase, COSObjectKey> keys = new IdentityHashMap<>();
+    private final Map<COSBase, String> digests = new IdentityHashMap<>();
+    private final Map<String, COSObjectKey> xobjects = new HashMap<>();
+    private final Deque<COSBase> pending = new ArrayDeque<>();
+    private long nextNumber;
+    private int unresolved;
+    private int reusedXObjects;
+
+    private int contentsStart = -1;
+    private int contentsEnd;
+    private int byteRangeStart;
+
+    private CompactRevisionWriter(PDDocument document, PDSignature signature) {
+        this.cosDocument = document.getDocument();
+        this.signatureDictionary = signature.getCOSObject();
+        long highest = Math.max(cosDocument.getHighestXRefObjectNumber(),
+                                cosDocument.getTrailer().getLong(COSName.SIZE, 1) - 1);
+        for (COSObjectKey key : cosDocument.getXrefTable().keySet()) {
+            highest = Math.max(highest, key.getNumber());
+        }
+        this.nextNumber = highest + 1;
+    }
+
+    /**
+     * Returns whether a document can be written by this writer. Encrypted documents are not supported,
+     * because the objects of the revision would have to be encrypted as they are written.
+     *
+     * @param document The loaded document
+     * @return True if the signed revision can be written compactly
+     */
+    public static boolean supports(PDDocument document) {
+        return !document.isEncrypted();
+    }
+
+    /**
+     * Writes the original document followed by a compact revision holding the signature that was added with
+     * {@code PDDocument.addSignature(PDSignature, SignatureOptions)}.
+     *
+     * @param document The document loaded from the original bytes, with the signature added
+     * @param original The bytes the document was loaded from
+     * @param signature The signature dictionary added to the document
+     * @param signatureInterface Creates the CMS signature over the ByteRange content
+     * @param output The stream to write the original bytes followed by the signed revision to
+     * @throws IOException If the revision cannot be written or the signature does not fit its reservation
+     */
+    public static void write(PDDocument document, byte[] original, PDSignature signature,
+                             SignatureInterface signatureInterface, OutputStream output) throws IOException {
+        write(document, new RandomAccessReadBuffer(original), signature, signatureInterface, output);
+    }
+
+    /**
+     * Writes the original document followed by a compact revision, reading the original from a source that
+     * may be backed by a file, so that a large document does not have to be held in memory.
+     *
+     * @param document The document loaded from the original, with the signature added
+     * @param original The original document; read through views, so it may also be the source the document was loaded from
+     * @param signature The signature dictionary added to the document
+     * @param signatureInterface Creates the CMS signature over the ByteRange content
+     * @param output The stream to write the original bytes followed by the signed revision to
+     * @throws IOException If the revision cannot be written or the signature does not fit its reservation
+     */
+    public static void write(PDDocument document, RandomAccessRead original, PDSignature signature,
+                             SignatureInterface signatureInterface, OutputStream output) throws IOException {
+        if (!supports(document)) {
+            throw new IOException("Compact revisions cannot be written for encrypted documents");
+        }
+        if (document.getVersion() < 1.5f) {
+            // Object and xref streams need PDF 1.5; the catalog is part of every signed revision
+            document.getDocumentCatalog().setVersion("1.5");
+        }
+        CompactRevisionWriter writer = new CompactRevisionWriter(document, signature);
+        byte[] revision = writer.writeRevision(original);
+        writer.sign(original, revision, signatureInterface);
+        try (InputStream in = new RandomAccessInputStream(original.createView(0, original.length()))) {
+            in.transferTo(output);
+        }
+        output.write(revision);
+        log.debug("Wrote compact revision of {} bytes with {} reused XObjects", revision.length, writer.reusedXObjects);
+    }
+
+    private byte[] writeRevision(RandomAccessRead original) throws IOException {
+        indexSignatureXObjects();
+
+        COSDictionary trailer = cosDocument.getTrailer();
+        COSObjectKey root = reference(trailer.getItem(COSName.ROOT));
+        COSObjectKey info = reference(trailer.getItem(COSName.INFO));
+
+        ByteArrayOutputStream revision = new ByteArrayOutputStream();
+        boolean separator = original.length() > 0 && !endsWithNewline(original);
+        if (separator) {
+            revision.write('\n');
+        }
+        long base = original.length();
+
+        Map<Long, long[]> entries = new TreeMap<>();
+        Map<COSObjectKey, byte[]> compressible = new LinkedHashMap<>();
+        while (!pending.isEmpty()) {
+            COSBase object = pending.poll();
+            COSObjectKey key = keys.get(object);
+            if (object instanceof COSStream stream) {
+                entries.put(key.getNumber(), offset(base, revision));
+                writeObjectHeader(key, revision);
+                writeStream(stream, revision);
+                revision.write(ascii("\nendobj\n"));
+            } else if (object == signatureDictionary) {
+                entries.put(key.getNumber(), offset(base, revision));
+                writeObjectHeader(key, revision);
+                writeSignatureDictionary(revision);
+                revision.write(ascii("\nendobj\n"));
+            } else {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                writeValue(object, body, true);
+                if (key.getGeneration() == 0) {
+                    compressible.put(key, body.toByteArray());
+                } else {
+                    // Objects in object streams have generation zero
+                    entries.put(key.getNumber(), offset(base, revision));
+                    writeObjectHeader(key, revision);
+                    body.writeTo(revision);
+                    revision.write(ascii("\nendobj\n"));
+                }
+            }
+        }
+        if (contentsStart < 0) {
+            throw new IOException("The signature dictionary is not part of the revision");
+        }
+
+        List<Map.Entry<COSObjectKey, byte[]>> objects = new ArrayList<>(compressible.entrySet());
+        for (int from = 0; from < objects.size(); from += OBJECTS_PER_STREAM) {
+            List<Map.Entry<COSObjectKey, byte[]>> chunk =
+                objects.subList(from, Math.min(objects.size(), from + OBJECTS_PER_STREAM));
+            long streamNumber = nextNumber++;
+            entries.put(streamNumber, offset(base, revision));
+            writeObjectStream(streamNumber, chunk, revision);
+            for (int i = 0; i < chunk.size(); i++) {
+                entries.put(chunk.get(i).getKey().getNumber(), new long[] { 2, streamNumber, i });
+            }
+        }
+
+        long xrefNumber = nextNumber++;
+        long xrefOffset = base + revision.size();
+        entries.put(xrefNumber, new long[] { 1, xrefOffset, 0 });
+        writeXRefStream(xrefNumber, entries, root, info, trailer, revision);
+        revision.write(ascii("startxref\n" + xrefOffset + "\n%%EOF\n"));
+
+        byte[] bytes = revision.toByteArray();
+        long contentsFrom = base + contentsStart;
+        long contentsTo = base + contentsEnd;
+        String byteRange = "[0 " + contentsFrom + " " + contentsTo + " " + (base + bytes.length - contentsTo) + "]";
+        if (byteRange.length() > BYTE_RANGE_PLACEHOLDER.length()) {
+            throw new IOException("Document is too large for the /ByteRange reservation");
+        }
+        byte[] patch = ascii(String.format("%-" + BYTE_RANGE_PLACEHOLDER.length() + "s", byteRange));
+        System.arraycopy(patch, 0, bytes, byteRangeStart, patch.length);
+        return bytes;
+    }
+
+    private static boolean endsWithNewline(RandomAccessRead original) throws IOException {
+        try (RandomAccessRead last = original.createView(original.length() - 1, 1)) {
+            int value = last.read();
+            return value == '\n' || value == '\r';
+        }
+    }
+
+    private void sign(RandomAccessRead original, byte[] revision, SignatureInterface signatureInterface) throws IOException {
+        InputStream content = new SequenceInputStream(Collections.enumeration(List.of(
+            new RandomAccessInputStream(original.createView(0, original.length())),
+            new ByteArrayInputStream(revision, 0, contentsStart),
+            new ByteArrayInputStream(revision, contentsEnd, revision.length - contentsEnd))));
+        byte[] cms = signatureInterface.sign(content);
+        int reserved = (contentsEnd - contentsStart - 2) / 2;
+        if (cms.length > reserved) {
+            throw new IOException("Signature of " + cms.length + " bytes does not fit the " + reserved + " bytes reserved");
+        }
+        byte[] hex = ascii(HexFormat.of().withUpperCase().formatHex(cms));
+        System.arraycopy(hex, 0, revision, contentsStart + 1, hex.length);
+    }
+
+    /**
+     * Returns the key to write a reference to an object with, queueing the object if it is new or updated.
+     */
+    private COSObjectKey reference(COSBase value) throws IOException {
+        COSBase actual = value instanceof COSObject object ? object.getObject() : value;
+        if (actual == null || actual instanceof COSNull) {
+            return null;
+        }
+        COSObjectKey key = keys.get(actual);
+        if (key != null) {
+            return key;
+        }
+        key = originalKey(actual);
+        if (key != null) {
+            keys.put(actual, key);
+            if (isUpdated(value) || isUpdated(actual)) {
+                pending.add(actual);
+            }
+            return key;
+        }
+        if (actual instanceof COSStream stream && isXObject(stream)) {
+            String digest = digest(stream);
+            COSObjectKey identical = xobjects.get(digest);
+            if (identical != null) {
+                keys.put(actual, identical);
+                reusedXObjects++;
+                return identical;
+            }
+            key = new COSObjectKey(nextNumber++, 0);
+            xobjects.put(digest, key);
+        } else {
+            key = new COSObjectKey(nextNumber++, 0);
+        }
+        keys.put(actual, key);
+        pending.add(actual);
+        return key;
+    }
+
+    /**
+     * Returns the key of an object that was loaded from the original document, or null for a new object,
+     * including objects copied from another document that still carry their key there.
+     */
+    private COSObjectKey originalKey(COSBase actual) {
+        COSObjectKey key = actual.getKey();
+        if (key == null || !cosDocument.getXrefTable().containsKey(key)) {
+            return null;
+        }
+        COSObject pooled = cosDocument.getObjectFromPool(key);
+        return pooled.isDereferenced() && pooled.getObject() == actual ? key : null;
+    }
+
+    private static boolean isUpdated(COSBase value) {
+        return value instanceof COSUpdateInfo updateInfo && updateInfo.isNeedToBeUpdated();
+    }
+
+    private static boolean isXObject(COSStream stream) {
+        COSName subtype = stream.getCOSName(COSName.SUBTYPE);
+        return COSName.FORM.equals(subtype) || COSName.IMAGE.equals(subtype);
+    }
+
+    /**
+     * Writes a value, inlining direct values and referencing indirect ones like {@code saveIncremental} does:
+     * streams and dictionaries that are not direct become indirect objects, arrays are written inline.
+     */
+    private void writeValue(COSBase value, OutputStream out, boolean topLevel) throws IOException {
+        if (value == null || value instanceof COSNull) {
+            out.write(ascii("null"));
+        } else if (value instanceof COSObject) {
+            writeReference(reference(value), out);
+        } else if (!topLevel && (value instanceof COSStream || keys.containsKey(value) || originalKey(value) != null
+                || (value instanceof COSDictionary dictionary && !dictionary.isDirect()))) {
+            writeReference(reference(value), out);
+        } else if (value instanceof COSDictionary dictionary) {
+            out.write(ascii("<<"));
+            for (Map.Entry<COSName, COSBase> entry : dictionary.entrySet()) {
+                entry.getKey().writePDF(out);
+                out.write(' ');
+                writeValue(entry.getValue(), out, false);
+            }
+            out.write(ascii(">>"));
+        } else if (value instanceof COSArray array) {
+            out.write('[');
+            for (int i = 0; i < array.size(); i++) {
+                if (i > 0) {
+                    out.write(' ');
+                }
+                writeValue(array.get(i), out, false);
+            }
+            out.write(']');
+        } else {
+            writeSimple(value, out);
+        }
+    }
+
+    static void writeSimple(COSBase value, OutputStream out) throws IOException {
+        if (value instanceof COSString string) {
+            COSWriter.writeString(string, out);
+        } else if (value instanceof COSName name) {
+            name.writePDF(out);
+        } else if (value instanceof COSInteger integer) {
+            integer.writePDF(out);
+        } else if (value instanceof COSFloat number) {
+            number.writePDF(out);
+        } else if (value instanceof COSBoolean bool) {
+            bool.writePDF(out);
+        } else {
+            out.write(ascii("null"));
+        }
+    }
+
+    private static void writeReference(COSObjectKey key, OutputStream out) throws IOException {
+        out.write(ascii(key == null ? "null" : key.getNumber() + " " + key.getGeneration() + " R"));
+    }
+
+    private static void writeObjectHeader(COSObjectKey key, OutputStream out) throws IOException {
+        out.write(ascii(key.getNumber() + " " + key.getGeneration() + " obj\n"));
+    }
+
+    private void writeSignatureDictionary(ByteArrayOutputStream revision) throws IOException {
+        revision.write(ascii("<<"));
+        for (Map.Entry<COSName, COSBase> entry : signatureDictionary.entrySet()) {
+            entry.getKey().writePDF(revision);
+            revision.write(' ');
+            if (COSName.CONTENTS.equals(entry.getKey())) {
+                int reserved = ((COSString) entry.getValue()).getBytes().length;
+                contentsStart = revision.size();
+                revision.write('<');
+                revision.write(ascii("0".repeat(reserved * 2)));
+                revision.write('>');
+                contentsEnd = revision.size();
+            } else if (COSName.BYTERANGE.equals(entry.getKey())) {
+                byteRangeStart = revision.size();
+                revision.write(ascii(BYTE_RANGE_PLACEHOLDER));
+            } else {
+                writeValue(entry.getValue(), revision, false);
+            }
+        }
+        revision.write(ascii(">>"));
+    }
+
+    private void writeStream(COSStream stream, OutputStream out) throws IOException {
+        byte[] data;
+        if (stream.hasData()) {
+            try (InputStream raw = stream.createRawInputStream()) {
+                data = raw.readAllBytes();
+            }
+        } else {
+            data = new byte[0];
+        }
+        boolean compress = stream.getFilters() == null && data.length >= MIN_COMPRESSED_LENGTH;
+        if (compress) {
+            data = deflate(data);
+        }
+        out.write(ascii("<<"));
+        for (Map.Entry<COSName, COSBase> entry : stream.entrySet()) {
+            if (!COSName.LENGTH.equals(entry.getKey())) {
+                entry.getKey().writePDF(out);
+                out.write(' ');
+                writeValue(entry.getValue(), out, false);
+            }
+        }
+        out.write(ascii((compress ? "/Filter /FlateDecode" : "") + "/Length " + data.length + ">>\nstream\n"));
+        out.write(data);
+        out.write(ascii("\nendstream"));
+    }
+
+    private static void writeObjectStream(long number, List<Map.Entry<COSObjectKey, byte[]>> objects,
+                                          OutputStream out) throws IOException {
+        StringBuilder header = new StringBuilder();
+        ByteArrayOutputStream bodies = new ByteArrayOutputStream();
+        for (Map.Entry<COSObjectKey, byte[]> object : objects) {
+            header.append(object.getKey().getNumber()).append(' ').append(bodies.size()).append(' ');
+            bodies.write(object.getValue());
+            bodies.write('\n');
+        }
+        byte[] first = ascii(header.toString());
+        ByteArrayOutputStream content = new ByteArrayOutputStream(first.length + bodies.size());
+        content.write(first);
+        bodies.writeTo(content);
+        byte[] data = deflate(content.toByteArray());
+
+        out.write(ascii(number + " 0 obj\n<</Type /ObjStm /N " + objects.size() + " /First " + first.length
+            + " /Filter /FlateDecode /Length " + data.length + ">>\nstream\n"));
+        out.write(data);
+        out.write(ascii("\nendstream\nendobj\n"));
+    }
+
+    private void writeXRefStream(long number, Map<Long, long[]> entries, COSObjectKey root, COSObjectKey info,
+                                 COSDictionary trailer, OutputStream out) throws IOException {
+        long largest = 0;
+        for (long[] entry : entries.values()) {
+            largest = Math.max(largest, entry[1]);
+        }
+        int offsetWidth = Math.max(1, (64 - Long.numberOfLeadingZeros(largest) + 7) / 8);
+
+        StringBuilder index = new StringBuilder();
+        ByteArrayOutputStream rows = new ByteArrayOutputStream();
+        long runStart = -1;
+        long previous = -2;
+        for (Map.Entry<Long, long[]> entry : entries.entrySet()) {
+            long objectNumber = entry.getKey();
+            if (objectNumber != previous + 1) {
+                if (runStart >= 0) {
+                    index.append(runStart).append(' ').append(previous - runStart + 1).append(' ');
+                }
+                runStart = objectNumber;
+            }
+            previous = objectNumber;
+            long[] row = entry.getValue();
+            rows.write((int) row[0]);
+            for (int shift = (offsetWidth - 1) * 8; shift >= 0; shift -= 8) {
+                rows.write((int) (row[1] >>> shift));
+            }
+            rows.write((int) (row[2] >>> 8));
+            rows.write((int) row[2]);
+        }
+        index.append(runStart).append(' ').append(previous - runStart + 1);
+        byte[] data = deflate(rows.toByteArray());
+
+        ByteArrayOutputStream dictionary = new ByteArrayOutputStream();
+        dictionary.write(ascii(number + " 0 obj\n<</Type /XRef /Size " + nextNumber + " /Index [" + index
+            + "] /W [1 " + offsetWidth + " 2] /Root "));
+        writeReference(root, dictionary);
+        if (info != null) {
+            dictionary.write(ascii(" /Info "));
+            writeReference(info, dictionary);
+        }
+        dictionary.write(ascii(" /ID "));
+        COSArray id = trailer.getCOSArray(COSName.ID);
+        if (id != null) {
+            writeValue(id, dictionary, true);
+        } else {
+            UUID uuid = UUID.randomUUID();
+            COSString value = new COSString(ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array(), true);
+            dictionary.write('[');
+            writeSimple(value, dictionary);
+            dictionary.write(' ');
+            writeSimple(value, dictionary);
+            dictionary.write(']');
+        }
+        dictionary.write(ascii(" /Prev " + cosDocument.getStartXref() + " /Filter /FlateDecode /Length "
+            + data.length + ">>\nstream\n"));
+        dictionary.writeTo(out);
+        out.write(data);
+        out.write(ascii("\nendstream\nendobj\n"));
+    }
+
+    /**
+     * Registers the appearance XObjects of the signatures already in the document, so that identical
+     * appearances of the new signature can reference them.
+     */
+    private void indexSignatureXObjects() throws IOException {
+        COSDictionary root = cosDocument.getTrailer().getCOSDictionary(COSName.ROOT);
+        COSDictionary acroForm = root == null ? null : root.getCOSDictionary(COSName.ACRO_FORM);
+        COSArray fields = acroForm == null ? null : acroForm.getCOSArray(COSName.FIELDS);
+        if (fields == null) {
+            return;
+        }
+        Set<COSBase> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<COSDictionary> fieldQueue = new ArrayDeque<>();
+        addDictionaries(fields, fieldQueue);
+        while (!fieldQueue.isEmpty()) {
+            COSDictionary field = fieldQueue.poll();
+            if (!visited.add(field) || field == signatureDictionary) {
+                continue;
+            }
+            COSArray kids = field.getCOSArray(COSName.KIDS);
+            if (kids != null) {
+                addDictionaries(kids, fieldQueue);
+            }
+            if (!(field.getDictionaryObject(COSName.V) instanceof COSDictionary)) {
+                continue;
+            }
+            COSDictionary appearance = field.getCOSDictionary(COSName.AP);
+            COSBase normal = appearance == null ? null : appearance.getDictionaryObject(COSName.N);
+            if (normal instanceof COSStream stream) {
+                indexXObject(stream, visited, 0);
+            }
+        }
+    }
+
+    private void indexXObject(COSStream stream, Set<COSBase> visited, int depth) throws IOException {
+        if (depth > MAX_CANONICAL_DEPTH || (depth > 0 && !visited.add(stream))) {
+            return;
+        }
+        COSObjectKey key = originalKey(stream);
+        if (key != null) {
+            xobjects.putIfAbsent(digest(stream), key);
+        }
+        COSDictionary resources = stream.getCOSDictionary(COSName.RESOURCES);
+        COSDictionary children = resources == null ? null : resources.getCOSDictionary(COSName.XOBJECT);
+        if (children != null) {
+            for (COSName name : children.keySet()) {
+                if (children.getDictionaryObject(name) instanceof COSStream child && isXObject(child)) {
+                    indexXObject(child, visited, depth + 1);
+                }
+            }
+        }
+    }
+
+    private static void addDictionaries(COSArray array, Deque<COSDictionary> queue) {
+        for (int i = 0; i < array.size(); i++) {
+            if (array.getObject(i) instanceof COSDictionary dictionary) {
+                queue.add(dictionary);
+            }
+        }
+    }
+
+    /**
+     * Returns a digest of the content of an XObject: its decoded data and its dictionary without the entries
+     * that only describe the encoding, with referenced objects compared by content rather than by number.
+     */
+    private String digest(COSStream stream) throws IOException {
+        String digest = digests.get(stream);
+        if (digest == null) {
+            ByteArrayOutputStream canonical = new ByteArrayOutputStream();
+            writeCanonical(stream, canonical, 0, Collections.newSetFromMap(new IdentityHashMap<>()));
+            digest = HexFormat.of().formatHex(sha256(canonical.toByteArray()));
+            digests.put(stream, digest);
+        }
+        return digest;
+    }
+
+    private void writeCanonical(COSBase value, ByteArrayOutputStream out, int depth, Set<COSBase> path)
+            throws IOException {
+        COSBase actual = value instanceof COSObject object ? object.getObject() : value;
+        if (actual instanceof COSDictionary || actual instanceof COSArray) {
+            if (depth > MAX_CANONICAL_DEPTH || !path.add(actual)) {
+                // Never equal to anything else, so cycles and deep graphs are not shared
+                out.write(ascii("?" + unresolved++));
+                return;
+            }
+        }
+        if (actual instanceof COSStream stream) {
+            out.write(ascii("stream"));
+            writeCanonicalEntries(stream, out, depth, path, true);
+            try (InputStream decoded = stream.createInputStream()) {
+                out.write(sha256(decoded.readAllBytes()));
+            }
+        } else if (actual instanceof COSDictionary dictionary) {
+            writeCanonicalEntries(dictionary, out, depth, path, false);
+        } else if (actual instanceof COSArray array) {
+            out.write('[');
+            for (int i = 0; i < array.size(); i++) {
+                writeCanonical(array.get(i), out, depth + 1, path);
+                out.write(' ');
+            }
+            out.write(']');
+        } else {
+            writeSimple(actual == null ? COSNull.NULL : actual, out);
+        }
+        if (actual instanceof COSDictionary || actual instanceof COSArray) {
+            path.remove(actual);
+        }
+    }
+
+    private void writeCanonicalEntries(COSDictionary dictionary, ByteArrayOutputStream out, int depth,
+                                       Set<COSBase> path, boolean stream) throws IOException {
+        out.write(ascii("<<"));
+        List<COSName> names = new ArrayList<>(dictionary.keySet());
+        names.sort(Comparator.comparing(COSName::getName));
+        for (COSName name : names) {
+            if (stream && (COSName.LENGTH.equals(name) || COSName.FILTER.equals(name)
+                    || COSName.DECODE_PARMS.equals(name))) {
+                continue;
+            }
+            name.writePDF(out);
+            out.write(' ');
+            writeCanonical(dictionary.getItem(name), out, depth + 1, path);
+        }
+        out.write(ascii(">>"));
+    }
+
+    private static long[] offset(long base, ByteArrayOutputStream revision) {
+        return new long[] { 1, base + revision.size(), 0 };
+    }
+
+    private static byte[] deflate(byte[] data) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 2 + 64);
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(compressed)) {
+            deflater.write(data);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static byte[] sha256(byte[] data) throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not available", e);
+        }
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
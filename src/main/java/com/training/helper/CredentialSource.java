@@ -0,0 +1,48 @@
+package com.training.helper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+
+/**
+ * A signing key and its certificate chain, loaded once and shared by concurrent signing operations.
+ * Operations that use the key run through {@link #withKey}, which lets a source bound the number of
+ * concurrent operations and recover from a lost login.
+ */
+public interface CredentialSource extends Closeable {
+
+    /**
+     * An operation that uses the signing key.
+     *
+     * @param <T> The result type
+     */
+    @FunctionalInterface
+    interface KeyOperation<T> {
+        T apply(PrivateKey privateKey, Certificate[] certificateChain) throws Exception;
+    }
+
+    /**
+     * Returns the certificate chain, signing certificate first.
+     *
+     * @return The certificate chain
+     */
+    Certificate[] getCertificateChain();
+
+    /**
+     * Returns the current key handle. Use it to inspect the key type; sign through {@link #withKey}.
+     *
+     * @return The private key
+     */
+    PrivateKey getPrivateKey();
+
+    /**
+     * Runs an operation with the signing key.
+     *
+     * @param operation The operation
+     * @param <T> The result type
+     * @return The result of the operation
+     * @throws IOException If the operation fails
+     */
+    <T> T withKey(KeyOperation<T> operation) throws IOException;
+}
@@ -0,0 +1,205 @@
+package com.training.helper;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import com.training.model.EncodedImage;
+
+/**
+ * Encodes signer images as PDF image XObject data once, and embeds the encoded data into documents
+ * without decoding it again.
+ * JPEG images are embedded as they are with DCTDecode. Other formats are decoded with ImageIO, and their
+ * 8-bit samples and alpha channel are compressed with FlateDecode, the alpha channel becoming a soft mask.
+ */
+public class ImageXObjectEncoder {
+
+    private static final String FLATE_DECODE = COSName.FLATE_DECODE.getName();
+    private static final String DCT_DECODE = COSName.DCT_DECODE.getName();
+
+    /**
+     * Encodes an image as PDF image XObject data.
+     *
+     * @param id The id of the image
+     * @param image The image file, e.g. PNG, GIF or JPEG
+     * @param maxPixels The largest number of pixels the image may have
+     * @return The encoded image
+     * @throws IOException If the image format is not supported, the image is malformed or it has too many pixels
+     */
+    public static EncodedImage encode(String id, byte[] image, long maxPixels) throws IOException {
+        if (image.length > 3 && (image[0] & 0xff) == 0xff && (image[1] & 0xff) == 0xd8 && (image[2] & 0xff) == 0xff) {
+            EncodedImage jpeg = encodeJpeg(id, image);
+            checkPixels(jpeg.width(), jpeg.height(), maxPixels);
+            return jpeg;
+        }
+        BufferedImage decoded = decode(image, maxPixels);
+
+        int width = decoded.getWidth();
+        int height = decoded.getHeight();
+        boolean gray = decoded.getType() == BufferedImage.TYPE_BYTE_GRAY;
+        int components = gray ? 1 : 3;
+        long sampleCount = (long) width * height * components;
+        if (sampleCount > Integer.MAX_VALUE - 8) {
+            throw new IOException("Image of " + width + "x" + height + " pixels is too large");
+        }
+        byte[] samples = new byte[(int) sampleCount];
+        byte[] alpha = decoded.getColorModel().hasAlpha() ? new byte[width * height] : null;
+        boolean translucent = false;
+        int[] row = new int[width];
+        int sample = 0;
+        for (int y = 0; y < height; y++) {
+            if (gray) {
+                // getRGB would convert the linear gray samples to sRGB
+                decoded.getRaster().getSamples(0, y, width, 1, 0, row);
+                for (int x = 0; x < width; x++) {
+                    samples[sample++] = (byte) row[x];
+                }
+                continue;
+            }
+            decoded.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                int argb = row[x];
+                samples[sample++] = (byte) (argb >> 16);
+                samples[sample++] = (byte) (argb >> 8);
+                samples[sample++] = (byte) argb;
+                if (alpha != null) {
+                    alpha[y * width + x] = (byte) (argb >>> 24);
+                    translucent |= argb >>> 24 != 0xff;
+                }
+            }
+        }
+        return new EncodedImage(id, width, height, components, FLATE_DECODE, deflate(samples),
+                                translucent ? deflate(alpha) : null);
+    }
+
+    /**
+     * Reads the dimensions from the image header and decodes the image only if they are within the limit, so a
+     * small file declaring a huge image is rejected before its pixels are allocated.
+     */
+    private static BufferedImage decode(byte[] image, long maxPixels) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(image))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                checkPixels(reader.getWidth(0), reader.getHeight(0), maxPixels);
+                return reader.read(0);
+            } catch (RuntimeException e) {
+                // Image readers report some malformed data with unchecked exceptions
+                throw new IOException("Malformed image: " + e, e);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static void checkPixels(int width, int height, long maxPixels) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IOException("Image has no pixels");
+        }
+        if ((long) width * height > maxPixels) {
+            throw new IOException("Image of " + width + "x" + height + " pixels exceeds the limit of "
+                                  + maxPixels + " pixels");
+        }
+    }
+
+    /**
+     * Creates an image XObject in the document from the encoded data, with its soft mask if it has one.
+     *
+     * @param document The document to create the image in
+     * @param image The encoded image
+     * @return The image XObject
+     * @throws IOException If the streams cannot be created
+     */
+    public static PDImageXObject createImageXObject(PDDocument document, EncodedImage image) throws IOException {
+        COSStream stream = createImageStream(document, image.data(), image.filter(), image.width(), image.height(),
+                                             image.components() == 1 ? COSName.DEVICEGRAY : COSName.DEVICERGB);
+        if (image.alpha() != null) {
+            stream.setItem(COSName.SMASK, createImageStream(document, image.alpha(), FLATE_DECODE, image.width(),
+                                                            image.height(), COSName.DEVICEGRAY));
+        }
+        return new PDImageXObject(new PDStream(stream), null);
+    }
+
+    private static COSStream createImageStream(PDDocument document, byte[] data, String filter, int width, int height,
+                                               COSName colorSpace) throws IOException {
+        COSStream stream = document.getDocument().createCOSStream();
+        // Write the encoded data as it is, the filter only tells readers how to decode it
+        try (OutputStream out = stream.createRawOutputStream()) {
+            out.write(data);
+        }
+        stream.setItem(COSName.TYPE, COSName.XOBJECT);
+        stream.setItem(COSName.SUBTYPE, COSName.IMAGE);
+        stream.setItem(COSName.FILTER, COSName.getPDFName(filter));
+        stream.setInt(COSName.WIDTH, width);
+        stream.setInt(COSName.HEIGHT, height);
+        stream.setInt(COSName.BITS_PER_COMPONENT, 8);
+        stream.setItem(COSName.COLORSPACE, colorSpace);
+        return stream;
+    }
+
+    /**
+     * Reads the dimensions and components from the JPEG frame header, keeping the compressed data.
+     */
+    private static EncodedImage encodeJpeg(String id, byte[] jpeg) throws IOException {
+        int offset = 2;
+        while (offset + 9 < jpeg.length) {
+            if ((jpeg[offset] & 0xff) != 0xff) {
+                throw new IOException("Malformed JPEG image");
+            }
+            int marker = jpeg[offset + 1] & 0xff;
+            if (marker == 0xff) {
+                // Fill byte before a marker
+                offset++;
+                continue;
+            }
+            // SOF0 to SOF15, except DHT, JPG and DAC which share the range
+            if (marker >= 0xc0 && marker <= 0xcf && marker != 0xc4 && marker != 0xc8 && marker != 0xcc) {
+                int precision = jpeg[offset + 4] & 0xff;
+                int height = readUnsignedShort(jpeg, offset + 5);
+                int width = readUnsignedShort(jpeg, offset + 7);
+                int components = jpeg[offset + 9] & 0xff;
+                if (precision != 8 || (components != 1 && components != 3)) {
+                    throw new IOException("Unsupported JPEG image with " + components + " components of "
+                                          + precision + " bits");
+                }
+                return new EncodedImage(id, width, height, components, DCT_DECODE, jpeg, null);
+            }
+            offset += 2 + readUnsignedShort(jpeg, offset + 2);
+        }
+        throw new IOException("JPEG image has no frame header");
+    }
+
+    private static int readUnsignedShort(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) << 8 | bytes[offset + 1] & 0xff;
+    }
+
+    private static byte[] deflate(byte[] data) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(data.length / 4);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(baos, deflater)) {
+            out.write(data);
+        } finally {
+            deflater.end();
+        }
+        return baos.toByteArray();
+    }
+}
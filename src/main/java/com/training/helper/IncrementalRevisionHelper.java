@@ -0,0 +1,127 @@
+package com.training.helper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Helper class for working with the revision that an incremental save appends to a document.
+ * The signed document is always the original bytes followed by the revision, so the revision can be
+ * returned on its own and the full document assembled from the original file when it is needed.
+ */
+@Slf4j
+public class IncrementalRevisionHelper {
+
+    /**
+     * Output stream that discards the original bytes written by an incremental save and keeps the revision.
+     * When the hash of the original is known, the discarded bytes are digested and checked against it, so a
+     * revision is never returned for a different document than the one the caller appends it to.
+     */
+    public static class RevisionOutputStream extends OutputStream {
+        private final long originalLength;
+        private final String originalSha256;
+        private final MessageDigest prefixDigest;
+        private final ByteArrayOutputStream revision = new ByteArrayOutputStream();
+        private long skipped;
+
+        /**
+         * Creates a stream that only counts the original bytes. An incremental save copies the bytes it loaded
+         * unchanged, so this is safe when the caller appends the revision to the same immutable file it signed.
+         *
+         * @param originalLength The length of the document that was loaded and saved incrementally
+         */
+        public RevisionOutputStream(long originalLength) {
+            this(originalLength, null);
+        }
+
+        /**
+         * @param originalLength The length of the document that was loaded and saved incrementally
+         * @param originalSha256 The hex SHA-256 the original bytes must match, or null to only count them
+         */
+        public RevisionOutputStream(long originalLength, String originalSha256) {
+            this.originalLength = originalLength;
+            this.originalSha256 = originalSha256;
+            try {
+                this.prefixDigest = originalSha256 != null ? MessageDigest.getInstance("SHA-256") : null;
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+
+        @Override
+        public void write(int b) {
+            if (skipped < originalLength) {
+                skipped++;
+                if (prefixDigest != null) {
+                    prefixDigest.update((byte) b);
+                }
+            } else {
+                revision.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            int skip = (int) Math.min(len, originalLength - skipped);
+            skipped += skip;
+            if (prefixDigest != null && skip > 0) {
+                prefixDigest.update(b, off, skip);
+            }
+            if (len > skip) {
+                revision.write(b, off + skip, len - skip);
+            }
+        }
+
+        /**
+         * Returns the bytes written after the original document.
+         *
+         * @return The appended revision
+         * @throws IOException If fewer bytes than the original document were written, or they do not match its hash
+         */
+        public byte[] toRevision() throws IOException {
+            if (skipped < originalLength) {
+                throw new IOException("Incremental save wrote " + skipped + " bytes, expected at least " + originalLength);
+            }
+            if (prefixDigest != null && !HexFormat.of().formatHex(prefixDigest.digest()).equals(originalSha256)) {
+                throw new IOException("Incremental save did not start with the original document " + originalSha256);
+            }
+            return revision.toByteArray();
+        }
+    }
+
+    /**
+     * Writes the original file followed by the revision. The original bytes are sent with
+     * {@link FileChannel#transferTo}, which avoids copying them through the heap and is zero-copy
+     * when the target is a file or socket channel.
+     *
+     * @param original The original document
+     * @param revision The revision appended by the incremental save
+     * @param target The channel to write the full document to
+     * @throws IOException If the document cannot be written
+     */
+    public static void writeFullDocument(Path original, byte[] revision, WritableByteChannel target) throws IOException {
+        try (FileChannel source = FileChannel.open(original, StandardOpenOption.READ)) {
+            long size = source.size();
+            long position = 0;
+            while (position < size) {
+                position += source.transferTo(position, size - position, target);
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(revision);
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+        log.debug("Wrote full document of {} original and {} revision bytes", Files.size(original), revision.length);
+    }
+}
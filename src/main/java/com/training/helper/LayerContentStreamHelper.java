@@ -0,0 +1,169 @@
+package com.training.helper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSFloat;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdfwriter.ContentStreamWriter;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Helper class for generating per-page layer content streams without touching a PDDocument.
+ * The generated bytes only refer to resources by name, so pages can be generated in parallel
+ * and attached to the (non thread-safe) document afterwards.
+ */
+@Slf4j
+public class LayerContentStreamHelper {
+
+    /**
+     * Resource name of the Helvetica font used by the generated content.
+     */
+    public static final COSName FONT_NAME = COSName.getPDFName("EsignLayerF1");
+
+    /**
+     * Placeholder replaced with the 1-based page number.
+     */
+    public static final String PAGE_PLACEHOLDER = "{page}";
+
+    /**
+     * Placeholder replaced with the total number of pages.
+     */
+    public static final String PAGES_PLACEHOLDER = "{pages}";
+
+    private static final float FONT_SIZE = 12;
+
+    /**
+     * Number of pages a fork-join leaf generates before it stops splitting.
+     */
+    private static final int PAGES_PER_TASK = 8;
+
+    /**
+     * Text to draw into an optional content layer.
+     *
+     * @param layerName The name of the layer (OCG)
+     * @param text The text, which may contain {@link #PAGE_PLACEHOLDER} and {@link #PAGES_PLACEHOLDER}
+     * @param x The x-coordinate
+     * @param y The y-coordinate
+     */
+    public record LayerText(String layerName, String text, float x, float y) {
+    }
+
+    /**
+     * Returns the properties resource name under which the given layer is referenced.
+     *
+     * @param layerName The name of the layer
+     * @return The resource name used in the marked content operators
+     */
+    public static COSName propertiesName(String layerName) {
+        return COSName.getPDFName("EsignLayer_" + layerName);
+    }
+
+    /**
+     * Replaces the page placeholders in a layer text.
+     *
+     * @param text The text containing optional placeholders
+     * @param pageIndex The 0-based page index
+     * @param pageCount The number of pages in the document
+     * @return The text for the given page
+     */
+    public static String resolveText(String text, int pageIndex, int pageCount) {
+        return text
+            .replace(PAGE_PLACEHOLDER, Integer.toString(pageIndex + 1))
+            .replace(PAGES_PLACEHOLDER, Integer.toString(pageCount));
+    }
+
+    /**
+     * Generates the Flate-encoded content stream for every page in parallel on the common fork-join pool.
+     * Each stream starts with a {@code Q} so that it can follow a {@code q}-prefixed copy of the existing content.
+     *
+     * @param pageCount The number of pages in the document
+     * @param layers The layer texts to draw on each page
+     * @return The encoded content stream bytes, indexed by 0-based page number
+     */
+    public static byte[][] generatePageContents(int pageCount, List<LayerText> layers) {
+        byte[][] contents = new byte[pageCount][];
+        ForkJoinPool.commonPool().invoke(new GenerateTask(contents, layers, 0, pageCount));
+        log.debug("Generated layer content for {} pages", pageCount);
+        return contents;
+    }
+
+    /**
+     * Generates the Flate-encoded content stream for a single page.
+     *
+     * @param font The font used to encode the text; must correspond to {@link #FONT_NAME}
+     * @param pageIndex The 0-based page index
+     * @param pageCount The number of pages in the document
+     * @param layers The layer texts to draw on the page
+     * @return The encoded content stream bytes
+     * @throws IOException If the text cannot be encoded
+     */
+    public static byte[] generatePageContent(PDFont font, int pageIndex, int pageCount,
+                                             List<LayerText> layers) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(baos)) {
+            ContentStreamWriter writer = new ContentStreamWriter(out);
+            // Restore the graphics state saved before the existing content
+            writer.writeTokens(Operator.getOperator("Q"));
+            for (LayerText layer : layers) {
+                String text = resolveText(layer.text(), pageIndex, pageCount);
+
+                writer.writeTokens(COSName.OC, propertiesName(layer.layerName()), Operator.getOperator("BDC"));
+                writer.writeTokens(FONT_NAME, new COSFloat(FONT_SIZE), Operator.getOperator("Tf"));
+                writer.writeTokens(Operator.getOperator("BT"));
+                writer.writeTokens(new COSFloat(layer.x()), new COSFloat(layer.y()), Operator.getOperator("Td"));
+                writer.writeTokens(new COSString(font.encode(text)), Operator.getOperator("Tj"));
+                writer.writeTokens(Operator.getOperator("ET"));
+                writer.writeTokens(Operator.getOperator("EMC"));
+            }
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Splits the page range until it is small enough to generate sequentially.
+     */
+    private static final class GenerateTask extends RecursiveAction {
+        private final byte[][] contents;
+        private final List<LayerText> layers;
+        private final int from;
+        private final int to;
+
+        private GenerateTask(byte[][] contents, List<LayerText> layers, int from, int to) {
+            this.contents = contents;
+            this.layers = layers;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PAGES_PER_TASK) {
+                // Fonts are not documented as thread-safe, so each leaf encodes with its own instance
+                PDFont font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+                try {
+                    for (int i = from; i < to; i++) {
+                        contents[i] = generatePageContent(font, i, contents.length, layers);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new GenerateTask(contents, layers, from, middle),
+                      new GenerateTask(contents, layers, middle, to));
+        }
+    }
+}
@@ -0,0 +1,632 @@
+package com.training.helper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSBoolean;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSFloat;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNull;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSObjectKey;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.cos.ICOSParser;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.io.RandomAccessReadView;
+import org.apache.pdfbox.io.RandomAccessStreamCache;
+
+/**
+ * Resolves the objects of a PDF one at a time through its cross-reference data, without loading the document.
+ * Only the newest cross-reference section is read up front; older sections are read when an object is not found
+ * in the newer ones. References in the resolved objects are {@link COSObject}s that resolve through this class
+ * when dereferenced, so the object graph is only parsed as far as it is walked. Streams keep their data in the
+ * source and are decoded by PDFBox when read.
+ */
+class LazyObjectResolver implements ICOSParser, Closeable {
+
+    private static final int TAIL_SIZE = 1024;
+
+    private static final int FREE = 0;
+    private static final int OFFSET = 1;
+    private static final int COMPRESSED = 2;
+
+    private final RandomAccessRead source;
+    private final RandomAccessStreamCache streamCache;
+    private final long startXref;
+    private final boolean xrefStream;
+    private final COSDictionary trailer;
+
+    /**
+     * Cross-reference entries of the sections read so far: type, offset or object stream number, index.
+     */
+    private final Map<Long, long[]> entries = new HashMap<>();
+    private final Deque<Long> unreadSections = new ArrayDeque<>();
+    private final Set<Long> readSections = new HashSet<>();
+    private final Map<Long, COSBase> resolved = new HashMap<>();
+    private final Map<Long, ObjectStream> objectStreams = new HashMap<>();
+
+    private record ObjectStream(byte[] data, Map<Long, Integer> offsets) {
+    }
+
+    /**
+     * Reads the trailer and the newest cross-reference section of a document.
+     *
+     * @param source The document; read through views and never closed by the resolver
+     * @throws IOException If the document has no readable cross-reference data at its end
+     */
+    LazyObjectResolver(RandomAccessRead source) throws IOException {
+        this.source = source;
+        this.streamCache = org.apache.pdfbox.io.IOUtils.createMemoryOnlyStreamCache().create();
+        this.startXref = readStartXref();
+        this.xrefStream = !isXrefTable(startXref);
+        this.trailer = readSection(startXref);
+    }
+
+    /**
+     * Returns the trailer of the newest revision. For a cross-reference stream this is the stream dictionary.
+     */
+    COSDictionary getTrailer() {
+        return trailer;
+    }
+
+    /**
+     * Returns the offset of the newest cross-reference section.
+     */
+    long getStartXref() {
+        return startXref;
+    }
+
+    /**
+     * Returns whether the newest cross-reference section is a stream rather than a table.
+     */
+    boolean isXrefStream() {
+        return xrefStream;
+    }
+
+    /**
+     * Returns the number of objects parsed so far, including the objects of decoded object streams.
+     */
+    int getResolvedObjects() {
+        return resolved.size();
+    }
+
+    /**
+     * Returns the number of cross-reference sections read so far.
+     */
+    int getReadSections() {
+        return readSections.size();
+    }
+
+    /**
+     * Returns the object with the given number, parsing it on first use.
+     *
+     * @param number The object number
+     * @return The object, or {@link COSNull#NULL} if it is free or missing
+     * @throws IOException If the object cannot be parsed
+     */
+    COSBase resolve(long number) throws IOException {
+        COSBase object = resolved.get(number);
+        if (object != null) {
+            return object;
+        }
+        long[] entry = entry(number);
+        if (entry == null || entry[0] == FREE) {
+            object = COSNull.NULL;
+        } else if (entry[0] == OFFSET) {
+            object = parseIndirectObject(number, entry[1]);
+        } else {
+            object = parseCompressedObject(number, entry[1]);
+        }
+        resolved.put(number, object);
+        return object;
+    }
+
+    @Override
+    public COSBase dereferenceCOSObject(COSObject object) throws IOException {
+        return resolve(object.getKey().getNumber());
+    }
+
+    @Override
+    public RandomAccessReadView createRandomAccessReadView(long startPosition, long streamLength) throws IOException {
+        return source.createView(startPosition, streamLength);
+    }
+
+    @Override
+    public void close() throws IOException {
+        streamCache.close();
+    }
+
+    private long[] entry(long number) throws IOException {
+        long[] entry = entries.get(number);
+        while (entry == null && !unreadSections.isEmpty()) {
+            readSection(unreadSections.poll());
+            entry = entries.get(number);
+        }
+        return entry;
+    }
+
+    private long readStartXref() throws IOException {
+        long length = source.length();
+        int size = (int) Math.min(length, TAIL_SIZE);
+        byte[] tail = new byte[size];
+        source.seek(length - size);
+        readFully(source, tail);
+        String text = new String(tail, StandardCharsets.ISO_8859_1);
+        int index = text.lastIndexOf("startxref");
+        if (index < 0) {
+            throw new IOException("No startxref found at the end of the document");
+        }
+        Tokenizer tokenizer = new Tokenizer(new RandomAccessReadBuffer(tail));
+        tokenizer.in.seek(index + "startxref".length());
+        return tokenizer.readLong();
+    }
+
+    private boolean isXrefTable(long offset) throws IOException {
+        source.seek(offset);
+        Tokenizer tokenizer = new Tokenizer(source);
+        tokenizer.skipWhitespace();
+        return "xref".equals(tokenizer.readKeyword());
+    }
+
+    /**
+     * Reads a cross-reference section and queues the older sections it points to. Entries of newer
+     * sections take precedence, so entries already known are kept.
+     */
+    private COSDictionary readSection(long offset) throws IOException {
+        if (!readSections.add(offset)) {
+            throw new IOException("Cross-reference sections form a loop at offset " + offset);
+        }
+        COSDictionary sectionTrailer = isXrefTable(offset) ? readXrefTable(offset) : readXrefStream(offset);
+        // A hybrid file lists its compressed objects in a stream that belongs to the same section
+        long xrefStm = sectionTrailer.getLong(COSName.XREF_STM, -1);
+        if (xrefStm > 0 && !readSections.contains(xrefStm)) {
+            readSection(xrefStm);
+        }
+        long prev = sectionTrailer.getLong(COSName.PREV, -1);
+        if (prev > 0 && !readSections.contains(prev)) {
+            unreadSections.add(prev);
+        }
+        return sectionTrailer;
+    }
+
+    private COSDictionary readXrefTable(long offset) throws IOException {
+        source.seek(offset);
+        Tokenizer tokenizer = new Tokenizer(source);
+        tokenizer.skipWhitespace();
+        tokenizer.readKeyword();
+        while (true) {
+            tokenizer.skipWhitespace();
+            if (!Tokenizer.isDigit(source.peek())) {
+                break;
+            }
+            long first = tokenizer.readLong();
+            long count = tokenizer.readLong();
+            for (long i = 0; i < count; i++) {
+                long position = tokenizer.readLong();
+                long generation = tokenizer.readLong();
+                tokenizer.skipWhitespace();
+                String type = tokenizer.readKeyword();
+                long[] entry = "n".equals(type) ? new long[] { OFFSET, position, generation }
+                    : new long[] { FREE, 0, generation };
+                entries.putIfAbsent(first + i, entry);
+            }
+        }
+        if (!"trailer".equals(tokenizer.readKeyword())) {
+            throw new IOException("Cross-reference table at offset " + offset + " has no trailer");
+        }
+        tokenizer.skipWhitespace();
+        return (COSDictionary) tokenizer.readValue();
+    }
+
+    private COSDictionary readXrefStream(long offset) throws IOException {
+        COSBase object = parseIndirectObject(-1, offset);
+        if (!(object instanceof COSStream stream) || !COSName.XREF.equals(stream.getCOSName(COSName.TYPE))) {
+            throw new IOException("No cross-reference stream at offset " + offset);
+        }
+        COSArray widthArray = stream.getCOSArray(COSName.W);
+        int[] widths = new int[3];
+        for (int i = 0; i < 3; i++) {
+            widths[i] = ((COSInteger) widthArray.getObject(i)).intValue();
+        }
+        COSArray index = stream.getCOSArray(COSName.INDEX);
+        long[] ranges = index == null ? new long[] { 0, stream.getLong(COSName.SIZE) } : new long[index.size()];
+        if (index != null) {
+            for (int i = 0; i < ranges.length; i++) {
+                ranges[i] = ((COSInteger) index.getObject(i)).longValue();
+            }
+        }
+        byte[] rows;
+        try (InputStream in = stream.createInputStream()) {
+            rows = in.readAllBytes();
+        }
+        int rowLength = widths[0] + widths[1] + widths[2];
+        int row = 0;
+        for (int r = 0; r + 1 < ranges.length; r += 2) {
+            for (long i = 0; i < ranges[r + 1] && (row + 1) * rowLength <= rows.length; i++, row++) {
+                int position = row * rowLength;
+                long type = widths[0] == 0 ? OFFSET : field(rows, position, widths[0]);
+                long second = field(rows, position + widths[0], widths[1]);
+                long third = field(rows, position + widths[0] + widths[1], widths[2]);
+                if (type <= COMPRESSED) {
+                    entries.putIfAbsent(ranges[r] + i, new long[] { type, second, third });
+                }
+            }
+        }
+        stream.removeItem(COSName.LENGTH);
+        return stream;
+    }
+
+    private static long field(byte[] rows, int position, int width) {
+        long value = 0;
+        for (int i = 0; i < width; i++) {
+            value = (value << 8) | (rows[position + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private COSBase parseIndirectObject(long number, long offset) throws IOException {
+        source.seek(offset);
+        Tokenizer tokenizer = new Tokenizer(source);
+        long actual = tokenizer.readLong();
+        tokenizer.readLong();
+        tokenizer.skipWhitespace();
+        if (!"obj".equals(tokenizer.readKeyword()) || (number >= 0 && actual != number)) {
+            throw new IOException("Object " + number + " not found at offset " + offset);
+        }
+        tokenizer.skipWhitespace();
+        COSBase value = tokenizer.readValue();
+        if (value instanceof COSDictionary dictionary) {
+            tokenizer.skipWhitespace();
+            long afterDictionary = source.getPosition();
+            if ("stream".equals(tokenizer.readKeyword())) {
+                return createStream(dictionary);
+            }
+            source.seek(afterDictionary);
+        }
+        return value;
+    }
+
+    /**
+     * Creates a stream over the data following the stream keyword, at the current position of the source.
+     */
+    private COSStream createStream(COSDictionary dictionary) throws IOException {
+        // The keyword is followed by CRLF or LF before the data
+        int next = source.read();
+        if (next == '\r' && source.peek() == '\n') {
+            source.read();
+        }
+        long dataStart = source.getPosition();
+        COSBase lengthValue = dictionary.getItem(COSName.LENGTH);
+        if (lengthValue instanceof COSObject reference) {
+            lengthValue = resolve(reference.getKey().getNumber());
+        }
+        if (!(lengthValue instanceof COSInteger length)) {
+            throw new IOException("Stream at offset " + dataStart + " has no valid /Length");
+        }
+        COSStream stream = new COSStream(streamCache, source.createView(dataStart, length.longValue()));
+        for (Map.Entry<COSName, COSBase> entry : dictionary.entrySet()) {
+            stream.setItem(entry.getKey(), entry.getValue());
+        }
+        stream.setItem(COSName.LENGTH, length);
+        return stream;
+    }
+
+    private COSBase parseCompressedObject(long number, long streamNumber) throws IOException {
+        ObjectStream objectStream = objectStreams.get(streamNumber);
+        if (objectStream == null) {
+            objectStream = readObjectStream(streamNumber);
+            objectStreams.put(streamNumber, objectStream);
+        }
+        Integer position = objectStream.offsets().get(number);
+        if (position == null) {
+            throw new IOException("Object " + number + " not found in object stream " + streamNumber);
+        }
+        RandomAccessReadBuffer data = new RandomAccessReadBuffer(objectStream.data());
+        data.seek(position);
+        Tokenizer tokenizer = new Tokenizer(data);
+        tokenizer.skipWhitespace();
+        return tokenizer.readValue();
+    }
+
+    private ObjectStream readObjectStream(long streamNumber) throws IOException {
+        if (!(resolve(streamNumber) instanceof COSStream stream)) {
+            throw new IOException("Object stream " + streamNumber + " is not a stream");
+        }
+        byte[] data;
+        try (InputStream in = stream.createInputStream()) {
+            data = in.readAllBytes();
+        }
+        int count = stream.getInt(COSName.N);
+        int first = stream.getInt(COSName.FIRST);
+        Tokenizer header = new Tokenizer(new RandomAccessReadBuffer(data));
+        Map<Long, Integer> offsets = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            long objectNumber = header.readLong();
+            offsets.put(objectNumber, first + (int) header.readLong());
+        }
+        return new ObjectStream(data, offsets);
+    }
+
+    private static void readFully(RandomAccessRead in, byte[] buffer) throws IOException {
+        int read = 0;
+        while (read < buffer.length) {
+            int count = in.read(buffer, read, buffer.length - read);
+            if (count < 0) {
+                throw new IOException("Unexpected end of document");
+            }
+            read += count;
+        }
+    }
+
+    /**
+     * Reads PDF values from a source. Dictionaries and arrays are marked direct, references become
+     * {@link COSObject}s that resolve through the enclosing resolver.
+     */
+    private final class Tokenizer {
+
+        private final RandomAccessRead in;
+
+        private Tokenizer(RandomAccessRead in) {
+            this.in = in;
+        }
+
+        COSBase readValue() throws IOException {
+            skipWhitespace();
+            int c = in.peek();
+            switch (c) {
+                case '/':
+                    return readName();
+                case '(':
+                    return readLiteralString();
+                case '[':
+                    return readArray();
+                case '<':
+                    in.read();
+                    if (in.peek() == '<') {
+                        in.read();
+                        return readDictionary();
+                    }
+                    return readHexString();
+                default:
+                    break;
+            }
+            if (isDigit(c) || c == '+' || c == '-' || c == '.') {
+                return readNumberOrReference();
+            }
+            String keyword = readKeyword();
+            switch (keyword) {
+                case "true":
+                    return COSBoolean.TRUE;
+                case "false":
+                    return COSBoolean.FALSE;
+                case "null":
+                    return COSNull.NULL;
+                default:
+                    throw new IOException("Unexpected token '" + keyword + "' at offset " + in.getPosition());
+            }
+        }
+
+        private COSDictionary readDictionary() throws IOException {
+            COSDictionary dictionary = new COSDictionary();
+            dictionary.setDirect(true);
+            while (true) {
+                skipWhitespace();
+                int c = in.peek();
+                if (c == '>') {
+                    in.read();
+                    in.read();
+                    return dictionary;
+                }
+                if (c != '/') {
+                    throw new IOException("Expected a name in dictionary at offset " + in.getPosition());
+                }
+                COSName key = readName();
+                COSBase value = readValue();
+                if (!(value instanceof COSNull)) {
+                    dictionary.setItem(key, value);
+                }
+            }
+        }
+
+        private COSArray readArray() throws IOException {
+            in.read();
+            COSArray array = new COSArray();
+            array.setDirect(true);
+            while (true) {
+                skipWhitespace();
+                if (in.peek() == ']') {
+                    in.read();
+                    return array;
+                }
+                array.add(readValue());
+            }
+        }
+
+        private COSBase readNumberOrReference() throws IOException {
+            String number = readNumberText();
+            if (number.indexOf('.') >= 0) {
+                return new COSFloat(number);
+            }
+            long value = Long.parseLong(number.startsWith("+") ? number.substring(1) : number);
+            if (value < 0 || number.startsWith("+")) {
+                return COSInteger.get(value);
+            }
+            // A reference is an object number, a generation number and the keyword R
+            long position = in.getPosition();
+            skipWhitespace();
+            if (isDigit(in.peek())) {
+                String generation = readNumberText();
+                skipWhitespace();
+                if (in.peek() == 'R' && generation.indexOf('.') < 0) {
+                    in.read();
+                    return new COSObject(new COSObjectKey(value, Integer.parseInt(generation)), LazyObjectResolver.this);
+                }
+            }
+            in.seek(position);
+            return COSInteger.get(value);
+        }
+
+        private String readNumberText() throws IOException {
+            StringBuilder text = new StringBuilder();
+            int c = in.peek();
+            while (isDigit(c) || c == '+' || c == '-' || c == '.') {
+                text.append((char) in.read());
+                c = in.peek();
+            }
+            return text.toString();
+        }
+
+        long readLong() throws IOException {
+            skipWhitespace();
+            String text = readNumberText();
+            if (text.isEmpty()) {
+                throw new IOException("Expected a number at offset " + in.getPosition());
+            }
+            return Long.parseLong(text);
+        }
+
+        private COSName readName() throws IOException {
+            in.read();
+            ByteArrayOutputStream name = new ByteArrayOutputStream();
+            int c = in.peek();
+            while (c >= 0 && !isWhitespace(c) && !isDelimiter(c)) {
+                in.read();
+                if (c == '#') {
+                    int high = Character.digit(in.read(), 16);
+                    int low = Character.digit(in.read(), 16);
+                    name.write(high * 16 + low);
+                } else {
+                    name.write(c);
+                }
+                c = in.peek();
+            }
+            byte[] bytes = name.toByteArray();
+            try {
+                return COSName.getPDFName(StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes)).toString());
+            } catch (CharacterCodingException e) {
+                return COSName.getPDFName(new String(bytes, StandardCharsets.ISO_8859_1));
+            }
+        }
+
+        private COSString readLiteralString() throws IOException {
+            in.read();
+            ByteArrayOutputStream text = new ByteArrayOutputStream();
+            int depth = 1;
+            while (true) {
+                int c = in.read();
+                if (c < 0) {
+                    throw new IOException("Unterminated string");
+                }
+                if (c == '(') {
+                    depth++;
+                } else if (c == ')' && --depth == 0) {
+                    return new COSString(text.toByteArray());
+                } else if (c == '\\') {
+                    c = in.read();
+                    switch (c) {
+                        case 'n' -> c = '\n';
+                        case 'r' -> c = '\r';
+                        case 't' -> c = '\t';
+                        case 'b' -> c = '\b';
+                        case 'f' -> c = '\f';
+                        case '\r', '\n' -> {
+                            // A backslash at the end of a line continues the string on the next line
+                            if (c == '\r' && in.peek() == '\n') {
+                                in.read();
+                            }
+                            continue;
+                        }
+                        default -> {
+                            if (c >= '0' && c <= '7') {
+                                int octal = c - '0';
+                                for (int i = 0; i < 2 && in.peek() >= '0' && in.peek() <= '7'; i++) {
+                                    octal = octal * 8 + (in.read() - '0');
+                                }
+                                c = octal & 0xFF;
+                            }
+                        }
+                    }
+                }
+                text.write(c);
+            }
+        }
+
+        private COSString readHexString() throws IOException {
+            StringBuilder hex = new StringBuilder();
+            int c;
+            while ((c = in.read()) != '>') {
+                if (c < 0) {
+                    throw new IOException("Unterminated hex string");
+                }
+                if (Character.digit(c, 16) >= 0) {
+                    hex.append((char) c);
+                }
+            }
+            if (hex.length() % 2 != 0) {
+                hex.append('0');
+            }
+            byte[] bytes = new byte[hex.length() / 2];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+            }
+            return new COSString(bytes, true);
+        }
+
+        String readKeyword() throws IOException {
+            StringBuilder keyword = new StringBuilder();
+            int c = in.peek();
+            while (c >= 0 && !isWhitespace(c) && !isDelimiter(c)) {
+                keyword.append((char) in.read());
+                c = in.peek();
+            }
+            return keyword.toString();
+        }
+
+        void skipWhitespace() throws IOException {
+            int c = in.peek();
+            while (c >= 0) {
+                if (c == '%') {
+                    while (c >= 0 && c != '\r' && c != '\n') {
+                        in.read();
+                        c = in.peek();
+                    }
+                } else if (isWhitespace(c)) {
+                    in.read();
+                    c = in.peek();
+                } else {
+                    return;
+                }
+            }
+        }
+
+        static boolean isDigit(int c) {
+            return c >= '0' && c <= '9';
+        }
+
+        private static boolean isWhitespace(int c) {
+            return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f' || c == 0;
+        }
+
+        private static boolean isDelimiter(int c) {
+            return c == '(' || c == ')' || c == '<' || c == '>' || c == '[' || c == ']' || c == '{' || c == '}'
+                || c == '/' || c == '%';
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.training.helper;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.training.model.MemoryFootprint;
+
+/**
+ * Estimates the heap a signing or stamping request needs before the document is parsed, from its size and
+ * the trailer at its end.
+ * A document in memory is held as the request bytes, the parser's copy and the output, and every parsed
+ * object costs about a kilobyte of COS objects. Object streams are decompressed into memory as well.
+ * Read from a file, only the parsed objects and a few buffers stay on the heap.
+ */
+public class MemoryFootprintEstimator {
+
+    /**
+     * Heap taken by a request regardless of its document, e.g. the appearance, the CMS signature and buffers.
+     */
+    static final long BASE_BYTES = 4L * 1024 * 1024;
+
+    static final long BYTES_PER_OBJECT = 1024;
+
+    /**
+     * Object density assumed when only the size is known, a typical value for scanned and generated documents.
+     */
+    static final long BYTES_PER_ASSUMED_OBJECT = 2048;
+
+    private static final int TAIL_SIZE = 4096;
+
+    private static final Pattern SIZE = Pattern.compile("/Size\\s+(\\d+)");
+    private static final Pattern XREF_STREAM = Pattern.compile("/Type\\s*/XRef\\b");
+
+    /**
+     * Estimates the footprint of a document file from its size and trailer.
+     *
+     * @param pdf The document file
+     * @return The estimated footprint
+     * @throws IOException If the file cannot be read
+     */
+    public static MemoryFootprint estimate(Path pdf) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(pdf.toFile(), "r")) {
+            long size = file.length();
+            byte[] tail = new byte[(int) Math.min(size, TAIL_SIZE)];
+            file.seek(size - tail.length);
+            file.readFully(tail);
+            return estimate(size, tail, 0, tail.length);
+        }
+    }
+
+    /**
+     * Estimates the footprint of a document in memory from its size and trailer.
+     *
+     * @param pdf The document bytes
+     * @return The estimated footprint
+     */
+    public static MemoryFootprint estimate(byte[] pdf) {
+        int length = Math.min(pdf.length, TAIL_SIZE);
+        return estimate(pdf.length, pdf, pdf.length - length, length);
+    }
+
+    /**
+     * Estimates the footprint of a document that has not been received yet from its size alone.
+     *
+     * @param size The size of the document in bytes
+     * @return The estimated footprint
+     */
+    public static MemoryFootprint estimate(long size) {
+        return footprint(size, size / BYTES_PER_ASSUMED_OBJECT, false);
+    }
+
+    private static MemoryFootprint estimate(long size, byte[] buffer, int offset, int length) {
+        String tail = new String(buffer, offset, length, StandardCharsets.ISO_8859_1);
+        // The last trailer or cross-reference stream holds the size of the whole object table
+        long objects = -1;
+        Matcher matcher = SIZE.matcher(tail);
+        while (matcher.find()) {
+            try {
+                objects = Long.parseLong(matcher.group(1));
+            } catch (NumberFormatException e) {
+                // A size beyond a long is not a real object count, so estimate from the document size instead
+                objects = -1;
+            }
+        }
+        if (objects < 0) {
+            return estimate(size);
+        }
+        return footprint(size, objects, XREF_STREAM.matcher(tail).find());
+    }
+
+    private static MemoryFootprint footprint(long size, long objects, boolean objectStreams) {
+        // A hostile trailer can claim any object count, so the sums saturate instead of overflowing
+        long diskBacked = saturatedAdd(BASE_BYTES, saturatedMultiply(objects, BYTES_PER_OBJECT));
+        // The request bytes, the parser's copy and the output each hold about the whole document
+        long inMemory = saturatedAdd(diskBacked, saturatedMultiply(3, size));
+        if (objectStreams) {
+            // Decompressed object streams are cached while the document is open
+            inMemory = saturatedAdd(inMemory, size / 2);
+        }
+        return new MemoryFootprint(size, objects, inMemory, diskBacked);
+    }
+
+    private static long saturatedMultiply(long a, long b) {
+        try {
+            return Math.multiplyExact(a, b);
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        try {
+            return Math.addExact(a, b);
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+}
@@ -1,17 +1,34 @@
 package com.training.helper;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObjectKey;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationWidget;
 import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceDictionary;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceStream;
 import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
 import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
+import org.apache.pdfbox.pdmodel.interactive.form.PDField;
 import org.apache.pdfbox.pdmodel.interactive.form.PDSignatureField;
 
+import com.training.model.ProvisionedField;
+import com.training.model.SignaturePlacement;
+
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -20,6 +37,10 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class PDFSignatureFieldHelper {
 
+    private static final List<COSName> WIDGET_KEYS = List.of(
+        COSName.TYPE, COSName.SUBTYPE, COSName.RECT, COSName.P, COSName.F, COSName.AP, COSName.AS, COSName.MK,
+        COSName.BS, COSName.BORDER, COSName.NM, COSName.M, COSName.STRUCT_PARENT);
+
     /**
      * Creates a signature field in the document.
      * 
@@ -41,7 +62,7 @@ public class PDFSignatureFieldHelper {
         
         // Create a signature field
         PDSignatureField signatureField = new PDSignatureField(acroForm);
-        signatureField.setPartialName("Signature" + System.currentTimeMillis());
+        signatureField.setPartialName(uniqueFieldName(acroForm));
         
         // Set the signature to the field
         signatureField.setValue(signature);
@@ -74,6 +95,95 @@ public class PDFSignatureFieldHelper {
         return signatureField;
     }
     
+    /**
+     * Creates an empty signature field with a widget on a page, to be filled when the document is signed.
+     * The AcroForm is flagged as holding signatures that are appended, so that signing only has to update the field.
+     *
+     * @param document The PDF document
+     * @param acroForm The AcroForm of the document
+     * @param name The name of the field
+     * @param placement Where to show the widget of the field
+     * @return The created signature field
+     * @throws IOException If the form already has a field with the name, or the page does not exist
+     */
+    public static PDSignatureField createEmptySignatureField(PDDocument document, PDAcroForm acroForm, String name,
+                                                             SignaturePlacement placement) throws IOException {
+        if (name == null || name.isBlank() || name.contains(".")) {
+            throw new IOException("Invalid signature field name: " + name);
+        }
+        if (fieldNames(acroForm).contains(name)) {
+            throw new IOException("The form already has a field named " + name);
+        }
+        if (placement.page() < 1 || placement.page() > document.getNumberOfPages()) {
+            throw new IOException("Invalid page number: " + placement.page());
+        }
+
+        PDSignatureField signatureField = new PDSignatureField(acroForm);
+        signatureField.setPartialName(name);
+        PDAnnotationWidget widget = signatureField.getWidgets().get(0);
+        widget.setRectangle(placement.toRectangle());
+        PDPage page = document.getPage(placement.page() - 1);
+        widget.setPage(page);
+        widget.setPrinted(true);
+        page.getAnnotations().add(widget);
+        acroForm.getFields().add(signatureField);
+        acroForm.setSignaturesExist(true);
+        acroForm.setAppendOnly(true);
+        log.debug("Provisioned signature field {} on page {}", name, placement.page());
+        return signatureField;
+    }
+
+    /**
+     * Indexes the empty signature fields of a loaded document by name. Only fields merged with their single widget
+     * are indexed, since filling them updates one object.
+     *
+     * @param document The document, loaded from a file so that its objects have keys
+     * @return The fields by name, in the order of the form
+     */
+    public static Map<String, ProvisionedField> indexEmptySignatureFields(PDDocument document) {
+        Map<String, ProvisionedField> fields = new LinkedHashMap<>();
+        PDAcroForm acroForm = document.getDocumentCatalog().getAcroForm(null);
+        if (acroForm == null) {
+            return fields;
+        }
+        for (PDField field : acroForm.getFields()) {
+            COSObjectKey key = field.getCOSObject().getKey();
+            if (field instanceof PDSignatureField signatureField && signatureField.getValue() == null && key != null
+                    && signatureField.getWidgets().size() == 1
+                    && signatureField.getWidgets().get(0).getCOSObject() == field.getCOSObject()) {
+                PDAnnotationWidget widget = signatureField.getWidgets().get(0);
+                int pageIndex = widget.getPage() != null ? document.getPages().indexOf(widget.getPage()) : -1;
+                PDRectangle rect = widget.getRectangle();
+                if (pageIndex >= 0 && rect != null) {
+                    fields.put(field.getPartialName(), new ProvisionedField(field.getPartialName(), key.getNumber(),
+                        key.getGeneration(), new SignaturePlacement(pageIndex + 1, rect.getLowerLeftX(),
+                            rect.getLowerLeftY(), rect.getWidth(), rect.getHeight())));
+                }
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Looks up a provisioned field in a loaded document by its object key, and checks that it is still empty.
+     *
+     * @param document The document the field was provisioned on
+     * @param provisioned The indexed field
+     * @return The dictionary of the field, merged with its widget
+     * @throws IOException If the object is not the empty signature field of that name
+     */
+    public static COSDictionary findEmptySignatureField(PDDocument document, ProvisionedField provisioned)
+            throws IOException {
+        COSBase object = document.getDocument()
+            .getObjectFromPool(new COSObjectKey(provisioned.objectNumber(), provisioned.generation())).getObject();
+        if (!(object instanceof COSDictionary dictionary) || !COSName.SIG.equals(dictionary.getCOSName(COSName.FT))
+                || !provisioned.name().equals(dictionary.getString(COSName.T))
+                || dictionary.getDictionaryObject(COSName.V) != null) {
+            throw new IOException("The document has no empty signature field named " + provisioned.name());
+        }
+        return dictionary;
+    }
+
     /**
      * Sets the appearance of a signature field.
      * 
@@ -93,6 +203,116 @@ public class PDFSignatureFieldHelper {
         log.info("Signature field appearance set successfully");
     }
     
+    /**
+     * Shows a signature that was added with a visible appearance on more pages. The field is split from its
+     * widget, and a widget is added at each placement referencing the same normal appearance stream, so the
+     * appearance is written once however many pages show it.
+     *
+     * @param document The document the signature was added to
+     * @param signature The signature added to the document
+     * @param placements Where else to show the signature, with the same size as the signature widget
+     * @throws IOException If the signature has no field with an appearance, or a page does not exist
+     */
+    public static void addSharedWidgets(PDDocument document, PDSignature signature,
+                                        List<SignaturePlacement> placements) throws IOException {
+        if (placements.isEmpty()) {
+            return;
+        }
+        PDSignatureField signatureField = null;
+        for (PDSignatureField field : document.getSignatureFields()) {
+            if (field.getCOSObject().getDictionaryObject(COSName.V) == signature.getCOSObject()) {
+                signatureField = field;
+            }
+        }
+        if (signatureField == null || signatureField.getWidgets().size() != 1
+                || signatureField.getWidgets().get(0).getNormalAppearanceStream() == null) {
+            throw new IOException("The signature has no field with an appearance to share");
+        }
+
+        List<PDAnnotationWidget> widgets = new ArrayList<>();
+        PDAnnotationWidget first = signatureField.getWidgets().get(0);
+        COSDictionary fieldDictionary = signatureField.getCOSObject();
+        if (first.getCOSObject() == fieldDictionary) {
+            // A merged field cannot have kids, so its widget entries move to a widget of their own
+            first = new PDAnnotationWidget();
+            for (COSName key : WIDGET_KEYS) {
+                COSBase value = fieldDictionary.getItem(key);
+                if (value != null) {
+                    first.getCOSObject().setItem(key, value);
+                    fieldDictionary.removeItem(key);
+                }
+            }
+            replaceAnnotation(first.getPage(), fieldDictionary, first.getCOSObject());
+        }
+        widgets.add(first);
+
+        PDAppearanceStream appearance = first.getNormalAppearanceStream();
+        for (SignaturePlacement placement : placements) {
+            if (placement.page() < 1 || placement.page() > document.getNumberOfPages()) {
+                throw new IOException("Invalid page number: " + placement.page());
+            }
+            PDPage page = document.getPage(placement.page() - 1);
+            PDAnnotationWidget widget = new PDAnnotationWidget();
+            widget.setRectangle(placement.toRectangle());
+            widget.setPage(page);
+            widget.setPrinted(true);
+            widget.setLocked(first.isLocked());
+            PDAppearanceDictionary appearanceDictionary = new PDAppearanceDictionary();
+            appearanceDictionary.setNormalAppearance(appearance);
+            widget.setAppearance(appearanceDictionary);
+            page.getAnnotations().add(widget);
+            markUpdated(page);
+            widgets.add(widget);
+        }
+        signatureField.setWidgets(widgets);
+        log.debug("Shared the signature appearance between {} widgets", widgets.size());
+    }
+
+    private static void replaceAnnotation(PDPage page, COSDictionary annotation, COSDictionary replacement)
+            throws IOException {
+        COSArray annots = page != null ? page.getCOSObject().getCOSArray(COSName.ANNOTS) : null;
+        if (annots == null) {
+            throw new IOException("The signature widget is not on a page");
+        }
+        for (int i = 0; i < annots.size(); i++) {
+            if (annots.getObject(i) == annotation) {
+                annots.set(i, replacement);
+            }
+        }
+        markUpdated(page);
+    }
+
+    /**
+     * Returns a field name that is not used by the form: "Signature" followed by the lowest free number.
+     */
+    private static String uniqueFieldName(PDAcroForm acroForm) {
+        Set<String> names = fieldNames(acroForm);
+        int suffix = 1;
+        while (names.contains("Signature" + suffix)) {
+            suffix++;
+        }
+        return "Signature" + suffix;
+    }
+
+    private static Set<String> fieldNames(PDAcroForm acroForm) {
+        Set<String> names = new HashSet<>();
+        for (PDField field : acroForm.getFields()) {
+            names.add(field.getPartialName());
+        }
+        return names;
+    }
+
+    /**
+     * Flags a page and its annotations for the incremental update, as revisions only write updated objects.
+     */
+    private static void markUpdated(PDPage page) {
+        page.getCOSObject().setNeedToBeUpdated(true);
+        COSArray annots = page.getCOSObject().getCOSArray(COSName.ANNOTS);
+        if (annots != null) {
+            annots.setNeedToBeUpdated(true);
+        }
+    }
+
     /**
      * Creates or gets the AcroForm of a document.
      * 
@@ -108,10 +328,8 @@ public class PDFSignatureFieldHelper {
         } else {
             log.info("Using existing AcroForm");
         }
-        
-        // Enable appearance generation - critical for Adobe Reader to show validation graphics
-        acroForm.setNeedAppearances(true);
-        
+
+        // Signature widgets carry their own appearance streams, so viewers are not asked to regenerate them
         return acroForm;
     }
     
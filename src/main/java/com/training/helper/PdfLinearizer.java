@@ -0,0 +1,834 @@
+package com.training.helper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSDocument;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNull;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.SignatureInterface;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes a linearized ("fast web view") copy of a document, laid out as described in Annex F of ISO 32000-1:
+ * the linearization dictionary and the cross-reference section of the first page at the start of the file,
+ * followed by the catalog, the page tree, the hint stream and everything the first page needs, then the
+ * objects of the remaining pages in page order, the objects they share and the main cross-reference table.
+ * A viewer can render the first page once the first-page section has arrived.
+ * Every object is written uncompressed with a classic cross-reference table, as object streams would hide
+ * first-page objects behind data that belongs to other pages. Each shared object is its own hint group.
+ * <p>
+ * A signature appended to a linearized file changes its length, after which viewers no longer treat it as
+ * linearized. The first signature can therefore be written as part of the linearized file instead, with its
+ * /ByteRange and /Contents patched in place; later signatures are appended as revisions.
+ */
+@Slf4j
+public class PdfLinearizer {
+
+    private static final byte[] HEADER_COMMENT = { '%', (byte) 0xE2, (byte) 0xE3, (byte) 0xCF, (byte) 0xD3, '\n' };
+
+    private static final COSName[] INHERITED = { COSName.RESOURCES, COSName.MEDIA_BOX, COSName.CROP_BOX, COSName.ROTATE };
+
+    /**
+     * Where an object is placed, in file order.
+     */
+    private enum Part {
+        DOCUMENT, FIRST_PAGE, PAGE, SHARED, OTHER
+    }
+
+    /**
+     * An indirect object of the linearized file.
+     */
+    private static final class Entry {
+        final COSBase object;
+        Part part;
+        int page;
+        int pageCount;
+        long number;
+        byte[] prefix;
+        long streamLength;
+        long length;
+        long offset;
+
+        Entry(COSBase object) {
+            this.object = object;
+        }
+    }
+
+    private final PDDocument document;
+    private final COSDocument cosDocument;
+    private final COSDictionary signatureDictionary;
+    private final Map<COSBase, Entry> entries = new IdentityHashMap<>();
+    private final List<COSDictionary> pages = new ArrayList<>();
+    private final List<List<Entry>> pageObjects = new ArrayList<>();
+    private final List<Entry> documentPart = new ArrayList<>();
+    private final List<Entry> firstPagePart = new ArrayList<>();
+    private final List<Entry> pagePart = new ArrayList<>();
+    private final List<Entry> sharedPart = new ArrayList<>();
+    private final List<Entry> otherPart = new ArrayList<>();
+
+    private long firstPageNumber;
+    private long size;
+    private byte[] header;
+    private byte[] hint;
+    private long hintNumber;
+    private long linearizationNumber;
+
+    private Entry signatureEntry;
+    private int contentsStart = -1;
+    private int contentsEnd;
+    private int byteRangeStart;
+
+    private PdfLinearizer(PDDocument document, PDSignature signature) {
+        this.document = document;
+        this.cosDocument = document.getDocument();
+        this.signatureDictionary = signature == null ? null : signature.getCOSObject();
+    }
+
+    /**
+     * Returns whether a document should be linearized before it is signed: it has pages, is not encrypted,
+     * has no signatures yet, whose bytes must not change, and is not linearized already.
+     *
+     * @param document The loaded document
+     * @return True if the document can be linearized
+     * @throws IOException If the signature fields cannot be read
+     */
+    public static boolean canLinearize(PDDocument document) throws IOException {
+        return document.getNumberOfPages() > 0 && !document.isEncrypted()
+            && document.getSignatureDictionaries().isEmpty()
+            && document.getDocument().getLinearizedDictionary() == null;
+    }
+
+    /**
+     * Writes a linearized copy of a document.
+     *
+     * @param document The document to linearize, as loaded
+     * @param output The stream to write the linearized document to
+     * @throws IOException If the document cannot be read or written
+     */
+    public static void linearize(PDDocument document, OutputStream output) throws IOException {
+        linearize(document, null, null, output);
+    }
+
+    /**
+     * Writes a signed, linearized copy of a document. The signature covers the whole linearized file, which
+     * keeps its linearization until a later signature is appended.
+     *
+     * @param document The document to linearize, with the signature added with
+     *        {@code PDDocument.addSignature(PDSignature, SignatureOptions)}
+     * @param signature The signature dictionary added to the document
+     * @param signatureInterface Creates the CMS signature over the ByteRange content
+     * @param output The stream to write the signed document to
+     * @throws IOException If the document cannot be written or the signature does not fit its reservation
+     */
+    public static void linearize(PDDocument document, PDSignature signature, SignatureInterface signatureInterface,
+                                 OutputStream output) throws IOException {
+        if (document.isEncrypted()) {
+            throw new IOException("Encrypted documents cannot be linearized");
+        }
+        PdfLinearizer linearizer = new PdfLinearizer(document, signature);
+        linearizer.assignParts();
+        linearizer.number();
+        linearizer.serialize();
+        if (signature == null) {
+            linearizer.write(output);
+            return;
+        }
+        if (linearizer.signatureEntry == null) {
+            throw new IOException("The signature dictionary is not referenced from the document");
+        }
+        ByteArrayOutputStream unsigned = new ByteArrayOutputStream();
+        linearizer.write(unsigned);
+        byte[] bytes = unsigned.toByteArray();
+        linearizer.sign(bytes, signatureInterface);
+        output.write(bytes);
+    }
+
+    private void assignParts() throws IOException {
+        COSDictionary trailer = cosDocument.getTrailer();
+        COSDictionary catalog = document.getDocumentCatalog().getCOSObject();
+        for (PDPage page : document.getPages()) {
+            pages.add(page.getCOSObject());
+        }
+
+        // Objects each page needs, including attributes it inherits from the page tree
+        for (COSDictionary page : pages) {
+            List<COSBase> roots = new ArrayList<>();
+            roots.add(page);
+            for (COSName key : INHERITED) {
+                COSBase inherited = page.containsKey(key) ? null : inheritedItem(page, key);
+                if (inherited != null) {
+                    roots.add(inherited);
+                }
+            }
+            int index = pageObjects.size();
+            List<Entry> objects = new ArrayList<>();
+            for (COSBase object : collect(roots, page)) {
+                Entry entry = entries.computeIfAbsent(object, Entry::new);
+                if (entry.pageCount++ == 0) {
+                    entry.page = index;
+                }
+                objects.add(entry);
+            }
+            pageObjects.add(objects);
+        }
+
+        // The catalog, the page tree and the objects that control how the document opens
+        place(catalog, Part.DOCUMENT, documentPart);
+        for (COSDictionary node : pageTree(catalog.getItem(COSName.PAGES))) {
+            place(node, Part.DOCUMENT, documentPart);
+        }
+        List<COSBase> openRoots = new ArrayList<>();
+        for (COSName key : new COSName[] { COSName.VIEWER_PREFERENCES, COSName.OPEN_ACTION }) {
+            if (catalog.getItem(key) != null) {
+                openRoots.add(catalog.getItem(key));
+            }
+        }
+        for (COSBase object : collect(openRoots, catalog)) {
+            place(object, Part.DOCUMENT, documentPart);
+        }
+
+        for (Entry entry : pageObjects.get(0)) {
+            if (entry.part == null) {
+                entry.part = Part.FIRST_PAGE;
+                firstPagePart.add(entry);
+            }
+        }
+        for (int i = 1; i < pages.size(); i++) {
+            for (Entry entry : pageObjects.get(i)) {
+                if (entry.part == null && entry.pageCount == 1) {
+                    entry.part = Part.PAGE;
+                    pagePart.add(entry);
+                }
+            }
+        }
+        for (int i = 1; i < pages.size(); i++) {
+            for (Entry entry : pageObjects.get(i)) {
+                if (entry.part == null) {
+                    entry.part = Part.SHARED;
+                    sharedPart.add(entry);
+                }
+            }
+        }
+
+        List<COSBase> otherRoots = new ArrayList<>();
+        otherRoots.add(trailer.getItem(COSName.ROOT));
+        if (trailer.getItem(COSName.INFO) != null) {
+            otherRoots.add(trailer.getItem(COSName.INFO));
+        }
+        for (COSBase object : collect(otherRoots, null)) {
+            place(object, Part.OTHER, otherPart);
+        }
+        if (firstPagePart.isEmpty() || firstPagePart.get(0).object != pages.get(0)) {
+            throw new IOException("The first page is referenced from outside the page tree");
+        }
+    }
+
+    private void place(COSBase object, Part part, List<Entry> list) {
+        Entry entry = entries.computeIfAbsent(object, Entry::new);
+        if (entry.part == null) {
+            entry.part = part;
+            list.add(entry);
+        }
+    }
+
+    private static COSBase inheritedItem(COSDictionary page, COSName key) {
+        COSDictionary node = page.getCOSDictionary(COSName.PARENT);
+        for (int depth = 0; node != null && depth < 64; depth++) {
+            COSBase value = node.getItem(key);
+            if (value != null) {
+                return value;
+            }
+            node = node.getCOSDictionary(COSName.PARENT);
+        }
+        return null;
+    }
+
+    private static List<COSDictionary> pageTree(COSBase root) {
+        List<COSDictionary> nodes = new ArrayList<>();
+        Map<COSBase, Boolean> seen = new IdentityHashMap<>();
+        Deque<COSBase> queue = new ArrayDeque<>();
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            if (resolve(queue.poll()) instanceof COSDictionary node && COSName.PAGES.equals(node.getCOSName(COSName.TYPE))
+                    && seen.put(node, Boolean.TRUE) == null) {
+                nodes.add(node);
+                COSArray kids = node.getCOSArray(COSName.KIDS);
+                for (int i = 0; kids != null && i < kids.size(); i++) {
+                    queue.add(kids.get(i));
+                }
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Returns the indirect objects reachable from the given roots, breadth first. When collecting for a page,
+     * other pages, page tree nodes, the catalog and /Parent links are not followed, so a link annotation does
+     * not pull in the page it points to.
+     *
+     * @param roots The objects to start from, as they appear in their containers
+     * @param owner The page or catalog being collected for, which counts as indirect, or null to follow everything
+     */
+    private static List<COSBase> collect(List<COSBase> roots, COSDictionary owner) {
+        List<COSBase> result = new ArrayList<>();
+        Map<COSBase, Boolean> seen = new IdentityHashMap<>();
+        Deque<COSBase> queue = new ArrayDeque<>();
+        for (COSBase root : roots) {
+            visit(root, owner, seen, result, queue);
+        }
+        while (!queue.isEmpty()) {
+            COSBase value = queue.poll();
+            if (value instanceof COSDictionary dictionary) {
+                boolean stream = dictionary instanceof COSStream;
+                for (Map.Entry<COSName, COSBase> item : dictionary.entrySet()) {
+                    COSName key = item.getKey();
+                    if ((stream && COSName.LENGTH.equals(key)) || (owner != null && COSName.PARENT.equals(key))) {
+                        continue;
+                    }
+                    visit(item.getValue(), owner, seen, result, queue);
+                }
+            } else if (value instanceof COSArray array) {
+                for (int i = 0; i < array.size(); i++) {
+                    visit(array.get(i), owner, seen, result, queue);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void visit(COSBase value, COSDictionary owner, Map<COSBase, Boolean> seen, List<COSBase> result,
+                              Deque<COSBase> queue) {
+        COSBase actual = resolve(value);
+        boolean indirect = isIndirect(value, actual) || (actual != null && actual == owner);
+        if (actual == null || seen.containsKey(actual)
+                || !(indirect || actual instanceof COSDictionary || actual instanceof COSArray)) {
+            return;
+        }
+        if (owner != null && actual != owner && actual instanceof COSDictionary dictionary) {
+            COSName type = dictionary.getCOSName(COSName.TYPE);
+            if (COSName.PAGE.equals(type) || COSName.PAGES.equals(type) || COSName.CATALOG.equals(type)) {
+                return;
+            }
+        }
+        seen.put(actual, Boolean.TRUE);
+        if (indirect) {
+            result.add(actual);
+        }
+        queue.add(actual);
+    }
+
+    /**
+     * Returns whether a value is written as an indirect object: references and streams, and dictionaries that
+     * were added to the document rather than parsed inline, as {@code COSWriter} writes them.
+     */
+    private static boolean isIndirect(COSBase value, COSBase actual) {
+        return value instanceof COSObject || actual instanceof COSStream
+            || (actual instanceof COSDictionary dictionary && !dictionary.isDirect());
+    }
+
+    private static COSBase resolve(COSBase value) {
+        return value instanceof COSObject object ? object.getObject() : value;
+    }
+
+    /**
+     * Numbers the objects of the main section from 1 in file order, then the first-page section, which starts
+     * with the linearization dictionary and ends with the hint stream.
+     */
+    private void number() {
+        long next = 1;
+        for (List<Entry> part : List.of(pagePart, sharedPart, otherPart)) {
+            for (Entry entry : part) {
+                entry.number = next++;
+            }
+        }
+        linearizationNumber = next++;
+        for (List<Entry> part : List.of(documentPart, firstPagePart)) {
+            for (Entry entry : part) {
+                entry.number = next++;
+            }
+        }
+        hintNumber = next++;
+        size = next;
+        firstPageNumber = entries.get(pages.get(0)).number;
+    }
+
+    private void serialize() throws IOException {
+        header = ascii(String.format(Locale.ROOT, "%%PDF-%.1f\n", Math.max(1.4f, cosDocument.getVersion())));
+        for (Entry entry : entries.values()) {
+            if (entry.part == null) {
+                continue;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(ascii(entry.number + " 0 obj\n"));
+            if (entry.object instanceof COSStream stream) {
+                try (InputStream raw = stream.createRawInputStream()) {
+                    entry.streamLength = raw.transferTo(OutputStream.nullOutputStream());
+                }
+                writeDictionary(stream, out, true);
+                out.write(ascii("/Length " + entry.streamLength + ">>\nstream\n"));
+                entry.prefix = out.toByteArray();
+                entry.length = entry.prefix.length + entry.streamLength + "\nendstream\nendobj\n".length();
+            } else if (entry.object == signatureDictionary) {
+                signatureEntry = entry;
+                writeSignatureDictionary(out);
+                out.write(ascii("\nendobj\n"));
+                entry.prefix = out.toByteArray();
+                entry.length = entry.prefix.length;
+            } else {
+                writeValue(entry.object, out, true);
+                out.write(ascii("\nendobj\n"));
+                entry.prefix = out.toByteArray();
+                entry.length = entry.prefix.length;
+            }
+        }
+    }
+
+    private void writeValue(COSBase value, OutputStream out, boolean topLevel) throws IOException {
+        COSBase actual = resolve(value);
+        Entry entry = actual == null ? null : entries.get(actual);
+        if (!topLevel && entry != null && entry.part != null) {
+            out.write(ascii(entry.number + " 0 R"));
+        } else if (actual instanceof COSDictionary dictionary) {
+            writeDictionary(dictionary, out, false);
+            out.write(ascii(">>"));
+        } else if (actual instanceof COSArray array) {
+            out.write('[');
+            for (int i = 0; i < array.size(); i++) {
+                if (i > 0) {
+                    out.write(' ');
+                }
+                writeValue(array.get(i), out, false);
+            }
+            out.write(']');
+        } else {
+            CompactRevisionWriter.writeSimple(actual == null ? COSNull.NULL : actual, out);
+        }
+    }
+
+    /**
+     * Writes the entries of a dictionary without the closing bracket, so a stream can add its /Length.
+     */
+    private void writeDictionary(COSDictionary dictionary, OutputStream out, boolean stream) throws IOException {
+        out.write(ascii("<<"));
+        for (Map.Entry<COSName, COSBase> item : dictionary.entrySet()) {
+            if (stream && COSName.LENGTH.equals(item.getKey())) {
+                continue;
+            }
+            item.getKey().writePDF(out);
+            out.write(' ');
+            writeValue(item.getValue(), out, false);
+        }
+    }
+
+    private void writeSignatureDictionary(ByteArrayOutputStream out) throws IOException {
+        out.write(ascii("<<"));
+        for (Map.Entry<COSName, COSBase> item : signatureDictionary.entrySet()) {
+            item.getKey().writePDF(out);
+            out.write(' ');
+            if (COSName.CONTENTS.equals(item.getKey())) {
+                int reserved = ((COSString) item.getValue()).getBytes().length;
+                contentsStart = out.size();
+                out.write('<');
+                out.write(ascii("0".repeat(reserved * 2)));
+                out.write('>');
+                contentsEnd = out.size();
+            } else if (COSName.BYTERANGE.equals(item.getKey())) {
+                byteRangeStart = out.size();
+                out.write(ascii(CompactRevisionWriter.BYTE_RANGE_PLACEHOLDER));
+            } else {
+                writeValue(item.getValue(), out, false);
+            }
+        }
+        out.write(ascii(">>"));
+    }
+
+    /**
+     * Patches the /ByteRange of the written file, signs it and fills in /Contents.
+     */
+    private void sign(byte[] bytes, SignatureInterface signatureInterface) throws IOException {
+        int from = (int) signatureEntry.offset + contentsStart;
+        int to = (int) signatureEntry.offset + contentsEnd;
+        String byteRange = String.format("%-" + CompactRevisionWriter.BYTE_RANGE_PLACEHOLDER.length() + "s",
+            "[0 " + from + " " + to + " " + (bytes.length - to) + "]");
+        byte[] patch = ascii(byteRange);
+        System.arraycopy(patch, 0, bytes, (int) signatureEntry.offset + byteRangeStart, patch.length);
+
+        byte[] cms = signatureInterface.sign(new SequenceInputStream(
+            new ByteArrayInputStream(bytes, 0, from), new ByteArrayInputStream(bytes, to, bytes.length - to)));
+        int reserved = (to - from - 2) / 2;
+        if (cms.length > reserved) {
+            throw new IOException("Signature of " + cms.length + " bytes does not fit the " + reserved + " bytes reserved");
+        }
+        byte[] hex = ascii(HexFormat.of().withUpperCase().formatHex(cms));
+        System.arraycopy(hex, 0, bytes, from + 1, hex.length);
+    }
+
+    private void write(OutputStream output) throws IOException {
+        // Hint tables give offsets as if the hint stream were not in the file
+        Layout withoutHint = layout(0);
+        hint = hintStream(withoutHint);
+        Layout layout = layout(hint.length);
+
+        output.write(header);
+        output.write(HEADER_COMMENT);
+        output.write(linearizationDictionary(layout));
+        output.write(firstPageXRef(layout));
+        writeEntries(documentPart, output);
+        output.write(hint);
+        writeEntries(firstPagePart, output);
+        writeEntries(pagePart, output);
+        writeEntries(sharedPart, output);
+        writeEntries(otherPart, output);
+        output.write(mainXRef(layout));
+        log.debug("Linearized {} pages into {} bytes, first page ends at {}", pages.size(), layout.length, layout.firstPageEnd);
+    }
+
+    private static void writeEntries(List<Entry> part, OutputStream output) throws IOException {
+        for (Entry entry : part) {
+            output.write(entry.prefix);
+            if (entry.object instanceof COSStream stream) {
+                try (InputStream raw = stream.createRawInputStream()) {
+                    raw.transferTo(output);
+                }
+                output.write(ascii("\nendstream\nendobj\n"));
+            }
+        }
+    }
+
+    /**
+     * Offsets of the sections of the file for a given hint stream length.
+     */
+    private record Layout(long firstPageXRef, long hintOffset, long hintLength, long firstPageEnd,
+                          long mainXRef, long mainXRefFirstEntry, long length) {
+    }
+
+    private Layout layout(long hintLength) throws IOException {
+        long position = header.length + HEADER_COMMENT.length + linearizationDictionary(null).length;
+        long firstPageXRef = position;
+        position += firstPageXRef(null).length;
+        position = place(documentPart, position);
+        long hintOffset = position;
+        position += hintLength;
+        position = place(firstPagePart, position);
+        long firstPageEnd = position;
+        position = place(pagePart, position);
+        position = place(sharedPart, position);
+        position = place(otherPart, position);
+        long mainXRef = position;
+        long mainXRefFirstEntry = mainXRef + ("xref\n0 " + linearizationNumber + "\n").length();
+        long length = mainXRefFirstEntry + 20L * linearizationNumber
+            + ("trailer\n<</Size " + linearizationNumber + ">>\nstartxref\n" + firstPageXRef + "\n%%EOF\n").length();
+        return new Layout(firstPageXRef, hintOffset, hintLength, firstPageEnd, mainXRef, mainXRefFirstEntry, length);
+    }
+
+    private static long place(List<Entry> part, long position) {
+        for (Entry entry : part) {
+            entry.offset = position;
+            position += entry.length;
+        }
+        return position;
+    }
+
+    /**
+     * Writes the linearization parameter dictionary, with its numbers padded to a fixed width so that its
+     * length does not depend on the layout; a null layout gives placeholder values of the same length.
+     */
+    private byte[] linearizationDictionary(Layout layout) {
+        return ascii(linearizationNumber + " 0 obj\n<</Linearized 1/L " + pad(layout == null ? 0 : layout.length)
+            + "/H [" + pad(layout == null ? 0 : layout.hintOffset) + " " + pad(layout == null ? 0 : layout.hintLength)
+            + "]/O " + firstPageNumber + "/E " + pad(layout == null ? 0 : layout.firstPageEnd) + "/N " + pages.size()
+            + "/T " + pad(layout == null ? 0 : layout.mainXRefFirstEntry - 1) + ">>\nendobj\n");
+    }
+
+    private byte[] firstPageXRef(Layout layout) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(ascii("xref\n" + linearizationNumber + " " + (size - linearizationNumber) + "\n"));
+        out.write(xrefEntry(header.length + HEADER_COMMENT.length));
+        for (Entry entry : documentPart) {
+            out.write(xrefEntry(entry.offset));
+        }
+        for (Entry entry : firstPagePart) {
+            out.write(xrefEntry(entry.offset));
+        }
+        // The hint stream is numbered last, so its entry is the last row even though it precedes the first page
+        out.write(xrefEntry(layout == null ? 0 : layout.hintOffset));
+
+        COSDictionary trailer = cosDocument.getTrailer();
+        out.write(ascii("trailer\n<</Size " + size + "/Root " + entries.get(document.getDocumentCatalog().getCOSObject()).number
+            + " 0 R"));
+        if (trailer.getDictionaryObject(COSName.INFO) instanceof COSDictionary info && entries.get(info) != null) {
+            out.write(ascii("/Info " + entries.get(info).number + " 0 R"));
+        }
+        out.write(ascii("/ID "));
+        writeValue(documentId(trailer), out, true);
+        out.write(ascii("/Prev " + pad(layout == null ? 0 : layout.mainXRef) + ">>\nstartxref\n0\n%%EOF\n"));
+        return out.toByteArray();
+    }
+
+    private COSArray documentId(COSDictionary trailer) {
+        COSArray id = trailer.getCOSArray(COSName.ID);
+        if (id != null && id.size() == 2) {
+            return id;
+        }
+        UUID uuid = UUID.randomUUID();
+        COSString value = new COSString(ByteBuffer.allocate(16)
+            .putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array(), true);
+        COSArray generated = new COSArray();
+        generated.add(value);
+        generated.add(value);
+        trailer.setItem(COSName.ID, generated);
+        return generated;
+    }
+
+    private byte[] mainXRef(Layout layout) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(ascii("xref\n0 " + linearizationNumber + "\n0000000000 65535 f\r\n"));
+        List<Entry> main = new ArrayList<>(pagePart.size() + sharedPart.size() + otherPart.size());
+        main.addAll(pagePart);
+        main.addAll(sharedPart);
+        main.addAll(otherPart);
+        for (Entry entry : main) {
+            out.write(xrefEntry(entry.offset));
+        }
+        out.write(ascii("trailer\n<</Size " + linearizationNumber + ">>\nstartxref\n" + layout.firstPageXRef + "\n%%EOF\n"));
+        return out.toByteArray();
+    }
+
+    /**
+     * Builds the primary hint stream with the page offset and shared object hint tables.
+     */
+    private byte[] hintStream(Layout layout) throws IOException {
+        // Shared object groups: first-page objects that later pages use, then the shared objects section
+        Map<Entry, Integer> sharedIds = new IdentityHashMap<>();
+        List<Entry> groups = new ArrayList<>();
+        for (Entry entry : firstPagePart) {
+            if (entry.pageCount > 1) {
+                sharedIds.put(entry, groups.size());
+                groups.add(entry);
+            }
+        }
+        int firstPageGroups = groups.size();
+        for (Entry entry : sharedPart) {
+            sharedIds.put(entry, groups.size());
+            groups.add(entry);
+        }
+
+        int pageCount = pages.size();
+        long[] objectCounts = new long[pageCount];
+        long[] lengths = new long[pageCount];
+        long[] starts = new long[pageCount];
+        long[] contentOffsets = new long[pageCount];
+        long[] contentLengths = new long[pageCount];
+        List<List<Integer>> references = new ArrayList<>();
+        for (int i = 0; i < pageCount; i++) {
+            List<Entry> own = new ArrayList<>();
+            List<Integer> shared = new ArrayList<>();
+            if (i == 0) {
+                own.addAll(firstPagePart);
+            } else {
+                for (Entry entry : pageObjects.get(i)) {
+                    if (entry.part == Part.PAGE) {
+                        own.add(entry);
+                    } else if (sharedIds.containsKey(entry)) {
+                        shared.add(sharedIds.get(entry));
+                    }
+                }
+            }
+            references.add(shared);
+            objectCounts[i] = own.size();
+            starts[i] = own.isEmpty() ? 0 : own.get(0).offset;
+            for (Entry entry : own) {
+                lengths[i] += entry.length;
+            }
+            Entry content = entries.get(firstContentStream(pages.get(i)));
+            if (content != null && own.contains(content)) {
+                contentOffsets[i] = content.offset + content.prefix.length - starts[i];
+                contentLengths[i] = content.streamLength;
+            }
+        }
+
+        BitWriter pageTable = new BitWriter();
+        long leastObjects = min(objectCounts);
+        long leastLength = min(lengths);
+        long leastContentOffset = min(contentOffsets);
+        long leastContentLength = min(contentLengths);
+        int objectBits = bits(max(objectCounts) - leastObjects);
+        int lengthBits = bits(max(lengths) - leastLength);
+        int contentOffsetBits = bits(max(contentOffsets) - leastContentOffset);
+        int contentLengthBits = bits(max(contentLengths) - leastContentLength);
+        int sharedCountBits = bits(references.stream().mapToLong(List::size).max().orElse(0));
+        int sharedIdBits = bits(Math.max(0, groups.size() - 1));
+        pageTable.write(leastObjects, 32);
+        pageTable.write(entries.get(pages.get(0)).offset, 32);
+        pageTable.write(objectBits, 16);
+        pageTable.write(leastLength, 32);
+        pageTable.write(lengthBits, 16);
+        pageTable.write(leastContentOffset, 32);
+        pageTable.write(contentOffsetBits, 16);
+        pageTable.write(leastContentLength, 32);
+        pageTable.write(contentLengthBits, 16);
+        pageTable.write(sharedCountBits, 16);
+        pageTable.write(sharedIdBits, 16);
+        pageTable.write(0, 16);
+        pageTable.write(1, 16);
+        for (int i = 0; i < pageCount; i++) {
+            pageTable.write(objectCounts[i] - leastObjects, objectBits);
+        }
+        pageTable.align();
+        for (int i = 0; i < pageCount; i++) {
+            pageTable.write(lengths[i] - leastLength, lengthBits);
+        }
+        pageTable.align();
+        for (int i = 0; i < pageCount; i++) {
+            pageTable.write(references.get(i).size(), sharedCountBits);
+        }
+        pageTable.align();
+        for (int i = 0; i < pageCount; i++) {
+            for (int id : references.get(i)) {
+                pageTable.write(id, sharedIdBits);
+            }
+        }
+        pageTable.align();
+        for (int i = 0; i < pageCount; i++) {
+            pageTable.write(contentOffsets[i] - leastContentOffset, contentOffsetBits);
+        }
+        pageTable.align();
+        for (int i = 0; i < pageCount; i++) {
+            pageTable.write(contentLengths[i] - leastContentLength, contentLengthBits);
+        }
+        pageTable.align();
+
+        long[] groupLengths = groups.stream().mapToLong(entry -> entry.length).toArray();
+        long leastGroupLength = min(groupLengths);
+        int groupLengthBits = bits(max(groupLengths) - leastGroupLength);
+        BitWriter sharedTable = new BitWriter();
+        sharedTable.write(sharedPart.isEmpty() ? 0 : sharedPart.get(0).number, 32);
+        sharedTable.write(sharedPart.isEmpty() ? 0 : sharedPart.get(0).offset, 32);
+        sharedTable.write(firstPageGroups, 32);
+        sharedTable.write(groups.size(), 32);
+        sharedTable.write(0, 16);
+        sharedTable.write(leastGroupLength, 32);
+        sharedTable.write(groupLengthBits, 16);
+        for (long length : groupLengths) {
+            sharedTable.write(length - leastGroupLength, groupLengthBits);
+        }
+        sharedTable.align();
+        for (int i = 0; i < groupLengths.length; i++) {
+            sharedTable.write(0, 1);
+        }
+        sharedTable.align();
+
+        byte[] pageBytes = pageTable.toByteArray();
+        ByteArrayOutputStream tables = new ByteArrayOutputStream();
+        tables.write(pageBytes);
+        tables.write(sharedTable.toByteArray());
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(compressed)) {
+            tables.writeTo(deflater);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(ascii(hintNumber + " 0 obj\n<</S " + pageBytes.length + "/Filter /FlateDecode/Length "
+            + compressed.size() + ">>\nstream\n"));
+        compressed.writeTo(out);
+        out.write(ascii("\nendstream\nendobj\n"));
+        return out.toByteArray();
+    }
+
+    private static COSBase firstContentStream(COSDictionary page) {
+        COSBase contents = resolve(page.getItem(COSName.CONTENTS));
+        if (contents instanceof COSArray array && array.size() > 0) {
+            contents = resolve(array.get(0));
+        }
+        return contents instanceof COSStream ? contents : null;
+    }
+
+    private static byte[] xrefEntry(long offset) {
+        return ascii(String.format(Locale.ROOT, "%010d 00000 n\r\n", offset));
+    }
+
+    private static String pad(long value) {
+        return String.format(Locale.ROOT, "%-10d", value);
+    }
+
+    private static int bits(long value) {
+        return 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    private static long min(long[] values) {
+        long min = values.length == 0 ? 0 : Long.MAX_VALUE;
+        for (long value : values) {
+            min = Math.min(min, value);
+        }
+        return min;
+    }
+
+    private static long max(long[] values) {
+        long max = 0;
+        for (long value : values) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Writes big-endian bit fields, as the hint tables are packed.
+     */
+    private static final class BitWriter {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private int current;
+        private int used;
+
+        void write(long value, int bits) {
+            for (int bit = bits - 1; bit >= 0; bit--) {
+                current = (current << 1) | (int) ((value >>> bit) & 1);
+                if (++used == 8) {
+                    bytes.write(current);
+                    current = 0;
+                    used = 0;
+                }
+            }
+        }
+
+        void align() {
+            if (used > 0) {
+                write(0, 8 - used);
+            }
+        }
+
+        byte[] toByteArray() {
+            align();
+            return bytes.toByteArray();
+        }
+    }
+}
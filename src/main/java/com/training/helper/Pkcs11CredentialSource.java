@@ -0,0 +1,189 @@
+package com.training.helper;
+
+import java.io.IOException;
+import java.security.AuthProvider;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.ProviderException;
+import java.security.Security;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+import javax.security.auth.login.LoginException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Credential source for a key on a PKCS#11 token, such as an HSM or SoftHSM, through the SunPKCS11 provider.
+ * The token is logged in once and the key handle is reused for every signature. SunPKCS11 keeps the sessions
+ * it opens and hands an idle one to each operation, so concurrent operations sign on separate sessions;
+ * a semaphore keeps them within the number of sessions the token allows. When an operation fails because
+ * the token was reset or the login was lost, the source logs in again, reloads the key handle and retries once.
+ */
+@Slf4j
+public class Pkcs11CredentialSource implements CredentialSource {
+
+    /**
+     * PKCS#11 return values that mean the session, login or key handle is no longer valid.
+     */
+    private static final List<String> RESET_ERRORS = List.of(
+        "CKR_SESSION_HANDLE_INVALID", "CKR_SESSION_CLOSED", "CKR_USER_NOT_LOGGED_IN", "CKR_KEY_HANDLE_INVALID",
+        "CKR_OBJECT_HANDLE_INVALID", "CKR_DEVICE_REMOVED", "CKR_TOKEN_NOT_PRESENT", "CKR_DEVICE_ERROR",
+        "CKR_CRYPTOKI_NOT_INITIALIZED", "Token has been removed");
+
+    private record Login(PrivateKey privateKey, Certificate[] certificateChain, long generation) {
+    }
+
+    private final Provider provider;
+    private final char[] pin;
+    private final String keyAlias;
+    private final Semaphore sessions;
+    private volatile Login login;
+
+    /**
+     * @param configPath Path to the SunPKCS11 configuration file naming the library and slot
+     * @param pin The user PIN of the token
+     * @param keyAlias The label of the key and certificate on the token
+     * @param maxSessions The number of operations that may run at the same time
+     * @throws CertificateException If the token cannot be logged in to or has no such key
+     */
+    public Pkcs11CredentialSource(String configPath, String pin, String keyAlias, int maxSessions)
+            throws CertificateException {
+        this(configure(configPath), pin, keyAlias, maxSessions);
+    }
+
+    /**
+     * @param provider The provider of the token's PKCS11 keystore
+     * @param pin The user PIN of the token
+     * @param keyAlias The label of the key and certificate on the token
+     * @param maxSessions The number of operations that may run at the same time
+     * @throws CertificateException If the token cannot be logged in to or has no such key
+     */
+    Pkcs11CredentialSource(Provider provider, String pin, String keyAlias, int maxSessions)
+            throws CertificateException {
+        this.provider = provider;
+        // Registered so that JCA can select the token for its keys, which never leave it
+        if (Security.getProvider(provider.getName()) == null) {
+            Security.addProvider(provider);
+        }
+        this.pin = pin.toCharArray();
+        this.keyAlias = keyAlias;
+        this.sessions = new Semaphore(maxSessions, true);
+        this.login = logIn(0);
+        log.info("Logged in to PKCS#11 token {} for key {} with up to {} sessions", provider.getName(), keyAlias, maxSessions);
+    }
+
+    @Override
+    public Certificate[] getCertificateChain() {
+        return login.certificateChain().clone();
+    }
+
+    @Override
+    public PrivateKey getPrivateKey() {
+        return login.privateKey();
+    }
+
+    @Override
+    public <T> T withKey(KeyOperation<T> operation) throws IOException {
+        try {
+            sessions.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a PKCS#11 session", e);
+        }
+        try {
+            Login current = login;
+            try {
+                return operation.apply(current.privateKey(), current.certificateChain().clone());
+            } catch (Exception e) {
+                if (!isTokenReset(e)) {
+                    throw e;
+                }
+                log.warn("PKCS#11 token {} lost its session or login, logging in again: {}", provider.getName(), e.getMessage());
+                current = relogIn(current);
+                return operation.apply(current.privateKey(), current.certificateChain().clone());
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("PKCS#11 signing operation failed: " + e.getMessage(), e);
+        } finally {
+            sessions.release();
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (provider instanceof AuthProvider authProvider) {
+                authProvider.logout();
+            }
+        } catch (LoginException e) {
+            log.warn("Error logging out of PKCS#11 token {}: {}", provider.getName(), e.getMessage());
+        }
+        Security.removeProvider(provider.getName());
+        Arrays.fill(pin, '\0');
+    }
+
+    /**
+     * Logs in again unless another thread already did so after the failed login.
+     */
+    private synchronized Login relogIn(Login failed) throws CertificateException {
+        if (login.generation() != failed.generation()) {
+            return login;
+        }
+        try {
+            if (provider instanceof AuthProvider authProvider) {
+                authProvider.logout();
+            }
+        } catch (LoginException | ProviderException e) {
+            // The session is already gone
+            log.debug("Logout after token reset failed: {}", e.getMessage());
+        }
+        login = logIn(failed.generation() + 1);
+        return login;
+    }
+
+    private static Provider configure(String configPath) throws CertificateException {
+        Provider sunPkcs11 = Security.getProvider("SunPKCS11");
+        if (sunPkcs11 == null) {
+            throw new CertificateException("The SunPKCS11 provider is not available in this JVM");
+        }
+        try {
+            return sunPkcs11.configure(configPath);
+        } catch (RuntimeException e) {
+            throw new CertificateException("Error configuring PKCS#11 token from " + configPath + ": " + e.getMessage(), e);
+        }
+    }
+
+    private Login logIn(long generation) throws CertificateException {
+        try {
+            KeyStore keystore = KeyStore.getInstance("PKCS11", provider);
+            keystore.load(null, pin);
+            PrivateKey privateKey = (PrivateKey) keystore.getKey(keyAlias, null);
+            Certificate[] certificateChain = keystore.getCertificateChain(keyAlias);
+            if (privateKey == null || certificateChain == null || certificateChain.length == 0) {
+                throw new CertificateException("Key " + keyAlias + " or its certificate chain is not on the token");
+            }
+            return new Login(privateKey, certificateChain, generation);
+        } catch (CertificateException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CertificateException("Error logging in to PKCS#11 token: " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean isTokenReset(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            String message = cause.getMessage();
+            if (message != null && RESET_ERRORS.stream().anyMatch(message::contains)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,55 @@
+package com.training.helper;
+
+import java.io.IOException;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+
+/**
+ * Credential source for a key in a PKCS12 file. The key is held in memory, so operations run
+ * concurrently without limit.
+ */
+public class Pkcs12CredentialSource implements CredentialSource {
+
+    private final PrivateKey privateKey;
+    private final Certificate[] certificateChain;
+
+    /**
+     * @param certificatePath Path to the PKCS12 file
+     * @param certificatePassword Password of the file and the key
+     * @param certificateAlias Alias of the key in the file
+     * @throws CertificateException If the key or chain cannot be loaded
+     * @throws IOException If the file cannot be read
+     */
+    public Pkcs12CredentialSource(String certificatePath, String certificatePassword, String certificateAlias)
+            throws CertificateException, IOException {
+        Object[] credentials = CertificateHelper.loadCertificate(certificatePath, certificatePassword, certificateAlias);
+        this.privateKey = (PrivateKey) credentials[0];
+        this.certificateChain = (Certificate[]) credentials[1];
+    }
+
+    @Override
+    public Certificate[] getCertificateChain() {
+        return certificateChain.clone();
+    }
+
+    @Override
+    public PrivateKey getPrivateKey() {
+        return privateKey;
+    }
+
+    @Override
+    public <T> T withKey(KeyOperation<T> operation) throws IOException {
+        try {
+            return operation.apply(privateKey, certificateChain.clone());
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Signing operation failed: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
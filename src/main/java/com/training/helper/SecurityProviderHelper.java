@@ -0,0 +1,37 @@
+package com.training.helper;
+
+import java.security.Security;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Helper class that registers the BouncyCastle JCA provider exactly once per JVM.
+ * Registration happens lazily on first use, so it is shared by the Spring services,
+ * the static helpers and code that runs outside the application context.
+ */
+@Slf4j
+public class SecurityProviderHelper {
+
+    private static final class Holder {
+        private static final String BOUNCY_CASTLE = registerBouncyCastle();
+    }
+
+    /**
+     * Ensures the BouncyCastle provider is registered.
+     * 
+     * @return The name of the BouncyCastle provider
+     */
+    public static String bouncyCastle() {
+        return Holder.BOUNCY_CASTLE;
+    }
+
+    private static String registerBouncyCastle() {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+            log.info("Registered BouncyCastle security provider");
+        }
+        return BouncyCastleProvider.PROVIDER_NAME;
+    }
+}
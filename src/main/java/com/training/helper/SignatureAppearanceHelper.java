@@ -13,9 +13,12 @@ import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.font.PDFont;
 import org.apache.pdfbox.pdmodel.font.PDType1Font;
 import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.pdmodel.graphics.state.PDExtendedGraphicsState;
 import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceDictionary;
 import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceStream;
 
+import com.training.model.EncodedImage;
+
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -171,4 +174,75 @@ public class SignatureAppearanceHelper {
         
         return n4Stream;
     }
+    
+    /**
+     * Vector appearance with the layout of the rasterized signature image: a 70% opaque white
+     * background with three lines of 90% opaque text, drawn as a transparency group so that
+     * the page content shows through when viewers composite it.
+     */
+    public static PDAppearanceStream createVectorAppearance(PDDocument document, PDRectangle rect, 
+                                                  String signatureName, String signatureLocation, 
+                                                  Calendar signingTime) throws IOException {
+        return createVectorAppearance(document, rect, signatureName, signatureLocation, signingTime, null);
+    }
+    
+    /**
+     * Vector appearance with a signer image, such as a handwritten signature or a logo, drawn behind the text.
+     * The image is scaled to fit the box with a 5pt margin, keeping its aspect ratio, and embedded from its
+     * encoded data without decoding it.
+     */
+    public static PDAppearanceStream createVectorAppearance(PDDocument document, PDRectangle rect, 
+                                                  String signatureName, String signatureLocation, 
+                                                  Calendar signingTime, EncodedImage signerImage) throws IOException {
+        PDAppearanceStream appearanceStream = new PDAppearanceStream(document);
+        appearanceStream.setResources(new PDResources());
+        appearanceStream.setBBox(new PDRectangle(rect.getWidth(), rect.getHeight()));
+        
+        // Mark the form as a transparency group
+        COSDictionary group = new COSDictionary();
+        group.setItem(COSName.TYPE, COSName.GROUP);
+        group.setItem(COSName.S, COSName.TRANSPARENCY);
+        appearanceStream.getCOSObject().setItem(COSName.GROUP, group);
+        
+        PDExtendedGraphicsState backgroundAlpha = new PDExtendedGraphicsState();
+        backgroundAlpha.setNonStrokingAlphaConstant(0.7f);
+        PDExtendedGraphicsState textAlpha = new PDExtendedGraphicsState();
+        textAlpha.setNonStrokingAlphaConstant(0.9f);
+        
+        try (PDPageContentStream content = new PDPageContentStream(document, appearanceStream)) {
+            content.saveGraphicsState();
+            content.setGraphicsStateParameters(backgroundAlpha);
+            content.setNonStrokingColor(Color.WHITE);
+            content.addRect(0, 0, rect.getWidth(), rect.getHeight());
+            content.fill();
+            content.restoreGraphicsState();
+            
+            if (signerImage != null) {
+                float scale = Math.min((rect.getWidth() - 10) / signerImage.width(),
+                                       (rect.getHeight() - 10) / signerImage.height());
+                float imageWidth = signerImage.width() * scale;
+                float imageHeight = signerImage.height() * scale;
+                content.drawImage(ImageXObjectEncoder.createImageXObject(document, signerImage),
+                                  (rect.getWidth() - imageWidth) / 2, (rect.getHeight() - imageHeight) / 2,
+                                  imageWidth, imageHeight);
+            }
+            
+            // Baselines match the raster layout, which draws at 25, 45 and 65 from the top
+            content.saveGraphicsState();
+            content.setGraphicsStateParameters(textAlpha);
+            content.setNonStrokingColor(Color.BLACK);
+            content.beginText();
+            content.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 10);
+            content.newLineAtOffset(10, rect.getHeight() - 25);
+            content.showText("Digitally signed by: " + signatureName);
+            content.newLineAtOffset(0, -20);
+            content.showText("Location: " + signatureLocation);
+            content.newLineAtOffset(0, -20);
+            content.showText("Date: " + signingTime.getTime().toString());
+            content.endText();
+            content.restoreGraphicsState();
+        }
+        
+        return appearanceStream;
+    }
 }
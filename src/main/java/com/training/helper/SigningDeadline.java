@@ -0,0 +1,150 @@
+package com.training.helper;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import com.training.enums.CancellationReason;
+import com.training.enums.SigningPhase;
+
+/**
+ * Deadline and cancellation of a signing request, checked between the phases of the signing pipeline so
+ * that work nobody waits for any more is abandoned instead of completed.
+ * The deadline is bound to the thread processing the request, so the signing services check it without it
+ * being passed through every signing method. Work outside a request, such as a bulk run, has no deadline.
+ */
+public class SigningDeadline {
+
+    private static final ThreadLocal<SigningDeadline> CURRENT = new ThreadLocal<>();
+
+    private final long start = System.nanoTime();
+    private final long timeoutNanos;
+    private volatile CancellationReason cancellationReason;
+    private volatile SigningPhase abandonedPhase;
+
+    /**
+     * @param timeoutMillis The time the request may take, or zero for no deadline
+     */
+    public SigningDeadline(long timeoutMillis) {
+        this.timeoutNanos = Math.max(0, TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    }
+
+    /**
+     * Returns the deadline bound to the current thread.
+     *
+     * @return The deadline, or null outside a request
+     */
+    public static SigningDeadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Binds a deadline to the current thread, or unbinds it.
+     *
+     * @param deadline The deadline of the request the thread processes, or null once it is done
+     */
+    public static void bind(SigningDeadline deadline) {
+        if (deadline != null) {
+            CURRENT.set(deadline);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Checks the deadline bound to the current thread, if there is one, before a phase starts.
+     *
+     * @param phase The phase about to start
+     * @throws IOException If the deadline has passed or the request was cancelled
+     */
+    public static void checkCurrent(SigningPhase phase) throws IOException {
+        SigningDeadline deadline = CURRENT.get();
+        if (deadline != null) {
+            deadline.check(phase);
+        }
+    }
+
+    /**
+     * Cancels the request, so the next check abandons its work.
+     *
+     * @param reason Why the request is cancelled
+     */
+    public void cancel(CancellationReason reason) {
+        if (cancellationReason == null) {
+            cancellationReason = reason;
+        }
+    }
+
+    /**
+     * Checks the deadline before a phase starts.
+     *
+     * @param phase The phase about to start
+     * @throws IOException If the deadline has passed or the request was cancelled
+     */
+    public void check(SigningPhase phase) throws IOException {
+        if (cancellationReason == null && timeoutNanos > 0 && getElapsedNanos() > timeoutNanos) {
+            cancel(CancellationReason.DEADLINE_EXCEEDED);
+        }
+        if (cancellationReason != null) {
+            abandon(phase, cancellationReason);
+            throw new IOException("Signing abandoned before " + phase + ": " + cancellationReason);
+        }
+    }
+
+    /**
+     * Records that the work of the request was abandoned, keeping the first phase and reason recorded.
+     *
+     * @param phase The phase that was not started or not completed
+     * @param reason Why the work was abandoned
+     */
+    public void abandon(SigningPhase phase, CancellationReason reason) {
+        cancel(reason);
+        if (abandonedPhase == null) {
+            abandonedPhase = phase;
+        }
+    }
+
+    /**
+     * Returns whether the work of the request was abandoned.
+     *
+     * @return True once a check failed or the work was abandoned otherwise
+     */
+    public boolean isAbandoned() {
+        return abandonedPhase != null;
+    }
+
+    /**
+     * Returns the phase the work was abandoned before.
+     *
+     * @return The phase, or null if the work was not abandoned
+     */
+    public SigningPhase getAbandonedPhase() {
+        return abandonedPhase;
+    }
+
+    /**
+     * Returns why the request was cancelled.
+     *
+     * @return The reason, or null if it was not cancelled
+     */
+    public CancellationReason getCancellationReason() {
+        return cancellationReason;
+    }
+
+    /**
+     * Returns the time left until the deadline.
+     *
+     * @return The remaining nanoseconds, negative once the deadline has passed, or Long.MAX_VALUE without a deadline
+     */
+    public long getRemainingNanos() {
+        return timeoutNanos > 0 ? timeoutNanos - getElapsedNanos() : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the time since the request started.
+     *
+     * @return The elapsed nanoseconds
+     */
+    public long getElapsedNanos() {
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,146 @@
+package com.training.helper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.training.model.IngestedPdf;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Helper class for digesting a PDF while it is uploaded.
+ * An incremental signature covers the original bytes followed by the appended revision, so the
+ * digest of the upload can be continued over the revision instead of reading the original bytes again.
+ */
+@Slf4j
+public class StreamingDigestHelper {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Largest array most JVMs can allocate
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    /**
+     * Reads the upload and feeds every chunk into the digest as it arrives.
+     *
+     * @param upload The request body stream
+     * @param digestAlgorithm The JCA name of the digest, e.g. SHA-256
+     * @return The uploaded bytes and the digest state at their end
+     * @throws IOException If the upload cannot be read or the digest is unavailable
+     */
+    public static IngestedPdf ingest(InputStream upload, String digestAlgorithm) throws IOException {
+        return ingest(upload, digestAlgorithm, MAX_ARRAY_LENGTH);
+    }
+
+    /**
+     * Reads an upload of at most the given length and feeds every chunk into the digest as it arrives.
+     * Reading stops one byte past the limit, so a longer upload is never buffered in full.
+     *
+     * @param upload The request body stream
+     * @param digestAlgorithm The JCA name of the digest, e.g. SHA-256
+     * @param maxBytes The number of bytes the upload may have
+     * @return The uploaded bytes and the digest state at their end
+     * @throws UploadTooLargeException If the upload is longer than maxBytes
+     * @throws IOException If the upload cannot be read or the digest is unavailable
+     */
+    public static IngestedPdf ingest(InputStream upload, String digestAlgorithm, long maxBytes) throws IOException {
+        int limit = (int) Math.min(Math.max(maxBytes, 0), MAX_ARRAY_LENGTH);
+        MessageDigest digest = newDigest(digestAlgorithm);
+        try (DigestInputStream in = new DigestInputStream(upload, digest)) {
+            byte[] bytes = in.readNBytes(limit);
+            if (in.read() != -1) {
+                throw new UploadTooLargeException(limit);
+            }
+            log.debug("Ingested {} bytes with {}", bytes.length, digestAlgorithm);
+            return new IngestedPdf(bytes, digest);
+        }
+    }
+
+    /**
+     * Writes the upload to a file and feeds every chunk into the digest as it arrives, so that a large
+     * document never has to be held in memory.
+     *
+     * @param upload The request body stream
+     * @param digestAlgorithm The JCA name of the digest, e.g. SHA-256
+     * @param file The file to write the upload to
+     * @return The digest state at the end of the upload
+     * @throws IOException If the upload cannot be read or written or the digest is unavailable
+     */
+    public static MessageDigest spool(InputStream upload, String digestAlgorithm, Path file) throws IOException {
+        MessageDigest digest = newDigest(digestAlgorithm);
+        try (DigestInputStream in = new DigestInputStream(upload, digest)) {
+            long size = Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+            log.debug("Spooled {} bytes with {} to {}", size, digestAlgorithm, file);
+            return digest;
+        }
+    }
+
+    /**
+     * Completes the digest of the data to sign, starting from the state captured during the upload.
+     * The data to sign must start with the uploaded bytes, which holds for an incremental save of a
+     * document loaded from them; those bytes are skipped rather than digested again.
+     *
+     * @param ingested The upload and its digest state
+     * @param dataToSign The ByteRange content supplied by PDFBox
+     * @return The digest of the complete ByteRange content
+     * @throws IOException If the data to sign is shorter than the upload or cannot be read
+     */
+    public static byte[] completeDigest(IngestedPdf ingested, InputStream dataToSign) throws IOException {
+        return completeDigest(ingested.digest(), ingested.bytes().length, dataToSign);
+    }
+
+    /**
+     * Completes the digest of the data to sign, starting from the state captured at the end of an upload
+     * of the given length, e.g. one spooled to a file.
+     *
+     * @param uploadDigest The digest state at the end of the upload
+     * @param uploadLength The length of the upload in bytes
+     * @param dataToSign The ByteRange content supplied by PDFBox
+     * @return The digest of the complete ByteRange content
+     * @throws IOException If the data to sign is shorter than the upload or cannot be read
+     */
+    public static byte[] completeDigest(MessageDigest uploadDigest, long uploadLength, InputStream dataToSign)
+        throws IOException {
+        MessageDigest digest;
+        try {
+            // Clone so that the ingested state can be reused, e.g. when signing is retried
+            digest = (MessageDigest) uploadDigest.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IOException("Digest state cannot be snapshotted: " + e.getMessage(), e);
+        }
+
+        long remaining = uploadLength;
+        while (remaining > 0) {
+            long skipped = dataToSign.skip(remaining);
+            if (skipped <= 0) {
+                // skip() may legitimately return 0, fall back to reading a byte to detect the end
+                if (dataToSign.read() < 0) {
+                    throw new IOException("Data to sign ends before the end of the original document");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = dataToSign.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest newDigest(String digestAlgorithm) throws IOException {
+        try {
+            return MessageDigest.getInstance(digestAlgorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("Unsupported digest algorithm: " + digestAlgorithm, e);
+        }
+    }
+}
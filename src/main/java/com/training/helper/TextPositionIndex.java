@@ -0,0 +1,174 @@
+package com.training.helper;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.text.TextPosition;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Index of the text of a document together with the position of every character.
+ * It is built in one pass over the pages and can then answer any number of anchor
+ * lookups without extracting text again.
+ */
+@Slf4j
+public class TextPositionIndex {
+
+    /**
+     * Bounds of an anchor text occurrence.
+     *
+     * @param page The page number the anchor was found on (1-based)
+     * @param bounds The union of the character boxes, in PDF user space units
+     * @param pageBox The crop box of the page, i.e. its visible area
+     */
+    public record AnchorMatch(int page, PDRectangle bounds, PDRectangle pageBox) {
+    }
+
+    /**
+     * Text of a page with whitespace collapsed to single spaces, plus the box of each non-space character.
+     * Boxes are stored as llx, lly, urx, ury in one flat array.
+     */
+    private static final class PageText {
+        private final PDRectangle box;
+        private final StringBuilder text = new StringBuilder();
+        private float[] boxes = new float[256];
+
+        private PageText(PDRectangle box) {
+            this.box = box;
+        }
+
+        private void appendSpace() {
+            if (text.length() > 0 && text.charAt(text.length() - 1) != ' ') {
+                append(' ', Float.NaN, Float.NaN, Float.NaN, Float.NaN);
+            }
+        }
+
+        private void append(char c, float llx, float lly, float urx, float ury) {
+            int offset = text.length() * 4;
+            if (offset + 4 > boxes.length) {
+                boxes = Arrays.copyOf(boxes, boxes.length * 2);
+            }
+            boxes[offset] = llx;
+            boxes[offset + 1] = lly;
+            boxes[offset + 2] = urx;
+            boxes[offset + 3] = ury;
+            text.append(c);
+        }
+
+        private PDRectangle bounds(int start, int end) {
+            float llx = Float.MAX_VALUE;
+            float lly = Float.MAX_VALUE;
+            float urx = -Float.MAX_VALUE;
+            float ury = -Float.MAX_VALUE;
+            for (int i = start; i < end; i++) {
+                if (Float.isNaN(boxes[i * 4])) {
+                    continue;
+                }
+                llx = Math.min(llx, boxes[i * 4]);
+                lly = Math.min(lly, boxes[i * 4 + 1]);
+                urx = Math.max(urx, boxes[i * 4 + 2]);
+                ury = Math.max(ury, boxes[i * 4 + 3]);
+            }
+            return new PDRectangle(llx, lly, urx - llx, ury - lly);
+        }
+    }
+
+    private final List<PageText> pages;
+
+    private TextPositionIndex(List<PageText> pages) {
+        this.pages = pages;
+    }
+
+    /**
+     * Builds the index by extracting the text of all pages once.
+     *
+     * @param document The PDF document
+     * @return The text position index
+     * @throws IOException If the text cannot be extracted
+     */
+    public static TextPositionIndex build(PDDocument document) throws IOException {
+        List<PageText> pages = new ArrayList<>(document.getNumberOfPages());
+        PDFTextStripper stripper = new PDFTextStripper() {
+            private PageText current;
+            private float offsetX;
+            private float offsetY;
+
+            @Override
+            protected void startPage(PDPage page) throws IOException {
+                // Text positions are relative to the crop box
+                PDRectangle cropBox = page.getCropBox();
+                current = new PageText(cropBox);
+                pages.add(current);
+                offsetX = cropBox.getLowerLeftX();
+                offsetY = cropBox.getLowerLeftY();
+                super.startPage(page);
+            }
+
+            @Override
+            protected void writeString(String text, List<TextPosition> textPositions) throws IOException {
+                for (TextPosition position : textPositions) {
+                    String unicode = position.getUnicode();
+                    if (unicode == null) {
+                        continue;
+                    }
+                    float llx = offsetX + position.getXDirAdj();
+                    float lly = offsetY + position.getPageHeight() - position.getYDirAdj();
+                    for (int i = 0; i < unicode.length(); i++) {
+                        char c = unicode.charAt(i);
+                        if (Character.isWhitespace(c)) {
+                            current.appendSpace();
+                        } else {
+                            current.append(c, llx, lly, llx + position.getWidthDirAdj(), lly + position.getHeightDir());
+                        }
+                    }
+                }
+            }
+
+            @Override
+            protected void writeWordSeparator() {
+                current.appendSpace();
+            }
+
+            @Override
+            protected void writeLineSeparator() {
+                current.appendSpace();
+            }
+        };
+        stripper.setSortByPosition(true);
+        stripper.writeText(document, Writer.nullWriter());
+
+        log.debug("Built text position index for {} pages", pages.size());
+        return new TextPositionIndex(pages);
+    }
+
+    /**
+     * Finds the first occurrence of the anchor text. Runs of whitespace in the anchor match
+     * any whitespace, including line breaks, in the document.
+     *
+     * @param anchorText The text to look for
+     * @return The page and bounds of the first occurrence, if any
+     */
+    public Optional<AnchorMatch> find(String anchorText) {
+        String needle = anchorText.trim().replaceAll("\\s+", " ");
+        if (needle.isEmpty()) {
+            return Optional.empty();
+        }
+        for (int i = 0; i < pages.size(); i++) {
+            PageText page = pages.get(i);
+            int start = page.text.indexOf(needle);
+            if (start >= 0) {
+                return Optional.of(new AnchorMatch(i + 1, page.bounds(start, start + needle.length()), page.box));
+            }
+        }
+        return Optional.empty();
+    }
+}
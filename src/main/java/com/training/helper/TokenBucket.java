@@ -0,0 +1,83 @@
+package com.training.helper;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket.
+ * The whole bucket state is the time at which it will be full again (the "theoretical arrival time"
+ * of the generic cell rate algorithm), kept in one {@link AtomicLong} and advanced with compare-and-set,
+ * so acquiring never blocks and never allocates.
+ */
+public class TokenBucket {
+
+    /**
+     * Outcome of taking a token.
+     *
+     * @param acquired Whether a token was taken
+     * @param remaining The tokens left after this call
+     * @param resetNanos The nanoseconds until the bucket is full again
+     * @param retryAfterNanos The nanoseconds until a token is available, zero if one was taken
+     */
+    public record Acquisition(boolean acquired, long remaining, long resetNanos, long retryAfterNanos) {
+    }
+
+    private record Rate(long intervalNanos, int capacity) {
+    }
+
+    private final AtomicLong fullAt = new AtomicLong(System.nanoTime());
+    private volatile Rate rate;
+
+    /**
+     * @param tokensPerSecond The refill rate
+     * @param capacity The maximum number of tokens
+     */
+    public TokenBucket(double tokensPerSecond, int capacity) {
+        reconfigure(tokensPerSecond, capacity);
+    }
+
+    /**
+     * Changes the rate and capacity without resetting the tokens already taken.
+     *
+     * @param tokensPerSecond The refill rate
+     * @param capacity The maximum number of tokens
+     */
+    public void reconfigure(double tokensPerSecond, int capacity) {
+        if (tokensPerSecond <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Rate and capacity must be positive");
+        }
+        rate = new Rate(Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond)), capacity);
+    }
+
+    /**
+     * Returns the maximum number of tokens.
+     *
+     * @return The capacity
+     */
+    public int getCapacity() {
+        return rate.capacity();
+    }
+
+    /**
+     * Takes a token if one is available.
+     *
+     * @return The outcome, including the values for rate-limit headers
+     */
+    public Acquisition tryAcquire() {
+        Rate current = rate;
+        long interval = current.intervalNanos();
+        while (true) {
+            long now = System.nanoTime();
+            long full = fullAt.get();
+            // An empty bucket is full again one interval per token later
+            long next = Math.max(full, now) + interval;
+            long limit = now + current.capacity() * interval;
+            if (next - limit > 0) {
+                return new Acquisition(false, 0, full - now, next - limit);
+            }
+            if (fullAt.compareAndSet(full, next)) {
+                return new Acquisition(true, (limit - next) / interval, next - now, 0);
+            }
+        }
+    }
+}
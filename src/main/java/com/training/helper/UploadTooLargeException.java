@@ -0,0 +1,18 @@
+package com.training.helper;
+
+import java.io.IOException;
+
+/**
+ * Thrown when an upload is longer than the amount of memory that was reserved for it.
+ */
+public class UploadTooLargeException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param maxBytes The number of bytes the upload was allowed to have
+     */
+    public UploadTooLargeException(long maxBytes) {
+        super("Upload exceeds the " + maxBytes + " bytes reserved for it");
+    }
+}
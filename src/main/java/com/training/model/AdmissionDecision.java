@@ -0,0 +1,16 @@
+package com.training.model;
+
+/**
+ * Outcome of admitting a request, with the values for the rate-limit response headers.
+ *
+ * @param admitted Whether the request may proceed
+ * @param limit The burst size of the rate limit, or -1 if it is not rate limited. This is the tenant's limit,
+ *              or the credential's if the credential rejected the request
+ * @param remaining The requests that can still be made at once under that limit
+ * @param resetSeconds The seconds until that limit's bucket is full again
+ * @param retryAfterSeconds The seconds to wait before retrying a rejected request
+ * @param rejectedBy The limit that rejected the request, or null if it was admitted
+ */
+public record AdmissionDecision(boolean admitted, long limit, long remaining, long resetSeconds,
+                                long retryAfterSeconds, String rejectedBy) {
+}
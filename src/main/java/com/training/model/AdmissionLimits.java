@@ -0,0 +1,11 @@
+package com.training.model;
+
+/**
+ * Rate and concurrency limits for a tenant or a signing credential. A value of zero or less disables that limit.
+ *
+ * @param requestsPerSecond The sustained request rate
+ * @param burst The number of requests that may be made at once after a quiet period
+ * @param maxConcurrent The number of requests that may be in progress at the same time
+ */
+public record AdmissionLimits(double requestsPerSecond, int burst, int maxConcurrent) {
+}
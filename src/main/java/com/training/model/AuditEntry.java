@@ -0,0 +1,17 @@
+package com.training.model;
+
+/**
+ * An entry in the signing audit journal, chained to its predecessor by hash.
+ *
+ * @param sequence The position of the entry in the journal, starting at 1
+ * @param time The time the entry was recorded, in ISO-8601
+ * @param signer The name of the signer
+ * @param certificateSerial The hex serial number of the signing certificate
+ * @param digestAlgorithm The digest algorithm of the signed content, e.g. SHA-256
+ * @param contentDigest The hex digest of the signed ByteRange content
+ * @param previousHash The hash of the previous entry, or the genesis hash for the first entry
+ * @param hash The SHA-256 over the previous hash and the fields of this entry
+ */
+public record AuditEntry(long sequence, String time, String signer, String certificateSerial,
+                         String digestAlgorithm, String contentDigest, String previousHash, String hash) {
+}
@@ -0,0 +1,12 @@
+package com.training.model;
+
+/**
+ * Result of replaying the signing audit journal and checking its hash chain.
+ *
+ * @param entries The number of entries that were verified
+ * @param valid Whether every entry is intact and chained to its predecessor
+ * @param firstInvalidSequence The sequence of the first broken entry, or -1 if the journal is valid
+ * @param message A description of the first problem found, or null if the journal is valid
+ */
+public record AuditVerification(long entries, boolean valid, long firstInvalidSequence, String message) {
+}
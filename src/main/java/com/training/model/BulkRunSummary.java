@@ -0,0 +1,31 @@
+package com.training.model;
+
+/**
+ * Outcome of a bulk run over one or more input directories.
+ *
+ * @param processed The number of documents written to the output directory
+ * @param skipped The number of documents already recorded in the checkpoint
+ * @param failed The number of documents that could not be processed
+ * @param bytes The total size of the processed input documents
+ * @param elapsedNanos The duration of the run
+ */
+public record BulkRunSummary(long processed, long skipped, long failed, long bytes, long elapsedNanos) {
+
+    /**
+     * Returns the processed documents per second.
+     *
+     * @return The throughput, zero if no time elapsed
+     */
+    public double filesPerSecond() {
+        return elapsedNanos > 0 ? processed * 1e9 / elapsedNanos : 0;
+    }
+
+    /**
+     * Returns the processed input MiB per second.
+     *
+     * @return The throughput, zero if no time elapsed
+     */
+    public double mebibytesPerSecond() {
+        return elapsedNanos > 0 ? bytes * 1e9 / elapsedNanos / (1024 * 1024) : 0;
+    }
+}
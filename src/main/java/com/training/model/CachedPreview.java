@@ -0,0 +1,10 @@
+package com.training.model;
+
+/**
+ * A rendered preview kept in the preview cache.
+ *
+ * @param etag The quoted strong entity tag of the body, the hex SHA-256 of its bytes
+ * @param body The rendered PDF
+ */
+public record CachedPreview(String etag, byte[] body) {
+}
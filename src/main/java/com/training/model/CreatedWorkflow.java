@@ -0,0 +1,15 @@
+package com.training.model;
+
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+
+/**
+ * A workflow as returned when it is started, with the token each party signs with. The tokens are only
+ * returned here; the workflow store keeps their hashes.
+ *
+ * @param workflow The new workflow
+ * @param partyTokens The signing token of each party, to be handed to that party alone
+ */
+public record CreatedWorkflow(@JsonUnwrapped SigningWorkflow workflow, Map<String, String> partyTokens) {
+}
@@ -0,0 +1,15 @@
+package com.training.model;
+
+/**
+ * A signer image encoded as the data of a PDF image XObject, ready to be embedded without decoding.
+ *
+ * @param id The hex SHA-256 of the source image
+ * @param width The width in pixels
+ * @param height The height in pixels
+ * @param components The number of color components, 1 for DeviceGray or 3 for DeviceRGB
+ * @param filter The name of the filter the data is encoded with, FlateDecode or DCTDecode
+ * @param data The encoded 8-bit samples
+ * @param alpha The FlateDecode encoded 8-bit soft mask, or null if the image is opaque
+ */
+public record EncodedImage(String id, int width, int height, int components, String filter, byte[] data, byte[] alpha) {
+}
@@ -0,0 +1,12 @@
+package com.training.model;
+
+import java.security.MessageDigest;
+
+/**
+ * An uploaded PDF together with the digest state over its bytes, captured while the upload was read.
+ *
+ * @param bytes The uploaded PDF
+ * @param digest The digest state at the end of the uploaded bytes; never updated, only cloned
+ */
+public record IngestedPdf(byte[] bytes, MessageDigest digest) {
+}
@@ -0,0 +1,13 @@
+package com.training.model;
+
+/**
+ * Estimated heap needed to process a document, both when it is held in memory and when it is read from a
+ * file with the parser's scratch data on disk.
+ *
+ * @param size The size of the document in bytes
+ * @param objects The number of objects in the document
+ * @param inMemoryBytes The heap needed with the document, its parsed objects and the output in memory
+ * @param diskBackedBytes The heap needed with the document and the output in files
+ */
+public record MemoryFootprint(long size, long objects, long inMemoryBytes, long diskBackedBytes) {
+}
@@ -0,0 +1,12 @@
+package com.training.model;
+
+/**
+ * Empty signature field provisioned on a template, indexed by the object that holds the field and its widget.
+ *
+ * @param name The name of the field
+ * @param objectNumber The number of the field object in the template
+ * @param generation The generation of the field object in the template
+ * @param placement Where the widget of the field is shown
+ */
+public record ProvisionedField(String name, long objectNumber, int generation, SignaturePlacement placement) {
+}
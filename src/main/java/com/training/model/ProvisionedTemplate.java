@@ -0,0 +1,12 @@
+package com.training.model;
+
+import java.util.List;
+
+/**
+ * Template with empty signature fields provisioned on it, signed by filling one of its fields.
+ *
+ * @param id The id of the template
+ * @param fields The empty signature fields of the template, in form order
+ */
+public record ProvisionedTemplate(String id, List<ProvisionedField> fields) {
+}
@@ -0,0 +1,24 @@
+package com.training.model;
+
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+
+/**
+ * Position of a visible signature on a page, in PDF user space units.
+ *
+ * @param page The page number to place the signature on (1-based)
+ * @param x X-coordinate of the lower left corner
+ * @param y Y-coordinate of the lower left corner
+ * @param width Width of the signature field
+ * @param height Height of the signature field
+ */
+public record SignaturePlacement(int page, float x, float y, float width, float height) {
+
+    /**
+     * Returns the signature field rectangle.
+     *
+     * @return The rectangle of the signature field
+     */
+    public PDRectangle toRectangle() {
+        return new PDRectangle(x, y, width, height);
+    }
+}
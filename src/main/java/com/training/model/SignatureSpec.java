@@ -0,0 +1,20 @@
+package com.training.model;
+
+import com.training.enums.DigestAlgorithm;
+import com.training.enums.SignatureProviderType;
+
+/**
+ * Settings that, together with the type of the signing key, determine the signature algorithm.
+ *
+ * @param digestAlgorithm The digest used for RSA and ECDSA signatures; EdDSA uses its built-in digest
+ * @param provider The JCA provider used for signing and digesting
+ * @param rsaPss Whether RSA keys sign with RSASSA-PSS instead of PKCS#1 v1.5
+ */
+public record SignatureSpec(DigestAlgorithm digestAlgorithm, SignatureProviderType provider, boolean rsaPss) {
+
+    /**
+     * SHA-256 with BouncyCastle and PKCS#1 v1.5 padding for RSA keys.
+     */
+    public static final SignatureSpec DEFAULT =
+        new SignatureSpec(DigestAlgorithm.SHA256, SignatureProviderType.BOUNCY_CASTLE, false);
+}
@@ -0,0 +1,24 @@
+package com.training.model;
+
+/**
+ * Describes an image in the signer asset store.
+ *
+ * @param id The id to reference the image by when signing
+ * @param width The width in pixels
+ * @param height The height in pixels
+ * @param transparent Whether the image is embedded with a soft mask
+ * @param encodedBytes The size of the embedded image data
+ */
+public record SignerAsset(String id, int width, int height, boolean transparent, long encodedBytes) {
+
+    /**
+     * Describes an encoded image.
+     *
+     * @param image The encoded image
+     * @return The description
+     */
+    public static SignerAsset of(EncodedImage image) {
+        return new SignerAsset(image.id(), image.width(), image.height(), image.alpha() != null,
+                               image.data().length + (image.alpha() != null ? image.alpha().length : 0L));
+    }
+}
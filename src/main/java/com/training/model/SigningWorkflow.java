@@ -0,0 +1,89 @@
+package com.training.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A document signed by several parties in order, kept in the signed-document store.
+ * The steps are signed one after another; the parties of one step may sign in any order.
+ *
+ * @param id The id of the workflow
+ * @param originalSha256 The hex SHA-256 of the unsigned document
+ * @param headSha256 The hex SHA-256 of the document with every signature so far
+ * @param steps The parties of each step, in signing order
+ * @param signatures The signatures applied so far, in signing order
+ */
+public record SigningWorkflow(String id, String originalSha256, String headSha256, List<List<String>> steps,
+                              List<WorkflowSignature> signatures) {
+
+    /**
+     * Returns the index of the first step with a party that has not signed.
+     *
+     * @return The step index, or the number of steps once every party has signed
+     */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public int getCurrentStep() {
+        for (int step = 0; step < steps.size(); step++) {
+            for (String party : steps.get(step)) {
+                if (!hasSigned(party)) {
+                    return step;
+                }
+            }
+        }
+        return steps.size();
+    }
+
+    /**
+     * Returns whether every party has signed.
+     *
+     * @return True once the workflow is complete
+     */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public boolean isComplete() {
+        return getCurrentStep() == steps.size();
+    }
+
+    /**
+     * Returns whether a party may sign now: it belongs to the current step and has not signed yet.
+     *
+     * @param party The party
+     * @return True if the party's signature is due
+     */
+    public boolean isDue(String party) {
+        return !isComplete() && steps.get(getCurrentStep()).contains(party) && !hasSigned(party);
+    }
+
+    /**
+     * Returns whether a party has signed.
+     *
+     * @param party The party
+     * @return True if a signature of the party was applied
+     */
+    public boolean hasSigned(String party) {
+        return signatures.stream().anyMatch(signature -> signature.party().equals(party));
+    }
+
+    /**
+     * Returns the position of a party across all steps, used to lay out default signature placements.
+     *
+     * @param party The party
+     * @return The zero-based position, or -1 if the party is not part of the workflow
+     */
+    public int indexOf(String party) {
+        return steps.stream().flatMap(List::stream).toList().indexOf(party);
+    }
+
+    /**
+     * Returns the workflow with a signature applied.
+     *
+     * @param signature The signature, whose document becomes the head
+     * @return The updated workflow
+     */
+    public SigningWorkflow withSignature(WorkflowSignature signature) {
+        List<WorkflowSignature> updated = new ArrayList<>(signatures);
+        updated.add(signature);
+        return new SigningWorkflow(id, originalSha256, signature.documentSha256(), steps, List.copyOf(updated));
+    }
+}
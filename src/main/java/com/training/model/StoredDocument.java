@@ -0,0 +1,14 @@
+package com.training.model;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * A document in the signed-document store, made up of its original bytes and the revisions appended to them.
+ *
+ * @param sha256 The hex SHA-256 of the complete document
+ * @param parts The blob files in document order: the original first, then each revision
+ * @param size The size of the complete document in bytes
+ */
+public record StoredDocument(String sha256, List<Path> parts, long size) {
+}
@@ -0,0 +1,12 @@
+package com.training.model;
+
+/**
+ * A signature applied in a signing workflow.
+ *
+ * @param party The party that signed
+ * @param documentSha256 The hex SHA-256 of the document after the signature
+ * @param revisionBytes The size of the revision the signature appended
+ * @param signedAt The time of the signature in epoch milliseconds
+ */
+public record WorkflowSignature(String party, String documentSha256, long revisionBytes, long signedAt) {
+}
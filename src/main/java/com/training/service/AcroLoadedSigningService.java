@@ -2,17 +2,13 @@ package com.training.service;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.security.KeyStore;
-import java.security.PrivateKey;
-import java.security.Security;
-import java.security.cert.Certificate;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
-import java.util.Arrays;
 import java.util.Calendar;
 
 import org.apache.commons.io.IOUtils;
@@ -27,25 +23,27 @@ import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationWidget;
 import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceDictionary;
 import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceStream;
 import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
-import org.apache.pdfbox.pdmodel.interactive.digitalsignature.SignatureInterface;
 import org.apache.pdfbox.pdmodel.interactive.digitalsignature.SignatureOptions;
 import org.apache.pdfbox.pdmodel.interactive.digitalsignature.visible.PDVisibleSigProperties;
 import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
 import org.apache.pdfbox.pdmodel.interactive.form.PDSignatureField;
 import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
 import org.apache.pdfbox.pdmodel.PDPageContentStream.AppendMode;
-import org.bouncycastle.cert.jcajce.JcaCertStore;
-import org.bouncycastle.cms.CMSProcessableByteArray;
-import org.bouncycastle.cms.CMSSignedData;
-import org.bouncycastle.cms.CMSSignedDataGenerator;
-import org.bouncycastle.cms.jcajce.JcaSignerInfoGeneratorBuilder;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
-import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
-import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.training.enums.RevisionFormat;
+import com.training.enums.SigningPhase;
+import com.training.helper.CMSSignatureHelper;
+import com.training.helper.CompactRevisionWriter;
+import com.training.helper.PdfLinearizer;
+import com.training.helper.CredentialSource;
 import com.training.helper.SignatureAppearanceHelper;
+import com.training.helper.SigningDeadline;
+import com.training.model.SignaturePlacement;
+import com.training.model.SignatureSpec;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -56,9 +54,23 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class AcroLoadedSigningService {
     
-    static {
-        Security.addProvider(new BouncyCastleProvider());
-    }
+    @Autowired
+    private AnchorPlacementService anchorPlacementService;
+    
+    @Autowired(required = false)
+    private SignatureSpec signatureSpec = SignatureSpec.DEFAULT;
+    
+    @Autowired(required = false)
+    private SigningAuditJournal signingAuditJournal;
+    
+    @Autowired(required = false)
+    private CredentialSourceRegistry credentialSourceRegistry = new CredentialSourceRegistry();
+    
+    @Autowired(required = false)
+    private LinearizationService linearizationService = new LinearizationService();
+
+    @Value("${esign.signing.revision-format:COMPACT}")
+    private RevisionFormat revisionFormat = RevisionFormat.COMPACT;
     
     /**
      * Signs a PDF document with a digital signature using layered appearance.
@@ -90,68 +102,144 @@ public class AcroLoadedSigningService {
                                   float x, float y, 
                                   float width, float height) 
                                   throws IOException, CertificateException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        signPdfWithLayers(pdfFile, certificatePath, certificatePassword, certificateAlias,
+                          signatureName, signatureLocation, reason, page, x, y, width, height, baos);
+        return baos.toByteArray();
+    }
+    
+    /**
+     * Signs a PDF document with a digital signature using layered appearance and writes the
+     * incrementally saved document to the given stream.
+     * 
+     * @param pdfFile The PDF file to sign
+     * @param certificatePath Path to the certificate file
+     * @param certificatePassword Password for the certificate
+     * @param certificateAlias Alias of the certificate in the keystore
+     * @param signatureName Name of the signer
+     * @param signatureLocation Location of the signer
+     * @param reason Reason for signing
+     * @param page The page number to place the signature (1-based)
+     * @param x X-coordinate for the signature
+     * @param y Y-coordinate for the signature
+     * @param width Width of the signature field
+     * @param height Height of the signature field
+     * @param output The stream to write the original bytes followed by the signed revision to
+     * @throws IOException If there's an issue with the PDF
+     * @throws CertificateException If there's an issue with the certificate
+     */
+    public void signPdfWithLayers(MultipartFile pdfFile, 
+                                String certificatePath, 
+                                String certificatePassword,
+                                String certificateAlias, 
+                                String signatureName, 
+                                String signatureLocation,
+                                String reason,
+                                int page,
+                                float x, float y, 
+                                float width, float height,
+                                OutputStream output) 
+                                throws IOException, CertificateException {
+        signPdfWithLayers(IOUtils.toByteArray(pdfFile.getInputStream()), certificatePath, certificatePassword,
+                          certificateAlias, signatureName, signatureLocation, reason, page, x, y, width, height, output);
+    }
+    
+    /**
+     * Signs a PDF document held in memory with a digital signature using layered appearance and writes the
+     * incrementally saved document to the given stream.
+     * 
+     * @param pdfBytes The PDF document to sign
+     * @param certificatePath Path to the certificate file
+     * @param certificatePassword Password for the certificate
+     * @param certificateAlias Alias of the certificate in the keystore
+     * @param signatureName Name of the signer
+     * @param signatureLocation Location of the signer
+     * @param reason Reason for signing
+     * @param page The page number to place the signature (1-based)
+     * @param x X-coordinate for the signature
+     * @param y Y-coordinate for the signature
+     * @param width Width of the signature field
+     * @param height Height of the signature field
+     * @param output The stream to write the original bytes followed by the signed revision to
+     * @throws IOException If there's an issue with the PDF
+     * @throws CertificateException If there's an issue with the certificate
+     */
+    public void signPdfWithLayers(byte[] pdfBytes, 
+                                String certificatePath, 
+                                String certificatePassword,
+                                String certificateAlias, 
+                                String signatureName, 
+                                String signatureLocation,
+                                String reason,
+                                int page,
+                                float x, float y, 
+                                float width, float height,
+                                OutputStream output) 
+                                throws IOException, CertificateException {
+        signPdfWithLayers(pdfBytes, certificatePath, certificatePassword, certificateAlias, signatureName,
+                          signatureLocation, reason, page, x, y, width, height, false, output);
+    }
+    
+    /**
+     * Signs a PDF document held in memory with a digital signature using layered appearance and writes the
+     * incrementally saved document to the given stream. An append-only document is never linearized, so
+     * the output starts with its unchanged bytes.
+     * 
+     * @param pdfBytes The PDF document to sign
+     * @param certificatePath Path to the certificate file
+     * @param certificatePassword Password for the certificate
+     * @param certificateAlias Alias of the certificate in the keystore
+     * @param signatureName Name of the signer
+     * @param signatureLocation Location of the signer
+     * @param reason Reason for signing
+     * @param page The page number to place the signature (1-based)
+     * @param x X-coordinate for the signature
+     * @param y Y-coordinate for the signature
+     * @param width Width of the signature field
+     * @param height Height of the signature field
+     * @param appendOnly True if the output must start with the unchanged bytes of the document
+     * @param output The stream to write the original bytes followed by the signed revision to
+     * @throws IOException If there's an issue with the PDF
+     * @throws CertificateException If there's an issue with the certificate
+     */
+    public void signPdfWithLayers(byte[] pdfBytes, 
+                                String certificatePath, 
+                                String certificatePassword,
+                                String certificateAlias, 
+                                String signatureName, 
+                                String signatureLocation,
+                                String reason,
+                                int page,
+                                float x, float y, 
+                                float width, float height,
+                                boolean appendOnly,
+                                OutputStream output) 
+                                throws IOException, CertificateException {
         
         log.info("Signing PDF with layered appearance");
         
-        // Load the keystore and get the private key and certificate chain
-        KeyStore keystore;
-        PrivateKey privateKey;
-        Certificate[] certificateChain;
-        
-        try {
-            keystore = KeyStore.getInstance("PKCS12");
-        } catch (Exception e) {
-            throw new CertificateException("Error creating keystore: " + e.getMessage(), e);
-        }
-        
-        try (InputStream certStream = new FileInputStream(certificatePath)) {
-            keystore.load(certStream, certificatePassword.toCharArray());
-            privateKey = (PrivateKey) keystore.getKey(certificateAlias, certificatePassword.toCharArray());
-            certificateChain = keystore.getCertificateChain(certificateAlias);
-            
-            if (privateKey == null || certificateChain == null || certificateChain.length == 0) {
-                throw new CertificateException("Failed to load private key or certificate chain");
-            }
-        } catch (Exception e) {
-            throw new CertificateException("Error loading certificate: " + e.getMessage(), e);
-        }
+        // Get the shared credentials for the keystore entry
+        CredentialSource credentials = credentialSourceRegistry.resolve(certificatePath, certificatePassword, certificateAlias);
         
         // Create signature interface for the actual signing process
-        SignatureInterface signatureInterface = content -> {
-            try {
-                CMSSignedDataGenerator gen = new CMSSignedDataGenerator();
-                X509Certificate cert = (X509Certificate) certificateChain[0];
-                
-                // Add the signing certificate and chain
-                gen.addCertificates(new JcaCertStore(Arrays.asList(certificateChain)));
-                
+        AuditedSignature signatureInterface = new AuditedSignature(signingAuditJournal, signatureName, credentials,
+                                                                   signatureSpec, (content, audit) -> {
+            SigningDeadline.checkCurrent(SigningPhase.DIGEST);
+            // Create signed data with the algorithm matching the key type
+            byte[] contentBytes = IOUtils.toByteArray(content);
+            SigningDeadline.checkCurrent(SigningPhase.SIGN);
+            byte[] cmsSignature = credentials.withKey((privateKey, certificateChain) -> {
                 // Verify certificate validity
-                cert.checkValidity();
-                
-                // Add signer info
-                JcaContentSignerBuilder contentSignerBuilder = new JcaContentSignerBuilder("SHA256withRSA");
-                contentSignerBuilder.setProvider(BouncyCastleProvider.PROVIDER_NAME);
-                
-                gen.addSignerInfoGenerator(
-                    new JcaSignerInfoGeneratorBuilder(
-                        new JcaDigestCalculatorProviderBuilder()
-                            .setProvider(BouncyCastleProvider.PROVIDER_NAME)
-                            .build())
-                        .build(contentSignerBuilder.build(privateKey), cert));
-                
-                // Create signed data
-                byte[] contentBytes = IOUtils.toByteArray(content);
-                CMSProcessableByteArray msg = new CMSProcessableByteArray(contentBytes);
-                CMSSignedData signedData = gen.generate(msg, true);
-                
-                return signedData.getEncoded();
-            } catch (Exception e) {
-                throw new IOException("Error creating signature: " + e.getMessage(), e);
-            }
-        };
+                ((X509Certificate) certificateChain[0]).checkValidity();
+                return CMSSignatureHelper.createCMSSignature(
+                    contentBytes, privateKey, certificateChain, signatureSpec, false);
+            });
+            audit.signedContent(contentBytes);
+            return cmsSignature;
+        });
         
         // Load the PDF document
-        byte[] pdfBytes = IOUtils.toByteArray(pdfFile.getInputStream());
+        SigningDeadline.checkCurrent(SigningPhase.LOAD);
         try (PDDocument document = Loader.loadPDF(pdfBytes)) {
             // Check if the page number is valid
             if (page < 1 || page > document.getNumberOfPages()) {
@@ -170,19 +258,25 @@ public class AcroLoadedSigningService {
             PDRectangle signatureRect = new PDRectangle(x, y, width, height);
             
             // Create layered signature appearance
+            SigningDeadline.checkCurrent(SigningPhase.APPEARANCE);
             PDAppearanceDictionary appearance = createLayeredAppearance(
                 document, signatureRect, signatureName, signatureLocation, 
                 signature.getSignDate(), reason);
             
             // Set up signature options
             SignatureOptions signatureOptions = new SignatureOptions();
-            signatureOptions.setPreferredSignatureSize(7503370);
+            // Compact revisions reserve an estimate from the certificate chain instead of a fixed 7.5MB;
+            // the layered appearance is built on the loaded document, so appended revisions are written compactly
+            boolean compact = revisionFormat != RevisionFormat.STANDARD && CompactRevisionWriter.supports(document);
+            boolean linearize = !appendOnly && linearizationService.isEnabled() && PdfLinearizer.canLinearize(document);
+            signatureOptions.setPreferredSignatureSize(compact || linearize
+                ? CMSSignatureHelper.estimateSignatureSize(credentials.getCertificateChain()) : 7503370);
             // Create a temporary file for the visual signature
             File tempFile = File.createTempFile("signature", ".pdf");
             try (FileOutputStream fos = new FileOutputStream(tempFile)) {
                 // Create a temporary document with the appearance
                 PDDocument tempDoc = new PDDocument();
-                PDPage tempPage = new PDPage(new PDRectangle(signatureRect.getWidth(), signatureRect.getHeight()));
+                PDPage tempPage = new PDPage(document.getPage(page - 1).getMediaBox());
                 tempDoc.addPage(tempPage);
                 
                 // Add the appearance to the temp document
@@ -204,7 +298,7 @@ public class AcroLoadedSigningService {
                 
                 // Set appearance and rectangle
                 widget.setAppearance(appearance);
-                widget.setRectangle(new PDRectangle(0, 0, signatureRect.getWidth(), signatureRect.getHeight()));
+                widget.setRectangle(signatureRect);
                 
                 // Add the widget to the page
                 tempPage.getAnnotations().add(widget);
@@ -223,15 +317,27 @@ public class AcroLoadedSigningService {
             signatureOptions.setVisualSignature(tempFile);
             signatureOptions.setPage(page - 1); // Convert to 0-based index
             
-            // Add signature to document
-            document.addSignature(signature, signatureInterface, signatureOptions);
-            
-            // Save with incremental update to preserve existing signatures
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            document.saveIncremental(baos);
+            SigningDeadline.checkCurrent(SigningPhase.SAVE);
+            if (linearize) {
+                // Write the first signature into the linearized file, so the signed document stays linearized
+                document.addSignature(signature, signatureOptions);
+                PdfLinearizer.linearize(document, signature, signatureInterface, output);
+            } else if (compact) {
+                // Add signature to document and write the revision with object streams,
+                // reusing layers identical to those of earlier signatures
+                document.addSignature(signature, signatureOptions);
+                CompactRevisionWriter.write(document, pdfBytes, signature, signatureInterface, output);
+            } else {
+                // Add signature to document
+                document.addSignature(signature, signatureInterface, signatureOptions);
+                
+                // Save with incremental update to preserve existing signatures
+                document.saveIncremental(output);
+            }
+            // Only a signature whose document was saved is audited
+            signatureInterface.record();
             
             log.info("PDF signed successfully with layered appearance");
-            return baos.toByteArray();
         }
     }
     
@@ -269,7 +375,7 @@ public class AcroLoadedSigningService {
         // Create the FRM layer that combines all layers
         PDAppearanceStream frm = new PDAppearanceStream(document);
         frm.setResources(resources);
-        frm.setBBox(rect);
+        frm.setBBox(new PDRectangle(rect.getWidth(), rect.getHeight()));
         
         // Create content stream for FRM that references all other layers
         try (PDPageContentStream cs = new PDPageContentStream(document, frm)) {
@@ -328,4 +434,87 @@ public class AcroLoadedSigningService {
                               signatureName, signatureLocation, reason,
                               page, x, y, width, height);
     }
+    
+    /**
+     * Signs a PDF document with the signature field placed directly above an anchor text.
+     * 
+     * @param pdfFile The PDF file to sign
+     * @param certificatePath Path to the certificate file
+     * @param certificatePassword Password for the certificate
+     * @param certificateAlias Alias of the certificate in the keystore
+     * @param signatureName Name of the signer
+     * @param signatureLocation Location of the signer
+     * @param anchorText Text in the document to place the signature at, e.g. "Borrower Signature"
+     * @return The signed PDF as a byte array
+     * @throws IOException If there's an issue with the PDF or the anchor text is not found
+     * @throws CertificateException If there's an issue with the certificate
+     */
+    public byte[] signPdfAtAnchor(MultipartFile pdfFile, String certificatePath, String certificatePassword,
+                                  String certificateAlias, String signatureName, String signatureLocation,
+                                  String anchorText) throws IOException, CertificateException {
+        SignaturePlacement placement = anchorPlacementService.placeAboveAnchor(
+            pdfFile.getBytes(), anchorText, 300, 100);
+        
+        return signPdfWithLayers(pdfFile, certificatePath, certificatePassword, certificateAlias,
+                              signatureName, signatureLocation, "Document digitally signed",
+                              placement.page(), placement.x(), placement.y(), placement.width(), placement.height());
+    }
+    
+    /**
+     * Signs a PDF document with the signature field placed directly above an anchor text and
+     * writes the incrementally saved document to the given stream.
+     * 
+     * @param pdfFile The PDF file to sign
+     * @param certificatePath Path to the certificate file
+     * @param certificatePassword Password for the certificate
+     * @param certificateAlias Alias of the certificate in the keystore
+     * @param signatureName Name of the signer
+     * @param signatureLocation Location of the signer
+     * @param anchorText Text in the document to place the signature at, or null for the default position
+     * @param output The stream to write the original bytes followed by the signed revision to
+     * @throws IOException If there's an issue with the PDF or the anchor text is not found
+     * @throws CertificateException If there's an issue with the certificate
+     */
+    public void signPdfAtAnchor(MultipartFile pdfFile, String certificatePath, String certificatePassword,
+                                String certificateAlias, String signatureName, String signatureLocation,
+                                String anchorText, OutputStream output) throws IOException, CertificateException {
+        SignaturePlacement placement = anchorText != null
+            ? anchorPlacementService.placeAboveAnchor(pdfFile.getBytes(), anchorText, 300, 100)
+            : new SignaturePlacement(1, 0, 0, 300, 100);
+        
+        signPdfWithLayers(pdfFile, certificatePath, certificatePassword, certificateAlias,
+                          signatureName, signatureLocation, "Document digitally signed",
+                          placement.page(), placement.x(), placement.y(), placement.width(), placement.height(), output);
+    }
+    
+    /**
+     * Signs a PDF document read from a file with the signature field placed directly above an anchor text and
+     * writes the incrementally saved document to the given stream.
+     * 
+     * @param pdfFile The PDF file to sign
+     * @param sha256 The SHA-256 of the file, under which the text index of its anchors is cached
+     * @param certificatePath Path to the certificate file
+     * @param certificatePassword Password for the certificate
+     * @param certificateAlias Alias of the certificate in the keystore
+     * @param signatureName Name of the signer
+     * @param signatureLocation Location of the signer
+     * @param anchorText Text in the document to place the signature at, or null for the default position
+     * @param appendOnly True if the output must start with the unchanged bytes of the file
+     * @param output The stream to write the original bytes followed by the signed revision to
+     * @throws IOException If there's an issue with the PDF or the anchor text is not found
+     * @throws CertificateException If there's an issue with the certificate
+     */
+    public void signPdfAtAnchor(Path pdfFile, String sha256, String certificatePath, String certificatePassword,
+                                String certificateAlias, String signatureName, String signatureLocation,
+                                String anchorText, boolean appendOnly, OutputStream output)
+                                throws IOException, CertificateException {
+        SignaturePlacement placement = anchorText != null
+            ? anchorPlacementService.placeAboveAnchor(pdfFile, sha256, anchorText, 300, 100)
+            : new SignaturePlacement(1, 0, 0, 300, 100);
+        
+        signPdfWithLayers(Files.readAllBytes(pdfFile), certificatePath, certificatePassword, certificateAlias,
+                          signatureName, signatureLocation, "Document digitally signed",
+                          placement.page(), placement.x(), placement.y(), placement.width(), placement.height(),
+                          appendOnly, output);
+    }
 }
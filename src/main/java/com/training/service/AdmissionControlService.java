@@ -0,0 +1,299 @@
+package com.training.service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.training.helper.TokenBucket;
+import com.training.model.AdmissionDecision;
+import com.training.model.AdmissionLimits;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Per-tenant and per-credential admission control.
+ * Each tenant and each signing credential has a token bucket for its request rate and a counter for its
+ * requests in progress. Both are updated with compare-and-set, so admitting a request takes no lock.
+ * Limits start from the configured defaults and can be overridden per tenant or credential at runtime.
+ */
+@Service
+@Slf4j
+public class AdmissionControlService {
+
+    /**
+     * Scope name of tenant limits.
+     */
+    public static final String TENANT = "tenant";
+
+    /**
+     * Scope name of credential limits.
+     */
+    public static final String CREDENTIAL = "credential";
+
+    /**
+     * Tenants that get limits of their own. Requests naming any other tenant share the default tenant's limits,
+     * so a client cannot escape its limits, or grow the limiter maps, by sending a new tenant id.
+     */
+    @Value("${esign.admission.tenants:}")
+    private Set<String> knownTenants = Set.of();
+
+    @Value("${esign.admission.tenant.requests-per-second:20}")
+    private double tenantRequestsPerSecond;
+
+    @Value("${esign.admission.tenant.burst:40}")
+    private int tenantBurst;
+
+    @Value("${esign.admission.tenant.max-concurrent:8}")
+    private int tenantMaxConcurrent;
+
+    @Value("${esign.admission.credential.requests-per-second:0}")
+    private double credentialRequestsPerSecond;
+
+    @Value("${esign.admission.credential.burst:0}")
+    private int credentialBurst;
+
+    @Value("${esign.admission.credential.max-concurrent:32}")
+    private int credentialMaxConcurrent;
+
+    private final Map<String, Limiter> tenants = new ConcurrentHashMap<>();
+    private final Map<String, Limiter> credentials = new ConcurrentHashMap<>();
+    private final Map<String, AdmissionLimits> tenantOverrides = new ConcurrentHashMap<>();
+    private final Map<String, AdmissionLimits> credentialOverrides = new ConcurrentHashMap<>();
+
+    /**
+     * Returns whether a tenant has limits of its own, because it is configured or has an override.
+     *
+     * @param tenant The tenant named by a request
+     * @return True if the tenant is known
+     */
+    public boolean isKnownTenant(String tenant) {
+        return knownTenants.contains(tenant) || tenantOverrides.containsKey(tenant);
+    }
+
+    /**
+     * Admits a request if neither the tenant nor the credential is over its limits. An admitted request
+     * holds a concurrency slot of both until {@link #release} is called.
+     * Tokens taken before a later limit rejects the request are not returned, so retries are still paced.
+     *
+     * @param tenant The tenant making the request
+     * @param credential The signing credential the request uses, or null if it does not sign
+     * @return The decision and the values for the rate-limit headers
+     */
+    public AdmissionDecision admit(String tenant, String credential) {
+        Limiter tenantLimiter = tenants.computeIfAbsent(tenant, key -> new Limiter(tenantLimits(key)));
+        Limiter credentialLimiter = credential == null ? null
+            : credentials.computeIfAbsent(credential, key -> new Limiter(credentialLimits(key)));
+
+        // The buckets are read once, as limits changed at runtime may replace or remove them
+        TokenBucket tenantBucket = tenantLimiter.bucket;
+        TokenBucket credentialBucket = credentialLimiter == null ? null : credentialLimiter.bucket;
+
+        if (!tenantLimiter.enter()) {
+            return rejected(tenantBucket, TENANT, tenant, 1);
+        }
+        if (credentialLimiter != null && !credentialLimiter.enter()) {
+            tenantLimiter.exit();
+            return rejected(credentialBucket, CREDENTIAL, credential, 1);
+        }
+
+        TokenBucket.Acquisition tenantTokens = tenantBucket == null ? null : tenantBucket.tryAcquire();
+        if (tenantTokens != null && !tenantTokens.acquired()) {
+            release(tenant, credential);
+            return rejected(tenantBucket, TENANT, tenant, toSeconds(tenantTokens.retryAfterNanos()));
+        }
+        TokenBucket.Acquisition credentialTokens = credentialBucket == null ? null : credentialBucket.tryAcquire();
+        if (credentialTokens != null && !credentialTokens.acquired()) {
+            release(tenant, credential);
+            return rejected(credentialBucket, CREDENTIAL, credential, toSeconds(credentialTokens.retryAfterNanos()));
+        }
+
+        if (tenantTokens == null) {
+            return new AdmissionDecision(true, -1, -1, 0, 0, null);
+        }
+        return new AdmissionDecision(true, tenantBucket.getCapacity(), tenantTokens.remaining(),
+                                     toSeconds(tenantTokens.resetNanos()), 0, null);
+    }
+
+    /**
+     * Releases the concurrency slots held by an admitted request.
+     *
+     * @param tenant The tenant that made the request
+     * @param credential The signing credential the request used, or null
+     */
+    public void release(String tenant, String credential) {
+        Limiter tenantLimiter = tenants.get(tenant);
+        if (tenantLimiter != null) {
+            tenantLimiter.exit();
+        }
+        if (credential != null) {
+            Limiter credentialLimiter = credentials.get(credential);
+            if (credentialLimiter != null) {
+                credentialLimiter.exit();
+            }
+        }
+    }
+
+    /**
+     * Overrides the limits of a tenant. Tokens already taken and requests in progress are kept.
+     *
+     * @param tenant The tenant
+     * @param limits The new limits
+     * @throws IllegalArgumentException If a limit is not positive
+     */
+    public void setTenantLimits(String tenant, AdmissionLimits limits) {
+        checkPositive(limits);
+        tenantOverrides.put(tenant, limits);
+        Limiter limiter = tenants.get(tenant);
+        if (limiter != null) {
+            limiter.apply(limits);
+        }
+        log.info("Tenant {} limits set to {}", tenant, limits);
+    }
+
+    /**
+     * Overrides the limits of a signing credential. Tokens already taken and requests in progress are kept.
+     *
+     * @param credential The signing credential
+     * @param limits The new limits
+     * @throws IllegalArgumentException If a limit is not positive
+     */
+    public void setCredentialLimits(String credential, AdmissionLimits limits) {
+        checkPositive(limits);
+        credentialOverrides.put(credential, limits);
+        Limiter limiter = credentials.get(credential);
+        if (limiter != null) {
+            limiter.apply(limits);
+        }
+        log.info("Credential {} limits set to {}", credential, limits);
+    }
+
+    /**
+     * Removes the override of a tenant, so it uses the default limits again.
+     *
+     * @param tenant The tenant
+     */
+    public void resetTenantLimits(String tenant) {
+        tenantOverrides.remove(tenant);
+        Limiter limiter = tenants.get(tenant);
+        if (limiter != null) {
+            limiter.apply(tenantLimits(tenant));
+        }
+    }
+
+    /**
+     * Removes the override of a signing credential, so it uses the default limits again.
+     *
+     * @param credential The signing credential
+     */
+    public void resetCredentialLimits(String credential) {
+        credentialOverrides.remove(credential);
+        Limiter limiter = credentials.get(credential);
+        if (limiter != null) {
+            limiter.apply(credentialLimits(credential));
+        }
+    }
+
+    /**
+     * Returns the limits of a tenant, either its override or the defaults.
+     *
+     * @param tenant The tenant
+     * @return The limits
+     */
+    public AdmissionLimits tenantLimits(String tenant) {
+        return tenantOverrides.getOrDefault(tenant,
+            new AdmissionLimits(tenantRequestsPerSecond, tenantBurst, tenantMaxConcurrent));
+    }
+
+    /**
+     * Returns the limits of a signing credential, either its override or the defaults.
+     *
+     * @param credential The signing credential
+     * @return The limits
+     */
+    public AdmissionLimits credentialLimits(String credential) {
+        return credentialOverrides.getOrDefault(credential,
+            new AdmissionLimits(credentialRequestsPerSecond, credentialBurst, credentialMaxConcurrent));
+    }
+
+    /**
+     * Returns the overridden limits by scope and name.
+     *
+     * @return The tenant and credential overrides
+     */
+    public Map<String, Map<String, AdmissionLimits>> overrides() {
+        return Map.of(TENANT, new TreeMap<>(tenantOverrides), CREDENTIAL, new TreeMap<>(credentialOverrides));
+    }
+
+    /**
+     * Overrides must set every limit; disabling one is only possible through the configured defaults.
+     */
+    private static void checkPositive(AdmissionLimits limits) {
+        if (limits == null || !(limits.requestsPerSecond() > 0) || Double.isInfinite(limits.requestsPerSecond())
+                || limits.burst() <= 0 || limits.maxConcurrent() <= 0) {
+            throw new IllegalArgumentException("Limits must be positive: " + limits);
+        }
+    }
+
+    /**
+     * Creates a rejection with the rate-limit headers of the bucket that applies to the rejecting limit.
+     */
+    private AdmissionDecision rejected(TokenBucket bucket, String scope, String name, long retryAfterSeconds) {
+        log.debug("Rejected request by {} limit of {}", scope, name);
+        return new AdmissionDecision(false, bucket == null ? -1 : bucket.getCapacity(), 0, retryAfterSeconds,
+                                     Math.max(1, retryAfterSeconds), scope);
+    }
+
+    private static long toSeconds(long nanos) {
+        return (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /**
+     * Rate and concurrency state of one tenant or credential.
+     */
+    private static class Limiter {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile int maxConcurrent;
+        private volatile TokenBucket bucket;
+
+        Limiter(AdmissionLimits limits) {
+            apply(limits);
+        }
+
+        synchronized void apply(AdmissionLimits limits) {
+            maxConcurrent = limits.maxConcurrent();
+            if (limits.requestsPerSecond() <= 0) {
+                bucket = null;
+            } else {
+                int burst = Math.max(1, limits.burst());
+                if (bucket == null) {
+                    bucket = new TokenBucket(limits.requestsPerSecond(), burst);
+                } else {
+                    bucket.reconfigure(limits.requestsPerSecond(), burst);
+                }
+            }
+        }
+
+        boolean enter() {
+            while (true) {
+                int current = inFlight.get();
+                int max = maxConcurrent;
+                if (max > 0 && current >= max) {
+                    return false;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void exit() {
+            inFlight.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.training.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.training.helper.TextPositionIndex;
+import com.training.model.SignaturePlacement;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Service for placing signatures relative to an anchor text such as "Borrower Signature".
+ * Text position indexes are cached per template hash, so signing the same template
+ * repeatedly extracts its text only once.
+ */
+@Service
+@Slf4j
+public class AnchorPlacementService {
+
+    @Value("${esign.anchor.index-cache-size:64}")
+    private int indexCacheSize;
+
+    @Value("${esign.anchor.offset-x:0}")
+    private float offsetX;
+
+    @Value("${esign.anchor.offset-y:4}")
+    private float offsetY;
+
+    private final Map<String, TextPositionIndex> indexes = Collections.synchronizedMap(
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TextPositionIndex> eldest) {
+                return size() > indexCacheSize;
+            }
+        });
+
+    /**
+     * Places a signature field directly above the first occurrence of the anchor text,
+     * left-aligned with it and shifted by the configured offsets. The field is moved back
+     * inside the visible area of the page if the anchor is too close to an edge for it to fit.
+     *
+     * @param pdfBytes The PDF document
+     * @param anchorText The text to place the signature at
+     * @param width Width of the signature field
+     * @param height Height of the signature field
+     * @return The signature placement
+     * @throws IOException If the document cannot be read or does not contain the anchor text
+     */
+    public SignaturePlacement placeAboveAnchor(byte[] pdfBytes, String anchorText, float width, float height)
+            throws IOException {
+        return placeAboveAnchor(getIndex(pdfBytes), anchorText, width, height);
+    }
+
+    /**
+     * Places a signature field directly above the first occurrence of the anchor text in a document file,
+     * which is parsed from disk if its index is not cached.
+     *
+     * @param pdfFile The PDF document
+     * @param sha256 The hex SHA-256 of the document, which the index is cached by
+     * @param anchorText The text to place the signature at
+     * @param width Width of the signature field
+     * @param height Height of the signature field
+     * @return The signature placement
+     * @throws IOException If the document cannot be read or does not contain the anchor text
+     */
+    public SignaturePlacement placeAboveAnchor(Path pdfFile, String sha256, String anchorText, float width,
+                                               float height) throws IOException {
+        TextPositionIndex index = indexes.get(sha256);
+        if (index == null) {
+            try (PDDocument document = Loader.loadPDF(pdfFile.toFile())) {
+                index = TextPositionIndex.build(document);
+            }
+            indexes.put(sha256, index);
+            log.info("Cached text position index for template {}", sha256);
+        }
+        return placeAboveAnchor(index, anchorText, width, height);
+    }
+
+    private SignaturePlacement placeAboveAnchor(TextPositionIndex index, String anchorText, float width, float height)
+            throws IOException {
+        TextPositionIndex.AnchorMatch match = index.find(anchorText)
+            .orElseThrow(() -> new IOException("Anchor text not found: " + anchorText));
+        PDRectangle bounds = match.bounds();
+        log.info("Found anchor '{}' on page {} at ({}, {})", anchorText, match.page(),
+                 bounds.getLowerLeftX(), bounds.getLowerLeftY());
+        PDRectangle pageBox = match.pageBox();
+        float x = clamp(bounds.getLowerLeftX() + offsetX, pageBox.getLowerLeftX(), pageBox.getUpperRightX() - width);
+        float y = clamp(bounds.getUpperRightY() + offsetY, pageBox.getLowerLeftY(), pageBox.getUpperRightY() - height);
+        return new SignaturePlacement(match.page(), x, y, width, height);
+    }
+
+    /**
+     * Clamps a coordinate to a range, preferring the lower bound when the field is larger than the page.
+     */
+    private static float clamp(float value, float min, float max) {
+        return Math.max(min, Math.min(value, max));
+    }
+
+    /**
+     * Gets the text position index of a document, building it on the first request for the template.
+     *
+     * @param pdfBytes The PDF document
+     * @return The text position index
+     * @throws IOException If the document cannot be read
+     */
+    public TextPositionIndex getIndex(byte[] pdfBytes) throws IOException {
+        String templateHash = sha256(pdfBytes);
+        TextPositionIndex index = indexes.get(templateHash);
+        if (index != null) {
+            return index;
+        }
+
+        // Built outside the lock; a concurrent first request for the same template may build it twice
+        try (PDDocument document = Loader.loadPDF(pdfBytes)) {
+            index = TextPositionIndex.build(document);
+        }
+        indexes.put(templateHash, index);
+        log.info("Cached text position index for template {}", templateHash);
+        return index;
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.training.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.X509Certificate;
+
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.SignatureInterface;
+
+import com.training.helper.CMSSignatureHelper;
+import com.training.helper.CredentialSource;
+import com.training.model.SignatureSpec;
+
+/**
+ * Signature interface shared by the signing services that remembers the digest of the content it signed.
+ * The signature is recorded in the audit journal by {@link #record()} once the document holding it has been
+ * saved, so a signing that fails while writing leaves no entry. Signatures created on a thread bound to a
+ * synthetic workload, such as warm-up and training runs, have no journal and are never recorded.
+ */
+public final class AuditedSignature implements SignatureInterface {
+
+    /**
+     * Creates the CMS signature of a revision and reports what it signed to the audit.
+     */
+    @FunctionalInterface
+    public interface ContentSigner {
+        /**
+         * @param content The signed ByteRange content
+         * @param audit Receives the signed content or its digest
+         * @return The CMS signature
+         */
+        byte[] sign(InputStream content, AuditedSignature audit) throws Exception;
+    }
+
+    private static final ThreadLocal<Boolean> SYNTHETIC = new ThreadLocal<>();
+
+    private final SigningAuditJournal journal;
+    private final String signer;
+    private final CredentialSource credentials;
+    private final SignatureSpec signatureSpec;
+    private final ContentSigner contentSigner;
+    private String digestAlgorithm;
+    private byte[] contentDigest;
+
+    /**
+     * @param journal The audit journal, or null if signatures are not audited
+     * @param signer The name of the signer
+     * @param credentials The signing credentials
+     * @param signatureSpec The signature algorithms
+     * @param contentSigner Creates the CMS signature
+     */
+    public AuditedSignature(SigningAuditJournal journal, String signer, CredentialSource credentials,
+                            SignatureSpec signatureSpec, ContentSigner contentSigner) {
+        this.journal = SYNTHETIC.get() != null ? null : journal;
+        this.signer = signer;
+        this.credentials = credentials;
+        this.signatureSpec = signatureSpec;
+        this.contentSigner = contentSigner;
+    }
+
+    /**
+     * Binds the current thread to a synthetic workload, whose signatures are not audited, or unbinds it.
+     *
+     * @param synthetic True while the thread signs synthetic documents, false once it is done
+     */
+    public static void bindSynthetic(boolean synthetic) {
+        if (synthetic) {
+            SYNTHETIC.set(Boolean.TRUE);
+        } else {
+            SYNTHETIC.remove();
+        }
+    }
+
+    @Override
+    public byte[] sign(InputStream content) throws IOException {
+        try {
+            return contentSigner.sign(content, this);
+        } catch (Exception e) {
+            throw new IOException("Error creating signature: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Remembers the digest of the signed content. Only the digest is kept, not the content.
+     *
+     * @param signedContent The signed ByteRange content
+     * @throws IOException If the digest algorithm of the key is not available
+     */
+    public void signedContent(byte[] signedContent) throws IOException {
+        if (journal == null) {
+            return;
+        }
+        String algorithm = CMSSignatureHelper.resolveDigestAlgorithm(credentials.getPrivateKey(), signatureSpec);
+        try {
+            signedDigest(algorithm, MessageDigest.getInstance(algorithm).digest(signedContent));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("Unsupported digest algorithm: " + algorithm, e);
+        }
+    }
+
+    /**
+     * Remembers the digest of the signed content.
+     *
+     * @param digestAlgorithm The digest algorithm
+     * @param signedDigest The digest of the signed ByteRange content
+     */
+    public void signedDigest(String digestAlgorithm, byte[] signedDigest) {
+        this.digestAlgorithm = digestAlgorithm;
+        this.contentDigest = signedDigest;
+    }
+
+    /**
+     * Records the signature in the audit journal and waits until the entry is durable. Call once the signed
+     * document has been saved; does nothing if no journal is configured or nothing was signed.
+     *
+     * @throws IOException If the entry could not be written
+     */
+    public void record() throws IOException {
+        if (journal == null || contentDigest == null) {
+            return;
+        }
+        journal.record(signer, (X509Certificate) credentials.getCertificateChain()[0], digestAlgorithm, contentDigest);
+        contentDigest = null;
+    }
+}
@@ -0,0 +1,283 @@
+package com.training.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.cert.CertificateException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.training.enums.BulkOperation;
+import com.training.enums.MemoryMode;
+import com.training.enums.SignatureAppearanceType;
+import com.training.enums.StampingMode;
+import com.training.helper.MemoryFootprintEstimator;
+import com.training.model.BulkRunSummary;
+import com.training.service.MemoryBudgetService.Reservation;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Signs or stamps every PDF below a set of input directories into an output directory, for re-signing
+ * whole archives without going through HTTP.
+ * The directories are walked lazily and the documents are handed to a work-stealing pool, with at most
+ * twice the parallelism queued at a time. Each output is written to a {@code .part} file that is moved into
+ * place once complete, and its relative path is then appended to a checkpoint file, so a run that crashed is
+ * resumed by starting it again with the same output directory.
+ */
+@Service
+@Slf4j
+public class BulkSigningService {
+
+    private static final String PART_SUFFIX = ".part";
+
+    @Autowired
+    private PdfSigningService pdfSigningService;
+
+    @Autowired
+    private AcroLoadedSigningService acroLoadedSigningService;
+
+    @Autowired
+    private ContentWithLayersService contentWithLayersService;
+
+    @Autowired(required = false)
+    private MemoryBudgetService memoryBudgetService;
+
+    @Value("${esign.bulk.operation:SIGN}")
+    private BulkOperation operation = BulkOperation.SIGN;
+
+    /**
+     * The number of documents processed concurrently, or zero for one per available processor.
+     */
+    @Value("${esign.bulk.parallelism:0}")
+    private int parallelism;
+
+    /**
+     * The checkpoint file, or empty for a file in the output directory.
+     */
+    @Value("${esign.bulk.checkpoint-file:}")
+    private String checkpointFile = "";
+
+    @Value("${esign.bulk.progress-interval-seconds:10}")
+    private long progressIntervalSeconds = 10;
+
+    @Value("${esign.bulk.appearance:VECTOR}")
+    private SignatureAppearanceType appearanceType = SignatureAppearanceType.VECTOR;
+
+    @Value("${esign.bulk.signature-name:Bulk Signer}")
+    private String signatureName = "Bulk Signer";
+
+    @Value("${esign.bulk.signature-location:Archive}")
+    private String signatureLocation = "Archive";
+
+    @Value("${esign.bulk.stamp.n1:Page {page} of {pages}}")
+    private String n1Text = "Page {page} of {pages}";
+
+    @Value("${esign.bulk.stamp.n2:}")
+    private String n2Text = "";
+
+    @Value("${esign.bulk.stamp.n3:}")
+    private String n3Text = "";
+
+    @Value("${esign.bulk.stamp.n4:}")
+    private String n4Text = "";
+
+    @Value("${esign.signing.certificate-path:}")
+    private String certificatePath;
+
+    @Value("${esign.signing.certificate-password:}")
+    private String certificatePassword;
+
+    @Value("${esign.signing.certificate-alias:}")
+    private String certificateAlias;
+
+    /**
+     * Processes every PDF below the input directories that is not yet recorded in the checkpoint.
+     * Outputs keep their path relative to the input directory, below a directory named after the input
+     * directory when there is more than one.
+     *
+     * @param inputs The directories to walk
+     * @param outputDir The directory to write the outputs to
+     * @return The counts and throughput of the run
+     * @throws IOException If an input directory cannot be walked or the checkpoint cannot be written
+     */
+    public BulkRunSummary run(List<Path> inputs, Path outputDir) throws IOException {
+        Files.createDirectories(outputDir);
+        Path checkpoint = checkpointFile.isBlank() ? outputDir.resolve(".esign-bulk-checkpoint") : Path.of(checkpointFile);
+        Set<String> completed = readCheckpoint(checkpoint);
+        if (!completed.isEmpty()) {
+            log.info("Resuming from {}, {} documents already processed", checkpoint, completed.size());
+        }
+
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        log.info("Bulk {} of {} into {} with {} threads", operation, inputs, outputDir, threads);
+        Progress progress = new Progress();
+        ExecutorService pool = Executors.newWorkStealingPool(threads);
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        reporter.scheduleAtFixedRate(() -> log.info("Bulk {} in progress: {}", operation, describe(progress.summary())),
+                                     progressIntervalSeconds, progressIntervalSeconds, TimeUnit.SECONDS);
+        Semaphore queued = new Semaphore(threads * 2);
+
+        try (BufferedWriter checkpointWriter = Files.newBufferedWriter(checkpoint, StandardCharsets.UTF_8,
+                 StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (Path input : inputs) {
+                Path base = inputs.size() > 1 ? outputDir.resolve(input.getFileName().toString()) : outputDir;
+                try (Stream<Path> files = Files.walk(input)) {
+                    Iterator<Path> iterator = files.filter(Files::isRegularFile).filter(BulkSigningService::isPdf).iterator();
+                    while (iterator.hasNext()) {
+                        Path file = iterator.next();
+                        Path target = base.resolve(input.relativize(file).toString());
+                        String key = outputDir.relativize(target).toString();
+                        if (completed.contains(key)) {
+                            progress.skipped.incrementAndGet();
+                            continue;
+                        }
+                        queued.acquireUninterruptibly();
+                        pool.execute(() -> {
+                            try {
+                                process(file, target, progress);
+                                synchronized (checkpointWriter) {
+                                    checkpointWriter.write(key);
+                                    checkpointWriter.newLine();
+                                    checkpointWriter.flush();
+                                }
+                            } catch (Exception e) {
+                                progress.failed.incrementAndGet();
+                                log.error("Failed to process {}: {}", file, e.getMessage(), e);
+                            } finally {
+                                queued.release();
+                            }
+                        });
+                    }
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+            pool.shutdown();
+            awaitTermination(pool);
+        } finally {
+            pool.shutdownNow();
+            reporter.shutdownNow();
+        }
+
+        BulkRunSummary summary = progress.summary();
+        log.info("Bulk {} completed in {} s: {}", operation, TimeUnit.NANOSECONDS.toSeconds(summary.elapsedNanos()),
+                 describe(summary));
+        return summary;
+    }
+
+    /**
+     * Processes one document into a part file next to the target and moves it into place.
+     */
+    private void process(Path file, Path target, Progress progress) throws IOException, CertificateException {
+        long size = Files.size(file);
+        Files.createDirectories(target.getParent());
+        Path part = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+        try (Reservation reservation = reserve(file);
+             OutputStream output = Files.newOutputStream(part)) {
+            switch (operation) {
+                case SIGN -> pdfSigningService.signPdfFile(file, certificatePath, certificatePassword, certificateAlias,
+                                                           signatureName, signatureLocation, appearanceType, output);
+                case LAYERED_SIGN -> acroLoadedSigningService.signPdfWithLayers(Files.readAllBytes(file), certificatePath,
+                    certificatePassword, certificateAlias, signatureName, signatureLocation, "Document digitally signed",
+                    1, 0, 0, 300, 100, output);
+                case STAMP -> output.write(contentWithLayersService.addLayersToAllPages(Files.readAllBytes(file),
+                    n1Text, n2Text, n3Text, n4Text, StampingMode.AUTO));
+            }
+        } catch (IOException | CertificateException | RuntimeException e) {
+            Files.deleteIfExists(part);
+            throw e;
+        }
+        Files.move(part, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        progress.processed.incrementAndGet();
+        progress.bytes.addAndGet(size);
+    }
+
+    /**
+     * Reserves the footprint of a document from the memory budget, retrying until it is admitted, since a
+     * bulk run has no client to turn away.
+     */
+    private Reservation reserve(Path file) throws IOException {
+        if (memoryBudgetService == null) {
+            return null;
+        }
+        while (true) {
+            Reservation reservation = memoryBudgetService.reserve(MemoryFootprintEstimator.estimate(file), false);
+            if (reservation.mode() == MemoryMode.TOO_LARGE) {
+                throw new IOException("Document does not fit the memory budget: " + file);
+            }
+            if (reservation.mode() != MemoryMode.REJECTED) {
+                return reservation;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                throw new IOException("Interrupted while waiting for memory to process " + file);
+            }
+        }
+    }
+
+    private static Set<String> readCheckpoint(Path checkpoint) throws IOException {
+        Set<String> completed = new HashSet<>();
+        if (Files.exists(checkpoint)) {
+            // A line cut short by a crash matches no output and its document is processed again
+            completed.addAll(Files.readAllLines(checkpoint, StandardCharsets.UTF_8));
+        }
+        return completed;
+    }
+
+    private static String describe(BulkRunSummary summary) {
+        return String.format(Locale.ROOT, "%d processed, %d skipped, %d failed, %.1f files/s, %.1f MiB/s",
+                             summary.processed(), summary.skipped(), summary.failed(),
+                             summary.filesPerSecond(), summary.mebibytesPerSecond());
+    }
+
+    private static boolean isPdf(Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".pdf");
+    }
+
+    private static void awaitTermination(ExecutorService pool) throws IOException {
+        try {
+            while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.debug("Waiting for bulk workers to finish");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for bulk workers", e);
+        }
+    }
+
+    /**
+     * Counters shared by the workers and the progress reporter.
+     */
+    private static final class Progress {
+
+        private final long start = System.nanoTime();
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+
+        BulkRunSummary summary() {
+            return new BulkRunSummary(processed.get(), skipped.get(), failed.get(), bytes.get(), System.nanoTime() - start);
+        }
+    }
+}
@@ -1,23 +1,46 @@
 package com.training.service;
 
 import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
 import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.font.PDFont;
 import org.apache.pdfbox.pdmodel.font.PDType1Font;
 import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
 import org.apache.pdfbox.pdmodel.graphics.optionalcontent.PDOptionalContentGroup;
 import org.apache.pdfbox.pdmodel.graphics.optionalcontent.PDOptionalContentProperties;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.training.enums.StampingMode;
+import com.training.helper.LayerContentStreamHelper;
+import com.training.helper.LayerContentStreamHelper.LayerText;
+
+import lombok.extern.slf4j.Slf4j;
+
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.apache.commons.io.IOUtils;
 
 @Service
+@Slf4j
 public class ContentWithLayersService {
+
+    @Value("${esign.stamping.parallel-min-pages:16}")
+    private int parallelMinPages;
     
     /**
      * Adds text to different layers of a PDF document.
@@ -34,11 +57,7 @@ public class ContentWithLayersService {
         byte[] pdfBytes = IOUtils.toByteArray(multipartFile.getInputStream());
         try (PDDocument document = Loader.loadPDF(pdfBytes)) {
             // Get or create OCG properties
-            PDOptionalContentProperties ocProperties = document.getDocumentCatalog().getOCProperties();
-            if (ocProperties == null) {
-                ocProperties = new PDOptionalContentProperties();
-                document.getDocumentCatalog().setOCProperties(ocProperties);
-            }
+            PDOptionalContentProperties ocProperties = getOrCreateOCProperties(document);
             
             // Create layers (OCGs)
             PDOptionalContentGroup n1Layer = createOrGetLayer(ocProperties, "n1");
@@ -62,6 +81,193 @@ public class ContentWithLayersService {
         }
     }
     
+    /**
+     * Adds text to different layers of every page of a PDF document.
+     * The texts may contain {@value LayerContentStreamHelper#PAGE_PLACEHOLDER} and
+     * {@value LayerContentStreamHelper#PAGES_PLACEHOLDER}, which are replaced per page.
+     * 
+     * @param multipartFile The PDF file to add layers to
+     * @param n1Text Text to add to layer n1
+     * @param n2Text Text to add to layer n2
+     * @param n3Text Text to add to layer n3
+     * @param n4Text Text to add to layer n4
+     * @return The modified PDF as a byte array
+     * @throws IOException If there's an error processing the PDF
+     */
+    public byte[] addLayersToAllPages(MultipartFile multipartFile, String n1Text, String n2Text, 
+                                      String n3Text, String n4Text) throws IOException {
+        byte[] pdfBytes = IOUtils.toByteArray(multipartFile.getInputStream());
+        return addLayersToAllPages(pdfBytes, n1Text, n2Text, n3Text, n4Text, StampingMode.AUTO);
+    }
+
+    /**
+     * Adds text to different layers of every page of a PDF document.
+     * In parallel mode the per-page content streams are generated on the fork-join pool and
+     * attached to the pages afterwards in a single-threaded merge step, since PDDocument is not thread-safe.
+     * 
+     * @param pdfBytes The PDF document to add layers to
+     * @param n1Text Text to add to layer n1
+     * @param n2Text Text to add to layer n2
+     * @param n3Text Text to add to layer n3
+     * @param n4Text Text to add to layer n4
+     * @param mode Whether to generate page content sequentially, in parallel, or based on the page count
+     * @return The modified PDF as a byte array
+     * @throws IOException If there's an error processing the PDF
+     */
+    public byte[] addLayersToAllPages(byte[] pdfBytes, String n1Text, String n2Text, String n3Text, 
+                                      String n4Text, StampingMode mode) throws IOException {
+        try (PDDocument document = Loader.loadPDF(pdfBytes)) {
+            PDOptionalContentProperties ocProperties = getOrCreateOCProperties(document);
+            
+            List<LayerText> texts = List.of(
+                new LayerText("n1", n1Text, 50, 750),
+                new LayerText("n2", n2Text, 50, 730),
+                new LayerText("n3", n3Text, 50, 710),
+                new LayerText("n4", n4Text, 50, 690));
+            Map<String, PDOptionalContentGroup> layers = new LinkedHashMap<>();
+            for (LayerText text : texts) {
+                layers.put(text.layerName(), createOrGetLayer(ocProperties, text.layerName()));
+            }
+            
+            int pageCount = document.getNumberOfPages();
+            boolean parallel = mode == StampingMode.PARALLEL
+                || (mode == StampingMode.AUTO && pageCount >= parallelMinPages);
+            log.debug("Stamping {} pages {}", pageCount, parallel ? "in parallel" : "sequentially");
+            
+            if (parallel) {
+                addTextToPagesInParallel(document, layers, texts);
+            } else {
+                for (int i = 0; i < pageCount; i++) {
+                    addTextToPage(document, document.getPage(i), i, pageCount, layers, texts);
+                }
+            }
+            
+            // Save the document to byte array
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            document.save(baos);
+            return baos.toByteArray();
+        }
+    }
+    
+    /**
+     * Gets the document's optional content properties, creating them if necessary.
+     * 
+     * @param document The PDF document
+     * @return The optional content properties
+     */
+    private PDOptionalContentProperties getOrCreateOCProperties(PDDocument document) {
+        PDOptionalContentProperties ocProperties = document.getDocumentCatalog().getOCProperties();
+        if (ocProperties == null) {
+            ocProperties = new PDOptionalContentProperties();
+            document.getDocumentCatalog().setOCProperties(ocProperties);
+        }
+        return ocProperties;
+    }
+    
+    /**
+     * Generates the layer content of all pages in parallel and attaches it to the pages.
+     * Pages whose resources already use one of the generated resource names fall back to the sequential path.
+     * 
+     * @param document The PDF document
+     * @param layers The layers by name
+     * @param texts The texts to add to the layers
+     * @throws IOException If there's an error adding text
+     */
+    private void addTextToPagesInParallel(PDDocument document, Map<String, PDOptionalContentGroup> layers, 
+                                          List<LayerText> texts) throws IOException {
+        int pageCount = document.getNumberOfPages();
+        byte[][] contents;
+        try {
+            contents = LayerContentStreamHelper.generatePageContents(pageCount, texts);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        
+        // Single-threaded merge: everything below touches the document
+        PDFont font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+        COSStream saveGraphicsState = document.getDocument().createCOSStream();
+        try (OutputStream out = saveGraphicsState.createOutputStream()) {
+            out.write("q\n".getBytes(StandardCharsets.US_ASCII));
+        }
+        
+        int pageIndex = 0;
+        for (PDPage page : document.getPages()) {
+            if (attachResources(page, font, layers)) {
+                COSStream layerStream = document.getDocument().createCOSStream();
+                try (OutputStream out = layerStream.createRawOutputStream()) {
+                    out.write(contents[pageIndex]);
+                }
+                layerStream.setItem(COSName.FILTER, COSName.FLATE_DECODE);
+                
+                COSArray pageContents = new COSArray();
+                pageContents.add(saveGraphicsState);
+                COSBase existing = page.getCOSObject().getDictionaryObject(COSName.CONTENTS);
+                if (existing instanceof COSStream) {
+                    pageContents.add(existing);
+                } else if (existing instanceof COSArray) {
+                    pageContents.addAll((COSArray) existing);
+                }
+                pageContents.add(layerStream);
+                page.getCOSObject().setItem(COSName.CONTENTS, pageContents);
+            } else {
+                log.debug("Resource name clash on page {}, stamping it sequentially", pageIndex + 1);
+                addTextToPage(document, page, pageIndex, pageCount, layers, texts);
+            }
+            pageIndex++;
+        }
+    }
+    
+    /**
+     * Registers the font and layers under the names used by the generated content streams.
+     * 
+     * @param page The page to register the resources on
+     * @param font The font to register
+     * @param layers The layers to register
+     * @return false if one of the names is already bound to a different resource on this page
+     */
+    private boolean attachResources(PDPage page, PDFont font, Map<String, PDOptionalContentGroup> layers) {
+        PDResources resources = page.getResources();
+        if (resources == null) {
+            resources = new PDResources();
+            page.setResources(resources);
+        }
+        if (!isFree(resources, COSName.FONT, LayerContentStreamHelper.FONT_NAME, font.getCOSObject())) {
+            return false;
+        }
+        for (Map.Entry<String, PDOptionalContentGroup> layer : layers.entrySet()) {
+            COSName name = LayerContentStreamHelper.propertiesName(layer.getKey());
+            if (!isFree(resources, COSName.PROPERTIES, name, layer.getValue().getCOSObject())) {
+                return false;
+            }
+        }
+        
+        resources.put(LayerContentStreamHelper.FONT_NAME, font);
+        for (Map.Entry<String, PDOptionalContentGroup> layer : layers.entrySet()) {
+            resources.put(LayerContentStreamHelper.propertiesName(layer.getKey()), layer.getValue());
+        }
+        return true;
+    }
+    
+    private boolean isFree(PDResources resources, COSName kind, COSName name, COSBase resource) {
+        COSDictionary dictionary = resources.getCOSObject().getCOSDictionary(kind);
+        if (dictionary == null) {
+            return true;
+        }
+        COSBase existing = dictionary.getDictionaryObject(name);
+        return existing == null || existing == resource;
+    }
+    
+    /**
+     * Adds the layer texts to a single page through PDPageContentStream.
+     */
+    private void addTextToPage(PDDocument document, PDPage page, int pageIndex, int pageCount, 
+                               Map<String, PDOptionalContentGroup> layers, List<LayerText> texts) throws IOException {
+        for (LayerText text : texts) {
+            addTextToLayer(document, page, layers.get(text.layerName()), 
+                LayerContentStreamHelper.resolveText(text.text(), pageIndex, pageCount), text.x(), text.y());
+        }
+    }
+    
     /**
      * Creates a new layer or gets an existing one with the given name.
      * 
@@ -0,0 +1,104 @@
+package com.training.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.training.helper.CredentialSource;
+import com.training.helper.Pkcs11CredentialSource;
+import com.training.helper.Pkcs12CredentialSource;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Opens credential sources once and shares them between signing requests.
+ * A certificate path of the form {@code pkcs11:<config file>} opens a PKCS#11 token through SunPKCS11,
+ * with the password as the user PIN and the alias as the key label; any other path is a PKCS12 file,
+ * which is loaded again when it changes.
+ */
+@Service
+@Slf4j
+public class CredentialSourceRegistry {
+
+    /**
+     * Prefix of certificate paths that refer to a PKCS#11 token configuration.
+     */
+    public static final String PKCS11_PREFIX = "pkcs11:";
+
+    @Value("${esign.pkcs11.max-sessions:8}")
+    private int pkcs11MaxSessions = 8;
+
+    private final Map<String, Entry> sources = new ConcurrentHashMap<>();
+
+    private record Entry(CredentialSource source, byte[] passwordHash, long lastModified) {
+    }
+
+    /**
+     * Returns the credential source for a keystore entry, opening it on first use.
+     *
+     * @param certificatePath Path to a PKCS12 file, or {@code pkcs11:} followed by a SunPKCS11 configuration file
+     * @param certificatePassword Password of the PKCS12 file, or the PIN of the token
+     * @param certificateAlias Alias of the key
+     * @return The credential source
+     * @throws CertificateException If the key or chain cannot be loaded
+     * @throws IOException If the keystore cannot be read
+     */
+    public CredentialSource resolve(String certificatePath, String certificatePassword, String certificateAlias)
+            throws CertificateException, IOException {
+        String key = certificatePath + '\0' + certificateAlias;
+        boolean pkcs11 = certificatePath.startsWith(PKCS11_PREFIX);
+        long lastModified = pkcs11 ? 0 : Files.getLastModifiedTime(Path.of(certificatePath)).toMillis();
+        byte[] passwordHash = hash(certificatePassword);
+
+        Entry entry = sources.get(key);
+        // A different password must be checked against the keystore, not served from the cache
+        if (entry != null && entry.lastModified() == lastModified
+                && MessageDigest.isEqual(entry.passwordHash(), passwordHash)) {
+            return entry.source();
+        }
+        synchronized (this) {
+            entry = sources.get(key);
+            if (entry != null && entry.lastModified() == lastModified
+                    && MessageDigest.isEqual(entry.passwordHash(), passwordHash)) {
+                return entry.source();
+            }
+            if (entry != null && pkcs11) {
+                // The token stays logged in for the life of the application
+                throw new CertificateException("PIN does not match the open session of " + certificatePath);
+            }
+            CredentialSource source = pkcs11
+                ? new Pkcs11CredentialSource(certificatePath.substring(PKCS11_PREFIX.length()), certificatePassword,
+                                             certificateAlias, pkcs11MaxSessions)
+                : new Pkcs12CredentialSource(certificatePath, certificatePassword, certificateAlias);
+            sources.put(key, new Entry(source, passwordHash, lastModified));
+            log.debug("Opened credential source for {} in {}", certificateAlias, certificatePath);
+            return source;
+        }
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        for (Entry entry : sources.values()) {
+            entry.source().close();
+        }
+        sources.clear();
+    }
+
+    private static byte[] hash(String password) throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not available", e);
+        }
+    }
+}
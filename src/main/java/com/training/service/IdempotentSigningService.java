@@ -0,0 +1,180 @@
+package com.training.service;
+
+import java.io.IOException;
+import java.security.cert.CertificateException;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.training.enums.CancellationReason;
+import com.training.enums.SigningPhase;
+import com.training.helper.SigningDeadline;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Service that makes signing requests idempotent.
+ * Concurrent requests carrying the same idempotency key share one in-flight signing
+ * operation, and later retries are answered from a bounded cache until the TTL expires.
+ */
+@Service
+@Slf4j
+public class IdempotentSigningService {
+
+    /**
+     * A signing operation whose result can be shared between duplicate requests.
+     */
+    @FunctionalInterface
+    public interface SigningOperation {
+        byte[] sign() throws IOException, CertificateException;
+    }
+
+    private static final class Entry {
+        private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+        private volatile long completedAt;
+        // Set before the result fails when the owning request gave up rather than the signing failing
+        private volatile boolean abandoned;
+
+        private boolean isExpired(long now, long ttlNanos) {
+            return result.isDone() && now - completedAt > ttlNanos;
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    @Value("${esign.idempotency.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    @Value("${esign.idempotency.max-entries:256}")
+    private int maxEntries;
+
+    /**
+     * Runs the signing operation at most once per key within the TTL.
+     *
+     * @param idempotencyKey The client supplied idempotency key, already scoped to the request parameters
+     * @param operation The signing operation to run if no result exists for the key
+     * @return The signed PDF as a byte array, either freshly produced or shared with a duplicate request
+     * @throws IOException If there's an issue with the PDF
+     * @throws CertificateException If there's an issue with the certificate
+     */
+    public byte[] execute(String idempotencyKey, SigningOperation operation) throws IOException, CertificateException {
+        long ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        while (true) {
+            Entry existing = entries.get(idempotencyKey);
+            if (existing != null) {
+                if (existing.isExpired(System.nanoTime(), ttlNanos)) {
+                    entries.remove(idempotencyKey, existing);
+                    continue;
+                }
+                log.info("Reusing signing result for idempotency key {}", idempotencyKey);
+                byte[] shared = await(existing);
+                if (shared != null) {
+                    return shared;
+                }
+                // The owner gave up, so take the key over, or join whoever took it over first
+                log.info("In-flight signing for idempotency key {} was abandoned, retrying", idempotencyKey);
+                continue;
+            }
+
+            Entry entry = new Entry();
+            if (entries.putIfAbsent(idempotencyKey, entry) != null) {
+                // Another request registered the key first, join it instead
+                continue;
+            }
+            return runAndPublish(idempotencyKey, entry, operation);
+        }
+    }
+
+    private byte[] runAndPublish(String idempotencyKey, Entry entry, SigningOperation operation)
+            throws IOException, CertificateException {
+        byte[] signedPdf;
+        try {
+            signedPdf = operation.sign();
+        } catch (Throwable e) {
+            // Failures are not cached so that a retry can succeed, and errors release the waiters as well
+            SigningDeadline deadline = SigningDeadline.current();
+            entry.abandoned = deadline != null && deadline.isAbandoned();
+            entries.remove(idempotencyKey, entry);
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+        entry.completedAt = System.nanoTime();
+        entry.result.complete(signedPdf);
+        evictIfNecessary();
+        return signedPdf;
+    }
+
+    /**
+     * Waits for the result of an in-flight signing operation.
+     *
+     * @return The shared result, or null if its owner abandoned it while this request still has time to sign
+     */
+    private byte[] await(Entry entry) throws IOException, CertificateException {
+        // A duplicate request waits no longer than its own deadline
+        SigningDeadline deadline = SigningDeadline.current();
+        try {
+            return deadline != null && deadline.getRemainingNanos() != Long.MAX_VALUE
+                ? entry.result.get(Math.max(0, deadline.getRemainingNanos()), TimeUnit.NANOSECONDS)
+                : entry.result.get();
+        } catch (TimeoutException e) {
+            deadline.abandon(SigningPhase.SIGN, CancellationReason.DEADLINE_EXCEEDED);
+            throw new IOException("Deadline exceeded while waiting for in-flight signing operation", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for in-flight signing operation", e);
+        } catch (CancellationException e) {
+            throw new IOException("In-flight signing operation was cancelled", e);
+        } catch (ExecutionException e) {
+            // The owner's deadline or disconnect says nothing about this request, which retries under its own
+            if (entry.abandoned && (deadline == null || (!deadline.isAbandoned() && deadline.getRemainingNanos() > 0))) {
+                return null;
+            }
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof CertificateException) {
+                throw (CertificateException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("In-flight signing operation failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Drops expired results and, if the cache is still over capacity, the oldest completed ones.
+     * In-flight entries are never evicted so that coalescing keeps working under pressure.
+     */
+    private void evictIfNecessary() {
+        if (entries.size() <= maxEntries) {
+            return;
+        }
+        long now = System.nanoTime();
+        long ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        entries.entrySet().removeIf(e -> e.getValue().isExpired(now, ttlNanos));
+
+        int excess = entries.size() - maxEntries;
+        if (excess > 0) {
+            entries.entrySet().stream()
+                .filter(e -> e.getValue().result.isDone())
+                .sorted(Comparator.comparingLong(e -> e.getValue().completedAt))
+                .limit(excess)
+                .toList()
+                .forEach(e -> entries.remove(e.getKey(), e.getValue()));
+        }
+        log.debug("Idempotency cache holds {} entries after eviction", entries.size());
+    }
+}
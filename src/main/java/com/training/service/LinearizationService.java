@@ -0,0 +1,28 @@
+package com.training.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Linearizes documents as part of their first signature, so that viewers fetching the signed document
+ * over HTTP can show the first page without downloading the rest.
+ * When enabled, the signing services write the first signature into the linearized file itself, unless the
+ * caller signs append-only: the stored signing template, workflow heads and uploads spooled to disk have their
+ * revision appended to bytes fixed in advance, which linearizing would rewrite. Documents that are already
+ * signed are never rewritten.
+ */
+@Service
+public class LinearizationService {
+
+    @Value("${esign.linearization.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * Returns whether documents are linearized when they are first signed.
+     *
+     * @return True if linearization is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+}
@@ -0,0 +1,273 @@
+package com.training.service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.training.enums.MemoryMode;
+import com.training.helper.MemoryFootprintEstimator;
+import com.training.model.MemoryFootprint;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Global memory budget for concurrent document processing.
+ * Each request reserves its estimated footprint before the document is parsed. A request that does not fit
+ * is processed from disk if it can be and its disk-backed footprint fits, otherwise it waits for other
+ * requests to release their reservations and is rejected if none are released in time.
+ */
+@Service
+@Slf4j
+public class MemoryBudgetService {
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${esign.memory.enabled:true}")
+    private boolean enabled = true;
+
+    /**
+     * The budget in bytes, or zero to use a fraction of the maximum heap.
+     */
+    @Value("${esign.memory.budget-bytes:0}")
+    private long budgetBytes;
+
+    @Value("${esign.memory.heap-fraction:0.5}")
+    private double heapFraction = 0.5;
+
+    @Value("${esign.memory.max-wait-ms:5000}")
+    private long maxWaitMillis = 5000;
+
+    @Value("${esign.memory.spill:true}")
+    private boolean spill = true;
+
+    /**
+     * Size assumed for an upload that does not declare its length.
+     */
+    @Value("${esign.memory.unknown-upload-bytes:67108864}")
+    private long unknownUploadBytes = 64L * 1024 * 1024;
+
+    private long budget;
+    private long reserved;
+    private int waiting;
+    private final Map<MemoryMode, Integer> active = new EnumMap<>(MemoryMode.class);
+
+    /**
+     * Bytes reserved by a request, released when it is closed.
+     */
+    public final class Reservation implements AutoCloseable {
+
+        private final long bytes;
+        private final MemoryMode mode;
+        private boolean released;
+
+        private Reservation(long bytes, MemoryMode mode) {
+            this.bytes = bytes;
+            this.mode = mode;
+        }
+
+        /**
+         * Returns the reserved bytes.
+         *
+         * @return The bytes, zero if the request was rejected
+         */
+        public long bytes() {
+            return bytes;
+        }
+
+        /**
+         * Returns how the request must process its document.
+         *
+         * @return MEMORY or DISK if the request was admitted, REJECTED if the budget stayed exhausted,
+         *         TOO_LARGE if the request does not fit the whole budget
+         */
+        public MemoryMode mode() {
+            return mode;
+        }
+
+        /**
+         * Returns whether the request was turned away, for the time being or for good.
+         *
+         * @return True if the mode is REJECTED or TOO_LARGE
+         */
+        public boolean isRejected() {
+            return mode == MemoryMode.REJECTED || mode == MemoryMode.TOO_LARGE;
+        }
+
+        @Override
+        public void close() {
+            release(this);
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        budget = budgetBytes > 0 ? budgetBytes : (long) (Runtime.getRuntime().maxMemory() * heapFraction);
+        log.info("Memory budget for document processing is {} MiB", budget / (1024 * 1024));
+        if (meterRegistry == null) {
+            return;
+        }
+        Gauge.builder("esign.memory.budget", this, service -> service.budget)
+            .description("Heap bytes available to document processing")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        Gauge.builder("esign.memory.reserved", this, MemoryBudgetService::getReservedBytes)
+            .description("Heap bytes reserved by requests in progress")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        Gauge.builder("esign.memory.waiting", this, MemoryBudgetService::getWaitingRequests)
+            .description("Requests waiting for a memory reservation")
+            .register(meterRegistry);
+        for (MemoryMode mode : new MemoryMode[] { MemoryMode.MEMORY, MemoryMode.DISK }) {
+            Gauge.builder("esign.memory.reservations", this, service -> service.getActiveReservations(mode))
+                .description("Requests in progress holding a memory reservation")
+                .tag("mode", mode.name())
+                .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Estimates the footprint of an upload before it is read, from its declared length.
+     *
+     * @param contentLength The declared length of the upload, or -1 if it is unknown
+     * @return The estimated footprint
+     */
+    public MemoryFootprint estimateUpload(long contentLength) {
+        return MemoryFootprintEstimator.estimate(uploadBytes(contentLength));
+    }
+
+    /**
+     * Returns the size the footprint of an upload was estimated from, which is as much as a request admitted
+     * with that footprint may read into memory.
+     *
+     * @param contentLength The declared length of the upload, or -1 if it is unknown
+     * @return The declared length, or the size assumed for uploads without one
+     */
+    public long uploadBytes(long contentLength) {
+        return contentLength < 0 ? unknownUploadBytes : contentLength;
+    }
+
+    /**
+     * Reserves the footprint of a request, waiting up to the configured time if the budget is exhausted.
+     * A request that can be processed from disk uses its disk-backed footprint when the in-memory one does
+     * not fit. A request whose footprint is larger than the whole budget in every mode it can use is
+     * rejected as too large without waiting, since it could never be processed within the budget.
+     *
+     * @param footprint The estimated footprint of the request
+     * @param spillable Whether the request can process its document from disk
+     * @return The reservation, with mode REJECTED if the budget stayed exhausted or TOO_LARGE if the
+     *         footprint exceeds the budget
+     */
+    public Reservation reserve(MemoryFootprint footprint, boolean spillable) {
+        if (!enabled) {
+            return new Reservation(0, MemoryMode.MEMORY);
+        }
+        long inMemory = footprint.inMemoryBytes();
+        long diskBacked = footprint.diskBackedBytes();
+        boolean memoryAllowed = inMemory <= budget;
+        boolean diskAllowed = spillable && spill && diskBacked <= budget;
+        if (!memoryAllowed && !diskAllowed) {
+            log.info("Rejected a {} byte document whose footprint exceeds the budget of {} bytes",
+                     footprint.size(), budget);
+            if (meterRegistry != null) {
+                meterRegistry.counter("esign.memory.too-large").increment();
+            }
+            return new Reservation(0, MemoryMode.TOO_LARGE);
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+
+        synchronized (this) {
+            waiting++;
+            try {
+                while (true) {
+                    if (memoryAllowed && reserved + inMemory <= budget) {
+                        return admit(inMemory, MemoryMode.MEMORY);
+                    }
+                    if (diskAllowed && reserved + diskBacked <= budget) {
+                        log.info("Processing a {} byte document from disk, {} of {} bytes reserved",
+                                 footprint.size(), reserved, budget);
+                        if (meterRegistry != null) {
+                            meterRegistry.counter("esign.memory.spilled").increment();
+                        }
+                        return admit(diskBacked, MemoryMode.DISK);
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                waiting--;
+            }
+        }
+
+        log.info("Rejected a {} byte document, {} of {} bytes reserved", footprint.size(), getReservedBytes(), budget);
+        if (meterRegistry != null) {
+            meterRegistry.counter("esign.memory.rejected").increment();
+        }
+        return new Reservation(0, MemoryMode.REJECTED);
+    }
+
+    /**
+     * Returns the seconds a rejected request should wait before retrying.
+     *
+     * @return The seconds, at least one
+     */
+    public long getRetryAfterSeconds() {
+        return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(maxWaitMillis));
+    }
+
+    /**
+     * Returns the bytes reserved by requests in progress.
+     *
+     * @return The reserved bytes
+     */
+    public synchronized long getReservedBytes() {
+        return reserved;
+    }
+
+    /**
+     * Returns the number of requests waiting for a reservation.
+     *
+     * @return The waiting requests
+     */
+    public synchronized int getWaitingRequests() {
+        return waiting;
+    }
+
+    /**
+     * Returns the number of requests in progress holding a reservation of the given mode.
+     *
+     * @param mode MEMORY or DISK
+     * @return The number of reservations
+     */
+    public synchronized int getActiveReservations(MemoryMode mode) {
+        return active.getOrDefault(mode, 0);
+    }
+
+    private Reservation admit(long bytes, MemoryMode mode) {
+        reserved += bytes;
+        active.merge(mode, 1, Integer::sum);
+        return new Reservation(bytes, mode);
+    }
+
+    private synchronized void release(Reservation reservation) {
+        if (reservation.released || reservation.isRejected() || !enabled) {
+            return;
+        }
+        reservation.released = true;
+        reserved -= reservation.bytes;
+        active.merge(reservation.mode, -1, Integer::sum);
+        notifyAll();
+    }
+}
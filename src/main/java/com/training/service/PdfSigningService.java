@@ -1,189 +1,715 @@
 package com.training.service;
 
 import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
 import org.apache.commons.io.IOUtils;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationWidget;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceDictionary;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceStream;
 import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
 import org.apache.pdfbox.pdmodel.interactive.digitalsignature.SignatureInterface;
 import org.apache.pdfbox.pdmodel.interactive.digitalsignature.SignatureOptions;
 import org.apache.pdfbox.pdmodel.interactive.digitalsignature.visible.PDVisibleSignDesigner;
 import org.apache.pdfbox.pdmodel.interactive.digitalsignature.visible.PDVisibleSigProperties;
-import org.bouncycastle.cert.jcajce.JcaCertStore;
-import org.bouncycastle.cms.CMSProcessableByteArray;
-import org.bouncycastle.cms.CMSSignedData;
-import org.bouncycastle.cms.CMSSignedDataGenerator;
-import org.bouncycastle.cms.jcajce.JcaSignerInfoGeneratorBuilder;
+import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
+import org.apache.pdfbox.pdmodel.interactive.form.PDSignatureField;
 import org.bouncycastle.cms.DefaultSignedAttributeTableGenerator;
 import org.bouncycastle.asn1.ASN1ObjectIdentifier;
 import org.bouncycastle.asn1.cms.CMSAttributes;
 import org.bouncycastle.asn1.cms.AttributeTable;
-import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
-import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import lombok.extern.slf4j.Slf4j;
+
+import com.training.enums.RevisionFormat;
+import com.training.enums.SignatureAppearanceType;
+import com.training.enums.SigningPhase;
+import com.training.helper.AppendOnlySigner;
+import com.training.helper.CMSSignatureHelper;
+import com.training.helper.CompactRevisionWriter;
+import com.training.helper.PDFSignatureFieldHelper;
+import com.training.helper.PdfLinearizer;
+import com.training.helper.CredentialSource;
+import com.training.helper.SignatureAppearanceHelper;
+import com.training.helper.SigningDeadline;
+import com.training.helper.StreamingDigestHelper;
+import com.training.helper.UploadTooLargeException;
+import com.training.model.EncodedImage;
+import com.training.model.IngestedPdf;
+import com.training.model.ProvisionedField;
+import com.training.model.SignaturePlacement;
+import com.training.model.SignatureSpec;
+
 import javax.imageio.ImageIO;
 import java.io.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.security.KeyStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.MessageDigest;
-import java.security.PrivateKey;
-import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.security.cert.CertificateException;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Hashtable;
-import java.security.Security;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
 
+@Slf4j
 @Service
 public class PdfSigningService {
-    private PrivateKey privateKey;
-    private Certificate[] certificateChain;
 
-    static {
-        Security.addProvider(new BouncyCastleProvider());
-    }
+    @Autowired
+    private AnchorPlacementService anchorPlacementService;
+
+    @Autowired(required = false)
+    private SignatureSpec signatureSpec = SignatureSpec.DEFAULT;
+
+    @Autowired(required = false)
+    private SigningAuditJournal signingAuditJournal;
+
+    @Autowired(required = false)
+    private CredentialSourceRegistry credentialSourceRegistry = new CredentialSourceRegistry();
+
+    @Autowired(required = false)
+    private LinearizationService linearizationService = new LinearizationService();
+
+    @Value("${esign.signing.revision-format:COMPACT}")
+    private RevisionFormat revisionFormat = RevisionFormat.COMPACT;
 
     public byte[] signPdf(MultipartFile pdfFile, String certificatePath, String certificatePassword,
                          String certificateAlias, String signatureName, String signatureLocation) throws IOException, CertificateException {
-        // Load the keystore (certificate)
-        KeyStore keystore;
-        try {
-            keystore = KeyStore.getInstance("PKCS12");
-            try (InputStream certStream = new FileInputStream(certificatePath)) {
-                keystore.load(certStream, certificatePassword.toCharArray());
-            }
+        return signPdf(pdfFile, certificatePath, certificatePassword, certificateAlias, 
+                       signatureName, signatureLocation, SignatureAppearanceType.NEW);
+    }
 
-            // Get the private key and certificate chain
-            privateKey = (PrivateKey) keystore.getKey(certificateAlias, certificatePassword.toCharArray());
-            certificateChain = keystore.getCertificateChain(certificateAlias);
+    /**
+     * Signs a PDF document with a visible signature on the first page.
+     *
+     * @param pdfFile The PDF file to sign
+     * @param certificatePath Path to the certificate file
+     * @param certificatePassword Password for the certificate
+     * @param certificateAlias Alias of the certificate in the keystore
+     * @param signatureName Name of the signer
+     * @param signatureLocation Location of the signer
+     * @param appearanceType VECTOR to draw the appearance with PDF operators, otherwise a rasterized image is embedded
+     * @return The signed PDF as a byte array
+     * @throws IOException If there's an issue with the PDF
+     * @throws CertificateException If there's an issue with the certificate
+     */
+    public byte[] signPdf(MultipartFile pdfFile, String certificatePath, String certificatePassword,
+                         String certificateAlias, String signatureName, String signatureLocation,
+                         SignatureAppearanceType appearanceType) throws IOException, CertificateException {
+        return signPdf(pdfFile, certificatePath, certificatePassword, certificateAlias, 
+                       signatureName, signatureLocation, appearanceType, null);
+    }
 
-            if (privateKey == null || certificateChain == null || certificateChain.length == 0) {
-                throw new CertificateException("Failed to load private key or certificate chain");
-            }
+    /**
+     * Signs a PDF document with the visible signature placed directly above an anchor text.
+     *
+     * @param pdfFile The PDF file to sign
+     * @param certificatePath Path to the certificate file
+     * @param certificatePassword Password for the certificate
+     * @param certificateAlias Alias of the certificate in the keystore
+     * @param signatureName Name of the signer
+     * @param signatureLocation Location of the signer
+     * @param appearanceType VECTOR to draw the appearance with PDF operators, otherwise a rasterized image is embedded
+     * @param anchorText Text in the document to place the signature at, e.g. "Borrower Signature"
+     * @return The signed PDF as a byte array
+     * @throws IOException If there's an issue with the PDF or the anchor text is not found
+     * @throws CertificateException If there's an issue with the certificate
+     */
+    public byte[] signPdfAtAnchor(MultipartFile pdfFile, String certificatePath, String certificatePassword,
+                                  String certificateAlias, String signatureName, String signatureLocation,
+                                  SignatureAppearanceType appearanceType, String anchorText) 
+                                  throws IOException, CertificateException {
+        SignaturePlacement placement = anchorPlacementService.placeAboveAnchor(pdfFile.getBytes(), anchorText, 200, 70);
+        return signPdf(pdfFile, certificatePath, certificatePassword, certificateAlias, 
+                       signatureName, signatureLocation, appearanceType, placement);
+    }
 
-        } catch (Exception e) {
-            throw new CertificateException("Error loading certificate: " + e.getMessage(), e);
-        }
+    /**
+     * Signs a PDF document with the visible signature placed directly above an anchor text
+     * and writes the incrementally saved document to the given stream.
+     *
+     * @param pdfFile The PDF file to sign
+     * @param certificatePath Path to the certificate file
+     * @param certificatePassword Password for the certificate
+     * @param certificateAlias Alias of the certificate in the keystore
+     * @param signatureName Name of the signer
+     * @param signatureLocation Location of the signer
+     * @param appearanceType VECTOR to draw the appearance with PDF operators, otherwise a rasterized image is embedded
+     * @param anchorText Text in the document to place the signature at, e.g. "Borrower Signature"
+     * @param output The stream to write the original bytes followed by the signed revision to
+     * @throws IOException If there's an issue with the PDF or the anchor text is not found
+     * @throws CertificateException If there's an issue with the certificate
+     */
+    public void signPdfAtAnchor(MultipartFile pdfFile, String certificatePath, String certificatePassword,
+                                String certificateAlias, String signatureName, String signatureLocation,
+                                SignatureAppearanceType appearanceType, String anchorText, OutputStream output) 
+                                throws IOException, CertificateException {
+        signPdfAtAnchor(pdfFile, certificatePath, certificatePassword, certificateAlias, 
+                        signatureName, signatureLocation, appearanceType, anchorText, null, output);
+    }
 
-        // Create PDFBox signature interface
-        SignatureInterface signatureInterface = content -> {
-            try {
-                CMSSignedDataGenerator gen = new CMSSignedDataGenerator();
-                X509Certificate cert = (X509Certificate) certificateChain[0];
-                
-                // Add the signing certificate and chain
-                gen.addCertificates(new JcaCertStore(Arrays.asList(certificateChain)));
-                
+    /**
+     * Signs a PDF document with the visible signature placed directly above an anchor text, drawing a signer
+     * image in the appearance, and writes the incrementally saved document to the given stream.
+     *
+     * @param pdfFile The PDF file to sign
+     * @param certificatePath Path to the certificate file
+     * @param certificatePassword Password for the certificate
+     * @param certificateAlias Alias of the certificate in the keystore
+     * @param signatureName Name of the signer
+     * @param signatureLocation Location of the signer
+     * @param appearanceType VECTOR to draw the appearance with PDF operators, otherwise a rasterized image is embedded
+     * @param anchorText Text in the document to place the signature at, e.g. "Borrower Signature"
+     * @param signerImage Image from the signer asset store to draw in a VECTOR appearance, or null for none
+     * @param output The stream to write the original bytes followed by the signed revision to
+     * @throws IOException If there's an issue with the PDF, the anchor text is not found or an image is given
+     *                     for a rasterized appearance
+     * @throws CertificateException If there's an issue with the certificate
+     */
+    public void signPdfAtAnchor(MultipartFile pdfFile, String certificatePath, String certificatePassword,
+                                String certificateAlias, String signatureName, String signatureLocation,
+                                SignatureAppearanceType appearanceType, String anchorText, EncodedImage signerImage,
+                                OutputStream output) throws IOException, CertificateException {
+        SignaturePlacement placement = anchorPlacementService.placeAboveAnchor(pdfFile.getBytes(), anchorText, 200, 70);
+        signPdf(pdfFile, certificatePath, certificatePassword, certificateAlias, 
+                signatureName, signatureLocation, appearanceType, placement, signerImage, output);
+    }
+
+    /**
+     * Signs a PDF document with a visible signature at the given placement.
+     *
+     * @param pdfFile The PDF file to sign
+     * @param certificatePath Path to the certificate file
+     * @param certificatePassword Password for the certificate
+     * @param certificateAlias Alias of the certificate in the keystore
+     * @param signatureName Name of the signer
+     * @param signatureLocation Location of the signer
+     * @param appearanceType VECTOR to draw the appearance with PDF operators, otherwise a rasterized image is embedded
+     * @param placement Where to place the signature, or null for the top left corner of the first page
+     * @return The signed PDF as a byte array
+     * @throws IOException If there's an issue with the PDF
+     * @throws CertificateException If there's an issue with the certificate
+     */
+    public byte[] signPdf(MultipartFile pdfFile, String certificatePath, String certificatePassword,
+                         String certificateAlias, String signatureName, String signatureLocation,
+                         SignatureAppearanceType appearanceType, SignaturePlacement placement) 
+                         throws IOException, CertificateException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        signPdf(pdfFile, certificatePath, certificatePassword, certificateAlias, 
+                signatureName, signatureLocation, appearanceType, placement, baos);
+        return baos.toByteArray();
+    }
+
+    /**
+     * Signs a PDF document with a visible signature at the given placement and writes the
+     * incrementally saved document to the given stream.
+     *
+     * @param pdfFile The PDF file to sign
+     * @param certificatePath Path to the certificate file
+     * @param certificatePassword Password for the certificate
+     * @param certificateAlias Alias of the certificate in the keystore
+     * @param signatureName Name of the signer
+     * @param signatureLocation Location of the signer
+     * @param appearanceType VECTOR to draw the appearance with PDF operators, otherwise a rasterized image is embedded
+     * @param placement Where to place the signature, or null for the top left corner of the first page
+     * @param output The stream to write the original bytes followed by the signed revision to
+     * @throws IOException If there's an issue with the PDF
+     * @throws CertificateException If there's an issue with the certificate
+     */
+    public void signPdf(MultipartFile pdfFile, String certificatePath, String certificatePassword,
+                        String certificateAlias, String signatureName, String signatureLocation,
+                        SignatureAppearanceType appearanceType, SignaturePlacement placement, OutputStream output) 
+                        throws IOException, CertificateException {
+        signPdf(pdfFile, certificatePath, certificatePassword, certificateAlias, 
+                signatureName, signatureLocation, appearanceType, placement, null, output);
+    }
+
+    /**
+     * Signs a PDF document with a visible signature at the given placement, drawing a signer image in the
+     * appearance, and writes the incrementally saved document to the given stream.
+     *
+     * @param pdfFile The PDF file to sign
+     * @param certificatePath Path to the certificate file
+     * @param certificatePassword Password for the certificate
+     * @param certificateAlias Alias of the certificate in the keystore
+     * @param signatureName Name of the signer
+     * @param signatureLocation Location of the signer
+     * @param appearanceType VECTOR to draw the appearance with PDF operators, otherwise a rasterized image is embedded
+     * @param placement Where to place the signature, or null for the top left corner of the first page
+     * @param signerImage Image from the signer asset store to draw in a VECTOR appearance, or null for none
+     * @param output The stream to write the original bytes followed by the signed revision to
+     * @throws IOException If there's an issue with the PDF or an image is given for a rasterized appearance
+     * @throws CertificateException If there's an issue with the certificate
+     */
+    public void signPdf(MultipartFile pdfFile, String certificatePath, String certificatePassword,
+                        String certificateAlias, String signatureName, String signatureLocation,
+                        SignatureAppearanceType appearanceType, SignaturePlacement placement,
+                        EncodedImage signerImage, OutputStream output) throws IOException, CertificateException {
+        CredentialSource credentials = credentialSourceRegistry.resolve(certificatePath, certificatePassword, certificateAlias);
+        byte[] pdfBytes = IOUtils.toByteArray(pdfFile.getInputStream());
+        signPdfSource(new RandomAccessReadBuffer(pdfBytes), false, false, signatureName, signatureLocation, appearanceType,
+                      placement, null, signerImage, reservedSignatureSize(credentials), contentSignature(credentials, signatureName), output);
+    }
+
+    /**
+     * Signs a PDF document with one VECTOR signature shown on several pages and writes the incrementally
+     * saved document to the given stream. The signature field has a widget on each page, and all widgets
+     * reference the same appearance stream.
+     *
+     * @param pdfFile The PDF file to sign
+     * @param certificatePath Path to the certificate file
+     * @param certificatePassword Password for the certificate
+     * @param certificateAlias Alias of the certificate in the keystore
+     * @param signatureName Name of the signer
+     * @param signatureLocation Location of the signer
+     * @param placement Where to place the signature on each page, ignoring its page, or null for the top left corner
+     * @param pages The page numbers (1-based) to show the signature on, or empty for every page
+     * @param signerImage Image from the signer asset store to draw in the appearance, or null for none
+     * @param output The stream to write the original bytes followed by the signed revision to
+     * @throws IOException If there's an issue with the PDF or a page does not exist
+     * @throws CertificateException If there's an issue with the certificate
+     */
+    public void signPdfOnPages(MultipartFile pdfFile, String certificatePath, String certificatePassword,
+                               String certificateAlias, String signatureName, String signatureLocation,
+                               SignaturePlacement placement, List<Integer> pages, EncodedImage signerImage,
+                               OutputStream output) throws IOException, CertificateException {
+        CredentialSource credentials = credentialSourceRegistry.resolve(certificatePath, certificatePassword, certificateAlias);
+        byte[] pdfBytes = IOUtils.toByteArray(pdfFile.getInputStream());
+        signPdfSource(new RandomAccessReadBuffer(pdfBytes), false, false, signatureName, signatureLocation,
+                      SignatureAppearanceType.VECTOR, placement, pages, signerImage, reservedSignatureSize(credentials),
+                      contentSignature(credentials, signatureName), output);
+    }
+
+    /**
+     * Signs a PDF document read from a file into an empty signature field provisioned on it in advance, with a
+     * VECTOR appearance, and writes the incrementally saved document to the given stream. The field is looked up
+     * by the object key it was indexed with, so no field or widget is created and its page is not written again.
+     *
+     * @param pdfFile The PDF file with the provisioned field
+     * @param certificatePath Path to the certificate file
+     * @param certificatePassword Password for the certificate
+     * @param certificateAlias Alias of the certificate in the keystore
+     * @param signatureName Name of the signer
+     * @param signatureLocation Location of the signer
+     * @param field The indexed field to fill
+     * @param signerImage Image from the signer asset store to draw in the appearance, or null for none
+     * @param output The stream to write the original bytes followed by the signed revision to
+     * @throws IOException If there's an issue with the PDF or the field is not an empty field of the document
+     * @throws CertificateException If there's an issue with the certificate
+     */
+    public void signPdfField(Path pdfFile, String certificatePath, String certificatePassword,
+                             String certificateAlias, String signatureName, String signatureLocation,
+                             ProvisionedField field, EncodedImage signerImage, OutputStream output)
+                             throws IOException, CertificateException {
+        CredentialSource credentials = credentialSourceRegistry.resolve(certificatePath, certificatePassword, certificateAlias);
+        fillSignatureField(new RandomAccessReadBufferedFile(pdfFile), signatureName, signatureLocation, field, signerImage,
+                           reservedSignatureSize(credentials), contentSignature(credentials, signatureName), output);
+    }
+
+    /**
+     * Signs a PDF document read from a file with a visible signature on the first page and writes the
+     * incrementally saved document to the given stream.
+     *
+     * @param pdfFile The PDF file to sign
+     * @param certificatePath Path to the certificate file
+     * @param certificatePassword Password for the certificate
+     * @param certificateAlias Alias of the certificate in the keystore
+     * @param signatureName Name of the signer
+     * @param signatureLocation Location of the signer
+     * @param appearanceType VECTOR to draw the appearance with PDF operators, otherwise a rasterized image is embedded
+     * @param output The stream to write the original bytes followed by the signed revision to
+     * @throws IOException If there's an issue with the PDF
+     * @throws CertificateException If there's an issue with the certificate
+     */
+    public void signPdfFile(Path pdfFile, String certificatePath, String certificatePassword,
+                            String certificateAlias, String signatureName, String signatureLocation,
+                            SignatureAppearanceType appearanceType, OutputStream output)
+                            throws IOException, CertificateException {
+        signPdfFile(pdfFile, certificatePath, certificatePassword, certificateAlias, signatureName, signatureLocation,
+                    appearanceType, null, output);
+    }
+
+    /**
+     * Signs a PDF document read from a file with a visible signature at the given placement and writes the
+     * incrementally saved document to the given stream.
+     *
+     * @param pdfFile The PDF file to sign
+     * @param certificatePath Path to the certificate file
+     * @param certificatePassword Password for the certificate
+     * @param certificateAlias Alias of the certificate in the keystore
+     * @param signatureName Name of the signer
+     * @param signatureLocation Location of the signer
+     * @param appearanceType VECTOR to draw the appearance with PDF operators, otherwise a rasterized image is embedded
+     * @param placement Where to place the signature, or null for the top left corner of the first page
+     * @param output The stream to write the original bytes followed by the signed revision to
+     * @throws IOException If there's an issue with the PDF
+     * @throws CertificateException If there's an issue with the certificate
+     */
+    public void signPdfFile(Path pdfFile, String certificatePath, String certificatePassword,
+                            String certificateAlias, String signatureName, String signatureLocation,
+                            SignatureAppearanceType appearanceType, SignaturePlacement placement, OutputStream output)
+                            throws IOException, CertificateException {
+        signPdfFile(pdfFile, certificatePath, certificatePassword, certificateAlias, signatureName, signatureLocation,
+                    appearanceType, placement, null, null, false, output);
+    }
+
+    /**
+     * Signs a PDF document read from a file and writes the incrementally saved document to the given stream.
+     * A document whose bytes are fixed in advance, e.g. a stored original that the caller appends the revision
+     * to, is signed append-only: it is never linearized, since that would rewrite the bytes before the revision.
+     *
+     * @param pdfFile The PDF file to sign
+     * @param certificatePath Path to the certificate file
+     * @param certificatePassword Password for the certificate
+     * @param certificateAlias Alias of the certificate in the keystore
+     * @param signatureName Name of the signer
+     * @param signatureLocation Location of the signer
+     * @param appearanceType VECTOR to draw the appearance with PDF operators, otherwise a rasterized image is embedded
+     * @param placement Where to place the signature, or null for the top left corner of the first page
+     * @param pages The page numbers (1-based) to show a VECTOR signature on, empty for every page, or null for the
+     *              page of the placement only
+     * @param signerImage Image from the signer asset store to draw in a VECTOR appearance, or null for none
+     * @param appendOnly True if the output must start with the unchanged bytes of the file
+     * @param output The stream to write the original bytes followed by the signed revision to
+     * @throws IOException If there's an issue with the PDF, a page does not exist or an image or pages are given
+     *                     for a rasterized appearance
+     * @throws CertificateException If there's an issue with the certificate
+     */
+    public void signPdfFile(Path pdfFile, String certificatePath, String certificatePassword,
+                            String certificateAlias, String signatureName, String signatureLocation,
+                            SignatureAppearanceType appearanceType, SignaturePlacement placement, List<Integer> pages,
+                            EncodedImage signerImage, boolean appendOnly, OutputStream output)
+                            throws IOException, CertificateException {
+        CredentialSource credentials = credentialSourceRegistry.resolve(certificatePath, certificatePassword, certificateAlias);
+        signPdfSource(new RandomAccessReadBufferedFile(pdfFile), false, appendOnly, signatureName, signatureLocation,
+                      appearanceType, placement, pages, signerImage, reservedSignatureSize(credentials),
+                      contentSignature(credentials, signatureName), output);
+    }
+
+    /**
+     * Signs a PDF document read from a file with the visible signature placed directly above an anchor text and
+     * writes the incrementally saved document to the given stream.
+     *
+     * @param pdfFile The PDF file to sign
+     * @param sha256 The SHA-256 of the file, under which the text index of its anchors is cached
+     * @param certificatePath Path to the certificate file
+     * @param certificatePassword Password for the certificate
+     * @param certificateAlias Alias of the certificate in the keystore
+     * @param signatureName Name of the signer
+     * @param signatureLocation Location of the signer
+     * @param appearanceType VECTOR to draw the appearance with PDF operators, otherwise a rasterized image is embedded
+     * @param anchorText Text in the document to place the signature at, e.g. "Borrower Signature"
+     * @param signerImage Image from the signer asset store to draw in a VECTOR appearance, or null for none
+     * @param appendOnly True if the output must start with the unchanged bytes of the file
+     * @param output The stream to write the original bytes followed by the signed revision to
+     * @throws IOException If there's an issue with the PDF, the anchor text is not found or an image is given
+     *                     for a rasterized appearance
+     * @throws CertificateException If there's an issue with the certificate
+     */
+    public void signPdfAtAnchor(Path pdfFile, String sha256, String certificatePath, String certificatePassword,
+                                String certificateAlias, String signatureName, String signatureLocation,
+                                SignatureAppearanceType appearanceType, String anchorText, EncodedImage signerImage,
+                                boolean appendOnly, OutputStream output) throws IOException, CertificateException {
+        SignaturePlacement placement = anchorPlacementService.placeAboveAnchor(pdfFile, sha256, anchorText, 200, 70);
+        signPdfFile(pdfFile, certificatePath, certificatePassword, certificateAlias, signatureName, signatureLocation,
+                    appearanceType, placement, null, signerImage, appendOnly, output);
+    }
+
+    /**
+     * Signs a PDF document streamed in the request body. The ByteRange digest is computed while
+     * the upload is read and only continued over the appended revision when signing, so the
+     * original bytes are not read a second time.
+     *
+     * @param pdfStream The PDF document as it arrives
+     * @param certificatePath Path to the certificate file
+     * @param certificatePassword Password for the certificate
+     * @param certificateAlias Alias of the certificate in the keystore
+     * @param signatureName Name of the signer
+     * @param signatureLocation Location of the signer
+     * @param appearanceType VECTOR to draw the appearance with PDF operators, otherwise a rasterized image is embedded
+     * @return The signed PDF as a byte array
+     * @throws IOException If there's an issue with the PDF
+     * @throws CertificateException If there's an issue with the certificate
+     */
+    public byte[] signPdfStream(InputStream pdfStream, String certificatePath, String certificatePassword,
+                                String certificateAlias, String signatureName, String signatureLocation,
+                                SignatureAppearanceType appearanceType) throws IOException, CertificateException {
+        return signPdfStream(pdfStream, certificatePath, certificatePassword, certificateAlias, signatureName,
+                             signatureLocation, appearanceType, Long.MAX_VALUE);
+    }
+
+    /**
+     * Signs a PDF document streamed in the request body, reading at most the given number of bytes of it
+     * into memory.
+     *
+     * @param pdfStream The PDF document as it arrives
+     * @param certificatePath Path to the certificate file
+     * @param certificatePassword Password for the certificate
+     * @param certificateAlias Alias of the certificate in the keystore
+     * @param signatureName Name of the signer
+     * @param signatureLocation Location of the signer
+     * @param appearanceType VECTOR to draw the appearance with PDF operators, otherwise a rasterized image is embedded
+     * @param maxUploadBytes The number of bytes the upload may have, e.g. the amount reserved for it
+     * @return The signed PDF as a byte array
+     * @throws UploadTooLargeException If the upload is longer than maxUploadBytes
+     * @throws IOException If there's an issue with the PDF
+     * @throws CertificateException If there's an issue with the certificate
+     */
+    public byte[] signPdfStream(InputStream pdfStream, String certificatePath, String certificatePassword,
+                                String certificateAlias, String signatureName, String signatureLocation,
+                                SignatureAppearanceType appearanceType, long maxUploadBytes)
+        throws IOException, CertificateException {
+        // The credentials decide the digest algorithm, so load them before reading the upload
+        CredentialSource credentials = credentialSourceRegistry.resolve(certificatePath, certificatePassword, certificateAlias);
+        String digestAlgorithm = CMSSignatureHelper.resolveDigestAlgorithm(credentials.getPrivateKey(), signatureSpec);
+
+        IngestedPdf ingested = StreamingDigestHelper.ingest(pdfStream, digestAlgorithm, maxUploadBytes);
+        // A linearized document is rewritten in the same write as its signature, so the upload digest only
+        // covers the signed content when the signature is appended
+        AuditedSignature signature = linearizationService.isEnabled()
+            ? contentSignature(credentials, signatureName)
+            : continuedDigestSignature(ingested.digest(), ingested.bytes().length, digestAlgorithm, credentials,
+                                       signatureName);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        signPdfSource(new RandomAccessReadBuffer(ingested.bytes()), false, false, signatureName, signatureLocation,
+                      appearanceType, null, null, null, reservedSignatureSize(credentials), signature, baos);
+        return baos.toByteArray();
+    }
+
+    /**
+     * Signs a PDF document streamed in the request body without holding it in memory. The upload is
+     * digested while it is written to the spool file, the document is parsed from that file with its
+     * scratch data in temporary files, and the signed document is written to the output.
+     * Documents are not linearized on this path, since that rewrites the whole document in memory.
+     *
+     * @param pdfStream The PDF document as it arrives
+     * @param certificatePath Path to the certificate file
+     * @param certificatePassword Password for the certificate
+     * @param certificateAlias Alias of the certificate in the keystore
+     * @param signatureName Name of the signer
+     * @param signatureLocation Location of the signer
+     * @param appearanceType VECTOR to draw the appearance with PDF operators, otherwise a rasterized image is embedded
+     * @param spoolFile The file to write the upload to, owned by the caller
+     * @param output The stream to write the original bytes followed by the signed revision to
+     * @throws IOException If there's an issue with the PDF or the spool file
+     * @throws CertificateException If there's an issue with the certificate
+     */
+    public void signPdfStream(InputStream pdfStream, String certificatePath, String certificatePassword,
+                              String certificateAlias, String signatureName, String signatureLocation,
+                              SignatureAppearanceType appearanceType, Path spoolFile, OutputStream output)
+                              throws IOException, CertificateException {
+        CredentialSource credentials = credentialSourceRegistry.resolve(certificatePath, certificatePassword, certificateAlias);
+        String digestAlgorithm = CMSSignatureHelper.resolveDigestAlgorithm(credentials.getPrivateKey(), signatureSpec);
+
+        MessageDigest uploadDigest = StreamingDigestHelper.spool(pdfStream, digestAlgorithm, spoolFile);
+        long uploadLength = Files.size(spoolFile);
+        signPdfSource(new RandomAccessReadBufferedFile(spoolFile), true, true, signatureName, signatureLocation,
+                      appearanceType, null, null, null, reservedSignatureSize(credentials),
+                      continuedDigestSignature(uploadDigest, uploadLength, digestAlgorithm, credentials, signatureName),
+                      output);
+    }
+
+    /**
+     * Creates a signature interface that reads the signed content and signs it with the credentials.
+     */
+    private AuditedSignature contentSignature(CredentialSource credentials, String signatureName) {
+        return new AuditedSignature(signingAuditJournal, signatureName, credentials, signatureSpec, (content, audit) -> {
+            SigningDeadline.checkCurrent(SigningPhase.DIGEST);
+            // Read content into memory using buffered stream
+            BufferedInputStream bufferedContent = new BufferedInputStream(content);
+            byte[] contentBytes = IOUtils.toByteArray(bufferedContent);
+
+            SigningDeadline.checkCurrent(SigningPhase.SIGN);
+            // Create signed data with the algorithm matching the key type
+            byte[] cmsSignature = credentials.withKey((privateKey, certificateChain) -> {
                 // Verify certificate validity
-                cert.checkValidity();
-
-                // Add signer info with signed attributes
-                JcaContentSignerBuilder contentSignerBuilder = new JcaContentSignerBuilder("SHA256withRSA");
-                contentSignerBuilder.setProvider(BouncyCastleProvider.PROVIDER_NAME);
-
-                // Create signer info with default attributes (includes messageDigest and signingTime)
-                gen.addSignerInfoGenerator(
-                    new JcaSignerInfoGeneratorBuilder(
-                        new JcaDigestCalculatorProviderBuilder()
-                            .setProvider(BouncyCastleProvider.PROVIDER_NAME)
-                            .build())
-                        .build(contentSignerBuilder.build(privateKey), cert));
-
-                // Read content into memory using buffered stream
-                BufferedInputStream bufferedContent = new BufferedInputStream(content);
-                byte[] contentBytes = IOUtils.toByteArray(bufferedContent);
-                
-                // Create signed data using buffered content
-                CMSProcessableByteArray msg = new CMSProcessableByteArray(contentBytes);
-                CMSSignedData signedData = gen.generate(msg, true);
-                
-                return signedData.getEncoded();
-            } catch (Exception e) {
-                throw new RuntimeException("Error creating signature: " + e.getMessage(), e);
-            }
-        };
+                ((X509Certificate) certificateChain[0]).checkValidity();
+                return CMSSignatureHelper.createCMSSignature(
+                    contentBytes, privateKey, certificateChain, signatureSpec, false);
+            });
+            audit.signedContent(contentBytes);
+            return cmsSignature;
+        });
+    }
+
+    /**
+     * Creates a signature interface that continues the digest of an upload over the appended revision only.
+     */
+    private AuditedSignature continuedDigestSignature(MessageDigest uploadDigest, long uploadLength,
+                                                      String digestAlgorithm, CredentialSource credentials,
+                                                      String signatureName) {
+        return new AuditedSignature(signingAuditJournal, signatureName, credentials, signatureSpec, (content, audit) -> {
+            SigningDeadline.checkCurrent(SigningPhase.DIGEST);
+            // Continue the upload digest over the appended revision only
+            byte[] contentDigest = StreamingDigestHelper.completeDigest(uploadDigest, uploadLength, content);
+            SigningDeadline.checkCurrent(SigningPhase.SIGN);
+            byte[] cmsSignature = credentials.withKey((privateKey, certificateChain) -> {
+                // Verify certificate validity
+                ((X509Certificate) certificateChain[0]).checkValidity();
+                return CMSSignatureHelper.createDetachedCMSSignature(
+                    contentDigest, privateKey, certificateChain, signatureSpec);
+            });
+            audit.signedDigest(digestAlgorithm, contentDigest);
+            return cmsSignature;
+        });
+    }
 
+    /**
+     * Returns the number of bytes to reserve for the CMS signature. Compact and appended revisions and linearized
+     * documents reserve an estimate from the certificate chain; standard revisions keep the fixed reservation.
+     */
+    private int reservedSignatureSize(CredentialSource credentials) throws IOException {
+        return revisionFormat != RevisionFormat.STANDARD || linearizationService.isEnabled()
+            ? CMSSignatureHelper.estimateSignatureSize(credentials.getCertificateChain())
+            : SignatureOptions.DEFAULT_SIGNATURE_SIZE * 1000;
+    }
+
+    /**
+     * Adds a visible signature to the PDF and saves it incrementally to the output. A disk-backed source is
+     * parsed with its scratch data in temporary files. An append-only source is never linearized, so the output
+     * starts with its unchanged bytes. With pages, the signature is shown on each of them, or on every page if
+     * the list is empty, through widgets sharing one appearance.
+     */
+    private void signPdfSource(RandomAccessRead source, boolean diskBacked, boolean appendOnly, String signatureName,
+                               String signatureLocation, SignatureAppearanceType appearanceType, SignaturePlacement placement,
+                               List<Integer> pages, EncodedImage signerImage, int signatureSize, AuditedSignature signatureInterface,
+                               OutputStream output) throws IOException {
         PDDocument document = null;
         SignatureOptions signatureOptions = null;
         File tempImageFile = null;
         try {
-            // Load the PDF document
-            byte[] pdfBytes = IOUtils.toByteArray(pdfFile.getInputStream());
-            document = Loader.loadPDF(pdfBytes);
-
-            // Create signature dictionary
-            PDSignature signature = new PDSignature();
-            signature.setFilter(PDSignature.FILTER_ADOBE_PPKLITE);
-            signature.setSubFilter(PDSignature.SUBFILTER_ADBE_PKCS7_DETACHED);
-            signature.setName(signatureName);
-            signature.setLocation(signatureLocation);
-            signature.setReason("Document digitally signed");
+            if (signerImage != null && appearanceType != SignatureAppearanceType.VECTOR) {
+                // Drawing the image into the raster would decode and encode it again for every signature
+                throw new IOException("Signer images require the VECTOR appearance");
+            }
+            if (pages != null && appearanceType != SignatureAppearanceType.VECTOR) {
+                // The rasterized appearance is built for one page by the visible signature designer
+                throw new IOException("Signatures on several pages require the VECTOR appearance");
+            }
+            SigningDeadline.checkCurrent(SigningPhase.LOAD);
+            if (revisionFormat == RevisionFormat.APPEND && appearanceType == SignatureAppearanceType.VECTOR
+                    && (appendOnly || !linearizationService.isEnabled())
+                    && appendSignature(source, signatureName, signatureLocation, placement, pages, signerImage,
+                                       signatureSize, signatureInterface, output)) {
+                signatureInterface.record();
+                return;
+            }
+
+            // Load the PDF document, from the start in case the append-only parser gave up part way through
+            source.seek(0);
+            document = diskBacked
+                ? Loader.loadPDF(source, org.apache.pdfbox.io.IOUtils.createTempFileOnlyStreamCache())
+                : Loader.loadPDF(source);
+            boolean linearize = !appendOnly && linearizationService.isEnabled() && PdfLinearizer.canLinearize(document);
+
+            SigningDeadline.checkCurrent(SigningPhase.APPEARANCE);
             Calendar signingTime = Calendar.getInstance();
-            signature.setSignDate(signingTime);
+            PDSignature signature = createSignature(signatureName, signatureLocation, signingTime);
+
+            List<Integer> pageIndices = pageIndices(placement, pages, document.getNumberOfPages());
+            int pageIndex = pageIndices.get(0);
+            PDRectangle mediaBox = document.getPage(pageIndex).getMediaBox();
+            PDRectangle signatureRect = signatureRectangle(placement, mediaBox);
+            List<SignaturePlacement> sharedPlacements = new ArrayList<>();
+            for (int sharedIndex : pageIndices.subList(1, pageIndices.size())) {
+                sharedPlacements.add(placementOn(sharedIndex, placement, document.getPage(sharedIndex).getMediaBox()));
+            }
 
-            // Create signature image with transparency
-            BufferedImage image = new BufferedImage(200, 70, BufferedImage.TYPE_INT_ARGB);
-            Graphics2D g2d = image.createGraphics();
+            signatureOptions = new SignatureOptions();
+            if (appearanceType == SignatureAppearanceType.VECTOR) {
+                // Draw the same layout with PDF text operators instead of a rasterized image
+                signatureOptions.setVisualSignature(createVectorSignatureTemplate(
+                    mediaBox, signatureRect, signatureName, signatureLocation, signingTime, signerImage));
+            } else {
+                // Create signature image with transparency
+                BufferedImage image = new BufferedImage(200, 70, BufferedImage.TYPE_INT_ARGB);
+                Graphics2D g2d = image.createGraphics();
             
-            // Enable anti-aliasing for better text quality
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
-            g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                // Enable anti-aliasing for better text quality
+                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
             
-            // Add signature text with 70% opaque background (alpha = 0.7 * 255 ≈ 178)
-            g2d.setColor(new Color(255, 255, 255, 178));
-            g2d.fillRect(0, 0, 200, 70);
+                // Add signature text with 70% opaque background (alpha = 0.7 * 255 ≈ 178)
+                g2d.setColor(new Color(255, 255, 255, 178));
+                g2d.fillRect(0, 0, 200, 70);
             
-            // Add signature text with plain font
-            g2d.setColor(new Color(0, 0, 0, 230));  // More opaque text for better readability
-            g2d.setFont(new Font("Arial", Font.PLAIN, 10));
-            g2d.drawString("Digitally signed by: " + signatureName, 10, 25);
-            g2d.drawString("Location: " + signatureLocation, 10, 45);
-            g2d.drawString("Date: " + signingTime.getTime().toString(), 10, 65);
-            g2d.dispose();
-
-            // Create temporary image file
-            tempImageFile = File.createTempFile("signature", ".png");
-            ImageIO.write(image, "PNG", tempImageFile);
-
-            // Create visible signature appearance
-            PDVisibleSignDesigner visibleSignDesigner = new PDVisibleSignDesigner(document, new FileInputStream(tempImageFile), 1);
-            // Position at bottom right corner with 20px margin
-            float pageWidth = document.getPage(0).getMediaBox().getWidth();
-            float pageHeight = document.getPage(0).getMediaBox().getHeight();
-            visibleSignDesigner.xAxis(20)  // 20px margin from left
-                              .yAxis(20)   // 20px margin from top
-                              .width(200)
-                              .height(70)
-                              .signatureFieldName("Signature");
-
-            // Create visible signature properties
-            PDVisibleSigProperties visibleSignProperties = new PDVisibleSigProperties();
-            visibleSignProperties.signerName(signatureName)
-                               .signerLocation(signatureLocation)
-                               .signatureReason("Document digitally signed")
-                               .preferredSize(0)
-                               .page(1)
-                               .visualSignEnabled(true)
-                               .setPdVisibleSignature(visibleSignDesigner)
-                               .buildSignature();
-
-            // Create signature options with visible signature
-            signatureOptions = new SignatureOptions();
-            signatureOptions.setVisualSignature(visibleSignProperties.getVisibleSignature());
-            signatureOptions.setPreferredSignatureSize(SignatureOptions.DEFAULT_SIGNATURE_SIZE * 1000);
+                // Add signature text with plain font
+                g2d.setColor(new Color(0, 0, 0, 230));  // More opaque text for better readability
+                g2d.setFont(new Font("Arial", Font.PLAIN, 10));
+                g2d.drawString("Digitally signed by: " + signatureName, 10, 25);
+                g2d.drawString("Location: " + signatureLocation, 10, 45);
+                g2d.drawString("Date: " + signingTime.getTime().toString(), 10, 65);
+                g2d.dispose();
 
-            // Register signature dictionary and sign interface
-            document.addSignature(signature, signatureInterface, signatureOptions);
+                // Create temporary image file
+                tempImageFile = File.createTempFile("signature", ".png");
+                ImageIO.write(image, "PNG", tempImageFile);
 
-            // Save the signed document to byte array
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            document.saveIncremental(baos);
-            return baos.toByteArray();
+                // Create visible signature appearance
+                PDVisibleSignDesigner visibleSignDesigner = new PDVisibleSignDesigner(document, new FileInputStream(tempImageFile), pageIndex + 1);
+                // The designer measures the y-axis from the top of the page
+                visibleSignDesigner.xAxis(signatureRect.getLowerLeftX())
+                                  .yAxis(mediaBox.getHeight() - signatureRect.getUpperRightY())
+                                  .width(signatureRect.getWidth())
+                                  .height(signatureRect.getHeight())
+                                  .signatureFieldName("Signature");
+
+                // Create visible signature properties
+                PDVisibleSigProperties visibleSignProperties = new PDVisibleSigProperties();
+                visibleSignProperties.signerName(signatureName)
+                                   .signerLocation(signatureLocation)
+                                   .signatureReason("Document digitally signed")
+                                   .preferredSize(0)
+                                   .page(pageIndex + 1)
+                                   .visualSignEnabled(true)
+                                   .setPdVisibleSignature(visibleSignDesigner)
+                                   .buildSignature();
+
+                // Create signature options with visible signature
+                signatureOptions.setVisualSignature(visibleSignProperties.getVisibleSignature());
+            }
+            signatureOptions.setPage(pageIndex);
+            signatureOptions.setPreferredSignatureSize(signatureSize);
+
+            SigningDeadline.checkCurrent(SigningPhase.SAVE);
+            if (linearize) {
+                // Write the first signature into the linearized file, so the signed document stays linearized
+                document.addSignature(signature, signatureOptions);
+                PDFSignatureFieldHelper.addSharedWidgets(document, signature, sharedPlacements);
+                PdfLinearizer.linearize(document, signature, signatureInterface, output);
+            } else if (revisionFormat != RevisionFormat.STANDARD && CompactRevisionWriter.supports(document)) {
+                // Register the signature dictionary and write the revision with object streams
+                document.addSignature(signature, signatureOptions);
+                PDFSignatureFieldHelper.addSharedWidgets(document, signature, sharedPlacements);
+                CompactRevisionWriter.write(document, source, signature, signatureInterface, output);
+            } else {
+                // Register signature dictionary and sign interface
+                document.addSignature(signature, signatureInterface, signatureOptions);
+                PDFSignatureFieldHelper.addSharedWidgets(document, signature, sharedPlacements);
+
+                // Save the signed document to the output
+                document.saveIncremental(output);
+            }
+            // Only a signature whose document was saved is audited
+            signatureInterface.record();
         } catch (IOException e) {
             throw new IOException("Error processing PDF: " + e.getMessage(), e);
         } finally {
@@ -200,10 +726,240 @@ public class PdfSigningService {
                 } catch (IOException e) {
                     // Log but don't throw as we're in finally
                 }
+            } else {
+                // The document owns the source once loaded, release a file handle if loading failed
+                source.close();
             }
             if (tempImageFile != null) {
                 tempImageFile.delete();
             }
         }
     }
+
+    /**
+     * Appends the signature with {@link AppendOnlySigner}, which only parses the objects the signature changes.
+     *
+     * @return False if the document is not supported and has to be loaded instead
+     */
+    private boolean appendSignature(RandomAccessRead source, String signatureName, String signatureLocation,
+                                    SignaturePlacement placement, List<Integer> pages, EncodedImage signerImage,
+                                    int signatureSize, SignatureInterface signatureInterface, OutputStream output)
+                                    throws IOException {
+        try (AppendOnlySigner signer = openAppendOnly(source);
+             PDDocument appearanceDocument = new PDDocument()) {
+            if (signer == null || !signer.supports()) {
+                return false;
+            }
+            SigningDeadline.checkCurrent(SigningPhase.APPEARANCE);
+            Calendar signingTime = Calendar.getInstance();
+            PDSignature signature = createSignature(signatureName, signatureLocation, signingTime);
+            List<SignaturePlacement> placements = new ArrayList<>();
+            try {
+                for (int pageIndex : pageIndices(placement, pages, signer.getNumberOfPages())) {
+                    placements.add(placementOn(pageIndex, placement, signer.getMediaBox(pageIndex)));
+                }
+            } catch (IOException e) {
+                log.info("Loading the document to sign it, its page tree cannot be read in place: {}", e.getMessage());
+                return false;
+            }
+            PDRectangle signatureRect = placements.get(0).toRectangle();
+            PDAppearanceStream appearance = SignatureAppearanceHelper.createVectorAppearance(appearanceDocument,
+                signatureRect, signatureName, signatureLocation, signingTime, signerImage);
+            SigningDeadline.checkCurrent(SigningPhase.SAVE);
+            signer.sign(signature, placements, appearance, signatureSize, signatureInterface, output);
+            return true;
+        }
+    }
+
+    /**
+     * Opens a document for {@link AppendOnlySigner}. Its parser only reads well-formed cross-reference data, so a
+     * document it cannot parse is left to the PDFBox loader, which repairs what it can.
+     *
+     * @return The signer, or null if the document has to be loaded instead
+     */
+    private static AppendOnlySigner openAppendOnly(RandomAccessRead source) {
+        try {
+            return AppendOnlySigner.open(source);
+        } catch (IOException e) {
+            log.info("Loading the document to sign it, its cross-reference data cannot be read in place: {}",
+                     e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Fills a provisioned signature field and saves the document incrementally to the output. The APPEND format
+     * updates the field object alone; otherwise PDFBox signs the field because its value is the signature, and the
+     * page, which already lists the widget, is kept out of the revision. Provisioned documents are not linearized.
+     */
+    private void fillSignatureField(RandomAccessRead source, String signatureName, String signatureLocation,
+                                    ProvisionedField field, EncodedImage signerImage, int signatureSize,
+                                    AuditedSignature signatureInterface, OutputStream output) throws IOException {
+        PDDocument document = null;
+        SignatureOptions signatureOptions = null;
+        try {
+            SigningDeadline.checkCurrent(SigningPhase.LOAD);
+            PDRectangle signatureRect = field.placement().toRectangle();
+            if (revisionFormat == RevisionFormat.APPEND) {
+                try (AppendOnlySigner signer = openAppendOnly(source);
+                     PDDocument appearanceDocument = new PDDocument()) {
+                    if (signer != null && signer.supports()) {
+                        SigningDeadline.checkCurrent(SigningPhase.APPEARANCE);
+                        Calendar signingTime = Calendar.getInstance();
+                        PDSignature signature = createSignature(signatureName, signatureLocation, signingTime);
+                        PDAppearanceStream appearance = SignatureAppearanceHelper.createVectorAppearance(
+                            appearanceDocument, signatureRect, signatureName, signatureLocation, signingTime, signerImage);
+                        SigningDeadline.checkCurrent(SigningPhase.SAVE);
+                        signer.fill(signature, field, appearance, signatureSize, signatureInterface, output);
+                        signatureInterface.record();
+                        return;
+                    }
+                }
+            }
+
+            source.seek(0);
+            document = Loader.loadPDF(source);
+            SigningDeadline.checkCurrent(SigningPhase.APPEARANCE);
+            COSDictionary fieldDictionary = PDFSignatureFieldHelper.findEmptySignatureField(document, field);
+            int pageIndex = pageIndex(field.placement(), document.getNumberOfPages());
+            Calendar signingTime = Calendar.getInstance();
+            PDSignature signature = createSignature(signatureName, signatureLocation, signingTime);
+            // PDFBox signs the field whose value is the signature instead of creating a field
+            fieldDictionary.setItem(COSName.V, signature);
+
+            signatureOptions = new SignatureOptions();
+            signatureOptions.setVisualSignature(createVectorSignatureTemplate(document.getPage(pageIndex).getMediaBox(),
+                signatureRect, signatureName, signatureLocation, signingTime, signerImage));
+            signatureOptions.setPage(pageIndex);
+            signatureOptions.setPreferredSignatureSize(signatureSize);
+
+            SigningDeadline.checkCurrent(SigningPhase.SAVE);
+            if (revisionFormat != RevisionFormat.STANDARD && CompactRevisionWriter.supports(document)) {
+                document.addSignature(signature, signatureOptions);
+                // The provisioned widget is already listed on its page
+                document.getPage(pageIndex).getCOSObject().setNeedToBeUpdated(false);
+                CompactRevisionWriter.write(document, source, signature, signatureInterface, output);
+            } else {
+                document.addSignature(signature, signatureInterface, signatureOptions);
+                document.getPage(pageIndex).getCOSObject().setNeedToBeUpdated(false);
+                document.saveIncremental(output);
+            }
+            signatureInterface.record();
+        } catch (IOException e) {
+            throw new IOException("Error processing PDF: " + e.getMessage(), e);
+        } finally {
+            if (signatureOptions != null) {
+                try {
+                    signatureOptions.close();
+                } catch (IOException e) {
+                    // Log but don't throw as we're in finally
+                }
+            }
+            if (document != null) {
+                try {
+                    document.close();
+                } catch (IOException e) {
+                    // Log but don't throw as we're in finally
+                }
+            } else {
+                source.close();
+            }
+        }
+    }
+
+    private static PDSignature createSignature(String signatureName, String signatureLocation, Calendar signingTime) {
+        PDSignature signature = new PDSignature();
+        signature.setFilter(PDSignature.FILTER_ADOBE_PPKLITE);
+        signature.setSubFilter(PDSignature.SUBFILTER_ADBE_PKCS7_DETACHED);
+        signature.setName(signatureName);
+        signature.setLocation(signatureLocation);
+        signature.setReason("Document digitally signed");
+        signature.setSignDate(signingTime);
+        return signature;
+    }
+
+    private static int pageIndex(SignaturePlacement placement, int numberOfPages) throws IOException {
+        int pageIndex = placement != null ? placement.page() - 1 : 0;
+        if (pageIndex < 0 || pageIndex >= numberOfPages) {
+            throw new IOException("Invalid page number: " + (pageIndex + 1));
+        }
+        return pageIndex;
+    }
+
+    /**
+     * Returns the zero-based indices of the pages to show the signature on: the page of the placement without
+     * pages, every page for an empty list, and otherwise the listed pages without repetitions.
+     */
+    private static List<Integer> pageIndices(SignaturePlacement placement, List<Integer> pages, int numberOfPages)
+            throws IOException {
+        if (pages == null) {
+            return List.of(pageIndex(placement, numberOfPages));
+        }
+        if (pages.isEmpty()) {
+            return IntStream.range(0, numberOfPages).boxed().toList();
+        }
+        Set<Integer> pageIndices = new LinkedHashSet<>();
+        for (int page : pages) {
+            if (page < 1 || page > numberOfPages) {
+                throw new IOException("Invalid page number: " + page);
+            }
+            pageIndices.add(page - 1);
+        }
+        return new ArrayList<>(pageIndices);
+    }
+
+    /**
+     * Returns the placement of the signature on a page, at the position of the given placement if there is one.
+     */
+    private static SignaturePlacement placementOn(int pageIndex, SignaturePlacement placement, PDRectangle mediaBox) {
+        PDRectangle rect = signatureRectangle(placement, mediaBox);
+        return new SignaturePlacement(pageIndex + 1, rect.getLowerLeftX(), rect.getLowerLeftY(),
+                                      rect.getWidth(), rect.getHeight());
+    }
+
+    /**
+     * Returns the rectangle at the placement, defaulting to the top left corner of the page with a 20pt margin.
+     * The default is offset by the media box origin, which is not at 0,0 on cropped or imposed pages.
+     */
+    private static PDRectangle signatureRectangle(SignaturePlacement placement, PDRectangle mediaBox) {
+        return placement != null
+            ? placement.toRectangle()
+            : new PDRectangle(mediaBox.getLowerLeftX() + 20, mediaBox.getUpperRightY() - 20 - 70, 200, 70);
+    }
+
+    /**
+     * Creates a visual signature template whose appearance is a vector transparency group
+     * with the same layout as the rasterized image: a 70% opaque white box at the top left
+     * corner with three lines of text.
+     */
+    private InputStream createVectorSignatureTemplate(PDRectangle mediaBox, PDRectangle widgetRect, String signatureName,
+                                                      String signatureLocation, Calendar signingTime,
+                                                      EncodedImage signerImage) throws IOException {
+        try (PDDocument templateDoc = new PDDocument()) {
+            PDPage templatePage = new PDPage(mediaBox);
+            templateDoc.addPage(templatePage);
+
+            PDAcroForm acroForm = new PDAcroForm(templateDoc);
+            templateDoc.getDocumentCatalog().setAcroForm(acroForm);
+            PDSignatureField signatureField = new PDSignatureField(acroForm);
+            signatureField.setPartialName("Signature");
+
+            PDAnnotationWidget widget = signatureField.getWidgets().get(0);
+            widget.setRectangle(widgetRect);
+            widget.setPage(templatePage);
+            widget.setPrinted(true);
+
+            PDAppearanceDictionary appearance = new PDAppearanceDictionary();
+            appearance.setNormalAppearance(SignatureAppearanceHelper.createVectorAppearance(templateDoc, widgetRect,
+                signatureName, signatureLocation, signingTime, signerImage));
+            widget.setAppearance(appearance);
+
+            templatePage.getAnnotations().add(widget);
+            acroForm.getFields().add(signatureField);
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            templateDoc.save(baos);
+            return new ByteArrayInputStream(baos.toByteArray());
+        }
+    }
 }
@@ -0,0 +1,202 @@
+package com.training.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.training.model.CachedPreview;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cache for previews that are a pure function of a base document and request parameters, such as the
+ * layered pages. Entries are keyed by the SHA-256 of the base document and the parameters, and evicted in
+ * least recently used order once their bodies exceed the byte limit.
+ */
+@Service
+@Slf4j
+public class PreviewCacheService {
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${esign.preview-cache.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${esign.preview-cache.max-bytes:33554432}")
+    private long maxBytes = 32L * 1024 * 1024;
+
+    /**
+     * Bodies larger than this are served without being cached, so one document cannot evict all others.
+     */
+    @Value("${esign.preview-cache.max-entry-bytes:4194304}")
+    private long maxEntryBytes = 4L * 1024 * 1024;
+
+    private final LinkedHashMap<String, CachedPreview> previews = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Hashes of base documents by path, reused while the file's size and modification time are unchanged.
+     */
+    private final Map<Path, BaseHash> baseHashes = new ConcurrentHashMap<>();
+
+    private record BaseHash(long size, long lastModified, String sha256) {
+    }
+
+    @PostConstruct
+    void init() {
+        if (meterRegistry == null) {
+            return;
+        }
+        Gauge.builder("esign.preview.cache.hit.ratio", this, PreviewCacheService::getHitRatio)
+            .description("Share of preview lookups answered from the cache")
+            .register(meterRegistry);
+        Gauge.builder("esign.preview.cache.size", this, PreviewCacheService::getCachedBytes)
+            .description("Bytes of cached preview bodies")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        Gauge.builder("esign.preview.cache.entries", this, PreviewCacheService::getEntries)
+            .description("Cached previews")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cache key of a preview of a base document.
+     *
+     * @param operation The name of the operation rendering the preview
+     * @param base The base document file
+     * @param parameters The parameters the preview is rendered with
+     * @return The cache key
+     * @throws IOException If the base document cannot be read
+     */
+    public String key(String operation, Path base, String... parameters) throws IOException {
+        StringBuilder key = new StringBuilder(operation).append('|').append(baseSha256(base));
+        for (String parameter : parameters) {
+            // Length-prefixed, so parameters containing the separator cannot produce the same key
+            key.append('|').append(parameter.length()).append(':').append(parameter);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Looks up a cached preview.
+     *
+     * @param key The cache key
+     * @return The preview, or empty if it is not cached
+     */
+    public Optional<CachedPreview> find(String key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        CachedPreview preview;
+        synchronized (previews) {
+            preview = previews.get(key);
+        }
+        (preview != null ? hits : misses).incrementAndGet();
+        return Optional.ofNullable(preview);
+    }
+
+    /**
+     * Caches a rendered preview, evicting the least recently used previews that no longer fit.
+     *
+     * @param key The cache key
+     * @param body The rendered preview
+     * @return The preview with its entity tag, cached unless it is larger than the entry limit
+     * @throws IOException If SHA-256 is not available
+     */
+    public CachedPreview put(String key, byte[] body) throws IOException {
+        CachedPreview preview = new CachedPreview("\"" + HexFormat.of().formatHex(newDigest().digest(body)) + "\"", body);
+        if (!enabled || body.length > maxEntryBytes || body.length > maxBytes) {
+            return preview;
+        }
+        synchronized (previews) {
+            CachedPreview replaced = previews.put(key, preview);
+            cachedBytes += body.length - (replaced != null ? replaced.body().length : 0);
+            Iterator<CachedPreview> eldest = previews.values().iterator();
+            while (cachedBytes > maxBytes && eldest.hasNext()) {
+                cachedBytes -= eldest.next().body().length;
+                eldest.remove();
+            }
+        }
+        return preview;
+    }
+
+    /**
+     * Returns the share of lookups that found a cached preview.
+     *
+     * @return The hit ratio between 0 and 1, zero before the first lookup
+     */
+    public double getHitRatio() {
+        long found = hits.get();
+        long total = found + misses.get();
+        return total == 0 ? 0 : (double) found / total;
+    }
+
+    /**
+     * Returns the bytes of the cached preview bodies.
+     *
+     * @return The cached bytes
+     */
+    public long getCachedBytes() {
+        synchronized (previews) {
+            return cachedBytes;
+        }
+    }
+
+    /**
+     * Returns the number of cached previews.
+     *
+     * @return The number of entries
+     */
+    public int getEntries() {
+        synchronized (previews) {
+            return previews.size();
+        }
+    }
+
+    private String baseSha256(Path base) throws IOException {
+        long size = Files.size(base);
+        long lastModified = Files.getLastModifiedTime(base).toMillis();
+        BaseHash known = baseHashes.get(base);
+        if (known != null && known.size() == size && known.lastModified() == lastModified) {
+            return known.sha256();
+        }
+        MessageDigest digest = newDigest();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(base), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        String sha256 = HexFormat.of().formatHex(digest.digest());
+        baseHashes.put(base, new BaseHash(size, lastModified, sha256));
+        log.debug("Hashed preview base {} as {}", base, sha256);
+        return sha256;
+    }
+
+    private static MessageDigest newDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -11,19 +11,11 @@ import org.apache.pdfbox.pdmodel.graphics.state.*;
 import org.apache.pdfbox.pdmodel.graphics.image.*;
 import org.apache.pdfbox.pdmodel.font.*;
 
-import org.bouncycastle.cert.jcajce.JcaCertStore;
-import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
-import org.bouncycastle.cms.CMSProcessableByteArray;
-import org.bouncycastle.cms.CMSSignedData;
-import org.bouncycastle.cms.CMSSignedDataGenerator;
-import org.bouncycastle.cms.jcajce.JcaSignerInfoGeneratorBuilder;
-import org.bouncycastle.operator.ContentSigner;
-import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
-import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
-import org.bouncycastle.util.Store;
-
 import org.springframework.web.multipart.MultipartFile;
 
+import com.training.helper.CMSSignatureHelper;
+import com.training.model.SignatureSpec;
+
 import java.io.*;
 import java.security.*;
 import java.security.cert.*;
@@ -62,21 +54,9 @@ public class SignatureLayerDemo {
 
             ExternalSigningSupport externalSigning = document.saveIncrementalForExternalSigning(new FileOutputStream(signedPdf));
 
-            // create CMS signature
-            List<Certificate> certList = Arrays.asList(certificateChain);
-            Store certStore = new JcaCertStore(certList);
-
-            CMSSignedDataGenerator gen = new CMSSignedDataGenerator();
-            ContentSigner sha1Signer = new JcaContentSignerBuilder("SHA256WithRSA").build(privateKey);
-
-            gen.addSignerInfoGenerator(
-                    new JcaSignerInfoGeneratorBuilder(new JcaDigestCalculatorProviderBuilder().build())
-                            .build(sha1Signer, (X509Certificate) certificateChain[0]));
-
-            gen.addCertificates(certStore);
-            CMSProcessableByteArray msg = new CMSProcessableByteArray(externalSigning.getContent().readAllBytes());
-            CMSSignedData signedData = gen.generate(msg, false);
-            byte[] cmsSignature = signedData.getEncoded();
+            // create CMS signature with the algorithm matching the key type
+            byte[] cmsSignature = CMSSignatureHelper.createCMSSignature(
+                    externalSigning.getContent().readAllBytes(), privateKey, certificateChain, SignatureSpec.DEFAULT, false);
 
             externalSigning.setSignature(cmsSignature);
         }
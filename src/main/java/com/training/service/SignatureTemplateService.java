@@ -0,0 +1,184 @@
+package com.training.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.cert.CertificateException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.training.helper.IncrementalRevisionHelper.RevisionOutputStream;
+import com.training.helper.PDFSignatureFieldHelper;
+import com.training.model.EncodedImage;
+import com.training.model.ProvisionedField;
+import com.training.model.ProvisionedTemplate;
+import com.training.model.SignaturePlacement;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Templates with named empty signature fields provisioned once, so that signing only fills a field.
+ * The fields of each template are indexed by name with the key of the object holding the field and its widget,
+ * and the index is read back from the template the first time it is used after a restart.
+ */
+@Service
+@Slf4j
+public class SignatureTemplateService {
+
+    private static final Pattern TEMPLATE_ID = Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+
+    @Autowired
+    private PdfSigningService pdfSigningService;
+
+    @Value("${esign.templates.dir:${java.io.tmpdir}/esign-templates}")
+    private Path templateDir;
+
+    @Value("${esign.signing.certificate-path:}")
+    private String certificatePath;
+
+    @Value("${esign.signing.certificate-password:}")
+    private String certificatePassword;
+
+    @Value("${esign.signing.certificate-alias:}")
+    private String certificateAlias;
+
+    @Value("${esign.templates.signature-location:Online}")
+    private String signatureLocation = "Online";
+
+    /**
+     * Field indexes by template id.
+     */
+    private final Map<String, Map<String, ProvisionedField>> indexes = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() throws IOException {
+        Files.createDirectories(templateDir);
+        log.info("Signature templates at {}", templateDir);
+    }
+
+    /**
+     * Provisions named empty signature fields on an unsigned document and keeps it as a template.
+     *
+     * @param pdfFile The unsigned document
+     * @param fields The placements of the fields by name
+     * @return The template with its indexed fields
+     * @throws IOException If no field is given, a field cannot be created or the document is already signed
+     */
+    public ProvisionedTemplate provision(MultipartFile pdfFile, Map<String, SignaturePlacement> fields) throws IOException {
+        if (fields.isEmpty()) {
+            throw new IOException("No signature field to provision");
+        }
+        String id = UUID.randomUUID().toString();
+        Path temp = Files.createTempFile(templateDir, "template", ".tmp");
+        try {
+            try (InputStream in = pdfFile.getInputStream();
+                 PDDocument document = Loader.loadPDF(new RandomAccessReadBuffer(in))) {
+                if (!document.getSignatureDictionaries().isEmpty()) {
+                    // Saving the fields would rewrite the signed revisions
+                    throw new IOException("Signed documents cannot be provisioned");
+                }
+                PDAcroForm acroForm = PDFSignatureFieldHelper.getOrCreateAcroForm(document);
+                for (Map.Entry<String, SignaturePlacement> field : fields.entrySet()) {
+                    PDFSignatureFieldHelper.createEmptySignatureField(document, acroForm, field.getKey(), field.getValue());
+                }
+                document.save(temp.toFile());
+            }
+            Map<String, ProvisionedField> index = readIndex(temp);
+            Files.move(temp, templatePath(id), StandardCopyOption.ATOMIC_MOVE);
+            indexes.put(id, index);
+            log.info("Provisioned template {} with signature fields {}", id, index.keySet());
+            return new ProvisionedTemplate(id, index.values().stream().toList());
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Looks up a template.
+     *
+     * @param id The id of the template
+     * @return The template with its empty fields, or empty if it does not exist
+     * @throws IOException If the template cannot be read
+     */
+    public Optional<ProvisionedTemplate> find(String id) throws IOException {
+        return index(id).map(index -> new ProvisionedTemplate(id, index.values().stream().toList()));
+    }
+
+    /**
+     * Returns the file of a template.
+     *
+     * @param id The id of the template
+     * @return The template file, or empty if it does not exist
+     */
+    public Optional<Path> findFile(String id) {
+        if (id == null || !TEMPLATE_ID.matcher(id).matches() || !Files.exists(templatePath(id))) {
+            return Optional.empty();
+        }
+        return Optional.of(templatePath(id));
+    }
+
+    /**
+     * Signs a copy of a template by filling one of its fields, with the server credential and the field name as
+     * the signature name. The template itself keeps its fields empty.
+     *
+     * @param id The id of the template
+     * @param fieldName The name of the field to fill
+     * @param signerImage Image from the signer asset store to draw in the appearance, or null for none
+     * @return The revision to append to the template, or empty if the template or the field does not exist
+     * @throws IOException If there's an issue with the PDF
+     * @throws CertificateException If there's an issue with the certificate
+     */
+    public Optional<byte[]> sign(String id, String fieldName, EncodedImage signerImage)
+            throws IOException, CertificateException {
+        Optional<Map<String, ProvisionedField>> index = index(id);
+        ProvisionedField field = index.map(fields -> fields.get(fieldName)).orElse(null);
+        if (field == null) {
+            return Optional.empty();
+        }
+        Path template = templatePath(id);
+        RevisionOutputStream output = new RevisionOutputStream(Files.size(template));
+        pdfSigningService.signPdfField(template, certificatePath, certificatePassword, certificateAlias,
+            fieldName, signatureLocation, field, signerImage, output);
+        return Optional.of(output.toRevision());
+    }
+
+    private Optional<Map<String, ProvisionedField>> index(String id) throws IOException {
+        Map<String, ProvisionedField> index = indexes.get(id);
+        if (index != null) {
+            return Optional.of(index);
+        }
+        Optional<Path> template = findFile(id);
+        if (template.isEmpty()) {
+            return Optional.empty();
+        }
+        // Templates are never changed once provisioned, so an index read concurrently is the same
+        index = readIndex(template.get());
+        indexes.put(id, index);
+        return Optional.of(index);
+    }
+
+    private static Map<String, ProvisionedField> readIndex(Path template) throws IOException {
+        try (PDDocument document = Loader.loadPDF(template.toFile())) {
+            return PDFSignatureFieldHelper.indexEmptySignatureFields(document);
+        }
+    }
+
+    private Path templatePath(String id) {
+        return templateDir.resolve(id + ".pdf");
+    }
+}
@@ -0,0 +1,386 @@
+package com.training.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.training.model.StoredDocument;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Content-addressed store for signed documents.
+ * Originals and incremental revisions are stored once as blobs named by their SHA-256, and each
+ * document is a manifest listing the blobs it is made of. A document signed by several parties
+ * therefore costs its original plus the revisions, not one full copy per signature.
+ * With a retention period, documents that were neither stored nor read within it are purged, together with
+ * the blobs that no remaining document is made of.
+ */
+@Service
+@Slf4j
+public class SignedDocumentStore {
+
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}");
+
+    @Value("${esign.store.dir:${java.io.tmpdir}/esign-store}")
+    private Path storeDir;
+
+    /**
+     * How long a document is kept after it was last stored or read, or zero to keep documents forever.
+     */
+    @Value("${esign.store.retention-hours:0}")
+    private long retentionHours;
+
+    @Value("${esign.store.purge-interval-minutes:60}")
+    private long purgeIntervalMinutes = 60;
+
+    @Value("${esign.store.digest-cache-size:1024}")
+    private int digestCacheSize = 1024;
+
+    private Path blobDir;
+    private Path documentDir;
+
+    /**
+     * Hashes of original files by path, reused while the file's size and modification time are unchanged.
+     */
+    private final Map<Path, OriginalHash> originalHashes = new ConcurrentHashMap<>();
+
+    private record OriginalHash(long size, long lastModified, String sha256) {
+    }
+
+    /**
+     * SHA-256 state after the content of recently stored documents, so a revision appended to one of them is
+     * hashed by continuing from its parent's state instead of reading the parent again.
+     */
+    private final Map<String, MessageDigest> documentDigests = Collections.synchronizedMap(
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MessageDigest> eldest) {
+                return size() > digestCacheSize;
+            }
+        });
+
+    private final AtomicLong lastPurge = new AtomicLong(System.nanoTime());
+
+    @PostConstruct
+    void init() throws IOException {
+        blobDir = Files.createDirectories(storeDir.resolve("blobs"));
+        documentDir = Files.createDirectories(storeDir.resolve("documents"));
+        log.info("Signed document store at {}", storeDir);
+    }
+
+    /**
+     * Stores an original document, unless a document with the same content is already stored.
+     * The stored copy is a snapshot: it keeps the content that was hashed even if the file changes later.
+     *
+     * @param original The original document file
+     * @return The hex SHA-256 of the document
+     * @throws IOException If the document cannot be stored
+     */
+    public String storeOriginal(Path original) throws IOException {
+        long size = Files.size(original);
+        long lastModified = Files.getLastModifiedTime(original).toMillis();
+        OriginalHash known = originalHashes.get(original);
+        if (known != null && known.size() == size && known.lastModified() == lastModified
+                && Files.exists(blobPath(known.sha256()))) {
+            touch(blobPath(known.sha256()));
+            writeManifest(known.sha256(), List.of(known.sha256()));
+            return known.sha256();
+        }
+
+        // Hash the bytes while copying them, so the blob matches its name even if the file is replaced meanwhile
+        Path temp = Files.createTempFile(blobDir, "blob", ".tmp");
+        MessageDigest digest = newDigest();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(original), digest)) {
+            Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+        }
+        String sha256 = finish(digest);
+        Path blob = blobPath(sha256);
+        if (Files.exists(blob)) {
+            Files.delete(temp);
+            touch(blob);
+        } else {
+            moveIntoPlace(temp, blob);
+        }
+        originalHashes.put(original, new OriginalHash(size, lastModified, sha256));
+        writeManifest(sha256, List.of(sha256));
+        purgeIfDue();
+        return sha256;
+    }
+
+    /**
+     * Stores a revision appended to a stored document and records the resulting document.
+     *
+     * @param parentSha256 The hex SHA-256 of the document the revision was appended to
+     * @param revision The revision bytes
+     * @return The hex SHA-256 of the document with the revision appended
+     * @throws IOException If the parent is not stored or the revision cannot be stored
+     */
+    public String storeRevision(String parentSha256, byte[] revision) throws IOException {
+        StoredDocument parent = find(parentSha256)
+            .orElseThrow(() -> new IOException("Parent document not found: " + parentSha256));
+
+        // Continue from the parent's digest state, or hash the parent from its mapped blobs if it is not cached
+        MessageDigest documentDigest = parentDigest(parent);
+        documentDigest.update(revision);
+        String sha256 = finish(documentDigest);
+
+        String revisionSha256 = HexFormat.of().formatHex(newDigest().digest(revision));
+        Path blob = blobPath(revisionSha256);
+        if (!Files.exists(blob)) {
+            Path temp = Files.createTempFile(blobDir, "blob", ".tmp");
+            Files.write(temp, revision);
+            moveIntoPlace(temp, blob);
+        } else {
+            touch(blob);
+        }
+
+        List<String> blobs = new ArrayList<>();
+        for (Path part : parent.parts()) {
+            blobs.add(part.getFileName().toString());
+        }
+        blobs.add(revisionSha256);
+        writeManifest(sha256, blobs);
+        log.info("Stored document {} as {} blobs, added {} revision bytes", sha256, blobs.size(), revision.length);
+        purgeIfDue();
+        return sha256;
+    }
+
+    /**
+     * Looks up a stored document.
+     *
+     * @param sha256 The hex SHA-256 of the document
+     * @return The document, or empty if it is not stored
+     * @throws IOException If the manifest cannot be read
+     */
+    public Optional<StoredDocument> find(String sha256) throws IOException {
+        if (sha256 == null || !SHA256_HEX.matcher(sha256).matches()) {
+            return Optional.empty();
+        }
+        Path manifest = documentDir.resolve(sha256);
+        if (!Files.exists(manifest)) {
+            return Optional.empty();
+        }
+        // Reading a document keeps it for another retention period
+        touch(manifest);
+        List<Path> parts = new ArrayList<>();
+        long size = 0;
+        for (String blobSha256 : Files.readAllLines(manifest, StandardCharsets.US_ASCII)) {
+            Path blob = blobPath(blobSha256);
+            parts.add(blob);
+            size += Files.size(blob);
+        }
+        return Optional.of(new StoredDocument(sha256, List.copyOf(parts), size));
+    }
+
+    /**
+     * Looks up the revisions appended to a stored document to produce a later stored document, so a client
+     * holding the earlier document only downloads what was added since.
+     *
+     * @param baseSha256 The hex SHA-256 of the earlier document
+     * @param sha256 The hex SHA-256 of the later document
+     * @return The appended revisions as a document whose hash is that of the later document, or empty if either
+     *         document is not stored or the later one does not extend the earlier one
+     * @throws IOException If a manifest cannot be read
+     */
+    public Optional<StoredDocument> findAppended(String baseSha256, String sha256) throws IOException {
+        Optional<StoredDocument> base = find(baseSha256);
+        Optional<StoredDocument> document = find(sha256);
+        if (base.isEmpty() || document.isEmpty()) {
+            return Optional.empty();
+        }
+        List<Path> baseParts = base.get().parts();
+        List<Path> parts = document.get().parts();
+        if (parts.size() < baseParts.size() || !parts.subList(0, baseParts.size()).equals(baseParts)) {
+            return Optional.empty();
+        }
+        return Optional.of(new StoredDocument(sha256, parts.subList(baseParts.size(), parts.size()),
+                                              document.get().size() - base.get().size()));
+    }
+
+    /**
+     * Writes a stored document from its memory-mapped blobs.
+     *
+     * @param document The document to write
+     * @param target The channel to write the document to
+     * @throws IOException If the document cannot be written
+     */
+    public void writeTo(StoredDocument document, WritableByteChannel target) throws IOException {
+        for (Path part : document.parts()) {
+            ByteBuffer buffer = map(part);
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Deletes the documents that were neither stored nor read within the retention period, and then the blobs
+     * that no remaining document is made of. Blobs written within the retention period are kept, since a
+     * document being stored concurrently writes its blobs before its manifest.
+     *
+     * @return The number of deleted documents
+     * @throws IOException If the store cannot be listed
+     */
+    public int purgeExpired() throws IOException {
+        if (retentionHours <= 0) {
+            return 0;
+        }
+        lastPurge.set(System.nanoTime());
+        FileTime cutoff = FileTime.from(Instant.now().minus(Duration.ofHours(retentionHours)));
+        int deleted = 0;
+        Set<String> referenced = new HashSet<>();
+        try (DirectoryStream<Path> manifests = Files.newDirectoryStream(documentDir)) {
+            for (Path manifest : manifests) {
+                if (!SHA256_HEX.matcher(manifest.getFileName().toString()).matches()) {
+                    continue;
+                }
+                if (Files.getLastModifiedTime(manifest).compareTo(cutoff) < 0) {
+                    Files.deleteIfExists(manifest);
+                    documentDigests.remove(manifest.getFileName().toString());
+                    deleted++;
+                } else {
+                    referenced.addAll(Files.readAllLines(manifest, StandardCharsets.US_ASCII));
+                }
+            }
+        }
+        int deletedBlobs = 0;
+        try (Stream<Path> blobs = Files.walk(blobDir)) {
+            for (Path blob : blobs.filter(Files::isRegularFile).toList()) {
+                if (!referenced.contains(blob.getFileName().toString())
+                        && Files.getLastModifiedTime(blob).compareTo(cutoff) < 0) {
+                    Files.deleteIfExists(blob);
+                    deletedBlobs++;
+                }
+            }
+        }
+        if (deleted > 0 || deletedBlobs > 0) {
+            log.info("Purged {} documents and {} blobs older than {} hours", deleted, deletedBlobs, retentionHours);
+        }
+        return deleted;
+    }
+
+    private void purgeIfDue() {
+        long last = lastPurge.get();
+        if (retentionHours <= 0 || System.nanoTime() - last < TimeUnit.MINUTES.toNanos(purgeIntervalMinutes)
+                || !lastPurge.compareAndSet(last, System.nanoTime())) {
+            return;
+        }
+        try {
+            purgeExpired();
+        } catch (IOException e) {
+            log.warn("Could not purge expired documents from {}", storeDir, e);
+        }
+    }
+
+    /**
+     * Returns a digest holding the state after the parent's content.
+     */
+    private MessageDigest parentDigest(StoredDocument parent) throws IOException {
+        MessageDigest cached = documentDigests.get(parent.sha256());
+        if (cached != null) {
+            return copy(cached);
+        }
+        MessageDigest digest = newDigest();
+        for (Path part : parent.parts()) {
+            digest.update(map(part));
+        }
+        return digest;
+    }
+
+    /**
+     * Completes a document digest, keeping a copy of the state before completion for the document's revisions.
+     */
+    private String finish(MessageDigest digest) throws IOException {
+        MessageDigest state = copy(digest);
+        String sha256 = HexFormat.of().formatHex(digest.digest());
+        documentDigests.put(sha256, state);
+        return sha256;
+    }
+
+    private static MessageDigest copy(MessageDigest digest) throws IOException {
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IOException("SHA-256 state cannot be copied", e);
+        }
+    }
+
+    private static void touch(Path file) throws IOException {
+        try {
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+        } catch (NoSuchFileException e) {
+            // Purged concurrently, the caller stores or reads it again
+        }
+    }
+
+    private MappedByteBuffer map(Path blob) throws IOException {
+        try (FileChannel channel = FileChannel.open(blob, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private void writeManifest(String sha256, List<String> blobs) throws IOException {
+        Path manifest = documentDir.resolve(sha256);
+        if (Files.exists(manifest)) {
+            touch(manifest);
+            return;
+        }
+        Path temp = Files.createTempFile(documentDir, "manifest", ".tmp");
+        Files.write(temp, blobs, StandardCharsets.US_ASCII);
+        moveIntoPlace(temp, manifest);
+    }
+
+    private void moveIntoPlace(Path temp, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        // Identical content may be stored concurrently, either copy is correct
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path blobPath(String sha256) {
+        return blobDir.resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    private static MessageDigest newDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.training.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.training.helper.ImageXObjectEncoder;
+import com.training.model.EncodedImage;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Store for handwritten signature images and logos drawn in visible signatures.
+ * Each image is decoded and encoded as PDF image XObject data once when it is ingested, and the encoded
+ * data is kept by the SHA-256 of the source image, on disk and in a bounded in-memory cache, so signing
+ * embeds it without decoding the image again.
+ */
+@Service
+@Slf4j
+public class SignerAssetStore {
+
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}");
+
+    @Value("${esign.assets.dir:${java.io.tmpdir}/esign-assets}")
+    private Path assetDir;
+
+    @Value("${esign.assets.cache-size:64}")
+    private int cacheSize = 64;
+
+    @Value("${esign.assets.max-pixels:16777216}")
+    private long maxPixels = 16L * 1024 * 1024;
+
+    private final Map<String, EncodedImage> images = Collections.synchronizedMap(
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, EncodedImage> eldest) {
+                return size() > cacheSize;
+            }
+        });
+
+    @PostConstruct
+    void init() throws IOException {
+        Files.createDirectories(assetDir);
+        log.info("Signer asset store at {}", assetDir);
+    }
+
+    /**
+     * Ingests an image, unless an image with the same content is already stored.
+     *
+     * @param image The image file, e.g. PNG, GIF or JPEG
+     * @return The encoded image
+     * @throws IOException If the image format is not supported, it has more pixels than configured or the image
+     *         cannot be stored
+     */
+    public EncodedImage ingest(byte[] image) throws IOException {
+        String id = HexFormat.of().formatHex(newDigest().digest(image));
+        Optional<EncodedImage> stored = find(id);
+        if (stored.isPresent()) {
+            return stored.get();
+        }
+
+        EncodedImage encoded = ImageXObjectEncoder.encode(id, image, maxPixels);
+        Path temp = Files.createTempFile(assetDir, "asset", ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            write(encoded, out);
+        }
+        // Identical content may be ingested concurrently, either copy is correct
+        Files.move(temp, assetPath(id), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        images.put(id, encoded);
+        log.info("Ingested signer image {} ({}x{}, {} encoded bytes)", id, encoded.width(), encoded.height(),
+                 encoded.data().length);
+        return encoded;
+    }
+
+    /**
+     * Looks up an ingested image.
+     *
+     * @param id The hex SHA-256 of the source image
+     * @return The encoded image, or empty if it is not stored
+     * @throws IOException If the stored image cannot be read
+     */
+    public Optional<EncodedImage> find(String id) throws IOException {
+        if (id == null || !SHA256_HEX.matcher(id).matches()) {
+            return Optional.empty();
+        }
+        EncodedImage cached = images.get(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Path asset = assetPath(id);
+        if (!Files.exists(asset)) {
+            return Optional.empty();
+        }
+        EncodedImage encoded;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(asset)))) {
+            encoded = read(id, in);
+        }
+        images.put(id, encoded);
+        return Optional.of(encoded);
+    }
+
+    private Path assetPath(String id) {
+        return assetDir.resolve(id);
+    }
+
+    private static void write(EncodedImage image, DataOutputStream out) throws IOException {
+        out.writeInt(image.width());
+        out.writeInt(image.height());
+        out.writeInt(image.components());
+        out.writeUTF(image.filter());
+        writeBytes(image.data(), out);
+        writeBytes(image.alpha(), out);
+    }
+
+    private static EncodedImage read(String id, DataInputStream in) throws IOException {
+        int width = in.readInt();
+        int height = in.readInt();
+        int components = in.readInt();
+        String filter = in.readUTF();
+        return new EncodedImage(id, width, height, components, filter, readBytes(in), readBytes(in));
+    }
+
+    private static void writeBytes(byte[] bytes, DataOutputStream out) throws IOException {
+        out.writeInt(bytes != null ? bytes.length : -1);
+        if (bytes != null) {
+            out.write(bytes);
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        return length < 0 ? null : in.readNBytes(length);
+    }
+
+    private static MessageDigest newDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,446 @@
+package com.training.service;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.training.model.AuditEntry;
+import com.training.model.AuditVerification;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only, hash-chained journal of every signature produced by the signing services.
+ * A single writer thread takes all pending entries from a queue, appends them as JSON lines and
+ * forces them to disk with one fsync per batch, so concurrent signatures share the cost of an fsync.
+ * Callers wait until their entry is durable.
+ */
+@Service
+@Slf4j
+public class SigningAuditJournal {
+
+    /**
+     * The previous hash of the first entry.
+     */
+    public static final String GENESIS_HASH = "0".repeat(64);
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final Pending SHUTDOWN = new Pending(null, null, null, null, null);
+
+    private record Pending(String signer, String certificateSerial, String digestAlgorithm, String contentDigest,
+                           CompletableFuture<AuditEntry> result) {
+    }
+
+    @Value("${esign.audit.journal-file:${java.io.tmpdir}/esign-audit.jsonl}")
+    private Path journalFile;
+
+    @Value("${esign.audit.max-batch-size:256}")
+    private int maxBatchSize;
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private FileChannel channel;
+    private Thread writer;
+    private volatile Throwable writerFailure;
+    private long lastSequence;
+    private String lastHash = GENESIS_HASH;
+
+    @PostConstruct
+    void start() throws IOException {
+        Path parent = journalFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recoverTail();
+        channel.position(channel.size());
+
+        writer = new Thread(this::runWriter, "audit-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("Audit journal {} opened at sequence {}", journalFile, lastSequence);
+    }
+
+    @PreDestroy
+    void stop() throws IOException, InterruptedException {
+        // A marker rather than an interrupt, which would close the channel in the middle of a write
+        queue.put(SHUTDOWN);
+        writer.join();
+        channel.close();
+    }
+
+    /**
+     * Records a signature and waits until the entry has been forced to disk.
+     *
+     * @param signer The name of the signer
+     * @param certificate The signing certificate
+     * @param digestAlgorithm The digest algorithm of the signed content
+     * @param contentDigest The digest of the signed ByteRange content
+     * @return The durable journal entry
+     * @throws IOException If the entry could not be written or the writer has stopped
+     */
+    public AuditEntry record(String signer, X509Certificate certificate, String digestAlgorithm,
+                             byte[] contentDigest) throws IOException {
+        if (writerFailure != null) {
+            throw new IOException("Audit journal writer stopped: " + writerFailure.getMessage(), writerFailure);
+        }
+        CompletableFuture<AuditEntry> result = new CompletableFuture<>();
+        queue.add(new Pending(signer, certificate.getSerialNumber().toString(16), digestAlgorithm,
+                              HexFormat.of().formatHex(contentDigest), result));
+        if (writerFailure != null) {
+            // The writer died after the check above and will never take this entry
+            failQueued(writerFailure);
+        }
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the audit journal", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Audit journal write failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Replays the journal from the start.
+     *
+     * @param consumer Receives every complete entry in order
+     * @throws IOException If the journal cannot be read
+     */
+    public void replay(Consumer<AuditEntry> consumer) throws IOException {
+        replay(journalFile, consumer);
+    }
+
+    /**
+     * Reads a page of entries without replaying the journal. Sequences grow with the file offset, so the first
+     * entry is found by bisecting the file and only the requested entries are parsed.
+     *
+     * @param fromSequence The first sequence to return
+     * @param limit The maximum number of entries
+     * @return The entries in order, without a torn final line
+     * @throws IOException If the journal cannot be read or contains a malformed entry
+     */
+    public List<AuditEntry> entries(long fromSequence, int limit) throws IOException {
+        List<AuditEntry> entries = new ArrayList<>();
+        if (limit <= 0 || !Files.exists(journalFile)) {
+            return entries;
+        }
+        try (FileChannel reader = FileChannel.open(journalFile, StandardOpenOption.READ)) {
+            long size = reader.size();
+            long low = 0;
+            long high = size;
+            while (low < high) {
+                long middle = (low + high) >>> 1;
+                byte[] line = readLine(reader, lineStart(reader, middle, size), size);
+                if (line == null || OBJECT_MAPPER.readValue(line, AuditEntry.class).sequence() >= fromSequence) {
+                    high = middle;
+                } else {
+                    low = middle + 1;
+                }
+            }
+            long position = lineStart(reader, low, size);
+            byte[] line;
+            while (entries.size() < limit && (line = readLine(reader, position, size)) != null) {
+                entries.add(OBJECT_MAPPER.readValue(line, AuditEntry.class));
+                position += line.length + 1;
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Replays the journal and checks every entry's hash and its link to the previous entry.
+     *
+     * @return The verification result
+     * @throws IOException If the journal cannot be read
+     */
+    public AuditVerification verify() throws IOException {
+        return verify(journalFile);
+    }
+
+    /**
+     * Replays a journal file, skipping a torn final line left by a crash or a write in progress.
+     *
+     * @param journalFile The journal file
+     * @param consumer Receives every complete entry in order
+     * @throws IOException If the journal cannot be read or contains a malformed entry
+     */
+    public static void replay(Path journalFile, Consumer<AuditEntry> consumer) throws IOException {
+        if (!Files.exists(journalFile)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+            long lineNumber = 0;
+            String line = reader.readLine();
+            while (line != null) {
+                lineNumber++;
+                String next = reader.readLine();
+                AuditEntry entry;
+                try {
+                    entry = OBJECT_MAPPER.readValue(line, AuditEntry.class);
+                } catch (JsonProcessingException e) {
+                    if (next == null) {
+                        break;
+                    }
+                    throw new IOException("Malformed audit entry on line " + lineNumber + " of " + journalFile, e);
+                }
+                consumer.accept(entry);
+                line = next;
+            }
+        }
+    }
+
+    /**
+     * Verifies the hash chain of a journal file. Can be used offline on a copy of the journal.
+     *
+     * @param journalFile The journal file
+     * @return The verification result
+     * @throws IOException If the journal cannot be read
+     */
+    public static AuditVerification verify(Path journalFile) throws IOException {
+        long[] verified = { 0 };
+        String[] previousHash = { GENESIS_HASH };
+        AuditVerification[] failure = { null };
+        replay(journalFile, entry -> {
+            if (failure[0] != null) {
+                return;
+            }
+            String problem = null;
+            if (entry.sequence() != verified[0] + 1) {
+                problem = "Expected sequence " + (verified[0] + 1) + " but found " + entry.sequence();
+            } else if (!entry.previousHash().equals(previousHash[0])) {
+                problem = "Entry is not chained to its predecessor";
+            } else if (!entry.hash().equals(hash(entry.previousHash(), entry.sequence(), entry.time(), entry.signer(),
+                    entry.certificateSerial(), entry.digestAlgorithm(), entry.contentDigest()))) {
+                problem = "Entry hash does not match its contents";
+            }
+            if (problem != null) {
+                failure[0] = new AuditVerification(verified[0], false, entry.sequence(), problem);
+                return;
+            }
+            verified[0]++;
+            previousHash[0] = entry.hash();
+        });
+        return failure[0] != null ? failure[0] : new AuditVerification(verified[0], true, -1, null);
+    }
+
+    /**
+     * Runs the write loop and, if the writer dies, fails the waiting callers and every later record.
+     */
+    private void runWriter() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        try {
+            writeLoop(batch);
+        } catch (Throwable e) {
+            log.error("Audit journal writer stopped: {}", e.getMessage(), e);
+            writerFailure = e;
+            fail(batch, e);
+            failQueued(e);
+        }
+    }
+
+    private void failQueued(Throwable failure) {
+        List<Pending> queued = new ArrayList<>();
+        queue.drainTo(queued);
+        fail(queued, failure);
+    }
+
+    private static void fail(List<Pending> batch, Throwable failure) {
+        for (Pending pending : batch) {
+            if (pending != SHUTDOWN) {
+                pending.result().completeExceptionally(failure);
+            }
+        }
+    }
+
+    private void writeLoop(List<Pending> batch) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, maxBatchSize - 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            List<AuditEntry> entries = new ArrayList<>(batch.size());
+            long batchStart = -1;
+            long sequence = lastSequence;
+            String previousHash = lastHash;
+            buffer.reset();
+            try {
+                batchStart = channel.position();
+                for (Pending pending : batch) {
+                    if (pending == SHUTDOWN) {
+                        running = false;
+                        continue;
+                    }
+                    sequence++;
+                    String time = Instant.now().toString();
+                    String hash = hash(previousHash, sequence, time, pending.signer(), pending.certificateSerial(),
+                                       pending.digestAlgorithm(), pending.contentDigest());
+                    AuditEntry entry = new AuditEntry(sequence, time, pending.signer(), pending.certificateSerial(),
+                                                      pending.digestAlgorithm(), pending.contentDigest(), previousHash, hash);
+                    buffer.write(OBJECT_MAPPER.writeValueAsBytes(entry));
+                    buffer.write('\n');
+                    entries.add(entry);
+                    previousHash = hash;
+                }
+                if (!entries.isEmpty()) {
+                    ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+                    while (bytes.hasRemaining()) {
+                        channel.write(bytes);
+                    }
+                    // One fsync makes the whole batch durable
+                    channel.force(false);
+                    lastSequence = sequence;
+                    lastHash = previousHash;
+                }
+                int index = 0;
+                for (Pending pending : batch) {
+                    if (pending != SHUTDOWN) {
+                        pending.result().complete(entries.get(index++));
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("Failed to write {} audit entries: {}", batch.size(), e.getMessage(), e);
+                fail(batch, e);
+                if (batchStart < 0) {
+                    throw e;
+                }
+                // Drop the partial batch, so the next entries continue the chain from the last durable one;
+                // if this fails too the writer stops rather than extend a chain it cannot trust
+                channel.truncate(batchStart);
+                channel.position(batchStart);
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Restores the chain state from the last complete entry and drops a torn final line,
+     * which was never acknowledged because it was not forced to disk.
+     */
+    private void recoverTail() throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            return;
+        }
+        int chunk = (int) Math.min(size, 64 * 1024);
+        ByteBuffer tail = ByteBuffer.allocate(chunk);
+        long tailStart = size - chunk;
+        while (tail.hasRemaining()) {
+            if (channel.read(tail, tailStart + tail.position()) < 0) {
+                throw new IOException("Audit journal " + journalFile + " was truncated while it was being opened");
+            }
+        }
+        byte[] bytes = tail.array();
+
+        int end = chunk - 1;
+        while (end >= 0 && bytes[end] != '\n') {
+            end--;
+        }
+        if (end < 0) {
+            throw new IOException("Audit journal " + journalFile + " has no complete entry in its last " + chunk + " bytes");
+        }
+        long completeLength = tailStart + end + 1;
+        if (completeLength < size) {
+            log.warn("Truncating {} bytes of a torn audit entry", size - completeLength);
+            channel.truncate(completeLength);
+        }
+        int start = end - 1;
+        while (start >= 0 && bytes[start] != '\n') {
+            start--;
+        }
+        AuditEntry last = OBJECT_MAPPER.readValue(bytes, start + 1, end - start - 1, AuditEntry.class);
+        lastSequence = last.sequence();
+        lastHash = last.hash();
+    }
+
+    /**
+     * Returns the start of the first line at or after the offset, or the size if there is none.
+     */
+    private static long lineStart(FileChannel reader, long offset, long size) throws IOException {
+        if (offset == 0) {
+            return 0;
+        }
+        ByteBuffer chunk = ByteBuffer.allocate(4096);
+        long position = offset - 1;
+        while (position < size) {
+            chunk.clear();
+            int read = reader.read(chunk, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (chunk.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Reads the line starting at the position, or returns null at the end or for a torn final line.
+     */
+    private static byte[] readLine(FileChannel reader, long position, long size) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(512);
+        ByteBuffer chunk = ByteBuffer.allocate(1024);
+        while (position < size) {
+            chunk.clear();
+            int read = reader.read(chunk, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (chunk.get(i) == '\n') {
+                    line.write(chunk.array(), 0, i);
+                    return line.toByteArray();
+                }
+            }
+            line.write(chunk.array(), 0, read);
+            position += read;
+        }
+        return null;
+    }
+
+    private static String hash(String previousHash, long sequence, String time, String signer, String certificateSerial,
+                               String digestAlgorithm, String contentDigest) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            String canonical = String.join("\n", previousHash, Long.toString(sequence), time, signer,
+                                           certificateSerial, digestAlgorithm, contentDigest);
+            return HexFormat.of().formatHex(digest.digest(canonical.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
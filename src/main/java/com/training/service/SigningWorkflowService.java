@@ -0,0 +1,284 @@
+package com.training.service;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.cert.CertificateException;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.training.enums.SignatureAppearanceType;
+import com.training.helper.IncrementalRevisionHelper.RevisionOutputStream;
+import com.training.model.CreatedWorkflow;
+import com.training.model.SignaturePlacement;
+import com.training.model.SigningWorkflow;
+import com.training.model.StoredDocument;
+import com.training.model.WorkflowSignature;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Signing workflows in which several parties sign one document in order, e.g. borrower, co-borrower and lender.
+ * The document is held in the signed-document store: the original is stored once and each signature only adds
+ * the incremental revision it appended to the head, so no party uploads or downloads the full document to sign.
+ * Signatures of one workflow are applied one at a time, each to the head left by the previous one, while
+ * different workflows are signed concurrently. Each party signs with a token issued when the workflow is started.
+ */
+@Service
+@Slf4j
+public class SigningWorkflowService {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final int LOCK_STRIPES = 256;
+
+    private static final int TOKEN_BYTES = 32;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final TypeReference<Map<String, String>> TOKEN_HASHES = new TypeReference<>() {};
+
+    private static final Pattern WORKFLOW_ID = Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+
+    @Autowired
+    private SignedDocumentStore signedDocumentStore;
+
+    @Autowired
+    private PdfSigningService pdfSigningService;
+
+    @Autowired
+    private AnchorPlacementService anchorPlacementService;
+
+    @Value("${esign.workflow.dir:${java.io.tmpdir}/esign-workflows}")
+    private Path workflowDir;
+
+    @Value("${esign.signing.certificate-path:}")
+    private String certificatePath;
+
+    @Value("${esign.signing.certificate-password:}")
+    private String certificatePassword;
+
+    @Value("${esign.signing.certificate-alias:}")
+    private String certificateAlias;
+
+    @Value("${esign.workflow.signature-location:Online}")
+    private String signatureLocation = "Online";
+
+    /**
+     * Striped locks, so that concurrent signatures of one workflow never sign the same head without keeping
+     * a lock for every workflow.
+     */
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    @PostConstruct
+    void init() throws IOException {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        Files.createDirectories(workflowDir);
+        log.info("Signing workflows at {}", workflowDir);
+    }
+
+    /**
+     * Starts a workflow for a document.
+     *
+     * @param pdfFile The unsigned document
+     * @param steps The parties of each step, in signing order
+     * @return The new workflow and the signing token of each party
+     * @throws IOException If the steps are empty or name a party twice, or the document cannot be stored
+     */
+    public CreatedWorkflow create(MultipartFile pdfFile, List<List<String>> steps) throws IOException {
+        Set<String> parties = new HashSet<>();
+        for (List<String> step : steps) {
+            if (step.isEmpty()) {
+                throw new IOException("Workflow steps must name at least one party");
+            }
+            for (String party : step) {
+                if (party.isBlank() || !parties.add(party)) {
+                    throw new IOException("Invalid or repeated party: " + party);
+                }
+            }
+        }
+        if (parties.isEmpty()) {
+            throw new IOException("Workflow has no parties");
+        }
+
+        Path upload = Files.createTempFile("esign-workflow", ".pdf");
+        String originalSha256;
+        try {
+            pdfFile.transferTo(upload);
+            originalSha256 = signedDocumentStore.storeOriginal(upload);
+        } finally {
+            Files.deleteIfExists(upload);
+        }
+        SigningWorkflow workflow = new SigningWorkflow(UUID.randomUUID().toString(), originalSha256, originalSha256,
+                                                       steps.stream().map(List::copyOf).toList(), List.of());
+        // Only the hashes are kept, so the tokens cannot be read back from the workflow directory
+        Map<String, String> tokens = new LinkedHashMap<>();
+        Map<String, String> tokenHashes = new LinkedHashMap<>();
+        for (List<String> step : steps) {
+            for (String party : step) {
+                byte[] token = new byte[TOKEN_BYTES];
+                RANDOM.nextBytes(token);
+                String encoded = Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+                tokens.put(party, encoded);
+                tokenHashes.put(party, HexFormat.of().formatHex(sha256(encoded)));
+            }
+        }
+        // The tokens are written first, so a workflow never exists without them
+        write(tokensPath(workflow.id()), tokenHashes);
+        save(workflow);
+        log.info("Started workflow {} for document {} with steps {}", workflow.id(), originalSha256, steps);
+        return new CreatedWorkflow(workflow, Map.copyOf(tokens));
+    }
+
+    /**
+     * Looks up a workflow.
+     *
+     * @param id The id of the workflow
+     * @return The workflow, or empty if it does not exist
+     * @throws IOException If the workflow cannot be read
+     */
+    public Optional<SigningWorkflow> find(String id) throws IOException {
+        if (id == null || !WORKFLOW_ID.matcher(id).matches()) {
+            return Optional.empty();
+        }
+        Path file = workflowPath(id);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        return Optional.of(OBJECT_MAPPER.readValue(file.toFile(), SigningWorkflow.class));
+    }
+
+    /**
+     * Signs the head of a workflow for a party whose signature is due, and stores only the appended revision.
+     *
+     * @param id The id of the workflow
+     * @param party The signing party
+     * @param token The signing token issued to the party when the workflow was started
+     * @param appearanceType VECTOR to draw the appearance with PDF operators, otherwise a rasterized image is embedded
+     * @param anchorText Text in the document to place the signature at, or null to place the party's signatures
+     *                   side by side at the bottom of the first page
+     * @return The workflow with the signature, or empty if it does not exist
+     * @throws IOException If there's an issue with the PDF or the anchor text is not found
+     * @throws CertificateException If there's an issue with the certificate
+     * @throws SecurityException If the token is not the one issued to the party
+     * @throws IllegalStateException If the party is not part of the workflow or its signature is not due
+     */
+    public Optional<SigningWorkflow> sign(String id, String party, String token, SignatureAppearanceType appearanceType,
+                                          String anchorText) throws IOException, CertificateException {
+        synchronized (locks[Math.floorMod(id.hashCode(), locks.length)]) {
+            Optional<SigningWorkflow> found = find(id);
+            if (found.isEmpty()) {
+                return Optional.empty();
+            }
+            SigningWorkflow workflow = found.get();
+            if (!isPartyToken(id, party, token)) {
+                throw new SecurityException("Invalid signing token for " + party + " in workflow " + id);
+            }
+            if (!workflow.isDue(party)) {
+                throw new IllegalStateException(workflow.indexOf(party) >= 0
+                    ? "The signature of " + party + " is not due in workflow " + id
+                    : party + " is not a party of workflow " + id);
+            }
+
+            StoredDocument head = signedDocumentStore.find(workflow.headSha256())
+                .orElseThrow(() -> new IOException("Workflow document not found: " + workflow.headSha256()));
+            // The head is assembled in a file and signed from it, so it is never held in memory
+            Path document = Files.createTempFile("esign-workflow", ".pdf");
+            byte[] revision;
+            try {
+                try (FileChannel channel = FileChannel.open(document, StandardOpenOption.WRITE)) {
+                    signedDocumentStore.writeTo(head, channel);
+                }
+                SignaturePlacement placement = anchorText != null
+                    ? anchorPlacementService.placeAboveAnchor(document, workflow.headSha256(), anchorText, 200, 70)
+                    : defaultPlacement(workflow.indexOf(party));
+                RevisionOutputStream output = new RevisionOutputStream(head.size(), workflow.headSha256());
+                // The revision is appended to the stored head, so the head is never linearized
+                pdfSigningService.signPdfFile(document, certificatePath, certificatePassword, certificateAlias,
+                    party, signatureLocation, appearanceType, placement, null, null, true, output);
+                revision = output.toRevision();
+            } finally {
+                Files.deleteIfExists(document);
+            }
+            String documentSha256 = signedDocumentStore.storeRevision(workflow.headSha256(), revision);
+
+            SigningWorkflow signed = workflow.withSignature(
+                new WorkflowSignature(party, documentSha256, revision.length, System.currentTimeMillis()));
+            save(signed);
+            log.info("Workflow {} signed by {}, {} revision bytes{}", id, party, revision.length,
+                     signed.isComplete() ? ", complete" : "");
+            return Optional.of(signed);
+        }
+    }
+
+    /**
+     * Places the signatures of the parties side by side at the bottom of the first page, two per row.
+     */
+    private static SignaturePlacement defaultPlacement(int partyIndex) {
+        return new SignaturePlacement(1, 20 + (partyIndex % 2) * 210, 20 + (partyIndex / 2) * 80, 200, 70);
+    }
+
+    /**
+     * Checks a signing token against the hash stored for the party, in constant time.
+     */
+    private boolean isPartyToken(String id, String party, String token) throws IOException {
+        Path file = tokensPath(id);
+        if (token == null || !Files.exists(file)) {
+            return false;
+        }
+        Map<String, String> tokenHashes = OBJECT_MAPPER.readValue(file.toFile(), TOKEN_HASHES);
+        String expected = tokenHashes.get(party);
+        return expected != null && MessageDigest.isEqual(HexFormat.of().parseHex(expected), sha256(token));
+    }
+
+    private static byte[] sha256(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private void save(SigningWorkflow workflow) throws IOException {
+        write(workflowPath(workflow.id()), workflow);
+    }
+
+    private void write(Path file, Object value) throws IOException {
+        Path temp = Files.createTempFile(workflowDir, "workflow", ".tmp");
+        OBJECT_MAPPER.writeValue(temp.toFile(), value);
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path workflowPath(String id) {
+        return workflowDir.resolve(id + ".json");
+    }
+
+    private Path tokensPath(String id) {
+        return workflowDir.resolve(id + ".tokens.json");
+    }
+}
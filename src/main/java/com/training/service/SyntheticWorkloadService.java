@@ -0,0 +1,124 @@
+package com.training.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.cert.CertificateException;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.training.enums.SignatureAppearanceType;
+import com.training.helper.CertificateHelper;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Service that runs a synthetic document through the real signing and stamping code paths.
+ * Used for training runs and warm-up, with a throwaway self-signed credential. Its signatures are not audited.
+ */
+@Service
+@Slf4j
+public class SyntheticWorkloadService {
+
+    private static final String CERTIFICATE_PASSWORD = "synthetic";
+    private static final String CERTIFICATE_ALIAS = "synthetic";
+    private static final String SIGNER_NAME = "Synthetic Signer";
+    private static final String ANCHOR_TEXT = "Borrower Signature";
+
+    @Autowired
+    private AcroLoadedSigningService acroLoadedSigningService;
+
+    @Autowired
+    private PdfSigningService pdfSigningService;
+
+    @Autowired
+    private ContentWithLayersService contentWithLayersService;
+
+    private File keystoreFile;
+    private MultipartFile sampleDocument;
+
+    /**
+     * Signs and stamps the synthetic document once through every code path.
+     * 
+     * @return The elapsed time in nanoseconds
+     * @throws IOException If there's an issue with the PDF
+     * @throws CertificateException If there's an issue with the certificate
+     */
+    public long runOnce() throws IOException, CertificateException {
+        initialize();
+        long start = System.nanoTime();
+        String certificatePath = keystoreFile.getPath();
+
+        // Synthetic signatures exercise the signing code but must not enter the production audit journal
+        AuditedSignature.bindSynthetic(true);
+        try {
+            acroLoadedSigningService.signPdf(sampleDocument, certificatePath, CERTIFICATE_PASSWORD,
+                CERTIFICATE_ALIAS, SIGNER_NAME, "City");
+            pdfSigningService.signPdf(sampleDocument, certificatePath, CERTIFICATE_PASSWORD,
+                CERTIFICATE_ALIAS, SIGNER_NAME, "City", SignatureAppearanceType.NEW);
+            pdfSigningService.signPdfAtAnchor(sampleDocument, certificatePath, CERTIFICATE_PASSWORD,
+                CERTIFICATE_ALIAS, SIGNER_NAME, "City", SignatureAppearanceType.VECTOR, ANCHOR_TEXT);
+        } finally {
+            AuditedSignature.bindSynthetic(false);
+        }
+        contentWithLayersService.addLayers(sampleDocument, "n1", "n2", "n3", "n4");
+        contentWithLayersService.addLayersToAllPages(sampleDocument, "Page {page} of {pages}", "n2", "n3", "n4");
+
+        return System.nanoTime() - start;
+    }
+
+    private synchronized void initialize() throws IOException, CertificateException {
+        if (keystoreFile != null) {
+            return;
+        }
+        File file = File.createTempFile("synthetic", ".p12");
+        CertificateHelper.createSelfSignedKeystore(file, CERTIFICATE_PASSWORD, CERTIFICATE_ALIAS, SIGNER_NAME);
+        sampleDocument = new MockMultipartFile("synthetic.pdf", "synthetic.pdf", "application/pdf", createSampleDocument());
+        keystoreFile = file;
+    }
+
+    /**
+     * Creates a small agreement-like document with a signature anchor on the last page.
+     */
+    private byte[] createSampleDocument() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            for (int i = 1; i <= 3; i++) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                document.addPage(page);
+                try (PDPageContentStream cs = new PDPageContentStream(document, page)) {
+                    cs.beginText();
+                    cs.setFont(font, 11);
+                    cs.newLineAtOffset(72, 700);
+                    cs.showText("Synthetic loan agreement, page " + i);
+                    if (i == 3) {
+                        cs.newLineAtOffset(0, -500);
+                        cs.showText(ANCHOR_TEXT);
+                    }
+                    cs.endText();
+                }
+            }
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            document.save(baos);
+            return baos.toByteArray();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void cleanup() throws IOException {
+        if (keystoreFile != null) {
+            Files.deleteIfExists(keystoreFile.toPath());
+        }
+    }
+}
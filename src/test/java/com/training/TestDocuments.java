@@ -0,0 +1,139 @@
+package com.training;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.apache.pdfbox.pdfwriter.compress.CompressParameters;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cms.CMSProcessableByteArray;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoVerifierBuilder;
+import org.springframework.mock.web.MockMultipartFile;
+
+import com.training.helper.SecurityProviderHelper;
+
+/**
+ * Documents and signature checks shared by the tests.
+ */
+public final class TestDocuments {
+
+	private TestDocuments() {
+	}
+
+	/**
+	 * Creates a document with blank US Letter pages, saved with object streams.
+	 */
+	public static byte[] createPdf(int pages) throws IOException {
+		return createPdf(pages, true);
+	}
+
+	/**
+	 * Creates a document with blank US Letter pages, saved with or without object streams.
+	 */
+	public static byte[] createPdf(int pages, boolean compressed) throws IOException {
+		try (PDDocument document = new PDDocument()) {
+			for (int i = 0; i < pages; i++) {
+				document.addPage(new PDPage());
+			}
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			document.save(baos, compressed ? CompressParameters.DEFAULT_COMPRESSION : CompressParameters.NO_COMPRESSION);
+			return baos.toByteArray();
+		}
+	}
+
+	/**
+	 * Writes a document with blank US Letter pages to a file.
+	 */
+	public static void createPdf(Path file, int pages) throws IOException {
+		try (PDDocument document = new PDDocument()) {
+			for (int i = 0; i < pages; i++) {
+				document.addPage(new PDPage());
+			}
+			document.save(file.toFile());
+		}
+	}
+
+	/**
+	 * Creates a document with "Page n" written on every page and a logo image shared by every page after the first.
+	 */
+	public static byte[] createTextPdf(int pages) throws IOException {
+		try (PDDocument document = new PDDocument()) {
+			PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+			PDImageXObject logo = LosslessFactory.createFromImage(document,
+				new BufferedImage(32, 32, BufferedImage.TYPE_INT_RGB));
+			for (int i = 0; i < pages; i++) {
+				PDPage page = new PDPage();
+				document.addPage(page);
+				try (PDPageContentStream cs = new PDPageContentStream(document, page)) {
+					cs.beginText();
+					cs.setFont(font, 12);
+					cs.newLineAtOffset(72, 700);
+					cs.showText("Page " + (i + 1));
+					cs.endText();
+					if (i > 0) {
+						cs.drawImage(logo, 72, 72);
+					}
+				}
+			}
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			document.save(baos);
+			return baos.toByteArray();
+		}
+	}
+
+	/**
+	 * Creates a single-page document with one line of 12pt Helvetica text whose baseline starts at x, y.
+	 */
+	public static byte[] createTextPdf(PDRectangle mediaBox, String text, float x, float y) throws IOException {
+		try (PDDocument document = new PDDocument()) {
+			PDPage page = new PDPage(mediaBox);
+			document.addPage(page);
+			try (PDPageContentStream cs = new PDPageContentStream(document, page)) {
+				cs.beginText();
+				cs.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 12);
+				cs.newLineAtOffset(x, y);
+				cs.showText(text);
+				cs.endText();
+			}
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			document.save(baos);
+			return baos.toByteArray();
+		}
+	}
+
+	/**
+	 * Wraps document bytes as an uploaded file.
+	 */
+	public static MockMultipartFile multipartPdf(byte[] pdf) {
+		return new MockMultipartFile("file", "document.pdf", "application/pdf", pdf);
+	}
+
+	/**
+	 * Verifies the CMS signature of a signature dictionary over its ByteRange in the document.
+	 */
+	public static boolean verify(PDSignature signature, byte[] pdf) throws Exception {
+		CMSSignedData signedData = new CMSSignedData(
+			new CMSProcessableByteArray(signature.getSignedContent(pdf)), signature.getContents(pdf));
+		SignerInformation signer = signedData.getSignerInfos().getSigners().iterator().next();
+		// SignerId is a raw Selector, so match it against each certificate instead of passing it to the store
+		X509CertificateHolder holder = signedData.getCertificates().getMatches(null).stream()
+			.filter(signer.getSID()::match)
+			.findFirst()
+			.orElseThrow();
+		return signer.verify(new JcaSimpleSignerInfoVerifierBuilder()
+			.setProvider(SecurityProviderHelper.bouncyCastle())
+			.build(holder));
+	}
+}
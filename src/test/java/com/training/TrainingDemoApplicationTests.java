@@ -3,7 +3,7 @@ package com.training;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "esign.warmup.enabled=false")
 class TrainingDemoApplicationTests {
 
 	@Test
@@ -0,0 +1,44 @@
+package com.training.benchmark;
+
+import java.io.File;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.training.enums.RevisionFormat;
+import com.training.enums.SignatureAppearanceType;
+import com.training.helper.CertificateHelper;
+import com.training.service.PdfSigningService;
+
+/**
+ * Compares how the latency of a vector signature grows with the page count when the document is loaded
+ * and written compactly, and when the signature is appended without loading the document.
+ */
+@Tag("benchmark")
+class AppendSigningBenchmark {
+
+	private static final int[] PAGE_COUNTS = { 10, 500, 5000 };
+
+	@TempDir
+	File tempDir;
+
+	@Test
+	void compareLatencyByPageCount() throws Exception {
+		File keystore = new File(tempDir, "benchmark.p12");
+		CertificateHelper.createSelfSignedKeystore(keystore, "password", "benchmark", "Benchmark Signer");
+
+		for (int pages : PAGE_COUNTS) {
+			byte[] original = BenchmarkSupport.createSamplePdf(pages);
+			for (RevisionFormat format : new RevisionFormat[] { RevisionFormat.COMPACT, RevisionFormat.APPEND }) {
+				PdfSigningService service = new PdfSigningService();
+				ReflectionTestUtils.setField(service, "revisionFormat", format);
+				BenchmarkSupport.measure(format + " " + pages + " pages", 3, 11, () -> service.signPdf(
+					new MockMultipartFile("file", "document.pdf", "application/pdf", original), keystore.getPath(),
+					"password", "benchmark", "Benchmark Signer", "City", SignatureAppearanceType.VECTOR));
+			}
+		}
+	}
+}
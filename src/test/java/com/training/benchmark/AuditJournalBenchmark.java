@@ -0,0 +1,76 @@
+package com.training.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.training.helper.CertificateHelper;
+import com.training.service.SigningAuditJournal;
+
+/**
+ * Measures durable audit entries per second for different maximum batch sizes.
+ * A batch size of 1 is an fsync per signature.
+ */
+@Tag("benchmark")
+class AuditJournalBenchmark {
+
+	private static final int THREADS = 32;
+	private static final int ENTRIES_PER_THREAD = 200;
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void compareBatchSizes() throws Exception {
+		File keystoreFile = tempDir.resolve("audit.p12").toFile();
+		CertificateHelper.createSelfSignedKeystore(keystoreFile, "password", "audit", "Benchmark Signer");
+		KeyStore keystore = KeyStore.getInstance("PKCS12");
+		try (InputStream in = new FileInputStream(keystoreFile)) {
+			keystore.load(in, "password".toCharArray());
+		}
+		X509Certificate certificate = (X509Certificate) keystore.getCertificate("audit");
+		byte[] digest = new byte[32];
+
+		for (int batchSize : new int[] { 1, 8, 64, 256 }) {
+			SigningAuditJournal journal = new SigningAuditJournal();
+			ReflectionTestUtils.setField(journal, "journalFile", tempDir.resolve("audit-" + batchSize + ".jsonl"));
+			ReflectionTestUtils.setField(journal, "maxBatchSize", batchSize);
+			ReflectionTestUtils.invokeMethod(journal, "start");
+
+			ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+			try {
+				long start = System.nanoTime();
+				List<Future<?>> futures = new ArrayList<>();
+				for (int t = 0; t < THREADS; t++) {
+					futures.add(executor.submit(() -> {
+						for (int i = 0; i < ENTRIES_PER_THREAD; i++) {
+							journal.record("Benchmark Signer", certificate, "SHA-256", digest);
+						}
+						return null;
+					}));
+				}
+				for (Future<?> future : futures) {
+					future.get();
+				}
+				double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+				System.out.printf("max batch %4d  %,10.0f entries/s%n", batchSize, THREADS * ENTRIES_PER_THREAD / seconds);
+			} finally {
+				executor.shutdownNow();
+				ReflectionTestUtils.invokeMethod(journal, "stop");
+			}
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package com.training.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+
+/**
+ * Shared helpers for the benchmarks, which run with {@code mvn test -Pbenchmark}.
+ */
+final class BenchmarkSupport {
+
+	/**
+	 * Result of a measured operation.
+	 *
+	 * @param name The name of the measured variant
+	 * @param medianMillis The median latency in milliseconds
+	 * @param outputSize The size of the last output in bytes
+	 */
+	record Result(String name, double medianMillis, int outputSize) {
+
+		@Override
+		public String toString() {
+			return String.format("%-32s median %9.2f ms  output %,10d bytes", name, medianMillis, outputSize);
+		}
+	}
+
+	private BenchmarkSupport() {
+	}
+
+	/**
+	 * Creates an A4 document with a line of text on every page.
+	 */
+	static byte[] createSamplePdf(int pages) throws IOException {
+		try (PDDocument document = new PDDocument()) {
+			PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+			for (int i = 0; i < pages; i++) {
+				PDPage page = new PDPage(PDRectangle.A4);
+				document.addPage(page);
+				try (PDPageContentStream cs = new PDPageContentStream(document, page)) {
+					cs.beginText();
+					cs.setFont(font, 11);
+					cs.newLineAtOffset(72, 400);
+					cs.showText("Synthetic benchmark page " + (i + 1));
+					cs.endText();
+				}
+			}
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			document.save(baos);
+			return baos.toByteArray();
+		}
+	}
+
+	/**
+	 * Runs the operation for warm-up and then measures the median latency over the given iterations.
+	 */
+	static Result measure(String name, int warmup, int iterations, Callable<byte[]> operation) throws Exception {
+		for (int i = 0; i < warmup; i++) {
+			operation.call();
+		}
+		long[] nanos = new long[iterations];
+		byte[] output = null;
+		for (int i = 0; i < iterations; i++) {
+			long start = System.nanoTime();
+			output = operation.call();
+			nanos[i] = System.nanoTime() - start;
+		}
+		Arrays.sort(nanos);
+		Result result = new Result(name, nanos[iterations / 2] / 1_000_000.0, output == null ? 0 : output.length);
+		System.out.println(result);
+		return result;
+	}
+
+	/**
+	 * Returns the size of the last revision of a signed document without the hex-encoded space reserved
+	 * for the signature in its /Contents.
+	 */
+	static int revisionSizeWithoutSignature(byte[] original, byte[] signed) throws IOException {
+		try (PDDocument document = Loader.loadPDF(signed)) {
+			int reserved = document.getLastSignatureDictionary().getContents().length;
+			return signed.length - original.length - 2 * reserved;
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package com.training.benchmark;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.training.enums.DigestAlgorithm;
+import com.training.enums.SignatureProviderType;
+import com.training.helper.CMSSignatureHelper;
+import com.training.helper.CertificateHelper;
+import com.training.helper.CredentialSource;
+import com.training.helper.Pkcs11CredentialSource;
+import com.training.helper.Pkcs12CredentialSource;
+import com.training.model.SignatureSpec;
+
+/**
+ * Compares signing throughput of a PKCS12 file, loaded per signature and shared, with a PKCS#11 token.
+ * The PKCS#11 variant runs against SoftHSM when these environment variables are set:
+ * <pre>
+ * softhsm2-util --init-token --free --label esign --pin 1234 --so-pin 5678
+ * # import a key and certificate with label "esign", e.g. with pkcs11-tool --write-object
+ * ESIGN_PKCS11_CONFIG=softhsm.cfg   # name = SoftHSM, library = /usr/lib/softhsm/libsofthsm2.so, slotListIndex = 0
+ * ESIGN_PKCS11_PIN=1234
+ * ESIGN_PKCS11_ALIAS=esign
+ * </pre>
+ */
+@Tag("benchmark")
+class CredentialSourceBenchmark {
+
+	private static final int CONTENT_SIZE = 64 * 1024;
+	private static final int THREADS = 8;
+	private static final long MEASURE_NANOS = TimeUnit.SECONDS.toNanos(3);
+
+	@TempDir
+	File tempDir;
+
+	@Test
+	void pkcs12SignaturesPerSecond() throws Exception {
+		File keystoreFile = new File(tempDir, "benchmark.p12");
+		CertificateHelper.createSelfSignedKeystore(keystoreFile, "password", "benchmark", "Benchmark Signer");
+		String path = keystoreFile.getAbsolutePath();
+
+		measure("PKCS12 loaded per signature", () -> new Pkcs12CredentialSource(path, "password", "benchmark"));
+		CredentialSource shared = new Pkcs12CredentialSource(path, "password", "benchmark");
+		measure("PKCS12 shared", () -> shared);
+	}
+
+	@Test
+	void pkcs11SignaturesPerSecond() throws Exception {
+		String config = System.getenv("ESIGN_PKCS11_CONFIG");
+		assumeTrue(config != null, "ESIGN_PKCS11_CONFIG is not set");
+		try (CredentialSource token = new Pkcs11CredentialSource(config, System.getenv("ESIGN_PKCS11_PIN"),
+				System.getenv("ESIGN_PKCS11_ALIAS"), THREADS)) {
+			measure("PKCS#11 pooled sessions", () -> token);
+		}
+	}
+
+	private void measure(String name, SourceFactory factory) throws Exception {
+		byte[] content = new byte[CONTENT_SIZE];
+		SignatureSpec spec = new SignatureSpec(DigestAlgorithm.SHA256, SignatureProviderType.BOUNCY_CASTLE, false);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			// Warm up the provider and JIT before measuring
+			for (int i = 0; i < 20; i++) {
+				sign(factory.open(), content, spec);
+			}
+			long start = System.nanoTime();
+			List<Future<Integer>> workers = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				workers.add(executor.submit(() -> {
+					int signatures = 0;
+					while (System.nanoTime() - start < MEASURE_NANOS) {
+						sign(factory.open(), content, spec);
+						signatures++;
+					}
+					return signatures;
+				}));
+			}
+			int signatures = 0;
+			for (Future<Integer> worker : workers) {
+				signatures += worker.get();
+			}
+			double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+			System.out.printf("%-32s %,10.1f signatures/s with %d threads%n", name, signatures / seconds, THREADS);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void sign(CredentialSource source, byte[] content, SignatureSpec spec) throws Exception {
+		source.withKey((privateKey, chain) -> CMSSignatureHelper.createCMSSignature(content, privateKey, chain, spec, false));
+	}
+
+	@FunctionalInterface
+	private interface SourceFactory {
+		CredentialSource open() throws Exception;
+	}
+}
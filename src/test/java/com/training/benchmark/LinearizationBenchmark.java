@@ -0,0 +1,358 @@
+package com.training.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSDocument;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSObjectKey;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.training.enums.SignatureAppearanceType;
+import com.training.helper.CertificateHelper;
+import com.training.helper.PdfLinearizer;
+import com.training.service.LinearizationService;
+import com.training.service.PdfSigningService;
+
+/**
+ * Estimates the time to first page of a large agreement for a viewer that loads it over HTTP, with and
+ * without linearization, before and after a signature is appended.
+ * <p>
+ * The network is modelled rather than measured: a range-request viewer fetches 64 KiB chunks and needs one
+ * round trip per level of references it has to follow (trailer, cross-reference sections, catalog, page tree,
+ * page 1 and the resources of page 1); a viewer without range requests reads the file from the start and
+ * can only show page 1 early when the linearization dictionary still matches the file length.
+ * The page 1 render time is measured.
+ */
+@Tag("benchmark")
+class LinearizationBenchmark {
+
+	private static final int PAGES = 40;
+	private static final int CHUNK = 64 * 1024;
+	private static final double ROUND_TRIP_MILLIS = 150;
+	// 1.6 Mbit/s
+	private static final double BYTES_PER_MILLI = 200;
+
+	private static final Pattern PREV = Pattern.compile("/Prev\\s+(\\d+)");
+
+	@TempDir
+	File tempDir;
+
+	/**
+	 * Bytes and round trips a range-request viewer needs before it can render page 1.
+	 */
+	private record Fetch(int roundTrips, long bytes) {
+
+		double millis() {
+			return roundTrips * ROUND_TRIP_MILLIS + bytes / BYTES_PER_MILLI;
+		}
+	}
+
+	@Test
+	void compareTimeToFirstPage() throws Exception {
+		File keystore = new File(tempDir, "benchmark.p12");
+		CertificateHelper.createSelfSignedKeystore(keystore, "password", "benchmark", "Benchmark Signer");
+		byte[] plain = createAgreement();
+		byte[] stamped = stamp(plain);
+		BenchmarkSupport.measure("linearize " + PAGES + " pages", 2, 7, () -> linearize(stamped));
+		byte[] linearized = linearize(stamped);
+
+		PdfSigningService service = new PdfSigningService();
+		PdfSigningService linearizingService = new PdfSigningService();
+		LinearizationService linearizationService = new LinearizationService();
+		ReflectionTestUtils.setField(linearizationService, "enabled", true);
+		ReflectionTestUtils.setField(linearizingService, "linearizationService", linearizationService);
+
+		double renderMillis = BenchmarkSupport.measure("render page 1", 2, 7, () -> renderFirstPage(stamped)).medianMillis();
+		report("plain", plain, renderMillis);
+		report("plain, signed", sign(service, plain, keystore), renderMillis);
+		report("stamped", stamped, renderMillis);
+		report("stamped, signed", sign(service, stamped, keystore), renderMillis);
+		report("linearized", linearized, renderMillis);
+		report("linearized, signed", sign(service, linearized, keystore), renderMillis);
+		byte[] signedLinearized = sign(linearizingService, stamped, keystore);
+		report("signed linearized", signedLinearized, renderMillis);
+		report("signed linearized, 2nd signature", sign(service, signedLinearized, keystore), renderMillis);
+	}
+
+	private static void report(String name, byte[] pdf, double renderMillis) throws IOException {
+		Fetch ranged = rangeRequests(pdf);
+		long sequentialBytes = firstPageEnd(pdf);
+		System.out.printf("%-32s %,10d bytes  range requests: %d round trips, %,9d bytes, first page %,7.0f ms"
+				+ "  sequential: %,9d bytes, first page %,7.0f ms%n",
+			name, pdf.length, ranged.roundTrips(), ranged.bytes(), ranged.millis() + renderMillis,
+			sequentialBytes, ROUND_TRIP_MILLIS + sequentialBytes / BYTES_PER_MILLI + renderMillis);
+	}
+
+	/**
+	 * Returns the end of the first page when the linearization dictionary matches the file, else the file length.
+	 */
+	private static long firstPageEnd(byte[] pdf) throws IOException {
+		try (PDDocument document = Loader.loadPDF(pdf)) {
+			COSDictionary parameters = document.getDocument().getLinearizedDictionary();
+			if (parameters != null && parameters.getLong(COSName.L) == pdf.length) {
+				return parameters.getLong(COSName.E);
+			}
+			return pdf.length;
+		}
+	}
+
+	private static Fetch rangeRequests(byte[] pdf) throws IOException {
+		String text = new String(pdf, StandardCharsets.ISO_8859_1);
+		RangeReader reader = new RangeReader();
+		// The first request returns the length and the first chunk, which holds any linearization dictionary
+		reader.request(0, 1);
+		reader.roundTrip();
+		long firstPageEnd = firstPageEnd(pdf);
+		if (firstPageEnd < pdf.length) {
+			reader.request(0, firstPageEnd);
+			reader.roundTrip();
+			return reader.result();
+		}
+
+		// Otherwise read the trailer at the end and follow the chain of cross-reference sections
+		reader.request(pdf.length - 1, pdf.length);
+		reader.roundTrip();
+		TreeMap<Long, Long> starts = new TreeMap<>();
+		long section = Long.parseLong(text.substring(text.lastIndexOf("startxref") + 9, text.lastIndexOf("%%EOF")).trim());
+		Set<Long> sections = new HashSet<>();
+		while (sections.add(section)) {
+			long end = text.indexOf("startxref", (int) section);
+			int endstream = text.indexOf("endstream", (int) section);
+			if (endstream >= 0 && endstream < end) {
+				end = endstream + 9;
+			}
+			starts.put(section, section);
+			reader.request(section, end);
+			reader.roundTrip();
+			Matcher prev = PREV.matcher(text.substring((int) section, (int) end));
+			if (!prev.find()) {
+				break;
+			}
+			section = Long.parseLong(prev.group(1));
+		}
+
+		// Then resolve one level of references per round trip, from the catalog down to the resources of page 1
+		try (PDDocument document = Loader.loadPDF(pdf)) {
+			COSDocument cosDocument = document.getDocument();
+			Map<COSObjectKey, Long> xref = cosDocument.getXrefTable();
+			for (Long offset : xref.values()) {
+				if (offset > 0) {
+					starts.put(offset, offset);
+				}
+			}
+			starts.put((long) pdf.length, (long) pdf.length);
+
+			COSBase firstPage = document.getPage(0).getCOSObject();
+			Set<COSObjectKey> visited = new HashSet<>();
+			List<COSObjectKey> level = List.of(cosDocument.getTrailer().getCOSObject(COSName.ROOT).getKey());
+			while (!level.isEmpty()) {
+				List<COSObjectKey> next = new ArrayList<>();
+				for (COSObjectKey key : level) {
+					Long offset = xref.get(key);
+					if (!visited.add(key) || offset == null) {
+						continue;
+					}
+					// Compressed objects are read from their object stream
+					long start = offset > 0 ? offset : xref.get(new COSObjectKey(-offset, 0));
+					reader.request(start, starts.higherKey(start));
+					references(cosDocument.getObjectFromPool(key).getObject(), firstPage, next);
+				}
+				reader.roundTrip();
+				level = next;
+			}
+		}
+		return reader.result();
+	}
+
+	/**
+	 * Collects the references a viewer follows from an object on the way to rendering page 1: the page tree
+	 * down to the first page, and everything page 1 uses.
+	 */
+	private static void references(COSBase object, COSBase firstPage, List<COSObjectKey> references) {
+		if (object instanceof COSDictionary dictionary) {
+			COSName type = dictionary.getCOSName(COSName.TYPE);
+			if (COSName.CATALOG.equals(type)) {
+				addReference(dictionary.getItem(COSName.PAGES), references);
+				return;
+			}
+			if (COSName.PAGES.equals(type)) {
+				COSArray kids = dictionary.getCOSArray(COSName.KIDS);
+				addReference(kids == null || kids.size() == 0 ? null : kids.get(0), references);
+				return;
+			}
+			if (COSName.PAGE.equals(type) && object != firstPage) {
+				return;
+			}
+			for (Map.Entry<COSName, COSBase> entry : dictionary.entrySet()) {
+				if (!COSName.PARENT.equals(entry.getKey()) && !COSName.P.equals(entry.getKey())) {
+					addOrDescend(entry.getValue(), firstPage, references);
+				}
+			}
+		} else if (object instanceof COSArray array) {
+			for (int i = 0; i < array.size(); i++) {
+				addOrDescend(array.get(i), firstPage, references);
+			}
+		}
+	}
+
+	private static void addOrDescend(COSBase value, COSBase firstPage, List<COSObjectKey> references) {
+		if (value instanceof COSObject) {
+			addReference(value, references);
+		} else {
+			references(value, firstPage, references);
+		}
+	}
+
+	private static void addReference(COSBase value, List<COSObjectKey> references) {
+		if (value instanceof COSObject object && object.getKey() != null) {
+			references.add(object.getKey());
+		}
+	}
+
+	/**
+	 * Tracks the 64 KiB chunks a range-request viewer has fetched. The chunks requested between two round
+	 * trips are fetched in parallel.
+	 */
+	private static final class RangeReader {
+		private final BitSet fetched = new BitSet();
+		private final BitSet pending = new BitSet();
+		private int roundTrips;
+		private long bytes;
+
+		void request(long start, long end) {
+			pending.set((int) (start / CHUNK), (int) ((end - 1) / CHUNK) + 1);
+		}
+
+		void roundTrip() {
+			pending.andNot(fetched);
+			if (!pending.isEmpty()) {
+				roundTrips++;
+				bytes += (long) pending.cardinality() * CHUNK;
+				fetched.or(pending);
+				pending.clear();
+			}
+		}
+
+		Fetch result() {
+			return new Fetch(roundTrips, bytes);
+		}
+	}
+
+	private static byte[] sign(PdfSigningService service, byte[] pdf, File keystore) throws Exception {
+		return service.signPdf(new MockMultipartFile("file", "agreement.pdf", "application/pdf", pdf),
+			keystore.getPath(), "password", "benchmark", "Benchmark Signer", "City", SignatureAppearanceType.VECTOR);
+	}
+
+	private static byte[] linearize(byte[] pdf) throws IOException {
+		try (PDDocument document = Loader.loadPDF(pdf)) {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream(pdf.length + pdf.length / 8);
+			PdfLinearizer.linearize(document, baos);
+			return baos.toByteArray();
+		}
+	}
+
+	private static byte[] renderFirstPage(byte[] pdf) throws IOException {
+		try (PDDocument document = Loader.loadPDF(pdf)) {
+			new PDFRenderer(document).renderImage(0);
+			return null;
+		}
+	}
+
+	/**
+	 * Creates an agreement with text on every page and a scanned stamp on every fourth page, the first included.
+	 */
+	private static byte[] createAgreement() throws IOException {
+		Random random = new Random(41);
+		try (PDDocument document = new PDDocument()) {
+			PDType1Font body = new PDType1Font(Standard14Fonts.FontName.TIMES_ROMAN);
+			PDType1Font heading = new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD);
+			for (int i = 0; i < PAGES; i++) {
+				PDPage page = new PDPage(PDRectangle.A4);
+				document.addPage(page);
+				PDImageXObject stamp = i % 4 == 0 ? LosslessFactory.createFromImage(document, noise(random, 320)) : null;
+				try (PDPageContentStream cs = new PDPageContentStream(document, page)) {
+					cs.beginText();
+					cs.setFont(heading, 14);
+					cs.newLineAtOffset(72, 780);
+					cs.showText("Loan Agreement - Section " + (i + 1));
+					cs.setFont(body, 10);
+					for (int line = 0; line < 50; line++) {
+						cs.newLineAtOffset(0, -13);
+						cs.showText("Clause " + (i + 1) + "." + (line + 1)
+							+ " The borrower agrees to the terms set out in this section of the agreement.");
+					}
+					cs.endText();
+					if (stamp != null) {
+						cs.drawImage(stamp, 380, 60, 160, 160);
+					}
+				}
+			}
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			document.save(baos);
+			return baos.toByteArray();
+		}
+	}
+
+	/**
+	 * Appends a stamp to the first page as an incremental update, as stamp duty is added to the agreement templates.
+	 */
+	private static byte[] stamp(byte[] pdf) throws IOException {
+		try (PDDocument document = Loader.loadPDF(pdf)) {
+			PDPage page = document.getPage(0);
+			PDImageXObject stamp = LosslessFactory.createFromImage(document, noise(new Random(7), 240));
+			try (PDPageContentStream cs = new PDPageContentStream(document, page, PDPageContentStream.AppendMode.APPEND, true)) {
+				cs.drawImage(stamp, 60, 600, 200, 200);
+				cs.beginText();
+				cs.setFont(new PDType1Font(Standard14Fonts.FontName.COURIER), 9);
+				cs.newLineAtOffset(60, 590);
+				cs.showText("STAMP DUTY PAID");
+				cs.endText();
+			}
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			document.saveIncremental(baos);
+			return baos.toByteArray();
+		}
+	}
+
+	private static BufferedImage noise(Random random, int size) {
+		BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				image.setRGB(x, y, random.nextInt(0x1000000));
+			}
+		}
+		return image;
+	}
+}
@@ -0,0 +1,49 @@
+package com.training.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.training.enums.StampingMode;
+import com.training.service.ContentWithLayersService;
+
+/**
+ * Compares sequential and fork-join stamping of per-page layer text.
+ */
+@Tag("benchmark")
+class ParallelStampingBenchmark {
+
+	@Test
+	void compareSequentialAndParallelStamping() throws Exception {
+		ContentWithLayersService service = new ContentWithLayersService();
+		ReflectionTestUtils.setField(service, "parallelMinPages", 16);
+		System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+
+		for (int pages : new int[] { 50, 200, 800 }) {
+			byte[] pdf = BenchmarkSupport.createSamplePdf(pages);
+			BenchmarkSupport.Result sequential = BenchmarkSupport.measure(pages + " pages sequential", 3, 7,
+				() -> service.addLayersToAllPages(pdf, "Page {page} of {pages}", "Agreement", "Borrower", "Lender",
+					StampingMode.SEQUENTIAL));
+			BenchmarkSupport.Result parallel = BenchmarkSupport.measure(pages + " pages parallel", 3, 7,
+				() -> service.addLayersToAllPages(pdf, "Page {page} of {pages}", "Agreement", "Borrower", "Lender",
+					StampingMode.PARALLEL));
+			System.out.printf("%d pages speedup %.2fx%n", pages, sequential.medianMillis() / parallel.medianMillis());
+		}
+
+		// Both paths must produce the same text on every page
+		byte[] pdf = BenchmarkSupport.createSamplePdf(20);
+		assertEquals(extractText(service.addLayersToAllPages(pdf, "Page {page} of {pages}", "a", "b", "c", StampingMode.SEQUENTIAL)),
+			extractText(service.addLayersToAllPages(pdf, "Page {page} of {pages}", "a", "b", "c", StampingMode.PARALLEL)));
+	}
+
+	private static String extractText(byte[] pdf) throws Exception {
+		try (PDDocument document = Loader.loadPDF(pdf)) {
+			return new PDFTextStripper().getText(document);
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package com.training.benchmark;
+
+import java.io.File;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.training.enums.RevisionFormat;
+import com.training.enums.SignatureAppearanceType;
+import com.training.helper.CertificateHelper;
+import com.training.service.AcroLoadedSigningService;
+import com.training.service.PdfSigningService;
+
+/**
+ * Compares the size and latency of signed revisions written by {@code saveIncremental} and by the compact
+ * revision writer. Each document is signed several times in a row, so later signatures can reuse the
+ * appearance layers of earlier ones.
+ */
+@Tag("benchmark")
+class RevisionFormatBenchmark {
+
+	private static final int SIGNATURES = 4;
+
+	@TempDir
+	File tempDir;
+
+	@Test
+	void compareRevisionFormats() throws Exception {
+		File keystore = new File(tempDir, "benchmark.p12");
+		CertificateHelper.createSelfSignedKeystore(keystore, "password", "benchmark", "Benchmark Signer");
+		byte[] original = BenchmarkSupport.createSamplePdf(5);
+
+		for (RevisionFormat format : RevisionFormat.values()) {
+			AcroLoadedSigningService layered = new AcroLoadedSigningService();
+			PdfSigningService vector = new PdfSigningService();
+			ReflectionTestUtils.setField(layered, "revisionFormat", format);
+			ReflectionTestUtils.setField(vector, "revisionFormat", format);
+
+			BenchmarkSupport.measure(format + " layered signature", 3, 11, () -> layered.signPdf(
+				pdf(original), keystore.getPath(), "password", "benchmark", "Benchmark Signer", "City"));
+
+			byte[] layeredPdf = original;
+			byte[] vectorPdf = original;
+			long layeredTotal = 0;
+			long layeredWithout = 0;
+			long vectorTotal = 0;
+			long vectorWithout = 0;
+			for (int i = 0; i < SIGNATURES; i++) {
+				byte[] signed = layered.signPdf(pdf(layeredPdf), keystore.getPath(), "password", "benchmark",
+					"Signer " + i, "City");
+				layeredTotal += signed.length - layeredPdf.length;
+				layeredWithout += BenchmarkSupport.revisionSizeWithoutSignature(layeredPdf, signed);
+				layeredPdf = signed;
+
+				signed = vector.signPdf(pdf(vectorPdf), keystore.getPath(), "password", "benchmark",
+					"Signer " + i, "City", SignatureAppearanceType.VECTOR);
+				vectorTotal += signed.length - vectorPdf.length;
+				vectorWithout += BenchmarkSupport.revisionSizeWithoutSignature(vectorPdf, signed);
+				vectorPdf = signed;
+			}
+			System.out.printf("%-8s layered: %,12d bytes per signature, %,8d without reserved signature space%n",
+				format, layeredTotal / SIGNATURES, layeredWithout / SIGNATURES);
+			System.out.printf("%-8s vector:  %,12d bytes per signature, %,8d without reserved signature space%n",
+				format, vectorTotal / SIGNATURES, vectorWithout / SIGNATURES);
+		}
+	}
+
+	private static MockMultipartFile pdf(byte[] bytes) {
+		return new MockMultipartFile("file", "document.pdf", "application/pdf", bytes);
+	}
+}
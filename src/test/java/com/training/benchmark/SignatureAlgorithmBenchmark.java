@@ -0,0 +1,76 @@
+package com.training.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.training.enums.DigestAlgorithm;
+import com.training.enums.SignatureProviderType;
+import com.training.helper.CMSSignatureHelper;
+import com.training.helper.CertificateHelper;
+import com.training.model.SignatureSpec;
+
+/**
+ * Measures CMS signatures per second for each key type and JCA provider.
+ * The content is hashed once per signature like a PDF ByteRange, so the numbers are dominated
+ * by the private-key operation.
+ */
+@Tag("benchmark")
+class SignatureAlgorithmBenchmark {
+
+	private static final int CONTENT_SIZE = 64 * 1024;
+	private static final long MEASURE_NANOS = TimeUnit.SECONDS.toNanos(3);
+
+	@TempDir
+	File tempDir;
+
+	@Test
+	void compareSignaturesPerSecond() throws Exception {
+		byte[] content = new byte[CONTENT_SIZE];
+		String[][] variants = {
+			{ "RSA", "false" },
+			{ "RSA", "true" },
+			{ "EC", "false" },
+			{ "Ed25519", "false" }
+		};
+		for (String[] variant : variants) {
+			File keystoreFile = new File(tempDir, variant[0] + ".p12");
+			CertificateHelper.createSelfSignedKeystore(keystoreFile, "password", "benchmark", "Benchmark Signer", variant[0]);
+			KeyStore keystore = KeyStore.getInstance("PKCS12");
+			try (InputStream in = new FileInputStream(keystoreFile)) {
+				keystore.load(in, "password".toCharArray());
+			}
+			PrivateKey privateKey = (PrivateKey) keystore.getKey("benchmark", "password".toCharArray());
+			Certificate[] chain = keystore.getCertificateChain("benchmark");
+
+			for (SignatureProviderType provider : SignatureProviderType.values()) {
+				SignatureSpec spec = new SignatureSpec(DigestAlgorithm.SHA256, provider, Boolean.parseBoolean(variant[1]));
+				String name = CMSSignatureHelper.resolveSignatureAlgorithm(privateKey, spec) + " / " + provider;
+
+				// Warm up the provider and JIT before measuring
+				for (int i = 0; i < 50; i++) {
+					CMSSignatureHelper.createCMSSignature(content, privateKey, chain, spec, false);
+				}
+				int signatures = 0;
+				int size = 0;
+				long start = System.nanoTime();
+				long elapsed;
+				do {
+					size = CMSSignatureHelper.createCMSSignature(content, privateKey, chain, spec, false).length;
+					signatures++;
+					elapsed = System.nanoTime() - start;
+				} while (elapsed < MEASURE_NANOS);
+				System.out.printf("%-32s %,10.1f signatures/s  CMS %,6d bytes%n", name,
+					signatures / (elapsed / 1_000_000_000.0), size);
+			}
+		}
+	}
+}
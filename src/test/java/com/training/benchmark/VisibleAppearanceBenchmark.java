@@ -0,0 +1,40 @@
+package com.training.benchmark;
+
+import java.io.File;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import com.training.enums.SignatureAppearanceType;
+import com.training.helper.CertificateHelper;
+import com.training.service.PdfSigningService;
+
+/**
+ * Compares latency and output size of the rasterized and vector visible signature appearances.
+ */
+@Tag("benchmark")
+class VisibleAppearanceBenchmark {
+
+	@TempDir
+	File tempDir;
+
+	@Test
+	void compareRasterAndVectorAppearance() throws Exception {
+		File keystore = new File(tempDir, "benchmark.p12");
+		CertificateHelper.createSelfSignedKeystore(keystore, "password", "benchmark", "Benchmark Signer");
+		byte[] original = BenchmarkSupport.createSamplePdf(5);
+		MockMultipartFile pdf = new MockMultipartFile("sample.pdf", "sample.pdf", "application/pdf", original);
+		PdfSigningService service = new PdfSigningService();
+
+		for (SignatureAppearanceType type : new SignatureAppearanceType[] { SignatureAppearanceType.NEW, SignatureAppearanceType.VECTOR }) {
+			BenchmarkSupport.Result result = BenchmarkSupport.measure(type + " appearance", 5, 21,
+				() -> service.signPdf(pdf, keystore.getPath(), "password", "benchmark", "Benchmark Signer", "City", type));
+			// The hex-encoded /Contents is padded to the preferred signature size, so report the revision without it
+			byte[] signed = service.signPdf(pdf, keystore.getPath(), "password", "benchmark", "Benchmark Signer", "City", type);
+			System.out.printf("%s appearance revision size without reserved signature space: %,d bytes (output %,d bytes)%n",
+				type, BenchmarkSupport.revisionSizeWithoutSignature(original, signed), result.outputSize());
+		}
+	}
+}
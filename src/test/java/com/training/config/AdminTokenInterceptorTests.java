@@ -0,0 +1,43 @@
+package com.training.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class AdminTokenInterceptorTests {
+
+	private final AdminTokenInterceptor interceptor = new AdminTokenInterceptor();
+
+	@Test
+	void adminEndpointsAreDisabledWithoutAConfiguredToken() {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		assertFalse(interceptor.preHandle(request(""), response, null));
+		assertEquals(403, response.getStatus());
+	}
+
+	@Test
+	void onlyTheConfiguredTokenIsAccepted() {
+		ReflectionTestUtils.setField(interceptor, "token", "secret");
+
+		MockHttpServletResponse missing = new MockHttpServletResponse();
+		assertFalse(interceptor.preHandle(new MockHttpServletRequest("PUT", "/api/admin/limits/tenants/a"), missing, null));
+		assertEquals(401, missing.getStatus());
+
+		MockHttpServletResponse wrong = new MockHttpServletResponse();
+		assertFalse(interceptor.preHandle(request("secreT"), wrong, null));
+		assertEquals(401, wrong.getStatus());
+
+		assertTrue(interceptor.preHandle(request("secret"), new MockHttpServletResponse(), null));
+	}
+
+	private static MockHttpServletRequest request(String token) {
+		MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/api/admin/limits/tenants/a");
+		request.addHeader(AdminTokenInterceptor.TOKEN_HEADER, token);
+		return request;
+	}
+}
@@ -0,0 +1,115 @@
+package com.training.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.training.service.AdmissionControlService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.DispatcherType;
+
+class AdmissionInterceptorTests {
+
+	private final AdmissionInterceptor interceptor = new AdmissionInterceptor();
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private AdmissionControlService service;
+
+	@BeforeEach
+	void setUp() {
+		service = new AdmissionControlService();
+		ReflectionTestUtils.setField(service, "tenantRequestsPerSecond", 0.5);
+		ReflectionTestUtils.setField(service, "tenantBurst", 2);
+		ReflectionTestUtils.setField(service, "tenantMaxConcurrent", 0);
+		ReflectionTestUtils.setField(service, "credentialRequestsPerSecond", 0.0);
+		ReflectionTestUtils.setField(service, "credentialMaxConcurrent", 1);
+
+		ReflectionTestUtils.setField(interceptor, "admissionControlService", service);
+		ReflectionTestUtils.setField(interceptor, "meterRegistry", meterRegistry);
+		ReflectionTestUtils.setField(interceptor, "enabled", true);
+		ReflectionTestUtils.setField(interceptor, "defaultTenant", "anonymous");
+		ReflectionTestUtils.setField(interceptor, "signingCredential", "signer");
+	}
+
+	@Test
+	void requestsOverTheRateGet429WithRetryAfterAndRateLimitHeaders() {
+		MockHttpServletResponse first = new MockHttpServletResponse();
+		assertTrue(interceptor.preHandle(request("/api/pdf/layeredPage"), first, null));
+		assertEquals("2", first.getHeader("RateLimit-Limit"));
+		assertEquals("1", first.getHeader("RateLimit-Remaining"));
+		assertNull(first.getHeader("Retry-After"));
+
+		MockHttpServletResponse second = new MockHttpServletResponse();
+		assertTrue(interceptor.preHandle(request("/api/pdf/layeredPage"), second, null));
+		assertEquals("0", second.getHeader("RateLimit-Remaining"));
+
+		MockHttpServletResponse rejected = new MockHttpServletResponse();
+		assertFalse(interceptor.preHandle(request("/api/pdf/layeredPage"), rejected, null));
+		assertEquals(429, rejected.getStatus());
+		assertEquals("2", rejected.getHeader("RateLimit-Limit"));
+		assertEquals("0", rejected.getHeader("RateLimit-Remaining"));
+		// One token is refilled every two seconds
+		assertEquals("2", rejected.getHeader("Retry-After"));
+		assertEquals(rejected.getHeader("Retry-After"), rejected.getHeader("RateLimit-Reset"));
+		assertEquals(1, meterRegistry.get("esign.admission.rejected").tag("scope", "tenant").counter().count());
+	}
+
+	@Test
+	void signingSlotIsReleasedWhenTheResponseCompletes() {
+		ReflectionTestUtils.setField(service, "tenantRequestsPerSecond", 0.0);
+		MockHttpServletRequest signing = request("/api/pdf/sign");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		assertTrue(interceptor.preHandle(signing, response, null));
+
+		// The credential allows one signing request at a time, other endpoints are not counted against it
+		MockHttpServletResponse busy = new MockHttpServletResponse();
+		assertFalse(interceptor.preHandle(request("/api/pdf/sign"), busy, null));
+		assertEquals(429, busy.getStatus());
+		assertEquals("1", busy.getHeader("Retry-After"));
+		assertEquals(1, meterRegistry.get("esign.admission.rejected").tag("scope", "credential").counter().count());
+		assertTrue(interceptor.preHandle(request("/api/pdf/layeredPage"), new MockHttpServletResponse(), null));
+
+		// The async dispatch of a streamed response neither admits it again nor releases it
+		signing.setDispatcherType(DispatcherType.ASYNC);
+		assertTrue(interceptor.preHandle(signing, response, null));
+		interceptor.afterCompletion(signing, response, null, null);
+		assertTrue(interceptor.preHandle(request("/api/pdf/sign"), new MockHttpServletResponse(), null));
+		// A completed request releases its slot only once
+		interceptor.afterCompletion(signing, response, null, null);
+		assertFalse(interceptor.preHandle(request("/api/pdf/sign"), new MockHttpServletResponse(), null));
+	}
+
+	@Test
+	void unknownTenantsShareTheDefaultLimits() {
+		MockHttpServletRequest unknown = request("/api/pdf/layeredPage");
+		unknown.addHeader(AdmissionInterceptor.TENANT_HEADER, "made-up");
+		assertTrue(interceptor.preHandle(unknown, new MockHttpServletResponse(), null));
+		assertTrue(interceptor.preHandle(request("/api/pdf/layeredPage"), new MockHttpServletResponse(), null));
+
+		MockHttpServletResponse rejected = new MockHttpServletResponse();
+		assertFalse(interceptor.preHandle(request("/api/pdf/layeredPage"), rejected, null));
+		assertEquals(429, rejected.getStatus());
+	}
+
+	@Test
+	void disabledInterceptorAdmitsEverything() {
+		ReflectionTestUtils.setField(interceptor, "enabled", false);
+
+		for (int i = 0; i < 5; i++) {
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			assertTrue(interceptor.preHandle(request("/api/pdf/sign"), response, null));
+			assertNull(response.getHeader("RateLimit-Limit"));
+		}
+	}
+
+	private static MockHttpServletRequest request(String path) {
+		return new MockHttpServletRequest("GET", path);
+	}
+}
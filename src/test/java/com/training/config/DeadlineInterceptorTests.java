@@ -0,0 +1,167 @@
+package com.training.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.training.enums.CancellationReason;
+import com.training.enums.SigningPhase;
+import com.training.helper.SigningDeadline;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.DispatcherType;
+
+class DeadlineInterceptorTests {
+
+	private final DeadlineInterceptor interceptor = new DeadlineInterceptor();
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@AfterEach
+	void unbind() {
+		SigningDeadline.bind(null);
+	}
+
+	@Test
+	void timeoutHeaderIsUsedWithinTheMaximum() {
+		assertEquals(5000, timeoutOf("5000"));
+		assertEquals(5000, timeoutOf(" 5000 "));
+	}
+
+	@Test
+	void invalidOrMissingTimeoutHeaderFallsBackToTheDefault() {
+		assertEquals(30000, timeoutOf(null));
+		assertEquals(30000, timeoutOf(""));
+		assertEquals(30000, timeoutOf("soon"));
+	}
+
+	@Test
+	void zeroNegativeAndExcessiveTimeoutsAreCappedAtTheMaximum() {
+		assertEquals(120000, timeoutOf("0"));
+		assertEquals(120000, timeoutOf("-1"));
+		assertEquals(120000, timeoutOf("600000"));
+	}
+
+	@Test
+	void withoutAMaximumAZeroTimeoutMeansNoDeadline() {
+		ReflectionTestUtils.setField(interceptor, "maxTimeoutMillis", 0L);
+
+		assertEquals(600000, timeoutOf("600000"));
+		interceptor.preHandle(request("0"), new MockHttpServletResponse(), null);
+		assertEquals(Long.MAX_VALUE, SigningDeadline.current().getRemainingNanos());
+	}
+
+	@Test
+	void asyncDispatchKeepsTheDeadlineOfTheOriginalRequest() {
+		MockHttpServletRequest request = request("5000");
+		request.setDispatcherType(DispatcherType.ASYNC);
+
+		interceptor.preHandle(request, new MockHttpServletResponse(), null);
+
+		assertNull(SigningDeadline.current());
+	}
+
+	@Test
+	void deadlineIsUnboundWhenTheResponseContinuesOnAnotherThread() {
+		MockHttpServletRequest request = request("5000");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		interceptor.preHandle(request, response, null);
+		SigningDeadline deadline = SigningDeadline.current();
+		assertNotNull(deadline);
+
+		interceptor.afterConcurrentHandlingStarted(request, response, null);
+		assertNull(SigningDeadline.current());
+
+		// The async dispatch completes the request with the deadline it started with
+		request.setDispatcherType(DispatcherType.ASYNC);
+		interceptor.preHandle(request, response, null);
+		assertNull(SigningDeadline.current());
+		deadline.cancel(CancellationReason.CLIENT_DISCONNECTED);
+		assertThrows(IOException.class, () -> deadline.check(SigningPhase.SAVE));
+		ReflectionTestUtils.setField(interceptor, "meterRegistry", meterRegistry);
+		interceptor.afterCompletion(request, response, null, null);
+		assertEquals(1, abandoned(SigningPhase.SAVE, CancellationReason.CLIENT_DISCONNECTED).count());
+	}
+
+	@Test
+	void deadlineIsUnboundWhenTheRequestCompletes() throws Exception {
+		ReflectionTestUtils.setField(interceptor, "meterRegistry", meterRegistry);
+		MockHttpServletRequest request = request("5000");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		interceptor.preHandle(request, response, null);
+		SigningDeadline.checkCurrent(SigningPhase.LOAD);
+
+		interceptor.afterCompletion(request, response, null, null);
+
+		assertNull(SigningDeadline.current());
+		// Completed work is not abandoned
+		assertTrue(meterRegistry.find("esign.signing.abandoned").timers().isEmpty());
+	}
+
+	@Test
+	void abandonedWorkIsTimedByPhaseAndReason() throws Exception {
+		ReflectionTestUtils.setField(interceptor, "meterRegistry", meterRegistry);
+		MockHttpServletRequest request = request("1");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		interceptor.preHandle(request, response, null);
+		SigningDeadline.checkCurrent(SigningPhase.LOAD);
+		Thread.sleep(20);
+
+		assertThrows(IOException.class, () -> SigningDeadline.checkCurrent(SigningPhase.APPEARANCE));
+		interceptor.afterCompletion(request, response, null, new IOException("abandoned"));
+
+		assertNull(SigningDeadline.current());
+		Timer timer = abandoned(SigningPhase.APPEARANCE, CancellationReason.DEADLINE_EXCEEDED);
+		assertEquals(1, timer.count());
+		assertTrue(timer.totalTime(TimeUnit.MILLISECONDS) >= 20);
+		// The deadline is only reported once
+		interceptor.afterCompletion(request, response, null, null);
+		assertSame(timer, abandoned(SigningPhase.APPEARANCE, CancellationReason.DEADLINE_EXCEEDED));
+		assertEquals(1, timer.count());
+	}
+
+	@Test
+	void disabledInterceptorBindsNoDeadline() {
+		ReflectionTestUtils.setField(interceptor, "enabled", false);
+
+		interceptor.preHandle(request("5000"), new MockHttpServletResponse(), null);
+
+		assertNull(SigningDeadline.current());
+	}
+
+	/**
+	 * Returns the timeout of the deadline bound for a request with the header, rounded up to whole seconds.
+	 */
+	private long timeoutOf(String header) {
+		interceptor.preHandle(request(header), new MockHttpServletResponse(), null);
+		long remaining = SigningDeadline.current().getRemainingNanos();
+		SigningDeadline.bind(null);
+		// A little time passed since the deadline was created
+		return (TimeUnit.NANOSECONDS.toMillis(remaining) + 999) / 1000 * 1000;
+	}
+
+	private Timer abandoned(SigningPhase phase, CancellationReason reason) {
+		return meterRegistry.get("esign.signing.abandoned").tag("phase", phase.name()).tag("reason", reason.name())
+			.timer();
+	}
+
+	private static MockHttpServletRequest request(String timeout) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/pdf/sign");
+		if (timeout != null) {
+			request.addHeader(DeadlineInterceptor.TIMEOUT_HEADER, timeout);
+		}
+		return request;
+	}
+}
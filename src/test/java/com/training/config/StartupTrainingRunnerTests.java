@@ -0,0 +1,97 @@
+package com.training.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.security.cert.CertificateException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.training.service.AcroLoadedSigningService;
+import com.training.service.AnchorPlacementService;
+import com.training.service.ContentWithLayersService;
+import com.training.service.PdfSigningService;
+import com.training.service.SyntheticWorkloadService;
+
+class StartupTrainingRunnerTests {
+
+	private final RecordingWorkloadService workload = new RecordingWorkloadService();
+
+	@AfterEach
+	void cleanUp() throws IOException {
+		workload.cleanup();
+	}
+
+	@Test
+	void trainingRunSignsTheSyntheticDocumentAndExits() throws Exception {
+		AnchorPlacementService anchorPlacementService = new AnchorPlacementService();
+		ReflectionTestUtils.setField(anchorPlacementService, "indexCacheSize", 4);
+		ReflectionTestUtils.setField(anchorPlacementService, "offsetY", 4f);
+		PdfSigningService pdfSigningService = new PdfSigningService();
+		ReflectionTestUtils.setField(pdfSigningService, "anchorPlacementService", anchorPlacementService);
+		AcroLoadedSigningService acroLoadedSigningService = new AcroLoadedSigningService();
+		ReflectionTestUtils.setField(acroLoadedSigningService, "anchorPlacementService", anchorPlacementService);
+		ContentWithLayersService contentWithLayersService = new ContentWithLayersService();
+		ReflectionTestUtils.setField(contentWithLayersService, "parallelMinPages", 16);
+		ReflectionTestUtils.setField(workload, "pdfSigningService", pdfSigningService);
+		ReflectionTestUtils.setField(workload, "acroLoadedSigningService", acroLoadedSigningService);
+		ReflectionTestUtils.setField(workload, "contentWithLayersService", contentWithLayersService);
+
+		List<String> events = new ArrayList<>();
+		workload.events = events;
+		StartupTrainingRunner runner = runner(events, true, 2);
+
+		runner.run(new DefaultApplicationArguments());
+
+		assertEquals(List.of("run", "run", "exit"), events);
+		for (long elapsed : workload.elapsed) {
+			assertTrue(elapsed > 0);
+		}
+	}
+
+	@Test
+	void regularStartupSkipsTheTrainingRun() throws Exception {
+		List<String> events = new ArrayList<>();
+		workload.events = events;
+		StartupTrainingRunner runner = runner(events, false, 3);
+
+		runner.run(new DefaultApplicationArguments());
+
+		assertTrue(events.isEmpty());
+	}
+
+	private StartupTrainingRunner runner(List<String> events, boolean trainingRun, int iterations) {
+		StartupTrainingRunner runner = new StartupTrainingRunner() {
+			@Override
+			void exit() {
+				events.add("exit");
+			}
+		};
+		ReflectionTestUtils.setField(runner, "syntheticWorkloadService", workload);
+		ReflectionTestUtils.setField(runner, "trainingRun", trainingRun);
+		ReflectionTestUtils.setField(runner, "trainingIterations", iterations);
+		return runner;
+	}
+
+	/**
+	 * Runs the real workload and records each run.
+	 */
+	private static class RecordingWorkloadService extends SyntheticWorkloadService {
+		private List<String> events;
+		private final List<Long> elapsed = new ArrayList<>();
+
+		@Override
+		public long runOnce() throws IOException, CertificateException {
+			long nanos = super.runOnce();
+			events.add("run");
+			elapsed.add(nanos);
+			return nanos;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package com.training.config;
+
+import static com.training.TestDocuments.createPdf;
+import static com.training.TestDocuments.multipartPdf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.training.enums.SignatureAppearanceType;
+import com.training.helper.CertificateHelper;
+import com.training.service.AcroLoadedSigningService;
+import com.training.service.AnchorPlacementService;
+import com.training.service.ContentWithLayersService;
+import com.training.service.PdfSigningService;
+import com.training.service.SigningAuditJournal;
+import com.training.service.SyntheticWorkloadService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class WarmupRunnerTests {
+
+	@TempDir
+	Path tempDir;
+
+	private SigningAuditJournal journal;
+	private PdfSigningService pdfSigningService;
+	private SyntheticWorkloadService workload;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		journal = new SigningAuditJournal();
+		ReflectionTestUtils.setField(journal, "journalFile", tempDir.resolve("audit.jsonl"));
+		ReflectionTestUtils.setField(journal, "maxBatchSize", 16);
+		ReflectionTestUtils.invokeMethod(journal, "start");
+
+		AnchorPlacementService anchorPlacementService = new AnchorPlacementService();
+		ReflectionTestUtils.setField(anchorPlacementService, "indexCacheSize", 4);
+		ReflectionTestUtils.setField(anchorPlacementService, "offsetY", 4f);
+		pdfSigningService = new PdfSigningService();
+		ReflectionTestUtils.setField(pdfSigningService, "anchorPlacementService", anchorPlacementService);
+		ReflectionTestUtils.setField(pdfSigningService, "signingAuditJournal", journal);
+		AcroLoadedSigningService acroLoadedSigningService = new AcroLoadedSigningService();
+		ReflectionTestUtils.setField(acroLoadedSigningService, "anchorPlacementService", anchorPlacementService);
+		ReflectionTestUtils.setField(acroLoadedSigningService, "signingAuditJournal", journal);
+		ContentWithLayersService contentWithLayersService = new ContentWithLayersService();
+		ReflectionTestUtils.setField(contentWithLayersService, "parallelMinPages", 16);
+
+		workload = new SyntheticWorkloadService();
+		ReflectionTestUtils.setField(workload, "pdfSigningService", pdfSigningService);
+		ReflectionTestUtils.setField(workload, "acroLoadedSigningService", acroLoadedSigningService);
+		ReflectionTestUtils.setField(workload, "contentWithLayersService", contentWithLayersService);
+	}
+
+	@AfterEach
+	void cleanUp() throws IOException {
+		workload.cleanup();
+		ReflectionTestUtils.invokeMethod(journal, "stop");
+	}
+
+	@Test
+	void warmupLeavesTheAuditJournalUnchanged() throws Exception {
+		WarmupRunner runner = new WarmupRunner();
+		ReflectionTestUtils.setField(runner, "syntheticWorkloadService", workload);
+		ReflectionTestUtils.setField(runner, "meterRegistry", new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(runner, "enabled", true);
+		ReflectionTestUtils.setField(runner, "window", 2);
+		ReflectionTestUtils.setField(runner, "tolerance", 0.0);
+		ReflectionTestUtils.setField(runner, "maxIterations", 2);
+		ReflectionTestUtils.setField(runner, "maxDurationSeconds", 60L);
+
+		runner.run(new DefaultApplicationArguments());
+
+		assertEquals(2, (int) ReflectionTestUtils.getField(runner, "warmupIterations"));
+		assertEquals(0, journal.verify().entries());
+
+		// The same thread signs real documents with the journal again once the warm-up is done
+		File keystore = tempDir.resolve("signer.p12").toFile();
+		CertificateHelper.createSelfSignedKeystore(keystore, "password", "signer", "Test Signer");
+		pdfSigningService.signPdf(multipartPdf(createPdf(1)), keystore.getPath(), "password", "signer", "Test Signer", "City",
+			SignatureAppearanceType.VECTOR, null, null, OutputStream.nullOutputStream());
+		assertEquals(1, journal.verify().entries());
+	}
+}
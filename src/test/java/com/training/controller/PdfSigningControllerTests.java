@@ -0,0 +1,233 @@
+package com.training.controller;
+
+import static com.training.TestDocuments.createPdf;
+import static com.training.TestDocuments.createTextPdf;
+import static com.training.TestDocuments.verify;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.training.enums.ResponseMode;
+import com.training.model.CachedPreview;
+import com.training.enums.SignatureAppearanceType;
+import com.training.helper.CertificateHelper;
+import com.training.service.AcroLoadedSigningService;
+import com.training.service.AnchorPlacementService;
+import com.training.service.IdempotentSigningService;
+import com.training.service.LinearizationService;
+import com.training.service.MemoryBudgetService;
+import com.training.service.PdfSigningService;
+import com.training.service.PreviewCacheService;
+import com.training.service.SignedDocumentStore;
+
+class PdfSigningControllerTests {
+
+	@TempDir
+	Path tempDir;
+
+	private PdfSigningController controller;
+	private Path template;
+	private byte[] original;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		File keystore = tempDir.resolve("signer.p12").toFile();
+		CertificateHelper.createSelfSignedKeystore(keystore, "password", "signer", "Test Signer");
+		original = createPdf(2);
+		template = Files.write(tempDir.resolve("template.pdf"), original);
+
+		SignedDocumentStore store = new SignedDocumentStore();
+		ReflectionTestUtils.setField(store, "storeDir", tempDir.resolve("store"));
+		ReflectionTestUtils.invokeMethod(store, "init");
+		MemoryBudgetService memoryBudgetService = new MemoryBudgetService();
+		ReflectionTestUtils.setField(memoryBudgetService, "budgetBytes", 256L * 1024 * 1024);
+		ReflectionTestUtils.invokeMethod(memoryBudgetService, "init");
+		IdempotentSigningService idempotentSigningService = new IdempotentSigningService();
+		ReflectionTestUtils.setField(idempotentSigningService, "ttlSeconds", 600L);
+		ReflectionTestUtils.setField(idempotentSigningService, "maxEntries", 16);
+
+		controller = new PdfSigningController();
+		ReflectionTestUtils.setField(controller, "pdfSigningService", new PdfSigningService());
+		ReflectionTestUtils.setField(controller, "signedDocumentStore", store);
+		ReflectionTestUtils.setField(controller, "memoryBudgetService", memoryBudgetService);
+		ReflectionTestUtils.setField(controller, "idempotentSigningService", idempotentSigningService);
+		ReflectionTestUtils.setField(controller, "certificatePath", keystore.getPath());
+		ReflectionTestUtils.setField(controller, "certificatePassword", "password");
+		ReflectionTestUtils.setField(controller, "certificateAlias", "signer");
+		ReflectionTestUtils.setField(controller, "signingTemplatePath", template.toString());
+	}
+
+	@Test
+	void fullModeStreamsTheSignedDocument() throws Exception {
+		ResponseEntity<StreamingResponseBody> response = sign(ResponseMode.FULL, null);
+
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertEquals(MediaType.APPLICATION_PDF, response.getHeaders().getContentType());
+		byte[] signed = body(response);
+		assertEquals(signed.length, response.getHeaders().getContentLength());
+		assertArrayEquals(original, Arrays.copyOf(signed, original.length));
+		assertVerifies(signed);
+		assertNotNull(response.getHeaders().getFirst("X-Document-SHA256"));
+	}
+
+	@Test
+	void deltaModeReturnsTheRevisionToAppend() throws Exception {
+		ResponseEntity<StreamingResponseBody> full = sign(ResponseMode.FULL, "full");
+		ResponseEntity<StreamingResponseBody> delta = sign(ResponseMode.DELTA, "delta");
+
+		assertEquals(HttpStatus.OK, delta.getStatusCode());
+		assertEquals(MediaType.APPLICATION_OCTET_STREAM, delta.getHeaders().getContentType());
+		assertEquals(Long.toString(original.length), delta.getHeaders().getFirst("X-Original-Length"));
+		assertNotNull(delta.getHeaders().getFirst("X-Original-SHA256"));
+		byte[] revision = body(delta);
+		assertEquals(revision.length, delta.getHeaders().getContentLength());
+
+		byte[] signed = Arrays.copyOf(original, original.length + revision.length);
+		System.arraycopy(revision, 0, signed, original.length, revision.length);
+		assertVerifies(signed);
+		// Both modes describe the same stored document
+		assertEquals(body(full).length, signed.length);
+	}
+
+	@Test
+	void linearizationLeavesTheStoredOriginalUnchanged() throws Exception {
+		LinearizationService linearizationService = new LinearizationService();
+		ReflectionTestUtils.setField(linearizationService, "enabled", true);
+		PdfSigningService pdfSigningService = new PdfSigningService();
+		ReflectionTestUtils.setField(pdfSigningService, "linearizationService", linearizationService);
+		AcroLoadedSigningService acroLoadedSigningService = new AcroLoadedSigningService();
+		ReflectionTestUtils.setField(acroLoadedSigningService, "linearizationService", linearizationService);
+		ReflectionTestUtils.setField(controller, "pdfSigningService", pdfSigningService);
+		ReflectionTestUtils.setField(controller, "acroLoadedSigningService", acroLoadedSigningService);
+
+		for (SignatureAppearanceType appearanceType : SignatureAppearanceType.values()) {
+			ResponseEntity<StreamingResponseBody> response = controller.generateAndSignPdf(appearanceType, null,
+				ResponseMode.FULL, null, null, null);
+
+			assertEquals(HttpStatus.OK, response.getStatusCode(), appearanceType.name());
+			byte[] signed = body(response);
+			// The revision is appended to the original instead of rewriting it into a linearized file
+			assertArrayEquals(original, Arrays.copyOf(signed, original.length), appearanceType.name());
+			assertVerifies(signed);
+		}
+	}
+
+	@Test
+	void anchorPlacementIndexesTheStoredOriginalOnce() throws Exception {
+		original = createTextPdf(PDRectangle.A4, "Borrower Signature", 72, 300);
+		Files.write(template, original);
+		AnchorPlacementService anchorPlacementService = new AnchorPlacementService();
+		ReflectionTestUtils.setField(anchorPlacementService, "indexCacheSize", 4);
+		ReflectionTestUtils.setField(anchorPlacementService, "offsetY", 4f);
+		PdfSigningService pdfSigningService = new PdfSigningService();
+		ReflectionTestUtils.setField(pdfSigningService, "anchorPlacementService", anchorPlacementService);
+		AcroLoadedSigningService acroLoadedSigningService = new AcroLoadedSigningService();
+		ReflectionTestUtils.setField(acroLoadedSigningService, "anchorPlacementService", anchorPlacementService);
+		ReflectionTestUtils.setField(controller, "pdfSigningService", pdfSigningService);
+		ReflectionTestUtils.setField(controller, "acroLoadedSigningService", acroLoadedSigningService);
+
+		for (SignatureAppearanceType appearanceType : List.of(SignatureAppearanceType.VECTOR, SignatureAppearanceType.OLD)) {
+			ResponseEntity<StreamingResponseBody> response = controller.generateAndSignPdf(appearanceType,
+				"Borrower Signature", ResponseMode.DELTA, null, null, null);
+
+			assertEquals(HttpStatus.OK, response.getStatusCode(), appearanceType.name());
+			byte[] revision = body(response);
+			byte[] signed = Arrays.copyOf(original, original.length + revision.length);
+			System.arraycopy(revision, 0, signed, original.length, revision.length);
+			assertVerifies(signed);
+			// The index is cached under the hash of the stored original the controller already knows
+			Map<?, ?> indexes = (Map<?, ?>) ReflectionTestUtils.getField(anchorPlacementService, "indexes");
+			assertEquals(Set.of(response.getHeaders().getFirst("X-Original-SHA256")), indexes.keySet());
+		}
+	}
+
+	@Test
+	void fullModeStreamsTheSignedSnapshotWhenTheTemplateChanges() throws Exception {
+		ResponseEntity<StreamingResponseBody> response = sign(ResponseMode.FULL, null);
+		// The template is replaced after signing but before the body is written
+		Files.write(template, createPdf(3));
+
+		byte[] signed = body(response);
+		assertEquals(signed.length, response.getHeaders().getContentLength());
+		assertArrayEquals(original, Arrays.copyOf(signed, original.length));
+		assertVerifies(signed);
+	}
+
+	@Test
+	void previewIsNotSentAgainWhileTheClientHasItsTag() throws Exception {
+		CachedPreview preview = cachedPreview();
+
+		for (String ifNoneMatch : List.of(preview.etag(), "W/" + preview.etag(), "\"other\", " + preview.etag(), "*")) {
+			ResponseEntity<byte[]> response = controller.addContentToPdfLayers("a", "b", "c", "d", ifNoneMatch);
+
+			assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode(), ifNoneMatch);
+			assertNull(response.getBody(), ifNoneMatch);
+			assertEquals(preview.etag(), response.getHeaders().getETag(), ifNoneMatch);
+		}
+	}
+
+	@Test
+	void previewIsSentWithItsTagWhenTheClientTagDiffers() throws Exception {
+		CachedPreview preview = cachedPreview();
+
+		for (String ifNoneMatch : Arrays.asList(null, "\"other\"", "W/\"other\"")) {
+			ResponseEntity<byte[]> response = controller.addContentToPdfLayers("a", "b", "c", "d", ifNoneMatch);
+
+			assertEquals(HttpStatus.OK, response.getStatusCode(), ifNoneMatch);
+			assertArrayEquals(preview.body(), response.getBody(), ifNoneMatch);
+			assertEquals(preview.etag(), response.getHeaders().getETag(), ifNoneMatch);
+			assertEquals(MediaType.APPLICATION_PDF, response.getHeaders().getContentType());
+		}
+	}
+
+	/**
+	 * Caches a preview of the layered template, so previews are served without rendering them.
+	 */
+	private CachedPreview cachedPreview() throws Exception {
+		PreviewCacheService previewCacheService = new PreviewCacheService();
+		ReflectionTestUtils.setField(controller, "previewCacheService", previewCacheService);
+		ReflectionTestUtils.setField(controller, "layeredTemplatePath", template.toString());
+		return previewCacheService.put(previewCacheService.key("layeredPage", template, "a", "b", "c", "d"), original);
+	}
+
+	private ResponseEntity<StreamingResponseBody> sign(ResponseMode responseMode, String idempotencyKey) {
+		return controller.generateAndSignPdf(SignatureAppearanceType.VECTOR, null, responseMode, null, null,
+			idempotencyKey);
+	}
+
+	private static byte[] body(ResponseEntity<StreamingResponseBody> response) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		response.getBody().writeTo(out);
+		return out.toByteArray();
+	}
+
+	private static void assertVerifies(byte[] signed) throws Exception {
+		try (PDDocument document = Loader.loadPDF(signed)) {
+			assertEquals(1, document.getSignatureDictionaries().size());
+			assertTrue(verify(document.getLastSignatureDictionary(), signed));
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package com.training.helper;
+
+import static com.training.TestDocuments.createPdf;
+import static com.training.TestDocuments.multipartPdf;
+import static com.training.TestDocuments.verify;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.apache.pdfbox.pdmodel.interactive.form.PDSignatureField;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.training.enums.RevisionFormat;
+import com.training.enums.SignatureAppearanceType;
+import com.training.service.PdfSigningService;
+
+class AppendOnlySignerTests {
+
+	@TempDir
+	File tempDir;
+
+	@ParameterizedTest
+	@ValueSource(booleans = { false, true })
+	void appendedSignaturesVerify(boolean compressed) throws Exception {
+		File keystore = new File(tempDir, "signer.p12");
+		CertificateHelper.createSelfSignedKeystore(keystore, "password", "signer", "Test Signer");
+		PdfSigningService service = new PdfSigningService();
+		ReflectionTestUtils.setField(service, "revisionFormat", RevisionFormat.APPEND);
+
+		byte[] original = createPdf(5, compressed);
+		byte[] once = service.signPdf(multipartPdf(original), keystore.getPath(), "password", "signer", "First", "City",
+			SignatureAppearanceType.VECTOR);
+		byte[] twice = service.signPdf(multipartPdf(once), keystore.getPath(), "password", "signer", "Second", "City",
+			SignatureAppearanceType.VECTOR);
+		assertArrayEquals(original, Arrays.copyOf(once, original.length));
+		assertArrayEquals(once, Arrays.copyOf(twice, once.length));
+
+		try (PDDocument document = Loader.loadPDF(twice)) {
+			assertEquals(5, document.getNumberOfPages());
+			List<PDSignature> signatures = document.getSignatureDictionaries();
+			assertEquals(2, signatures.size());
+			for (PDSignature signature : signatures) {
+				assertTrue(verify(signature, twice));
+			}
+			List<PDSignatureField> fields = document.getSignatureFields();
+			assertEquals(List.of("Signature1", "Signature2"), fields.stream().map(PDSignatureField::getPartialName).toList());
+			assertNotNull(fields.get(1).getWidgets().get(0).getNormalAppearanceStream());
+			assertEquals(2, document.getPage(0).getAnnotations().size());
+		}
+	}
+
+	@Test
+	void documentsWithBrokenCrossReferencesAreLoadedInstead() throws Exception {
+		File keystore = new File(tempDir, "signer.p12");
+		CertificateHelper.createSelfSignedKeystore(keystore, "password", "signer", "Test Signer");
+		PdfSigningService service = new PdfSigningService();
+		ReflectionTestUtils.setField(service, "revisionFormat", RevisionFormat.APPEND);
+
+		// Point startxref past the end, which the PDFBox loader repairs by scanning the document
+		byte[] valid = createPdf(2, false);
+		String text = new String(valid, StandardCharsets.ISO_8859_1);
+		int offset = text.lastIndexOf("startxref") + "startxref".length();
+		String broken = text.substring(0, offset) + text.substring(offset).replaceFirst("\\d+", "99999999");
+		byte[] original = broken.getBytes(StandardCharsets.ISO_8859_1);
+		assertThrows(IOException.class, () -> AppendOnlySigner.open(new RandomAccessReadBuffer(original)));
+
+		byte[] signed = service.signPdf(multipartPdf(original), keystore.getPath(), "password", "signer", "First",
+			"City", SignatureAppearanceType.VECTOR);
+		try (PDDocument document = Loader.loadPDF(signed)) {
+			List<PDSignature> signatures = document.getSignatureDictionaries();
+			assertEquals(1, signatures.size());
+			assertTrue(verify(signatures.get(0), signed));
+		}
+	}
+
+	@Test
+	void signingParsesTheSameObjectsForAnyPageCount() throws Exception {
+		int small = resolvedObjects(createPdf(2, true));
+		int large = resolvedObjects(createPdf(400, true));
+		assertEquals(small, large);
+		assertTrue(large < 10, "parsed " + large + " objects");
+	}
+
+	private static int resolvedObjects(byte[] pdf) throws Exception {
+		try (AppendOnlySigner signer = AppendOnlySigner.open(new RandomAccessReadBuffer(pdf));
+			 PDDocument appearanceDocument = new PDDocument()) {
+			PDRectangle rectangle = new PDRectangle(20, 20, 200, 70);
+			signer.sign(new PDSignature(), 0, rectangle,
+				SignatureAppearanceHelper.createVectorAppearance(appearanceDocument, rectangle, "Signer", "City",
+					Calendar.getInstance()),
+				64, content -> new byte[32], new ByteArrayOutputStream());
+			return signer.getResolvedObjects();
+		}
+	}
+}
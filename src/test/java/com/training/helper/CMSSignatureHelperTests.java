@@ -0,0 +1,77 @@
+package com.training.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+
+import org.bouncycastle.cms.CMSProcessableByteArray;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoVerifierBuilder;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.training.enums.DigestAlgorithm;
+import com.training.enums.SignatureProviderType;
+import com.training.model.SignatureSpec;
+
+class CMSSignatureHelperTests {
+
+	private static final byte[] CONTENT = "signed content".getBytes(StandardCharsets.UTF_8);
+
+	@TempDir
+	File tempDir;
+
+	@ParameterizedTest
+	@CsvSource({
+		"RSA, SHA256, BOUNCY_CASTLE, false, SHA256withRSA",
+		"RSA, SHA384, JDK, false, SHA384withRSA",
+		"RSA, SHA256, BOUNCY_CASTLE, true, RSASSA-PSS",
+		"RSA, SHA256, JDK, true, RSASSA-PSS",
+		"EC, SHA256, BOUNCY_CASTLE, false, SHA256withECDSA",
+		"EC, SHA512, JDK, false, SHA512withECDSA",
+		"Ed25519, SHA256, BOUNCY_CASTLE, false, Ed25519",
+		"Ed25519, SHA256, JDK, false, Ed25519"
+	})
+	void signatureAlgorithmFollowsKeyType(String keyAlgorithm, DigestAlgorithm digest, SignatureProviderType provider,
+			boolean rsaPss, String expectedAlgorithm) throws Exception {
+		File keystoreFile = new File(tempDir, keyAlgorithm + ".p12");
+		CertificateHelper.createSelfSignedKeystore(keystoreFile, "password", "test", "Test Signer", keyAlgorithm);
+		KeyStore keystore = KeyStore.getInstance("PKCS12");
+		try (InputStream in = new FileInputStream(keystoreFile)) {
+			keystore.load(in, "password".toCharArray());
+		}
+		PrivateKey privateKey = (PrivateKey) keystore.getKey("test", "password".toCharArray());
+		Certificate[] chain = keystore.getCertificateChain("test");
+		SignatureSpec spec = new SignatureSpec(digest, provider, rsaPss);
+
+		assertEquals(expectedAlgorithm, CMSSignatureHelper.resolveSignatureAlgorithm(privateKey, spec));
+
+		byte[] signature = CMSSignatureHelper.createCMSSignature(CONTENT, privateKey, chain, spec, false);
+		CMSSignedData signedData = new CMSSignedData(new CMSProcessableByteArray(CONTENT), signature);
+		SignerInformation signer = signedData.getSignerInfos().getSigners().iterator().next();
+		assertTrue(signer.verify(new JcaSimpleSignerInfoVerifierBuilder()
+			.setProvider(SecurityProviderHelper.bouncyCastle())
+			.build((X509Certificate) chain[0])));
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "Ed25519", "Ed448" })
+	void jdkEdDsaKeysResolveTheirCurve(String curve) throws Exception {
+		PrivateKey privateKey = KeyPairGenerator.getInstance(curve, "SunEC").generateKeyPair().getPrivate();
+		assertEquals("EdDSA", privateKey.getAlgorithm());
+
+		assertEquals(curve, CMSSignatureHelper.resolveSignatureAlgorithm(privateKey, SignatureSpec.DEFAULT));
+	}
+}
@@ -0,0 +1,78 @@
+package com.training.helper;
+
+import static com.training.TestDocuments.createPdf;
+import static com.training.TestDocuments.multipartPdf;
+import static com.training.TestDocuments.verify;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.apache.pdfbox.pdmodel.interactive.form.PDSignatureField;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.training.service.AcroLoadedSigningService;
+
+class CompactRevisionWriterTests {
+
+	@TempDir
+	File tempDir;
+
+	@Test
+	void secondSignatureReusesLayersAndBothVerify() throws Exception {
+		File keystore = new File(tempDir, "signer.p12");
+		CertificateHelper.createSelfSignedKeystore(keystore, "password", "signer", "Test Signer");
+		AcroLoadedSigningService service = new AcroLoadedSigningService();
+
+		byte[] original = createPdf(1);
+		byte[] once = service.signPdf(multipartPdf(original), keystore.getPath(), "password", "signer", "First",
+			"City");
+		byte[] twice = service.signPdf(multipartPdf(once), keystore.getPath(), "password", "signer", "Second", "City");
+
+		String revision = new String(Arrays.copyOfRange(twice, once.length, twice.length), StandardCharsets.ISO_8859_1);
+		assertTrue(revision.contains("/Type /XRef"));
+		assertTrue(revision.contains("/Type /ObjStm"));
+		assertFalse(revision.contains("\nxref"));
+
+		try (PDDocument document = Loader.loadPDF(twice)) {
+			List<PDSignature> signatures = document.getSignatureDictionaries();
+			assertEquals(2, signatures.size());
+			for (PDSignature signature : signatures) {
+				assertTrue(verify(signature, twice));
+			}
+
+			List<PDSignatureField> fields = document.getSignatureFields();
+			assertEquals(2, fields.size());
+			COSDictionary first = layers(fields.get(0));
+			COSDictionary second = layers(fields.get(1));
+			// The blank, background and status layers are shared, the layer with the signer is not
+			int shared = 0;
+			for (String layer : List.of("n0", "n1", "n2", "n3", "n4")) {
+				COSObject a = (COSObject) first.getItem(COSName.getPDFName(layer));
+				COSObject b = (COSObject) second.getItem(COSName.getPDFName(layer));
+				if (a.getKey().equals(b.getKey())) {
+					shared++;
+				}
+			}
+			assertEquals(4, shared);
+		}
+	}
+
+	private static COSDictionary layers(PDSignatureField field) {
+		COSStream frm = field.getWidgets().get(0).getAppearance().getNormalAppearance().getAppearanceStream()
+			.getCOSObject();
+		return frm.getCOSDictionary(COSName.RESOURCES).getCOSDictionary(COSName.XOBJECT);
+	}
+}
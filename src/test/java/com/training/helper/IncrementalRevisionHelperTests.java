@@ -0,0 +1,81 @@
+package com.training.helper;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.training.helper.IncrementalRevisionHelper.RevisionOutputStream;
+
+class IncrementalRevisionHelperTests {
+
+	@TempDir
+	File tempDir;
+
+	@Test
+	void originalAndRevisionReassembleTheIncrementalSave() throws Exception {
+		byte[] original;
+		try (PDDocument document = new PDDocument()) {
+			document.addPage(new PDPage());
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			document.save(baos);
+			original = baos.toByteArray();
+		}
+		Path originalFile = Files.write(tempDir.toPath().resolve("original.pdf"), original);
+
+		ByteArrayOutputStream full = new ByteArrayOutputStream();
+		try (PDDocument document = Loader.loadPDF(original)) {
+			document.addSignature(new PDSignature(), content -> new byte[] { 1, 2, 3 });
+			document.saveIncremental(full);
+		}
+		RevisionOutputStream revisionOutput = new RevisionOutputStream(original.length);
+		revisionOutput.write(full.toByteArray(), 0, full.size());
+
+		Path assembled = tempDir.toPath().resolve("assembled.pdf");
+		try (FileChannel target = FileChannel.open(assembled, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			IncrementalRevisionHelper.writeFullDocument(originalFile, revisionOutput.toRevision(), target);
+		}
+		assertArrayEquals(full.toByteArray(), Files.readAllBytes(assembled));
+	}
+
+	@Test
+	void shortOutputIsRejected() {
+		RevisionOutputStream output = new RevisionOutputStream(10);
+		output.write(new byte[4], 0, 4);
+		assertThrows(IOException.class, output::toRevision);
+	}
+
+	@Test
+	void prefixIsCheckedAgainstTheOriginalHash() throws Exception {
+		byte[] original = "original".getBytes(StandardCharsets.US_ASCII);
+		String sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(original));
+
+		RevisionOutputStream matching = new RevisionOutputStream(original.length, sha256);
+		matching.write(original, 0, 3);
+		for (int i = 3; i < original.length; i++) {
+			matching.write(original[i]);
+		}
+		matching.write(new byte[] { 1, 2 }, 0, 2);
+		assertArrayEquals(new byte[] { 1, 2 }, matching.toRevision());
+
+		RevisionOutputStream different = new RevisionOutputStream(original.length, sha256);
+		different.write("ORIGINAL++".getBytes(StandardCharsets.US_ASCII), 0, 10);
+		assertThrows(IOException.class, different::toRevision);
+	}
+}
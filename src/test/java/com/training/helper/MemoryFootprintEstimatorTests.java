@@ -0,0 +1,44 @@
+package com.training.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import com.training.model.MemoryFootprint;
+
+class MemoryFootprintEstimatorTests {
+
+	@Test
+	void trailerSizeDecidesTheObjectCount() {
+		MemoryFootprint footprint = MemoryFootprintEstimator.estimate(pdfWithTrailer("/Size 500"));
+
+		assertEquals(500, footprint.objects());
+		assertEquals(MemoryFootprintEstimator.BASE_BYTES + 500 * MemoryFootprintEstimator.BYTES_PER_OBJECT,
+			footprint.diskBackedBytes());
+	}
+
+	@Test
+	void unparseableSizeIsTreatedAsUnknown() {
+		byte[] pdf = pdfWithTrailer("/Size 99999999999999999999999");
+
+		MemoryFootprint footprint = MemoryFootprintEstimator.estimate(pdf);
+
+		assertEquals(MemoryFootprintEstimator.estimate(pdf.length).objects(), footprint.objects());
+	}
+
+	@Test
+	void hugeObjectCountsSaturate() {
+		MemoryFootprint footprint = MemoryFootprintEstimator.estimate(pdfWithTrailer("/Size " + Long.MAX_VALUE / 16));
+
+		assertEquals(Long.MAX_VALUE, footprint.inMemoryBytes());
+		assertEquals(Long.MAX_VALUE, footprint.diskBackedBytes());
+		assertEquals(Long.MAX_VALUE, MemoryFootprintEstimator.estimate(Long.MAX_VALUE / 2).inMemoryBytes());
+	}
+
+	private static byte[] pdfWithTrailer(String size) {
+		return ("%PDF-1.7\ntrailer\n<< " + size + " /Root 1 0 R >>\nstartxref\n0\n%%EOF\n")
+			.getBytes(StandardCharsets.ISO_8859_1);
+	}
+}
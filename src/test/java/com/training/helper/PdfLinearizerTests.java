@@ -0,0 +1,141 @@
+package com.training.helper;
+
+import static com.training.TestDocuments.createTextPdf;
+import static com.training.TestDocuments.multipartPdf;
+import static com.training.TestDocuments.verify;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.training.enums.SignatureAppearanceType;
+import com.training.service.LinearizationService;
+import com.training.service.PdfSigningService;
+
+class PdfLinearizerTests {
+
+	private static final Pattern XREF_SECTION = Pattern.compile("xref\n(\\d+) (\\d+)\n");
+
+	@TempDir
+	File tempDir;
+
+	@Test
+	void linearizedDocumentKeepsContentAndPointsAtEveryObject() throws Exception {
+		byte[] original = createTextPdf(6);
+		byte[] linearized = linearize(original);
+		String text = new String(linearized, StandardCharsets.ISO_8859_1);
+
+		try (PDDocument document = Loader.loadPDF(linearized)) {
+			assertEquals(6, document.getNumberOfPages());
+			PDFTextStripper stripper = new PDFTextStripper();
+			stripper.setStartPage(4);
+			stripper.setEndPage(4);
+			assertTrue(stripper.getText(document).contains("Page 4"));
+
+			COSDictionary parameters = document.getDocument().getLinearizedDictionary();
+			assertNotNull(parameters);
+			assertEquals(linearized.length, parameters.getLong(COSName.L));
+			assertEquals(6, parameters.getInt(COSName.N));
+			int firstPage = parameters.getInt(COSName.O);
+			assertEquals(firstPage, document.getPage(0).getCOSObject().getKey().getNumber());
+			assertTrue(parameters.getLong(COSName.E) < linearized.length);
+		}
+
+		// Both cross-reference sections must point at their objects without PDFBox's lenient repair
+		Matcher matcher = XREF_SECTION.matcher(text);
+		int sections = 0;
+		while (matcher.find()) {
+			int first = Integer.parseInt(matcher.group(1));
+			int count = Integer.parseInt(matcher.group(2));
+			for (int i = 0; i < count; i++) {
+				int row = matcher.end() + 20 * i;
+				if (text.charAt(row + 17) == 'n') {
+					int offset = Integer.parseInt(text.substring(row, row + 10));
+					assertTrue(text.startsWith((first + i) + " 0 obj", offset), "object " + (first + i));
+				}
+			}
+			sections++;
+		}
+		assertEquals(2, sections);
+	}
+
+	@Test
+	void firstSignatureIsWrittenIntoTheLinearizedFile() throws Exception {
+		File keystore = new File(tempDir, "signer.p12");
+		CertificateHelper.createSelfSignedKeystore(keystore, "password", "signer", "Test Signer");
+		PdfSigningService service = new PdfSigningService();
+		LinearizationService linearizationService = new LinearizationService();
+		ReflectionTestUtils.setField(linearizationService, "enabled", true);
+		ReflectionTestUtils.setField(service, "linearizationService", linearizationService);
+
+		byte[] once = service.signPdf(multipartPdf(createTextPdf(3)), keystore.getPath(), "password", "signer", "First",
+			"City", SignatureAppearanceType.VECTOR);
+		try (PDDocument document = Loader.loadPDF(once)) {
+			COSDictionary parameters = document.getDocument().getLinearizedDictionary();
+			assertNotNull(parameters);
+			assertEquals(once.length, parameters.getLong(COSName.L));
+			assertTrue(verify(document.getLastSignatureDictionary(), once));
+		}
+
+		// Later signatures are appended, which keeps the first one valid
+		byte[] twice = service.signPdf(multipartPdf(once), keystore.getPath(), "password", "signer", "Second", "City",
+			SignatureAppearanceType.VECTOR);
+		assertArrayEquals(once, Arrays.copyOf(twice, once.length));
+		try (PDDocument document = Loader.loadPDF(twice)) {
+			assertEquals(3, document.getNumberOfPages());
+			List<PDSignature> signatures = document.getSignatureDictionaries();
+			assertEquals(2, signatures.size());
+			for (PDSignature signature : signatures) {
+				assertTrue(verify(signature, twice));
+			}
+		}
+	}
+
+	@Test
+	void streamedUploadsAreLinearizedInTheSignatureWrite() throws Exception {
+		File keystore = new File(tempDir, "signer.p12");
+		CertificateHelper.createSelfSignedKeystore(keystore, "password", "signer", "Test Signer");
+		PdfSigningService service = new PdfSigningService();
+		LinearizationService linearizationService = new LinearizationService();
+		ReflectionTestUtils.setField(linearizationService, "enabled", true);
+		ReflectionTestUtils.setField(service, "linearizationService", linearizationService);
+
+		byte[] signed = service.signPdfStream(new ByteArrayInputStream(createTextPdf(3)), keystore.getPath(), "password",
+			"signer", "Streamed", "City", SignatureAppearanceType.VECTOR);
+		try (PDDocument document = Loader.loadPDF(signed)) {
+			COSDictionary parameters = document.getDocument().getLinearizedDictionary();
+			assertNotNull(parameters);
+			assertEquals(signed.length, parameters.getLong(COSName.L));
+			assertEquals(1, document.getSignatureDictionaries().size());
+			assertTrue(verify(document.getLastSignatureDictionary(), signed));
+		}
+	}
+
+	private static byte[] linearize(byte[] pdf) throws Exception {
+		try (PDDocument document = Loader.loadPDF(pdf)) {
+			assertTrue(PdfLinearizer.canLinearize(document));
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			PdfLinearizer.linearize(document, baos);
+			return baos.toByteArray();
+		}
+	}
+}
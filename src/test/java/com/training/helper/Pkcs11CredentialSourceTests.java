@@ -0,0 +1,146 @@
+package com.training.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.security.KeyStoreSpi;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.ProviderException;
+import java.security.SignatureException;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class Pkcs11CredentialSourceTests {
+
+	private static PrivateKey privateKey;
+	private static Certificate[] certificateChain;
+
+	private final AtomicInteger logins = new AtomicInteger();
+	private Provider token;
+
+	@BeforeAll
+	static void createKey(@TempDir File keystoreDir) throws Exception {
+		File keystoreFile = new File(keystoreDir, "token.p12");
+		CertificateHelper.createSelfSignedKeystore(keystoreFile, "password", "signer", "Token Signer");
+		KeyStore keystore = KeyStore.getInstance("PKCS12");
+		try (InputStream in = new FileInputStream(keystoreFile)) {
+			keystore.load(in, "password".toCharArray());
+		}
+		privateKey = (PrivateKey) keystore.getKey("signer", "password".toCharArray());
+		certificateChain = keystore.getCertificateChain("signer");
+	}
+
+	@BeforeEach
+	void createToken() {
+		// A token whose PKCS11 keystore counts the logins and holds one key
+		KeyStoreSpi keystore = mock(KeyStoreSpi.class, invocation -> switch (invocation.getMethod().getName()) {
+			case "engineLoad" -> {
+				logins.incrementAndGet();
+				yield null;
+			}
+			case "engineGetKey" -> privateKey;
+			case "engineGetCertificateChain" -> certificateChain;
+			default -> null;
+		});
+		token = new Provider("TestToken", "1.0", "Test PKCS#11 token") {
+			{
+				putService(new Service(this, "KeyStore", "PKCS11", KeyStoreSpi.class.getName(), null, null) {
+					@Override
+					public Object newInstance(Object constructorParameter) {
+						return keystore;
+					}
+				});
+			}
+		};
+	}
+
+	@Test
+	void tokenResetLogsInAgainAndRetries() throws Exception {
+		try (Pkcs11CredentialSource source = new Pkcs11CredentialSource(token, "1234", "signer", 2)) {
+			AtomicInteger attempts = new AtomicInteger();
+			String result = source.withKey((key, chain) -> {
+				if (attempts.getAndIncrement() == 0) {
+					throw new ProviderException("Token failed: CKR_SESSION_HANDLE_INVALID");
+				}
+				return "signed";
+			});
+
+			assertEquals("signed", result);
+			assertEquals(2, attempts.get());
+			assertEquals(2, logins.get());
+		}
+	}
+
+	@Test
+	void resetsAreFoundInTheCauseChain() throws Exception {
+		try (Pkcs11CredentialSource source = new Pkcs11CredentialSource(token, "1234", "signer", 2)) {
+			AtomicInteger attempts = new AtomicInteger();
+			source.withKey((key, chain) -> {
+				if (attempts.getAndIncrement() == 0) {
+					throw new SignatureException("Signing failed", new ProviderException("CKR_USER_NOT_LOGGED_IN"));
+				}
+				return null;
+			});
+
+			assertEquals(2, logins.get());
+		}
+	}
+
+	@Test
+	void otherFailuresAreNotRetried() throws Exception {
+		try (Pkcs11CredentialSource source = new Pkcs11CredentialSource(token, "1234", "signer", 2)) {
+			AtomicInteger attempts = new AtomicInteger();
+			IOException e = assertThrows(IOException.class, () -> source.withKey((key, chain) -> {
+				attempts.incrementAndGet();
+				throw new SignatureException("Mechanism not supported");
+			}));
+
+			assertEquals("PKCS#11 signing operation failed: Mechanism not supported", e.getMessage());
+			assertEquals(1, attempts.get());
+			assertEquals(1, logins.get());
+		}
+	}
+
+	@Test
+	void concurrentFailuresLogInOnce() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try (Pkcs11CredentialSource source = new Pkcs11CredentialSource(token, "1234", "signer", 2)) {
+			// Both operations fail on the first login before either logs in again
+			CyclicBarrier bothFailed = new CyclicBarrier(2);
+			List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < 2; i++) {
+				results.add(executor.submit(() -> source.withKey((key, chain) -> {
+					if (logins.get() == 1) {
+						bothFailed.await();
+						throw new ProviderException("CKR_DEVICE_REMOVED");
+					}
+					return "signed";
+				})));
+			}
+			for (Future<String> result : results) {
+				assertEquals("signed", result.get());
+			}
+			assertEquals(2, logins.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package com.training.helper;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.security.MessageDigest;
+
+import org.junit.jupiter.api.Test;
+
+import com.training.model.IngestedPdf;
+
+class StreamingDigestHelperTests {
+
+	@Test
+	void uploadsUpToTheLimitAreIngested() throws Exception {
+		byte[] upload = new byte[1000];
+
+		IngestedPdf ingested = StreamingDigestHelper.ingest(new ByteArrayInputStream(upload), "SHA-256", 1000);
+
+		assertArrayEquals(upload, ingested.bytes());
+		assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(upload), ingested.digest().digest());
+	}
+
+	@Test
+	void uploadsBeyondTheLimitAreRejected() {
+		assertThrows(UploadTooLargeException.class,
+			() -> StreamingDigestHelper.ingest(new ByteArrayInputStream(new byte[1001]), "SHA-256", 1000));
+	}
+}
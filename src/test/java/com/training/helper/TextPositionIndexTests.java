@@ -0,0 +1,95 @@
+package com.training.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.junit.jupiter.api.Test;
+
+class TextPositionIndexTests {
+
+	@Test
+	void findsTheFirstOccurrenceWithItsPageAndBounds() throws Exception {
+		try (PDDocument document = new PDDocument()) {
+			addPage(document, PDRectangle.LETTER, "Terms and conditions", 72, 700);
+			addPage(document, PDRectangle.LETTER, "Borrower Signature", 100, 300);
+			addPage(document, PDRectangle.LETTER, "Borrower Signature", 100, 500);
+			TextPositionIndex index = TextPositionIndex.build(document);
+
+			TextPositionIndex.AnchorMatch match = index.find("Borrower Signature").orElseThrow();
+			assertEquals(2, match.page());
+			assertEquals(100, match.bounds().getLowerLeftX(), 1);
+			// The box starts at the baseline and is about as tall as the font size
+			assertEquals(300, match.bounds().getLowerLeftY(), 1);
+			assertTrue(match.bounds().getHeight() > 5 && match.bounds().getHeight() < 14);
+			assertTrue(match.bounds().getWidth() > 80);
+			assertEquals(PDRectangle.LETTER.getWidth(), match.pageBox().getWidth(), 0.01);
+		}
+	}
+
+	@Test
+	void whitespaceInTheAnchorMatchesLineBreaks() throws Exception {
+		try (PDDocument document = new PDDocument()) {
+			PDPage page = addPage(document, PDRectangle.LETTER, "Borrower", 100, 320);
+			try (PDPageContentStream cs = new PDPageContentStream(document, page,
+					PDPageContentStream.AppendMode.APPEND, true)) {
+				showText(cs, "Signature", 100, 300);
+			}
+			TextPositionIndex index = TextPositionIndex.build(document);
+
+			TextPositionIndex.AnchorMatch match = index.find("  Borrower \n Signature ").orElseThrow();
+			assertEquals(1, match.page());
+			assertEquals(300, match.bounds().getLowerLeftY(), 1);
+			assertTrue(match.bounds().getUpperRightY() > 320);
+		}
+	}
+
+	@Test
+	void boundsAreInUserSpaceOnCroppedPages() throws Exception {
+		try (PDDocument document = new PDDocument()) {
+			PDPage page = addPage(document, new PDRectangle(0, 0, 612, 792), "Sign here", 150, 250);
+			page.setCropBox(new PDRectangle(50, 100, 400, 500));
+			TextPositionIndex index = TextPositionIndex.build(document);
+
+			TextPositionIndex.AnchorMatch match = index.find("Sign here").orElseThrow();
+			assertEquals(150, match.bounds().getLowerLeftX(), 1);
+			assertEquals(250, match.bounds().getLowerLeftY(), 1);
+			assertEquals(50, match.pageBox().getLowerLeftX(), 0.01);
+			assertEquals(600, match.pageBox().getUpperRightY(), 0.01);
+		}
+	}
+
+	@Test
+	void missingAndBlankAnchorsAreNotFound() throws Exception {
+		try (PDDocument document = new PDDocument()) {
+			addPage(document, PDRectangle.LETTER, "Borrower Signature", 100, 300);
+			TextPositionIndex index = TextPositionIndex.build(document);
+
+			assertTrue(index.find("Co-Borrower Signature").isEmpty());
+			assertTrue(index.find(" \t").isEmpty());
+		}
+	}
+
+	private static PDPage addPage(PDDocument document, PDRectangle mediaBox, String text, float x, float y)
+			throws Exception {
+		PDPage page = new PDPage(mediaBox);
+		document.addPage(page);
+		try (PDPageContentStream cs = new PDPageContentStream(document, page)) {
+			showText(cs, text, x, y);
+		}
+		return page;
+	}
+
+	private static void showText(PDPageContentStream cs, String text, float x, float y) throws Exception {
+		cs.beginText();
+		cs.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 12);
+		cs.newLineAtOffset(x, y);
+		cs.showText(text);
+		cs.endText();
+	}
+}
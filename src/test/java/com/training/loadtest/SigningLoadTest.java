@@ -0,0 +1,259 @@
+package com.training.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.training.helper.CertificateHelper;
+
+/**
+ * End-to-end load test of the signing and stamping endpoints on the embedded server.
+ * Runs with {@code mvn test -Ploadtest} and fails when a scenario regresses against the stored baseline.
+ * <p>
+ * System properties: {@code loadtest.concurrency} (8), {@code loadtest.requests} (40 per scenario),
+ * {@code loadtest.warmup} (8 requests per round), {@code loadtest.warmup-seconds} (15, the least time spent warming
+ * up each scenario), {@code loadtest.corpus-size} (24), {@code loadtest.seed} (42),
+ * {@code loadtest.threshold} (0.3, the allowed relative regression), {@code loadtest.baseline}
+ * (src/test/resources/loadtest/baseline.json) and {@code loadtest.update-baseline} (false) to store
+ * the results of this run as the new baseline.
+ */
+@Tag("loadtest")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class SigningLoadTest {
+
+	private static final int CONCURRENCY = Integer.getInteger("loadtest.concurrency", 8);
+	private static final int REQUESTS = Integer.getInteger("loadtest.requests", 40);
+	private static final int WARMUP = Integer.getInteger("loadtest.warmup", 8);
+	private static final long WARMUP_NANOS = TimeUnit.SECONDS.toNanos(Long.getLong("loadtest.warmup-seconds", 15));
+	private static final int CORPUS_SIZE = Integer.getInteger("loadtest.corpus-size", 24);
+	private static final long SEED = Long.getLong("loadtest.seed", 42);
+	private static final double THRESHOLD = Double.parseDouble(System.getProperty("loadtest.threshold", "0.3"));
+	private static final Path BASELINE = Path.of(System.getProperty("loadtest.baseline",
+		"src/test/resources/loadtest/baseline.json"));
+	private static final boolean UPDATE_BASELINE = Boolean.getBoolean("loadtest.update-baseline");
+	private static final Path REPORT = Path.of("target/loadtest/report.json");
+
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+	private static List<SyntheticPdfCorpus.Document> corpus;
+
+	/**
+	 * Latency, throughput and memory figures of one scenario.
+	 */
+	record ScenarioResult(String scenario, int requests, int errors, double p50Millis, double p90Millis,
+			double p99Millis, double maxMillis, double throughputPerSecond, long gcCount, long gcMillis,
+			long peakHeapMb) {
+	}
+
+	@LocalServerPort
+	private int port;
+
+	@DynamicPropertySource
+	static void corpusProperties(DynamicPropertyRegistry registry) throws Exception {
+		Path work = Files.createTempDirectory("esign-loadtest");
+		File keystore = work.resolve("loadtest.p12").toFile();
+		CertificateHelper.createSelfSignedKeystore(keystore, "loadtest", "loadtest", "Load Test Signer");
+		corpus = SyntheticPdfCorpus.generate(work.resolve("corpus"), CORPUS_SIZE, SEED, keystore, "loadtest", "loadtest");
+
+		// The GET endpoints serve the first unsigned multi-page document of the corpus
+		Path template = corpus.stream().filter(d -> d.pages() > 1 && !d.signed()).findFirst().orElse(corpus.get(0)).path();
+		registry.add("esign.signing.certificate-path", keystore::getAbsolutePath);
+		registry.add("esign.signing.certificate-password", () -> "loadtest");
+		registry.add("esign.signing.certificate-alias", () -> "loadtest");
+		registry.add("esign.documents.signing-template", template::toString);
+		registry.add("esign.documents.layered-template", template::toString);
+		registry.add("esign.store.dir", () -> work.resolve("store").toString());
+		registry.add("esign.audit.journal-file", () -> work.resolve("audit.jsonl").toString());
+		registry.add("esign.admission.enabled", () -> "false");
+		registry.add("esign.warmup.enabled", () -> "false");
+		registry.add("logging.level.com.training", () -> "INFO");
+		registry.add("logging.level.org.apache.pdfbox", () -> "WARN");
+	}
+
+	@Test
+	void signingEndpointsStayWithinBaseline() throws Exception {
+		HttpClient client = HttpClient.newBuilder()
+			.executor(Executors.newFixedThreadPool(CONCURRENCY))
+			.connectTimeout(Duration.ofSeconds(10))
+			.build();
+		String base = "http://localhost:" + port + "/api/pdf";
+		byte[][] bodies = new byte[corpus.size()][];
+		for (int i = 0; i < bodies.length; i++) {
+			bodies[i] = Files.readAllBytes(corpus.get(i).path());
+		}
+
+		List<ScenarioResult> results = new ArrayList<>();
+		results.add(run(client, "sign", i -> HttpRequest.newBuilder(URI.create(base
+			+ "/sign?signatureAppearanceType=VECTOR")).GET().build()));
+		results.add(run(client, "sign-delta", i -> HttpRequest.newBuilder(URI.create(base
+			+ "/sign?signatureAppearanceType=VECTOR&responseMode=DELTA")).GET().build()));
+		results.add(run(client, "layeredPage", i -> HttpRequest.newBuilder(URI.create(base
+			+ "/layeredPage?n1=Borrower&n2=Co-Borrower&n3=Guarantor&n4=Witness-" + i)).GET().build()));
+		results.add(run(client, "sign-stream-corpus", i -> HttpRequest.newBuilder(URI.create(base
+			+ "/sign/stream?signatureAppearanceType=VECTOR"))
+			.header("Content-Type", "application/pdf")
+			.POST(HttpRequest.BodyPublishers.ofByteArray(bodies[i % bodies.length])).build()));
+
+		System.out.printf("%-20s %8s %6s %9s %9s %9s %9s %10s %6s %8s %9s%n", "scenario", "requests", "errors",
+			"p50 ms", "p90 ms", "p99 ms", "max ms", "req/s", "GCs", "GC ms", "heap MB");
+		for (ScenarioResult r : results) {
+			System.out.printf("%-20s %8d %6d %9.1f %9.1f %9.1f %9.1f %10.1f %6d %8d %9d%n", r.scenario(), r.requests(),
+				r.errors(), r.p50Millis(), r.p90Millis(), r.p99Millis(), r.maxMillis(), r.throughputPerSecond(),
+				r.gcCount(), r.gcMillis(), r.peakHeapMb());
+		}
+		Files.createDirectories(REPORT.getParent());
+		OBJECT_MAPPER.writeValue(REPORT.toFile(), results);
+
+		if (UPDATE_BASELINE) {
+			Map<String, ScenarioResult> baseline = new LinkedHashMap<>();
+			results.forEach(r -> baseline.put(r.scenario(), r));
+			Files.createDirectories(BASELINE.toAbsolutePath().getParent());
+			OBJECT_MAPPER.writeValue(BASELINE.toFile(), baseline);
+			System.out.println("Stored baseline " + BASELINE);
+		}
+		assertWithinBaseline(results);
+	}
+
+	private ScenarioResult run(HttpClient client, String scenario, IntFunction<HttpRequest> requests) throws Exception {
+		// Warm up the JIT and caches before measuring. Warming up for a minimum time rather than a number of requests
+		// keeps a scenario that follows a short one from being measured while the compiler is still busy, and the
+		// warm-up requests are numbered after the measured ones, so they do not fill caches for them
+		long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+		int round = 0;
+		do {
+			int offset = REQUESTS + round++ * WARMUP;
+			drive(client, WARMUP, i -> requests.apply(offset + i), new long[WARMUP]);
+		} while (System.nanoTime() < warmupEnd);
+		System.gc();
+
+		long gcCountBefore = gcCount();
+		long gcMillisBefore = gcMillis();
+		List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+			.filter(pool -> pool.getType() == MemoryType.HEAP).toList();
+		heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+		long[] latencies = new long[REQUESTS];
+		long start = System.nanoTime();
+		int errors = drive(client, REQUESTS, requests, latencies);
+		double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+		long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+		Arrays.sort(latencies);
+		return new ScenarioResult(scenario, REQUESTS, errors, percentile(latencies, 0.50), percentile(latencies, 0.90),
+			percentile(latencies, 0.99), latencies[latencies.length - 1] / 1_000_000.0, REQUESTS / seconds,
+			gcCount() - gcCountBefore, gcMillis() - gcMillisBefore, peakHeap / (1024 * 1024));
+	}
+
+	/**
+	 * Sends the requests from a fixed number of workers, each sending its next request when the previous completes.
+	 */
+	private int drive(HttpClient client, int count, IntFunction<HttpRequest> requests, long[] latencies) throws Exception {
+		AtomicInteger next = new AtomicInteger();
+		AtomicInteger errors = new AtomicInteger();
+		ExecutorService workers = Executors.newFixedThreadPool(CONCURRENCY);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int w = 0; w < CONCURRENCY; w++) {
+				futures.add(workers.submit(() -> {
+					int i;
+					while ((i = next.getAndIncrement()) < count) {
+						long start = System.nanoTime();
+						HttpResponse<byte[]> response = client.send(requests.apply(i), HttpResponse.BodyHandlers.ofByteArray());
+						latencies[i] = System.nanoTime() - start;
+						if (response.statusCode() != 200 || response.body().length == 0) {
+							if (errors.getAndIncrement() == 0) {
+								System.out.println("First failed request: HTTP " + response.statusCode() + ", "
+									+ response.body().length + " bytes");
+							}
+						}
+					}
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			workers.shutdownNow();
+		}
+		return errors.get();
+	}
+
+	private void assertWithinBaseline(List<ScenarioResult> results) throws Exception {
+		List<String> failures = new ArrayList<>();
+		for (ScenarioResult r : results) {
+			if (r.errors() > 0) {
+				failures.add(r.scenario() + ": " + r.errors() + " failed requests");
+			}
+		}
+		if (!Files.exists(BASELINE)) {
+			System.out.println("No baseline at " + BASELINE + ", run with -Dloadtest.update-baseline=true to store one");
+		} else {
+			Map<String, ScenarioResult> baseline = OBJECT_MAPPER.readValue(BASELINE.toFile(),
+				new TypeReference<Map<String, ScenarioResult>>() { });
+			for (ScenarioResult r : results) {
+				ScenarioResult b = baseline.get(r.scenario());
+				if (b == null) {
+					continue;
+				}
+				if (r.p50Millis() > b.p50Millis() * (1 + THRESHOLD)) {
+					failures.add(String.format("%s: p50 %.1f ms exceeds baseline %.1f ms", r.scenario(), r.p50Millis(), b.p50Millis()));
+				}
+				if (r.p99Millis() > b.p99Millis() * (1 + THRESHOLD)) {
+					failures.add(String.format("%s: p99 %.1f ms exceeds baseline %.1f ms", r.scenario(), r.p99Millis(), b.p99Millis()));
+				}
+				if (r.throughputPerSecond() < b.throughputPerSecond() * (1 - THRESHOLD)) {
+					failures.add(String.format("%s: %.1f req/s is below baseline %.1f req/s", r.scenario(),
+						r.throughputPerSecond(), b.throughputPerSecond()));
+				}
+			}
+		}
+		assertTrue(failures.isEmpty(), "Load test regressed by more than " + (int) (THRESHOLD * 100) + "%:\n"
+			+ String.join("\n", failures));
+	}
+
+	private static double percentile(long[] sorted, double percentile) {
+		int index = (int) Math.ceil(percentile * sorted.length) - 1;
+		return sorted[Math.max(0, index)] / 1_000_000.0;
+	}
+
+	private static long gcCount() {
+		return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+	}
+
+	private static long gcMillis() {
+		return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+	}
+}
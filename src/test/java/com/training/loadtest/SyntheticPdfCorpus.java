@@ -0,0 +1,148 @@
+package com.training.loadtest;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationWidget;
+import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
+import org.apache.pdfbox.pdmodel.interactive.form.PDTextField;
+import org.springframework.mock.web.MockMultipartFile;
+
+import com.training.service.PdfSigningService;
+
+/**
+ * Generates a reproducible corpus of synthetic PDFs for the load test. The same seed always gives
+ * the same mix of page counts, embedded image sizes, AcroForms and existing signatures.
+ */
+final class SyntheticPdfCorpus {
+
+	private static final int[] PAGE_COUNTS = { 1, 3, 10, 40 };
+	private static final int[] IMAGE_SIZES = { 0, 0, 256, 768 };
+
+	/**
+	 * A generated document and the features it was generated with.
+	 */
+	record Document(Path path, int pages, int imageSize, boolean acroForm, boolean signed) {
+	}
+
+	private SyntheticPdfCorpus() {
+	}
+
+	/**
+	 * Writes the corpus to a directory.
+	 *
+	 * @param directory The directory to write the documents to
+	 * @param count The number of documents
+	 * @param seed The random seed
+	 * @param keystore A keystore used to sign the documents that carry an existing signature
+	 * @param password The keystore password
+	 * @param alias The key alias
+	 * @return The generated documents
+	 */
+	static List<Document> generate(Path directory, int count, long seed, File keystore, String password,
+			String alias) throws Exception {
+		Files.createDirectories(directory);
+		Random random = new Random(seed);
+		PdfSigningService signer = new PdfSigningService();
+		List<Document> documents = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			int pages = PAGE_COUNTS[random.nextInt(PAGE_COUNTS.length)];
+			int imageSize = IMAGE_SIZES[random.nextInt(IMAGE_SIZES.length)];
+			boolean acroForm = random.nextInt(3) == 0;
+			boolean signed = random.nextInt(4) == 0;
+
+			byte[] pdf = createDocument(random, i, pages, imageSize, acroForm);
+			if (signed) {
+				pdf = signer.signPdf(new MockMultipartFile("file", "corpus.pdf", "application/pdf", pdf),
+					keystore.getAbsolutePath(), password, alias, "Earlier Signer", "Elsewhere");
+			}
+			Path path = directory.resolve(String.format("corpus-%03d.pdf", i));
+			Files.write(path, pdf);
+			documents.add(new Document(path, pages, imageSize, acroForm, signed));
+		}
+		return documents;
+	}
+
+	private static byte[] createDocument(Random random, int index, int pages, int imageSize, boolean acroForm)
+			throws IOException {
+		try (PDDocument document = new PDDocument()) {
+			PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+			PDImageXObject image = null;
+			if (imageSize > 0) {
+				// Noise does not compress, so the image size controls the document size
+				BufferedImage noise = new BufferedImage(imageSize, imageSize, BufferedImage.TYPE_INT_RGB);
+				for (int y = 0; y < imageSize; y++) {
+					for (int x = 0; x < imageSize; x++) {
+						noise.setRGB(x, y, random.nextInt(0x1000000));
+					}
+				}
+				image = LosslessFactory.createFromImage(document, noise);
+			}
+			for (int p = 0; p < pages; p++) {
+				PDPage page = new PDPage(PDRectangle.A4);
+				document.addPage(page);
+				try (PDPageContentStream cs = new PDPageContentStream(document, page)) {
+					cs.beginText();
+					cs.setFont(font, 11);
+					cs.newLineAtOffset(72, 760);
+					cs.setLeading(14);
+					for (int line = 0; line < 40; line++) {
+						cs.showText("Agreement " + index + " page " + (p + 1) + " clause " + (line + 1)
+							+ " reference " + Long.toHexString(random.nextLong()));
+						cs.newLine();
+					}
+					cs.endText();
+					if (image != null && p == 0) {
+						cs.drawImage(image, 72, 72, 200, 200);
+					}
+				}
+			}
+			if (acroForm) {
+				addForm(document, font);
+			}
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			document.save(baos);
+			return baos.toByteArray();
+		}
+	}
+
+	private static void addForm(PDDocument document, PDType1Font font) throws IOException {
+		PDAcroForm form = new PDAcroForm(document);
+		document.getDocumentCatalog().setAcroForm(form);
+		PDResources resources = new PDResources();
+		resources.put(COSName.getPDFName("Helv"), font);
+		form.setDefaultResources(resources);
+		form.setDefaultAppearance("/Helv 10 Tf 0 g");
+
+		PDPage page = document.getPage(0);
+		String[] names = { "borrower", "amount", "date" };
+		for (int i = 0; i < names.length; i++) {
+			PDTextField field = new PDTextField(form);
+			field.setPartialName(names[i]);
+			PDAnnotationWidget widget = field.getWidgets().get(0);
+			widget.setRectangle(new PDRectangle(320, 700 - i * 30, 200, 20));
+			widget.setPage(page);
+			widget.setPrinted(true);
+			page.getAnnotations().add(widget);
+			form.getFields().add(field);
+			field.setValue(names[i] + " value");
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package com.training.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.training.model.AdmissionDecision;
+import com.training.model.AdmissionLimits;
+
+class AdmissionControlServiceTests {
+
+	private AdmissionControlService service;
+
+	@BeforeEach
+	void setUp() {
+		service = new AdmissionControlService();
+		ReflectionTestUtils.setField(service, "tenantRequestsPerSecond", 1.0);
+		ReflectionTestUtils.setField(service, "tenantBurst", 5);
+		ReflectionTestUtils.setField(service, "tenantMaxConcurrent", 0);
+		ReflectionTestUtils.setField(service, "credentialRequestsPerSecond", 0.0);
+		ReflectionTestUtils.setField(service, "credentialMaxConcurrent", 2);
+	}
+
+	@Test
+	void burstIsAdmittedConcurrentlyAndThenLimited() throws Exception {
+		AtomicInteger admitted = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<AdmissionDecision>> decisions = new ArrayList<>();
+			for (int i = 0; i < 50; i++) {
+				decisions.add(executor.submit(() -> service.admit("bulk", null)));
+			}
+			for (Future<AdmissionDecision> decision : decisions) {
+				if (decision.get().admitted()) {
+					admitted.incrementAndGet();
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(5, admitted.get());
+
+		AdmissionDecision rejected = service.admit("bulk", null);
+		assertFalse(rejected.admitted());
+		assertEquals("tenant", rejected.rejectedBy());
+		assertEquals(5, rejected.limit());
+		assertTrue(rejected.retryAfterSeconds() >= 1);
+
+		// Another tenant is unaffected
+		AdmissionDecision interactive = service.admit("interactive", null);
+		assertTrue(interactive.admitted());
+		assertEquals(4, interactive.remaining());
+	}
+
+	@Test
+	void credentialConcurrencyIsReleasedAndLimitsChangeAtRuntime() {
+		assertTrue(service.admit("a", "key").admitted());
+		assertTrue(service.admit("b", "key").admitted());
+		AdmissionDecision third = service.admit("c", "key");
+		assertFalse(third.admitted());
+		assertEquals("credential", third.rejectedBy());
+
+		service.release("a", "key");
+		assertTrue(service.admit("c", "key").admitted());
+
+		service.setCredentialLimits("key", new AdmissionLimits(100, 100, 3));
+		assertTrue(service.admit("d", "key").admitted());
+		assertFalse(service.admit("e", "key").admitted());
+
+		assertThrows(IllegalArgumentException.class, () -> service.setTenantLimits("f", new AdmissionLimits(0, 0, 0)));
+		assertThrows(IllegalArgumentException.class, () -> service.setCredentialLimits("key", new AdmissionLimits(1, -1, 1)));
+		assertFalse(service.isKnownTenant("f"));
+	}
+
+	@Test
+	void credentialRejectionsReportTheCredentialBucket() {
+		service.setCredentialLimits("key", new AdmissionLimits(1, 2, 10));
+		assertTrue(service.admit("a", "key").admitted());
+		assertTrue(service.admit("b", "key").admitted());
+
+		AdmissionDecision rejected = service.admit("c", "key");
+		assertFalse(rejected.admitted());
+		assertEquals("credential", rejected.rejectedBy());
+		assertEquals(2, rejected.limit());
+		assertEquals(0, rejected.remaining());
+	}
+
+	@Test
+	void onlyConfiguredOrOverriddenTenantsAreKnown() {
+		ReflectionTestUtils.setField(service, "knownTenants", Set.of("bulk"));
+		assertTrue(service.isKnownTenant("bulk"));
+		assertFalse(service.isKnownTenant("random"));
+
+		service.setTenantLimits("interactive", new AdmissionLimits(10, 10, 4));
+		assertTrue(service.isKnownTenant("interactive"));
+		service.resetTenantLimits("interactive");
+		assertFalse(service.isKnownTenant("interactive"));
+	}
+}
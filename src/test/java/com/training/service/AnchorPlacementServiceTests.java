@@ -0,0 +1,77 @@
+package com.training.service;
+
+import static com.training.TestDocuments.createTextPdf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.training.model.SignaturePlacement;
+
+class AnchorPlacementServiceTests {
+
+	private AnchorPlacementService service;
+
+	@BeforeEach
+	void setUp() {
+		service = new AnchorPlacementService();
+		ReflectionTestUtils.setField(service, "indexCacheSize", 2);
+		ReflectionTestUtils.setField(service, "offsetX", 0f);
+		ReflectionTestUtils.setField(service, "offsetY", 4f);
+	}
+
+	@Test
+	void placesTheFieldAboveTheAnchor() throws Exception {
+		byte[] pdf = createTextPdf(PDRectangle.LETTER, "Borrower Signature", 100, 300);
+
+		SignaturePlacement placement = service.placeAboveAnchor(pdf, "Borrower Signature", 200, 70);
+
+		assertEquals(1, placement.page());
+		assertEquals(100, placement.x(), 1);
+		// Just above the top of the anchor glyphs
+		assertEquals(313, placement.y(), 3);
+		assertEquals(200, placement.width());
+		assertEquals(70, placement.height());
+	}
+
+	@Test
+	void keepsTheFieldInsideThePageNearItsEdges() throws Exception {
+		byte[] pdf = createTextPdf(PDRectangle.LETTER, "Borrower Signature", 500, 760);
+
+		SignaturePlacement placement = service.placeAboveAnchor(pdf, "Borrower Signature", 200, 70);
+
+		assertEquals(PDRectangle.LETTER.getWidth() - 200, placement.x(), 0.01);
+		assertEquals(PDRectangle.LETTER.getHeight() - 70, placement.y(), 0.01);
+	}
+
+	@Test
+	void keepsTheFieldInsideAShiftedPageBox() throws Exception {
+		byte[] pdf = createTextPdf(new PDRectangle(100, 200, 400, 300), "Borrower Signature", 150, 480);
+
+		SignaturePlacement placement = service.placeAboveAnchor(pdf, "Borrower Signature", 200, 70);
+
+		assertEquals(150, placement.x(), 1);
+		assertEquals(200 + 300 - 70, placement.y(), 0.01);
+	}
+
+	@Test
+	void reusesTheIndexOfTheSameTemplate() throws Exception {
+		byte[] pdf = createTextPdf(PDRectangle.LETTER, "Borrower Signature", 100, 300);
+
+		assertSame(service.getIndex(pdf), service.getIndex(pdf.clone()));
+	}
+
+	@Test
+	void missingAnchorIsAnError() throws Exception {
+		byte[] pdf = createTextPdf(PDRectangle.LETTER, "Borrower Signature", 100, 300);
+
+		assertThrows(IOException.class, () -> service.placeAboveAnchor(pdf, "Lender Signature", 200, 70));
+	}
+
+}
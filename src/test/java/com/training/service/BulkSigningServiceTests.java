@@ -0,0 +1,66 @@
+package com.training.service;
+
+import static com.training.TestDocuments.createPdf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.training.helper.CertificateHelper;
+import com.training.model.BulkRunSummary;
+
+class BulkSigningServiceTests {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void signsDirectoryTreeAndResumesFromCheckpoint() throws Exception {
+		File keystore = tempDir.resolve("signer.p12").toFile();
+		CertificateHelper.createSelfSignedKeystore(keystore, "password", "signer", "Bulk Signer");
+		Path input = Files.createDirectories(tempDir.resolve("archive/2024"));
+		createPdf(input.resolve("a.pdf"), 1);
+		createPdf(Files.createDirectories(input.resolve("march")).resolve("b.PDF"), 1);
+		Files.writeString(input.resolve("notes.txt"), "not a document");
+		Path output = tempDir.resolve("signed");
+
+		BulkSigningService service = new BulkSigningService();
+		ReflectionTestUtils.setField(service, "pdfSigningService", new PdfSigningService());
+		ReflectionTestUtils.setField(service, "parallelism", 2);
+		ReflectionTestUtils.setField(service, "certificatePath", keystore.getPath());
+		ReflectionTestUtils.setField(service, "certificatePassword", "password");
+		ReflectionTestUtils.setField(service, "certificateAlias", "signer");
+
+		BulkRunSummary first = service.run(List.of(input), output);
+		assertEquals(2, first.processed());
+		assertEquals(0, first.failed());
+		for (Path signed : List.of(output.resolve("a.pdf"), output.resolve("march/b.PDF"))) {
+			try (PDDocument document = Loader.loadPDF(signed.toFile())) {
+				assertEquals(1, document.getSignatureDictionaries().size());
+			}
+		}
+		try (Stream<Path> files = Files.walk(output)) {
+			assertFalse(files.anyMatch(file -> file.toString().endsWith(".part")));
+		}
+
+		// Drop the last checkpoint entry as if the run had crashed after moving that output into place
+		Path checkpoint = output.resolve(".esign-bulk-checkpoint");
+		List<String> completed = Files.readAllLines(checkpoint);
+		Files.write(checkpoint, completed.subList(0, 1));
+
+		BulkRunSummary resumed = service.run(List.of(input), output);
+		assertEquals(1, resumed.processed());
+		assertEquals(1, resumed.skipped());
+		assertEquals(2, Files.readAllLines(checkpoint).size());
+	}
+}
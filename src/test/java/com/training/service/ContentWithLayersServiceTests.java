@@ -0,0 +1,93 @@
+package com.training.service;
+
+import static com.training.TestDocuments.createPdf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.graphics.optionalcontent.PDOptionalContentGroup;
+import org.apache.pdfbox.pdmodel.graphics.optionalcontent.PDOptionalContentProperties;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.training.enums.StampingMode;
+import com.training.helper.LayerContentStreamHelper;
+
+class ContentWithLayersServiceTests {
+
+	@ParameterizedTest
+	@EnumSource(StampingMode.class)
+	void stampsEveryPageOnTheLayers(StampingMode mode) throws Exception {
+		ContentWithLayersService service = new ContentWithLayersService();
+		// AUTO switches to the parallel path at this page count
+		ReflectionTestUtils.setField(service, "parallelMinPages", 4);
+
+		byte[] stamped = service.addLayersToAllPages(createPdf(5), "Page {page} of {pages}", "n2", "n3", "n4", mode);
+
+		try (PDDocument document = Loader.loadPDF(stamped)) {
+			PDOptionalContentProperties ocProperties = document.getDocumentCatalog().getOCProperties();
+			assertNotNull(ocProperties);
+			List<String> names = new ArrayList<>();
+			for (PDOptionalContentGroup group : ocProperties.getOptionalContentGroups()) {
+				names.add(group.getName());
+			}
+			assertEquals(List.of("n1", "n2", "n3", "n4"), names);
+
+			PDFTextStripper stripper = new PDFTextStripper();
+			for (int i = 1; i <= 5; i++) {
+				stripper.setStartPage(i);
+				stripper.setEndPage(i);
+				String text = stripper.getText(document);
+				assertTrue(text.contains("Page " + i + " of 5"), text);
+				assertTrue(text.contains("n4"), text);
+
+				COSDictionary properties = document.getPage(i - 1).getResources().getCOSObject()
+					.getCOSDictionary(COSName.PROPERTIES);
+				assertNotNull(properties);
+				assertEquals(4, properties.size());
+			}
+		}
+	}
+
+	@ParameterizedTest
+	@EnumSource(StampingMode.class)
+	void pagesWithClashingResourceNamesKeepTheirResources(StampingMode mode) throws Exception {
+		byte[] pdf;
+		try (PDDocument document = Loader.loadPDF(createPdf(2))) {
+			// Bind the name the generated content streams use for n1 to something else
+			PDResources resources = new PDResources();
+			resources.put(LayerContentStreamHelper.propertiesName("n1"),
+				new PDOptionalContentGroup("unrelated"));
+			document.getPage(1).setResources(resources);
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			document.save(baos);
+			pdf = baos.toByteArray();
+		}
+
+		byte[] stamped = new ContentWithLayersService().addLayersToAllPages(pdf, "Page {page} of {pages}", "n2",
+			"n3", "n4", mode);
+
+		try (PDDocument document = Loader.loadPDF(stamped)) {
+			COSDictionary properties = document.getPage(1).getResources().getCOSObject()
+				.getCOSDictionary(COSName.PROPERTIES);
+			COSDictionary clashing = properties.getCOSDictionary(LayerContentStreamHelper.propertiesName("n1"));
+			assertEquals("unrelated", clashing.getString(COSName.NAME));
+
+			PDFTextStripper stripper = new PDFTextStripper();
+			stripper.setStartPage(2);
+			stripper.setEndPage(2);
+			assertTrue(stripper.getText(document).contains("Page 2 of 2"));
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package com.training.service;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.cert.X509Certificate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.training.helper.CertificateHelper;
+import com.training.helper.CredentialSource;
+
+class CredentialSourceRegistryTests {
+
+	@TempDir
+	Path tempDir;
+
+	private final CredentialSourceRegistry registry = new CredentialSourceRegistry();
+	private Path keystore;
+
+	@BeforeEach
+	void createKeystore() throws Exception {
+		keystore = tempDir.resolve("signer.p12");
+		CertificateHelper.createSelfSignedKeystore(keystore.toFile(), "password", "signer", "First Signer");
+	}
+
+	@Test
+	void sourcesAreSharedUntilTheKeystoreChanges() throws Exception {
+		CredentialSource first = registry.resolve(keystore.toString(), "password", "signer");
+		assertSame(first, registry.resolve(keystore.toString(), "password", "signer"));
+
+		CertificateHelper.createSelfSignedKeystore(keystore.toFile(), "password", "signer", "Second Signer");
+		Files.setLastModifiedTime(keystore, FileTime.fromMillis(Files.getLastModifiedTime(keystore).toMillis() + 10000));
+
+		CredentialSource second = registry.resolve(keystore.toString(), "password", "signer");
+		assertNotSame(first, second);
+		assertTrue(subject(second).contains("Second Signer"), subject(second));
+		assertSame(second, registry.resolve(keystore.toString(), "password", "signer"));
+	}
+
+	@Test
+	void aDifferentPasswordIsCheckedAgainstTheKeystore() throws Exception {
+		CredentialSource source = registry.resolve(keystore.toString(), "password", "signer");
+
+		assertThrows(IOException.class, () -> registry.resolve(keystore.toString(), "wrong", "signer"));
+		assertSame(source, registry.resolve(keystore.toString(), "password", "signer"));
+	}
+
+	@Test
+	void eachKeystoreHasItsOwnSource() throws Exception {
+		Path other = tempDir.resolve("other.p12");
+		CertificateHelper.createSelfSignedKeystore(other.toFile(), "password", "signer", "Other Signer");
+
+		assertNotSame(registry.resolve(keystore.toString(), "password", "signer"),
+			registry.resolve(other.toString(), "password", "signer"));
+	}
+
+	private static String subject(CredentialSource source) {
+		return ((X509Certificate) source.getCertificateChain()[0]).getSubjectX500Principal().getName();
+	}
+}
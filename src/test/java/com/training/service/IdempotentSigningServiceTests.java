@@ -0,0 +1,177 @@
+package com.training.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.training.enums.CancellationReason;
+import com.training.enums.SigningPhase;
+import com.training.helper.SigningDeadline;
+
+class IdempotentSigningServiceTests {
+
+	private IdempotentSigningService service;
+
+	@BeforeEach
+	void setUp() {
+		service = new IdempotentSigningService();
+		ReflectionTestUtils.setField(service, "ttlSeconds", 600L);
+		ReflectionTestUtils.setField(service, "maxEntries", 2);
+	}
+
+	@Test
+	void concurrentRequestsShareOneSigningOperation() throws Exception {
+		AtomicInteger invocations = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			Future<byte[]> first = executor.submit(() -> service.execute("key", () -> {
+				invocations.incrementAndGet();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				return new byte[] { 1, 2, 3 };
+			}));
+			// Give the first request time to register the key
+			while (invocations.get() == 0) {
+				Thread.onSpinWait();
+			}
+			Future<byte[]> second = executor.submit(() -> service.execute("key", () -> {
+				invocations.incrementAndGet();
+				return new byte[] { 9 };
+			}));
+			release.countDown();
+
+			assertArrayEquals(new byte[] { 1, 2, 3 }, first.get());
+			assertArrayEquals(new byte[] { 1, 2, 3 }, second.get());
+			assertEquals(1, invocations.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void errorsReleaseWaitingRequests() throws Exception {
+		CountDownLatch joined = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<byte[]> first = executor.submit(() -> service.execute("key", () -> {
+				try {
+					joined.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				throw new StackOverflowError("boom");
+			}));
+			Future<byte[]> second = executor.submit(() -> {
+				// The first request holds the key until the second one is waiting for it
+				while (ReflectionTestUtils.getField(service, "entries") instanceof Map<?, ?> entries && entries.isEmpty()) {
+					Thread.onSpinWait();
+				}
+				joined.countDown();
+				return service.execute("key", () -> new byte[] { 9 });
+			});
+
+			ExecutionException firstFailure = assertThrows(ExecutionException.class, () -> first.get(10, TimeUnit.SECONDS));
+			assertInstanceOf(StackOverflowError.class, firstFailure.getCause());
+			// The second request either shared the error or ran after the key was released, but never blocks
+			try {
+				assertArrayEquals(new byte[] { 9 }, second.get(10, TimeUnit.SECONDS));
+			} catch (ExecutionException e) {
+				assertInstanceOf(StackOverflowError.class, e.getCause());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void waitersRetryWhenTheOwnerAbandons() throws Exception {
+		CountDownLatch joined = new CountDownLatch(1);
+		AtomicInteger invocations = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<byte[]> first = executor.submit(() -> {
+				SigningDeadline deadline = new SigningDeadline(0);
+				SigningDeadline.bind(deadline);
+				try {
+					return service.execute("key", () -> {
+						invocations.incrementAndGet();
+						try {
+							joined.await();
+						} catch (InterruptedException e) {
+							throw new IOException(e);
+						}
+						// The owner's client disconnects, which abandons its work at the next check
+						deadline.cancel(CancellationReason.CLIENT_DISCONNECTED);
+						deadline.check(SigningPhase.SIGN);
+						return new byte[] { 1 };
+					});
+				} finally {
+					SigningDeadline.bind(null);
+				}
+			});
+			while (invocations.get() == 0) {
+				Thread.onSpinWait();
+			}
+			Future<byte[]> second = executor.submit(() -> {
+				SigningDeadline.bind(new SigningDeadline(10_000));
+				try {
+					return service.execute("key", () -> {
+						invocations.incrementAndGet();
+						return new byte[] { 2 };
+					});
+				} finally {
+					SigningDeadline.bind(null);
+				}
+			});
+			while (((Map<?, ?>) ReflectionTestUtils.getField(service, "entries")).values().stream()
+					.noneMatch(entry -> ((CompletableFuture<?>) ReflectionTestUtils.getField(entry, "result"))
+						.getNumberOfDependents() > 0)) {
+				Thread.onSpinWait();
+			}
+			joined.countDown();
+
+			ExecutionException abandoned = assertThrows(ExecutionException.class, () -> first.get(10, TimeUnit.SECONDS));
+			assertInstanceOf(IOException.class, abandoned.getCause());
+			assertArrayEquals(new byte[] { 2 }, second.get(10, TimeUnit.SECONDS));
+			assertEquals(2, invocations.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void failuresAreNotCached() throws Exception {
+		assertThrows(IOException.class, () -> service.execute("key", () -> {
+			throw new IOException("boom");
+		}));
+		assertArrayEquals(new byte[] { 7 }, service.execute("key", () -> new byte[] { 7 }));
+	}
+
+	@Test
+	void expiredResultsAreSignedAgain() throws Exception {
+		ReflectionTestUtils.setField(service, "ttlSeconds", 0L);
+		service.execute("key", () -> new byte[] { 1 });
+		Thread.sleep(1);
+		assertArrayEquals(new byte[] { 2 }, service.execute("key", () -> new byte[] { 2 }));
+	}
+}
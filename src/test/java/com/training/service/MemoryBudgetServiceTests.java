@@ -0,0 +1,95 @@
+package com.training.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.training.enums.MemoryMode;
+import com.training.model.MemoryFootprint;
+import com.training.service.MemoryBudgetService.Reservation;
+
+class MemoryBudgetServiceTests {
+
+	private MemoryBudgetService service;
+
+	@BeforeEach
+	void setUp() {
+		service = new MemoryBudgetService();
+		ReflectionTestUtils.setField(service, "budgetBytes", 1000L);
+		ReflectionTestUtils.setField(service, "maxWaitMillis", 100L);
+		service.init();
+	}
+
+	@Test
+	void exhaustedBudgetSpillsQueuesAndRejects() throws Exception {
+		MemoryFootprint footprint = new MemoryFootprint(100, 10, 600, 100);
+
+		try (Reservation first = service.reserve(footprint, false)) {
+			assertEquals(MemoryMode.MEMORY, first.mode());
+			assertEquals(600, service.getReservedBytes());
+
+			// A request that can run from disk reserves its smaller disk-backed footprint
+			Reservation spilled = service.reserve(footprint, true);
+			assertEquals(MemoryMode.DISK, spilled.mode());
+			assertEquals(700, service.getReservedBytes());
+			spilled.close();
+			spilled.close();
+			assertEquals(600, service.getReservedBytes());
+
+			// Otherwise it waits and is rejected when nothing is released in time
+			Reservation rejected = service.reserve(footprint, false);
+			assertEquals(MemoryMode.REJECTED, rejected.mode());
+			rejected.close();
+			assertEquals(600, service.getReservedBytes());
+		}
+		assertEquals(0, service.getReservedBytes());
+	}
+
+	@Test
+	void waitingRequestIsAdmittedWhenMemoryIsReleased() throws Exception {
+		ReflectionTestUtils.setField(service, "maxWaitMillis", 10_000L);
+		// Takes the whole budget, so it runs alone
+		Reservation first = service.reserve(new MemoryFootprint(200, 10, 1000, 300), false);
+		assertEquals(1000, first.bytes());
+
+		CompletableFuture<Reservation> waiting = CompletableFuture.supplyAsync(
+			() -> service.reserve(new MemoryFootprint(100, 10, 500, 100), false));
+		while (service.getWaitingRequests() == 0) {
+			Thread.sleep(1);
+		}
+		first.close();
+
+		try (Reservation second = waiting.get(5, TimeUnit.SECONDS)) {
+			assertEquals(MemoryMode.MEMORY, second.mode());
+			assertEquals(1, service.getActiveReservations(MemoryMode.MEMORY));
+			assertEquals(500, service.getReservedBytes());
+		}
+	}
+
+	@Test
+	void footprintLargerThanTheBudgetIsRejectedWithoutWaiting() {
+		ReflectionTestUtils.setField(service, "maxWaitMillis", 10_000L);
+		MemoryFootprint footprint = new MemoryFootprint(5000, 10, 5000, 5000);
+
+		long start = System.nanoTime();
+		try (Reservation tooLarge = service.reserve(footprint, true)) {
+			assertEquals(MemoryMode.TOO_LARGE, tooLarge.mode());
+			assertTrue(tooLarge.isRejected());
+		}
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+		assertEquals(0, service.getReservedBytes());
+
+		// A document that only fits from disk is spilled rather than rejected
+		try (Reservation spilled = service.reserve(new MemoryFootprint(5000, 10, 5000, 500), true)) {
+			assertEquals(MemoryMode.DISK, spilled.mode());
+		}
+		Reservation inMemory = service.reserve(new MemoryFootprint(5000, 10, 5000, 500), false);
+		assertEquals(MemoryMode.TOO_LARGE, inMemory.mode());
+	}
+}
@@ -0,0 +1,257 @@
+package com.training.service;
+
+import static com.training.TestDocuments.createPdf;
+import static com.training.TestDocuments.verify;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationWidget;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceStream;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.apache.pdfbox.pdmodel.interactive.form.PDSignatureField;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cms.CMSProcessableByteArray;
+import org.bouncycastle.cms.CMSSignedData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.training.enums.CancellationReason;
+import com.training.enums.RevisionFormat;
+import com.training.enums.SignatureAppearanceType;
+import com.training.enums.SigningPhase;
+import com.training.helper.CertificateHelper;
+import com.training.helper.SigningDeadline;
+
+class PdfSigningServiceTests {
+
+	@TempDir
+	File tempDir;
+
+	@ParameterizedTest
+	@ValueSource(strings = { "RSA", "Ed25519" })
+	void streamedSignatureCoversByteRange(String keyAlgorithm) throws Exception {
+		File keystore = new File(tempDir, "signer.p12");
+		CertificateHelper.createSelfSignedKeystore(keystore, "password", "signer", "Test Signer", keyAlgorithm);
+		byte[] original = createPdf(1);
+
+		byte[] signed = new PdfSigningService().signPdfStream(new ByteArrayInputStream(original), keystore.getPath(),
+			"password", "signer", "Test Signer", "City", SignatureAppearanceType.VECTOR);
+
+		assertSignedOnce(signed);
+	}
+
+	@Test
+	void spooledSignatureCoversByteRange() throws Exception {
+		File keystore = new File(tempDir, "signer.p12");
+		CertificateHelper.createSelfSignedKeystore(keystore, "password", "signer", "Test Signer");
+		byte[] original = createPdf(1);
+		Path spoolFile = tempDir.toPath().resolve("upload.pdf");
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		new PdfSigningService().signPdfStream(new ByteArrayInputStream(original), keystore.getPath(), "password",
+			"signer", "Test Signer", "City", SignatureAppearanceType.VECTOR, spoolFile, output);
+
+		byte[] signed = output.toByteArray();
+		assertArrayEquals(original, Arrays.copyOf(signed, original.length));
+		assertSignedOnce(signed);
+	}
+
+	@ParameterizedTest
+	@EnumSource(RevisionFormat.class)
+	void signatureOnEveryPageSharesOneAppearance(RevisionFormat revisionFormat) throws Exception {
+		File keystore = new File(tempDir, "signer.p12");
+		CertificateHelper.createSelfSignedKeystore(keystore, "password", "signer", "Test Signer");
+		PdfSigningService service = new PdfSigningService();
+		ReflectionTestUtils.setField(service, "revisionFormat", revisionFormat);
+
+		int[] revisionSizes = new int[2];
+		int[] pageCounts = { 4, 40 };
+		for (int i = 0; i < pageCounts.length; i++) {
+			byte[] original = createPdf(pageCounts[i]);
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			service.signPdfOnPages(new MockMultipartFile("file", "document.pdf", "application/pdf", original),
+				keystore.getPath(), "password", "signer", "Test Signer", "City", null, List.of(), null, output);
+			byte[] signed = output.toByteArray();
+			revisionSizes[i] = signed.length - original.length;
+			assertSignedOnce(signed);
+
+			try (PDDocument document = Loader.loadPDF(signed)) {
+				PDSignatureField field = document.getSignatureFields().get(0);
+				List<PDAnnotationWidget> widgets = field.getWidgets();
+				assertEquals(pageCounts[i], widgets.size());
+				for (int page = 0; page < pageCounts[i]; page++) {
+					List<PDAnnotation> annotations = document.getPage(page).getAnnotations();
+					assertEquals(1, annotations.size());
+					assertSame(widgets.get(0).getNormalAppearanceStream().getCOSObject(),
+						((PDAnnotationWidget) annotations.get(0)).getNormalAppearanceStream().getCOSObject());
+				}
+			}
+		}
+		// Only a widget and the page reference to it are added per page, the appearance is written once
+		int bytesPerPage = (revisionSizes[1] - revisionSizes[0]) / (pageCounts[1] - pageCounts[0]);
+		assertTrue(bytesPerPage < 400, bytesPerPage + " bytes per page");
+	}
+
+	@Test
+	void expiredDeadlineAbandonsSigningBeforeLoading() throws Exception {
+		File keystore = new File(tempDir, "signer.p12");
+		CertificateHelper.createSelfSignedKeystore(keystore, "password", "signer", "Test Signer");
+		SigningDeadline deadline = new SigningDeadline(1);
+		Thread.sleep(5);
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		SigningDeadline.bind(deadline);
+		try {
+			assertThrows(IOException.class, () -> new PdfSigningService().signPdf(
+				new MockMultipartFile("file", "document.pdf", "application/pdf", createPdf(1)), keystore.getPath(),
+				"password", "signer", "Test Signer", "City", SignatureAppearanceType.VECTOR, null, output));
+		} finally {
+			SigningDeadline.bind(null);
+		}
+		assertEquals(SigningPhase.LOAD, deadline.getAbandonedPhase());
+		assertEquals(CancellationReason.DEADLINE_EXCEEDED, deadline.getCancellationReason());
+		assertEquals(0, output.size());
+	}
+
+	@ParameterizedTest
+	@EnumSource(value = SignatureAppearanceType.class, names = { "NEW", "VECTOR" })
+	void defaultSignatureBoxFollowsTheMediaBoxOrigin(SignatureAppearanceType appearanceType) throws Exception {
+		File keystore = new File(tempDir, "signer.p12");
+		CertificateHelper.createSelfSignedKeystore(keystore, "password", "signer", "Test Signer");
+		byte[] original;
+		try (PDDocument document = new PDDocument()) {
+			document.addPage(new PDPage(new PDRectangle(100, 200, 612, 792)));
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			document.save(baos);
+			original = baos.toByteArray();
+		}
+
+		byte[] signed = new PdfSigningService().signPdf(
+			new MockMultipartFile("file", "document.pdf", "application/pdf", original), keystore.getPath(),
+			"password", "signer", "Test Signer", "City", appearanceType);
+
+		assertSignedOnce(signed);
+		try (PDDocument document = Loader.loadPDF(signed)) {
+			PDRectangle rect = document.getSignatureFields().get(0).getWidgets().get(0).getRectangle();
+			assertEquals(120, rect.getLowerLeftX(), 0.01);
+			assertEquals(200 + 792 - 20, rect.getUpperRightY(), 0.01);
+			assertEquals(200, rect.getWidth(), 0.01);
+			assertEquals(70, rect.getHeight(), 0.01);
+		}
+	}
+
+	@Test
+	void vectorAppearanceIsATransparencyGroupWithTheSignerText() throws Exception {
+		File keystore = new File(tempDir, "signer.p12");
+		CertificateHelper.createSelfSignedKeystore(keystore, "password", "signer", "Test Signer");
+
+		byte[] signed = new PdfSigningService().signPdf(
+			new MockMultipartFile("file", "document.pdf", "application/pdf", createPdf(1)), keystore.getPath(),
+			"password", "signer", "Test Signer", "City", SignatureAppearanceType.VECTOR);
+
+		try (PDDocument document = Loader.loadPDF(signed)) {
+			PDAppearanceStream appearance = document.getSignatureFields().get(0).getWidgets().get(0)
+				.getNormalAppearanceStream();
+			PDRectangle bbox = appearance.getBBox();
+			assertEquals(200, bbox.getWidth(), 0.01);
+			assertEquals(70, bbox.getHeight(), 0.01);
+			COSDictionary group = appearance.getCOSObject().getCOSDictionary(COSName.GROUP);
+			assertEquals(COSName.TRANSPARENCY, group.getCOSName(COSName.S));
+			// No image is embedded, the text is drawn with a font
+			assertEquals(0, countNames(appearance.getResources().getXObjectNames()));
+			assertEquals(1, countNames(appearance.getResources().getFontNames()));
+
+			List<String> shown = new ArrayList<>();
+			PDFStreamParser parser = new PDFStreamParser(appearance);
+			for (Object token = parser.parseNextToken(); token != null; token = parser.parseNextToken()) {
+				if (token instanceof COSString text) {
+					shown.add(text.getString());
+				}
+			}
+			assertEquals(3, shown.size());
+			assertEquals("Digitally signed by: Test Signer", shown.get(0));
+			assertEquals("Location: City", shown.get(1));
+			assertTrue(shown.get(2).startsWith("Date: "));
+		}
+	}
+
+	@Test
+	void concurrentSigningsUseTheirOwnCredentials() throws Exception {
+		File first = new File(tempDir, "first.p12");
+		File second = new File(tempDir, "second.p12");
+		CertificateHelper.createSelfSignedKeystore(first, "password", "signer", "First Signer");
+		CertificateHelper.createSelfSignedKeystore(second, "password", "signer", "Second Signer");
+		PdfSigningService service = new PdfSigningService();
+		byte[] original = createPdf(1);
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<byte[]>> results = new ArrayList<>();
+			for (int i = 0; i < 32; i++) {
+				File keystore = i % 2 == 0 ? first : second;
+				results.add(executor.submit(() -> service.signPdf(
+					new MockMultipartFile("file", "document.pdf", "application/pdf", original), keystore.getPath(),
+					"password", "signer", "Test Signer", "City", SignatureAppearanceType.VECTOR)));
+			}
+			for (int i = 0; i < results.size(); i++) {
+				byte[] signed = results.get(i).get();
+				try (PDDocument document = Loader.loadPDF(signed)) {
+					PDSignature signature = document.getLastSignatureDictionary();
+					assertTrue(verify(signature, signed));
+					CMSSignedData signedData = new CMSSignedData(
+						new CMSProcessableByteArray(signature.getSignedContent(signed)), signature.getContents(signed));
+					X509CertificateHolder certificate = (X509CertificateHolder) signedData.getCertificates()
+						.getMatches(null).iterator().next();
+					assertEquals("CN=" + (i % 2 == 0 ? "First Signer" : "Second Signer"),
+						certificate.getSubject().toString());
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static int countNames(Iterable<COSName> names) {
+		int count = 0;
+		for (COSName ignored : names) {
+			count++;
+		}
+		return count;
+	}
+
+	private static void assertSignedOnce(byte[] signed) throws Exception {
+		try (PDDocument document = Loader.loadPDF(signed)) {
+			assertTrue(verify(document.getLastSignatureDictionary(), signed));
+			assertEquals(1, document.getSignatureDictionaries().size());
+		}
+	}
+}
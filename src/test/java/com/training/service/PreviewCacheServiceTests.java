@@ -0,0 +1,58 @@
+package com.training.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.training.model.CachedPreview;
+
+class PreviewCacheServiceTests {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void previewsAreKeyedByBaseContentAndParameters() throws Exception {
+		PreviewCacheService cache = new PreviewCacheService();
+		Path base = Files.write(tempDir.resolve("template.pdf"), new byte[] { 1, 2, 3 });
+
+		String key = cache.key("layeredPage", base, "a|b", "c");
+		assertNotEquals(key, cache.key("layeredPage", base, "a", "b|c"));
+		CachedPreview preview = cache.put(key, new byte[] { 4 });
+		assertSame(preview, cache.find(cache.key("layeredPage", base, "a|b", "c")).orElseThrow());
+
+		// A changed template gives other keys, so previews of the old content are no longer found
+		Files.write(base, new byte[] { 1, 2, 4 });
+		Files.setLastModifiedTime(base, FileTime.fromMillis(Files.getLastModifiedTime(base).toMillis() + 1000));
+		assertTrue(cache.find(cache.key("layeredPage", base, "a|b", "c")).isEmpty());
+		assertEquals(0.5, cache.getHitRatio());
+	}
+
+	@Test
+	void leastRecentlyUsedPreviewsAreEvictedBySize() throws Exception {
+		PreviewCacheService cache = new PreviewCacheService();
+		ReflectionTestUtils.setField(cache, "maxBytes", 300L);
+		ReflectionTestUtils.setField(cache, "maxEntryBytes", 200L);
+
+		cache.put("a", new byte[100]);
+		cache.put("b", new byte[100]);
+		cache.find("a");
+		cache.put("c", new byte[150]);
+		cache.put("d", new byte[250]);
+
+		assertTrue(cache.find("a").isPresent());
+		assertTrue(cache.find("b").isEmpty());
+		assertTrue(cache.find("c").isPresent());
+		assertTrue(cache.find("d").isEmpty());
+		assertEquals(250, cache.getCachedBytes());
+	}
+}
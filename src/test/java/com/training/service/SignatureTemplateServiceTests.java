@@ -0,0 +1,94 @@
+package com.training.service;
+
+import static com.training.TestDocuments.createPdf;
+import static com.training.TestDocuments.verify;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSObjectKey;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.apache.pdfbox.pdmodel.interactive.form.PDSignatureField;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.training.enums.RevisionFormat;
+import com.training.helper.CertificateHelper;
+import com.training.model.ProvisionedField;
+import com.training.model.ProvisionedTemplate;
+import com.training.model.SignaturePlacement;
+
+class SignatureTemplateServiceTests {
+
+	@TempDir
+	Path tempDir;
+
+	@ParameterizedTest
+	@EnumSource(RevisionFormat.class)
+	void signingFillsProvisionedFieldWithoutRewritingItsPage(RevisionFormat revisionFormat) throws Exception {
+		File keystore = tempDir.resolve("signer.p12").toFile();
+		CertificateHelper.createSelfSignedKeystore(keystore, "password", "signer", "Test Signer");
+		PdfSigningService pdfSigningService = new PdfSigningService();
+		ReflectionTestUtils.setField(pdfSigningService, "revisionFormat", revisionFormat);
+		SignatureTemplateService service = new SignatureTemplateService();
+		ReflectionTestUtils.setField(service, "pdfSigningService", pdfSigningService);
+		ReflectionTestUtils.setField(service, "templateDir", tempDir.resolve("templates"));
+		ReflectionTestUtils.setField(service, "certificatePath", keystore.getPath());
+		ReflectionTestUtils.setField(service, "certificatePassword", "password");
+		ReflectionTestUtils.setField(service, "certificateAlias", "signer");
+		service.init();
+
+		Map<String, SignaturePlacement> fields = new LinkedHashMap<>();
+		fields.put("borrower", new SignaturePlacement(2, 20, 20, 200, 70));
+		fields.put("lender", new SignaturePlacement(3, 320, 20, 200, 70));
+		ProvisionedTemplate template = service.provision(
+			new MockMultipartFile("file", "loan.pdf", "application/pdf", createPdf(3)), fields);
+		assertEquals(List.of("borrower", "lender"), template.fields().stream().map(ProvisionedField::name).toList());
+		assertThrows(IOException.class, () -> service.provision(
+			new MockMultipartFile("file", "loan.pdf", "application/pdf", createPdf(3)),
+			Map.of("lender", new SignaturePlacement(4, 0, 0, 10, 10))));
+
+		// Without the cached index, as after a restart, the index is read back from the template
+		ReflectionTestUtils.setField(service, "indexes", new ConcurrentHashMap<>());
+		byte[] original = Files.readAllBytes(service.findFile(template.id()).orElseThrow());
+		byte[] revision = service.sign(template.id(), "lender", null).orElseThrow();
+		assertTrue(service.sign(template.id(), "notary", null).isEmpty());
+		byte[] signed = new byte[original.length + revision.length];
+		System.arraycopy(original, 0, signed, 0, original.length);
+		System.arraycopy(revision, 0, signed, original.length, revision.length);
+
+		try (PDDocument provisioned = Loader.loadPDF(original);
+			 PDDocument document = Loader.loadPDF(signed)) {
+			List<PDSignatureField> signatureFields = document.getSignatureFields();
+			assertEquals(List.of("borrower", "lender"), signatureFields.stream().map(PDSignatureField::getPartialName).toList());
+			assertNull(signatureFields.get(0).getSignature());
+			PDSignature signature = signatureFields.get(1).getSignature();
+			assertEquals("lender", signature.getName());
+			assertTrue(verify(signature, signed));
+			assertEquals(1, document.getPage(2).getAnnotations().size());
+			for (int i = 0; i < 3; i++) {
+				COSObjectKey key = provisioned.getPage(i).getCOSObject().getKey();
+				assertEquals(provisioned.getDocument().getXrefTable().get(key), document.getDocument().getXrefTable().get(key),
+					"page " + (i + 1) + " was written again");
+			}
+		}
+		assertArrayEquals(original, Arrays.copyOf(signed, original.length));
+	}
+}
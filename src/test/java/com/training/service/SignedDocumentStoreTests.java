@@ -0,0 +1,144 @@
+package com.training.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.training.model.StoredDocument;
+
+class SignedDocumentStoreTests {
+
+	@TempDir
+	Path tempDir;
+
+	private SignedDocumentStore store;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		store = new SignedDocumentStore();
+		ReflectionTestUtils.setField(store, "storeDir", tempDir.resolve("store"));
+		store.init();
+	}
+
+	@Test
+	void documentsAreStoredAsOriginalPlusRevisions() throws Exception {
+		byte[] original = new byte[100_000];
+		Path originalFile = Files.write(tempDir.resolve("original.pdf"), original);
+		byte[] firstRevision = { 1, 2, 3 };
+		byte[] secondRevision = { 4, 5 };
+
+		String originalSha256 = store.storeOriginal(originalFile);
+		String firstSha256 = store.storeRevision(originalSha256, firstRevision);
+		String secondSha256 = store.storeRevision(firstSha256, secondRevision);
+		// Storing the same original again must not add another copy
+		assertEquals(originalSha256, store.storeOriginal(originalFile));
+
+		StoredDocument document = store.find(secondSha256).orElseThrow();
+		assertEquals(original.length + 5, document.size());
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		store.writeTo(document, Channels.newChannel(out));
+		byte[] expected = new byte[original.length + 5];
+		System.arraycopy(new byte[] { 1, 2, 3, 4, 5 }, 0, expected, original.length, 5);
+		assertArrayEquals(expected, out.toByteArray());
+
+		try (Stream<Path> blobs = Files.walk(tempDir.resolve("store/blobs"))) {
+			assertEquals(3, blobs.filter(Files::isRegularFile).count());
+		}
+		assertTrue(store.find("../../etc/passwd").isEmpty());
+	}
+
+	@Test
+	void revisionHashesMatchTheFullDocumentWithAndWithoutTheCachedParentState() throws Exception {
+		byte[] original = new byte[50_000];
+		Arrays.fill(original, (byte) 7);
+		String originalSha256 = store.storeOriginal(Files.write(tempDir.resolve("original.pdf"), original));
+		String cachedSha256 = store.storeRevision(originalSha256, new byte[] { 1, 2, 3 });
+
+		// A new instance over the same directory has no digest states and hashes the parent from its blobs
+		SignedDocumentStore restarted = new SignedDocumentStore();
+		ReflectionTestUtils.setField(restarted, "storeDir", tempDir.resolve("store"));
+		restarted.init();
+		assertEquals(cachedSha256, restarted.storeRevision(originalSha256, new byte[] { 1, 2, 3 }));
+
+		byte[] full = Arrays.copyOf(original, original.length + 3);
+		System.arraycopy(new byte[] { 1, 2, 3 }, 0, full, original.length, 3);
+		assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(full)), cachedSha256);
+
+		// Continuing from the cached state of a revision hashes the whole chain
+		String secondSha256 = store.storeRevision(cachedSha256, new byte[] { 4 });
+		byte[] second = Arrays.copyOf(full, full.length + 1);
+		second[full.length] = 4;
+		assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(second)), secondSha256);
+	}
+
+	@Test
+	void expiredDocumentsAndTheirUnsharedBlobsArePurged() throws Exception {
+		ReflectionTestUtils.setField(store, "retentionHours", 1L);
+		String originalSha256 = store.storeOriginal(Files.write(tempDir.resolve("original.pdf"), new byte[1000]));
+		String expiredSha256 = store.storeRevision(originalSha256, new byte[] { 1 });
+		String keptSha256 = store.storeRevision(originalSha256, new byte[] { 2 });
+		Path expiredBlob = store.find(expiredSha256).orElseThrow().parts().get(1);
+
+		FileTime old = FileTime.from(Instant.now().minus(Duration.ofHours(2)));
+		Files.setLastModifiedTime(tempDir.resolve("store/documents").resolve(expiredSha256), old);
+		Files.setLastModifiedTime(expiredBlob, old);
+
+		assertEquals(1, store.purgeExpired());
+		assertTrue(store.find(expiredSha256).isEmpty());
+		assertFalse(Files.exists(expiredBlob));
+		// The original blob is still part of the kept document
+		assertEquals(1001, store.find(keptSha256).orElseThrow().size());
+		assertTrue(store.find(originalSha256).isPresent());
+	}
+
+	@Test
+	void readingADocumentKeepsIt() throws Exception {
+		ReflectionTestUtils.setField(store, "retentionHours", 1L);
+		String sha256 = store.storeOriginal(Files.write(tempDir.resolve("original.pdf"), new byte[1000]));
+		Path manifest = tempDir.resolve("store/documents").resolve(sha256);
+		Files.setLastModifiedTime(manifest, FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+
+		assertTrue(store.find(sha256).isPresent());
+		assertEquals(0, store.purgeExpired());
+		assertTrue(store.find(sha256).isPresent());
+	}
+
+	@Test
+	void documentsAreKeptWithoutRetention() throws Exception {
+		String sha256 = store.storeOriginal(Files.write(tempDir.resolve("original.pdf"), new byte[1000]));
+		Files.setLastModifiedTime(tempDir.resolve("store/documents").resolve(sha256), FileTime.fromMillis(0));
+
+		assertEquals(0, store.purgeExpired());
+		assertTrue(store.find(sha256).isPresent());
+	}
+
+	@Test
+	void theStoredOriginalIsASnapshotOfTheFile() throws Exception {
+		Path file = Files.write(tempDir.resolve("original.pdf"), new byte[] { 1, 2, 3 });
+		String sha256 = store.storeOriginal(file);
+		Files.write(file, new byte[] { 4, 5, 6, 7 });
+
+		StoredDocument document = store.find(sha256).orElseThrow();
+		assertArrayEquals(new byte[] { 1, 2, 3 }, Files.readAllBytes(document.parts().get(0)));
+		assertNotEquals(sha256, store.storeOriginal(file));
+	}
+}
@@ -0,0 +1,140 @@
+package com.training.service;
+
+import static com.training.TestDocuments.createPdf;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+import javax.imageio.ImageIO;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.training.enums.RevisionFormat;
+import com.training.enums.SignatureAppearanceType;
+import com.training.helper.CertificateHelper;
+import com.training.model.EncodedImage;
+
+class SignerAssetStoreTests {
+
+	@TempDir
+	Path tempDir;
+
+	@ParameterizedTest
+	@EnumSource(value = RevisionFormat.class, names = { "COMPACT", "APPEND" })
+	void signingEmbedsTheIngestedImageData(RevisionFormat revisionFormat) throws Exception {
+		SignerAssetStore store = newStore();
+		byte[] png = createTranslucentPng();
+		EncodedImage image = store.ingest(png);
+		assertSame(image, store.ingest(png));
+		assertNotNull(image.alpha());
+
+		// Another instance finds the encoded image on disk
+		EncodedImage reloaded = newStore().find(image.id()).orElseThrow();
+		assertArrayEquals(image.data(), reloaded.data());
+
+		File keystore = tempDir.resolve("signer.p12").toFile();
+		CertificateHelper.createSelfSignedKeystore(keystore, "password", "signer", "Test Signer");
+		PdfSigningService service = new PdfSigningService();
+		ReflectionTestUtils.setField(service, "revisionFormat", revisionFormat);
+		ByteArrayOutputStream signed = new ByteArrayOutputStream();
+		service.signPdf(new MockMultipartFile("file", "document.pdf", "application/pdf", createPdf(1)),
+			keystore.getPath(), "password", "signer", "Test Signer", "City", SignatureAppearanceType.VECTOR, null,
+			reloaded, signed);
+
+		try (PDDocument document = Loader.loadPDF(signed.toByteArray())) {
+			assertEquals(1, document.getSignatureDictionaries().size());
+			PDImageXObject embedded = findImage(document.getSignatureFields().get(0).getWidgets().get(0)
+				.getNormalAppearanceStream().getResources());
+			assertNotNull(embedded);
+			assertArrayEquals(image.data(), rawBytes(embedded.getCOSObject()));
+			assertArrayEquals(image.alpha(), rawBytes(embedded.getCOSObject().getCOSStream(COSName.SMASK)));
+			assertEquals(0xc8, embedded.getImage().getRGB(5, 30) >>> 24);
+		}
+	}
+
+	@Test
+	void imagesDeclaringTooManyPixelsAreRejectedBeforeDecoding() throws Exception {
+		// A PNG header alone, declaring 100000x100000 pixels that would take 30 GB decoded
+		ByteBuffer header = ByteBuffer.allocate(13).putInt(100_000).putInt(100_000).put(new byte[] { 8, 2, 0, 0, 0 });
+		CRC32 crc = new CRC32();
+		crc.update("IHDR".getBytes(StandardCharsets.US_ASCII));
+		crc.update(header.array());
+		ByteBuffer png = ByteBuffer.allocate(33)
+			.put(new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' })
+			.putInt(13).put("IHDR".getBytes(StandardCharsets.US_ASCII)).put(header.array()).putInt((int) crc.getValue());
+
+		IOException e = assertThrows(IOException.class, () -> newStore().ingest(png.array()));
+		assertTrue(e.getMessage().contains("exceeds the limit"), e.getMessage());
+	}
+
+	private SignerAssetStore newStore() throws Exception {
+		SignerAssetStore store = new SignerAssetStore();
+		ReflectionTestUtils.setField(store, "assetDir", tempDir.resolve("assets"));
+		store.init();
+		return store;
+	}
+
+	private static PDImageXObject findImage(PDResources resources) throws Exception {
+		if (resources == null) {
+			return null;
+		}
+		for (COSName name : resources.getXObjectNames()) {
+			PDXObject xObject = resources.getXObject(name);
+			if (xObject instanceof PDImageXObject image) {
+				return image;
+			}
+			if (xObject instanceof PDFormXObject form) {
+				PDImageXObject image = findImage(form.getResources());
+				if (image != null) {
+					return image;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static byte[] rawBytes(COSStream stream) throws Exception {
+		try (InputStream in = stream.createRawInputStream()) {
+			return in.readAllBytes();
+		}
+	}
+
+	private static byte[] createTranslucentPng() throws Exception {
+		BufferedImage image = new BufferedImage(120, 40, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2d = image.createGraphics();
+		g2d.setColor(new Color(0, 0, 128, 200));
+		g2d.drawLine(5, 30, 115, 10);
+		g2d.dispose();
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ImageIO.write(image, "PNG", baos);
+		return baos.toByteArray();
+	}
+}
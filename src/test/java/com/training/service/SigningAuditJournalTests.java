@@ -0,0 +1,170 @@
+package com.training.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.training.helper.CertificateHelper;
+import com.training.model.AuditEntry;
+import com.training.model.AuditVerification;
+
+class SigningAuditJournalTests {
+
+	private static X509Certificate certificate;
+
+	@TempDir
+	Path tempDir;
+
+	@BeforeAll
+	static void createCertificate(@TempDir File keystoreDir) throws Exception {
+		File keystoreFile = new File(keystoreDir, "audit.p12");
+		CertificateHelper.createSelfSignedKeystore(keystoreFile, "password", "audit", "Audit Signer", "EC");
+		KeyStore keystore = KeyStore.getInstance("PKCS12");
+		try (InputStream in = new FileInputStream(keystoreFile)) {
+			keystore.load(in, "password".toCharArray());
+		}
+		certificate = (X509Certificate) keystore.getCertificate("audit");
+	}
+
+	@Test
+	void concurrentEntriesFormOneVerifiableChainAcrossRestarts() throws Exception {
+		Path journalFile = tempDir.resolve("audit.jsonl");
+		SigningAuditJournal journal = open(journalFile);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<AuditEntry>> futures = new ArrayList<>();
+			for (int i = 0; i < 100; i++) {
+				byte[] digest = { (byte) i };
+				futures.add(executor.submit(() -> journal.record("Signer", certificate, "SHA-256", digest)));
+			}
+			for (Future<AuditEntry> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdownNow();
+			journal.stop();
+		}
+
+		// Simulate a crash in the middle of an unacknowledged write
+		Files.writeString(journalFile, "{\"sequence\":101,\"ti", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+		SigningAuditJournal reopened = open(journalFile);
+		AuditEntry next = reopened.record("Signer", certificate, "SHA-256", new byte[] { 1 });
+		reopened.stop();
+
+		assertEquals(101, next.sequence());
+		AuditVerification verification = SigningAuditJournal.verify(journalFile);
+		assertTrue(verification.valid(), verification.message());
+		assertEquals(101, verification.entries());
+	}
+
+	@Test
+	void tamperingBreaksTheChain() throws Exception {
+		Path journalFile = tempDir.resolve("audit.jsonl");
+		SigningAuditJournal journal = open(journalFile);
+		for (int i = 0; i < 3; i++) {
+			journal.record("Signer", certificate, "SHA-256", new byte[] { (byte) i });
+		}
+		journal.stop();
+
+		String tampered = Files.readString(journalFile).replaceFirst("\"contentDigest\":\"01\"", "\"contentDigest\":\"ff\"");
+		Files.writeString(journalFile, tampered);
+
+		AuditVerification verification = SigningAuditJournal.verify(journalFile);
+		assertFalse(verification.valid());
+		assertEquals(2, verification.firstInvalidSequence());
+	}
+
+	@Test
+	void entriesAreReadFromTheRequestedSequence() throws Exception {
+		Path journalFile = tempDir.resolve("audit.jsonl");
+		SigningAuditJournal journal = open(journalFile);
+		try {
+			for (int i = 0; i < 50; i++) {
+				journal.record("Signer " + i, certificate, "SHA-256", new byte[] { (byte) i });
+			}
+			// A write in progress leaves a torn final line
+			Files.writeString(journalFile, "{\"sequence\":51,\"ti", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+			assertEquals(List.of(1L, 2L, 3L), sequences(journal.entries(1, 3)));
+			assertEquals(List.of(20L, 21L, 22L, 23L, 24L), sequences(journal.entries(20, 5)));
+			assertEquals(List.of(49L, 50L), sequences(journal.entries(49, 10)));
+			assertEquals("Signer 19", journal.entries(20, 1).get(0).signer());
+			assertTrue(journal.entries(51, 10).isEmpty());
+			assertEquals(50, SigningAuditJournal.verify(journalFile).entries());
+		} finally {
+			journal.stop();
+		}
+	}
+
+	@Test
+	void malformedEntriesBeforeTheLastLineAreReported() throws Exception {
+		Path journalFile = tempDir.resolve("audit.jsonl");
+		SigningAuditJournal journal = open(journalFile);
+		for (int i = 0; i < 3; i++) {
+			journal.record("Signer", certificate, "SHA-256", new byte[] { (byte) i });
+		}
+		journal.stop();
+
+		List<String> lines = new ArrayList<>(Files.readAllLines(journalFile));
+		lines.set(1, lines.get(1).substring(0, 20));
+		Files.write(journalFile, lines);
+
+		IOException e = assertThrows(IOException.class, () -> SigningAuditJournal.verify(journalFile));
+		assertTrue(e.getMessage().contains("line 2"), e.getMessage());
+	}
+
+	@Test
+	void callersFailWhenTheWriterStops() throws Exception {
+		Path journalFile = tempDir.resolve("audit.jsonl");
+		SigningAuditJournal journal = open(journalFile);
+		journal.record("Signer", certificate, "SHA-256", new byte[] { 0 });
+		// Neither the write nor the rollback can succeed on a closed channel, so the writer stops
+		((FileChannel) ReflectionTestUtils.getField(journal, "channel")).close();
+
+		assertThrows(IOException.class, () -> journal.record("Signer", certificate, "SHA-256", new byte[] { 1 }));
+		assertTimeoutPreemptively(Duration.ofSeconds(10),
+			() -> assertThrows(IOException.class, () -> journal.record("Signer", certificate, "SHA-256", new byte[] { 2 })));
+		journal.stop();
+
+		AuditVerification verification = SigningAuditJournal.verify(journalFile);
+		assertTrue(verification.valid(), verification.message());
+		assertEquals(1, verification.entries());
+	}
+
+	private static List<Long> sequences(List<AuditEntry> entries) {
+		return entries.stream().map(AuditEntry::sequence).toList();
+	}
+
+	private static SigningAuditJournal open(Path journalFile) throws Exception {
+		SigningAuditJournal journal = new SigningAuditJournal();
+		ReflectionTestUtils.setField(journal, "journalFile", journalFile);
+		ReflectionTestUtils.setField(journal, "maxBatchSize", 16);
+		journal.start();
+		return journal;
+	}
+}
@@ -0,0 +1,108 @@
+package com.training.service;
+
+import static com.training.TestDocuments.createPdf;
+import static com.training.TestDocuments.verify;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.training.enums.SignatureAppearanceType;
+import com.training.helper.CertificateHelper;
+import com.training.model.CreatedWorkflow;
+import com.training.model.SigningWorkflow;
+import com.training.model.StoredDocument;
+
+class SigningWorkflowServiceTests {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void partiesSignInTurnAndOnlyRevisionsAreStored() throws Exception {
+		File keystore = tempDir.resolve("signer.p12").toFile();
+		CertificateHelper.createSelfSignedKeystore(keystore, "password", "signer", "Test Signer");
+		SignedDocumentStore store = new SignedDocumentStore();
+		ReflectionTestUtils.setField(store, "storeDir", tempDir.resolve("store"));
+		store.init();
+		SigningWorkflowService service = new SigningWorkflowService();
+		ReflectionTestUtils.setField(service, "signedDocumentStore", store);
+		ReflectionTestUtils.setField(service, "pdfSigningService", new PdfSigningService());
+		ReflectionTestUtils.setField(service, "workflowDir", tempDir.resolve("workflows"));
+		ReflectionTestUtils.setField(service, "certificatePath", keystore.getPath());
+		ReflectionTestUtils.setField(service, "certificatePassword", "password");
+		ReflectionTestUtils.setField(service, "certificateAlias", "signer");
+		service.init();
+
+		byte[] original = createPdf(3);
+		CreatedWorkflow created = service.create(
+			new MockMultipartFile("file", "loan.pdf", "application/pdf", original),
+			List.of(List.of("borrower", "co-borrower"), List.of("lender")));
+		String id = created.workflow().id();
+		Map<String, String> tokens = created.partyTokens();
+		assertEquals(Set.of("borrower", "co-borrower", "lender"), tokens.keySet());
+		assertFalse(Files.readString(tempDir.resolve("workflows/" + id + ".tokens.json")).contains(tokens.get("lender")));
+
+		// A party cannot sign with another party's token, or without one
+		assertThrows(SecurityException.class,
+			() -> service.sign(id, "co-borrower", tokens.get("borrower"), SignatureAppearanceType.VECTOR, null));
+		assertThrows(SecurityException.class, () -> service.sign(id, "co-borrower", null, SignatureAppearanceType.VECTOR, null));
+		assertThrows(SecurityException.class,
+			() -> service.sign(id, "notary", tokens.get("lender"), SignatureAppearanceType.VECTOR, null));
+		assertThrows(IllegalStateException.class,
+			() -> service.sign(id, "lender", tokens.get("lender"), SignatureAppearanceType.VECTOR, null));
+		service.sign(id, "co-borrower", tokens.get("co-borrower"), SignatureAppearanceType.VECTOR, null);
+		assertThrows(IllegalStateException.class,
+			() -> service.sign(id, "co-borrower", tokens.get("co-borrower"), SignatureAppearanceType.VECTOR, null));
+		service.sign(id, "borrower", tokens.get("borrower"), SignatureAppearanceType.VECTOR, null);
+		SigningWorkflow workflow = service.sign(id, "lender", tokens.get("lender"), SignatureAppearanceType.VECTOR, null)
+			.orElseThrow();
+		assertTrue(workflow.isComplete());
+		assertEquals(workflow, service.find(id).orElseThrow());
+
+		byte[] signed = read(store, store.find(workflow.headSha256()).orElseThrow());
+		assertArrayEquals(original, Arrays.copyOf(signed, original.length));
+		try (PDDocument document = Loader.loadPDF(signed)) {
+			List<PDSignature> signatures = document.getSignatureDictionaries();
+			assertEquals(List.of("co-borrower", "borrower", "lender"), signatures.stream().map(PDSignature::getName).toList());
+			for (PDSignature signature : signatures) {
+				assertTrue(verify(signature, signed));
+			}
+		}
+
+		// The lender's client holding the co-borrower's version downloads only the two later revisions
+		String firstSha256 = workflow.signatures().get(0).documentSha256();
+		StoredDocument appended = store.findAppended(firstSha256, workflow.headSha256()).orElseThrow();
+		assertEquals(2, appended.parts().size());
+		assertFalse(store.findAppended(workflow.headSha256(), firstSha256).isPresent());
+		try (Stream<Path> blobs = Files.walk(tempDir.resolve("store/blobs"))) {
+			assertEquals(4, blobs.filter(Files::isRegularFile).count());
+		}
+	}
+
+	private static byte[] read(SignedDocumentStore store, StoredDocument document) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		store.writeTo(document, Channels.newChannel(out));
+		return out.toByteArray();
+	}
+}